@@ -0,0 +1,32 @@
+package io.hashchain.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+// JMH launcher that writes JSON results named after the release unless -rf/-rff are given,
+// so runs of two releases can be compared directly.
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions command = new CommandLineOptions(args);
+        if (command.shouldHelp() || command.shouldList() || command.shouldListWithParams()
+                || command.shouldListProfilers() || command.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        String version = BenchmarkMain.class.getPackage().getImplementationVersion();
+        Options options = new OptionsBuilder()
+                .parent(command)
+                .resultFormat(command.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(command.getResult().orElse("jmh-result-" + (version == null ? "dev" : version) + ".json"))
+                .build();
+        new Runner(options).run();
+    }
+}
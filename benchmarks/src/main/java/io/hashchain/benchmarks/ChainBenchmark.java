@@ -0,0 +1,89 @@
+package io.hashchain.benchmarks;
+
+import io.hashchain.core.ChainVerifier;
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.PersonData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// In-memory chain operations at a given chain size. Appends are undone after every iteration,
+// so each one measures appending to a chain of `size` records. Duplicate rejection stays off: the rewind
+// would drop its filter every iteration.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-Dhashchain.duplicates=allow"})
+public class ChainBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private HashChain chain;
+    private byte[] chainHash;
+    private byte[] merkleRoot;
+    private List<PersonData> batch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        chain = Fixtures.chain(size);
+        chainHash = chain.computeChainHashBytes();
+        merkleRoot = chain.computeMerkleRoot();
+        batch = Fixtures.people(size, Fixtures.BATCH);
+        next = size;
+    }
+
+    @TearDown(Level.Iteration)
+    public void rewind() {
+        chain.truncate(size);
+        next = size;
+    }
+
+    @Benchmark
+    public HashRecord appendSingle() {
+        return chain.addRecord(Fixtures.person(next++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Fixtures.BATCH)
+    public List<HashRecord> appendBulk() {
+        return chain.addRecords(batch);
+    }
+
+    // A fresh chain over the same records has no cached digest, so this hashes all of them.
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public byte[] computeChainHash() {
+        HashChain fresh = new HashChain();
+        fresh.attach(chain.snapshot());
+        return fresh.computeChainHashBytes();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 5)
+    public ChainVerifier.Report verify() {
+        return ChainVerifier.verify(chain.snapshot(), chainHash, merkleRoot);
+    }
+}
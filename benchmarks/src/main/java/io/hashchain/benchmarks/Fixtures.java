@@ -0,0 +1,71 @@
+package io.hashchain.benchmarks;
+
+import io.hashchain.core.FingerprintDot;
+import io.hashchain.core.FingerprintType;
+import io.hashchain.core.HashChain;
+import io.hashchain.core.PersonData;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Deterministic data so results from different runs and releases are comparable.
+final class Fixtures {
+
+    static final int BATCH = 4096;
+
+    private static final String[] FIRST_NAMES = {"Иван", "Пётр", "Анна", "Мария", "Сергей", "Ольга", "Дмитрий", "Елена"};
+    private static final String[] LAST_NAMES = {"Иванов", "Петров", "Сидоров", "Смирнов", "Кузнецов", "Попов", "Волков", "Соколов"};
+    private static final String[] PATRONYMICS = {"Иванович", "Петрович", "Сергеевич", "Алексеевич", "Андреевна", "Олеговна"};
+
+    private Fixtures() {
+    }
+
+    static PersonData person(int i) {
+        FingerprintType[] types = FingerprintType.values();
+        return new PersonData(
+                FIRST_NAMES[i % FIRST_NAMES.length],
+                LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length] + (i % 1000),
+                PATRONYMICS[i % PATRONYMICS.length],
+                LocalDate.of(1940 + i % 70, 1 + i % 12, 1 + i % 28),
+                new FingerprintDot(i % 500, (i * 7) % 500, types[i % types.length], i % 101));
+    }
+
+    static List<PersonData> people(int from, int count) {
+        List<PersonData> people = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            people.add(person(i));
+        }
+        return people;
+    }
+
+    static HashChain chain(int size) {
+        HashChain chain = new HashChain();
+        for (int i = 0; i < size; i += BATCH) {
+            chain.addRecords(people(i, Math.min(BATCH, size - i)));
+        }
+        return chain;
+    }
+
+    // ChainStorage resolves its files against user.dir when the class is loaded, so this has to run
+    // before the first call into it. JMH forks a JVM per benchmark and parameter set.
+    static Path workDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("hashchain-bench");
+        System.setProperty("user.dir", directory.toString());
+        return directory;
+    }
+
+    static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (var paths = Files.walk(directory)) {
+            for (Path path : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
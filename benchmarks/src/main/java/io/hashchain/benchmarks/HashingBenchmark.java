@@ -0,0 +1,71 @@
+package io.hashchain.benchmarks;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.PersonData;
+import io.hashchain.utils.HashUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-record costs: hex encoding, SHA-256 and record construction.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HashingBenchmark {
+
+    private byte[] hash;
+    private byte[] hex;
+    private String hexString;
+    private PersonData person;
+
+    @Setup
+    public void setUp() {
+        person = Fixtures.person(42);
+        hash = HashRecord.computeHash(person, HashUtils.sha256(new byte[]{1}));
+        hex = new byte[HashUtils.HEX_SIZE];
+        hexString = HashUtils.toHex(hash);
+    }
+
+    @Benchmark
+    public String toHex() {
+        return HashUtils.toHex(hash);
+    }
+
+    @Benchmark
+    public byte[] writeHexAscii() {
+        HashUtils.writeHexAscii(hash, hex, 0);
+        return hex;
+    }
+
+    @Benchmark
+    public byte[] fromHex() {
+        return HashUtils.fromHex(hexString);
+    }
+
+    @Benchmark
+    public byte[] sha256() {
+        return HashUtils.sha256(hash);
+    }
+
+    @Benchmark
+    public byte[] computeRecordHash() {
+        return HashRecord.computeHash(person, hash);
+    }
+
+    @Benchmark
+    public HashRecord newRecord() {
+        return new HashRecord(person, hash);
+    }
+}
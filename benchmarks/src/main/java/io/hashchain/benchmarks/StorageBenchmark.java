@@ -0,0 +1,101 @@
+package io.hashchain.benchmarks;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.utils.ChainStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Durable log operations against a chain of `size` records in a temporary working directory.
+// Loads close the log first, so they start from the files; the OS page cache stays warm.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-Dhashchain.duplicates=allow"})
+public class StorageBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    private Path directory;
+    private HashChain chain;
+    private List<HashRecord> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Fixtures.workDirectory();
+        chain = Fixtures.chain(size);
+        ChainStorage.save(chain);
+        ChainStorage.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ChainStorage.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        ChainStorage.save(chain);
+    }
+
+    @Benchmark
+    public HashChain loadFull() throws IOException {
+        return load(ChainStorage.LoadMode.FULL);
+    }
+
+    @Benchmark
+    public HashChain loadMapped() throws IOException {
+        return load(ChainStorage.LoadMode.MAPPED);
+    }
+
+    // Each append waits for its group commit, so this includes the fsync.
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void appendSingle() throws IOException {
+        ChainStorage.appendBatch(chain, chain.addRecords(List.of(Fixtures.person(chain.size()))));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @OperationsPerInvocation(Fixtures.BATCH)
+    public void appendBulk() throws IOException {
+        ChainStorage.appendBatch(chain, chain.addRecords(Fixtures.people(chain.size(), Fixtures.BATCH)));
+    }
+
+    private HashChain load(ChainStorage.LoadMode mode) throws IOException {
+        ChainStorage.close();
+        HashChain loaded = new HashChain();
+        ChainStorage.LoadResult result = ChainStorage.load(loaded, mode);
+        if (!result.success) {
+            throw new IllegalStateException(result.errorMessage);
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,50 @@
+package io.hashchain.benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs every benchmark once on the smallest chain, so a broken fixture or benchmark fails the build
+// instead of the next measurement run.
+class BenchmarkSmokeTest {
+
+    @Test
+    void everyBenchmarkRuns() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ChainBenchmark.class.getSimpleName())
+                .include(HashingBenchmark.class.getSimpleName())
+                .include(StorageBenchmark.class.getSimpleName())
+                .param("size", "1000")
+                .forks(1)
+                .jvmArgsAppend("-Xmx512m", "-Dhashchain.duplicates=allow")
+                .warmupIterations(0)
+                .measurementIterations(1)
+                .measurementTime(TimeValue.milliseconds(100))
+                .shouldFailOnError(true)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        assertEquals(benchmarkCount(), results.size());
+    }
+
+    private static int benchmarkCount() {
+        int count = 0;
+        for (Class<?> type : new Class<?>[] {ChainBenchmark.class, HashingBenchmark.class, StorageBenchmark.class}) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Benchmark.class)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
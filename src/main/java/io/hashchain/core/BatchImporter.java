@@ -0,0 +1,268 @@
+package io.hashchain.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class BatchImporter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final int MAX_ERRORS = 100;
+    private static final DateTimeFormatter RU_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    public static class Result {
+        public final List<HashRecord> records;
+        public final int rejected;
+        public final List<String> errors;
+
+        private Result(List<HashRecord> records, int rejected, List<String> errors) {
+            this.records = records;
+            this.rejected = rejected;
+            this.errors = errors;
+        }
+    }
+
+    private static final class Chunk {
+        final long firstLine;
+        final List<String> lines;
+
+        Chunk(long firstLine, List<String> lines) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+    }
+
+    private static final class ParsedChunk {
+        final PersonData[] persons;
+        final byte[][] payloads;
+        final DuplicateFilter.Key[] keys;
+        final long[] lines;
+        final int count;
+        final int rejected;
+        final List<String> errors;
+
+        ParsedChunk(PersonData[] persons, byte[][] payloads, DuplicateFilter.Key[] keys, long[] lines, int count, int rejected, List<String> errors) {
+            this.persons = persons;
+            this.payloads = payloads;
+            this.keys = keys;
+            this.lines = lines;
+            this.count = count;
+            this.rejected = rejected;
+            this.errors = errors;
+        }
+    }
+
+    private static final Future<ParsedChunk> END_OF_INPUT = CompletableFuture.completedFuture(null);
+
+    private final int workers;
+    private final int queueCapacity;
+    private final int chunkSize;
+    private final boolean hasHeader;
+    private final Function<String, PersonData> parser;
+
+    public BatchImporter() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, DEFAULT_CHUNK_SIZE, true, BatchImporter::parseCsvLine);
+    }
+
+    public BatchImporter(int workers, int queueCapacity, int chunkSize, boolean hasHeader, Function<String, PersonData> parser) {
+        if (workers < 1 || queueCapacity < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Параметры импорта должны быть положительными.");
+        }
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.chunkSize = chunkSize;
+        this.hasHeader = hasHeader;
+        this.parser = parser;
+    }
+
+    public Result prepare(BufferedReader reader, byte[] previousHash) throws IOException {
+        return prepare(reader, previousHash, null);
+    }
+
+    // With a duplicate check, people already in the chain or earlier in the file are rejected like
+    // malformed lines. Their keys are computed by the parsers, so the ordered stage only probes.
+    public Result prepare(BufferedReader reader, byte[] previousHash, DuplicateCheck duplicates) throws IOException {
+        ExecutorService parsers = Executors.newFixedThreadPool(workers, daemon("hashchain-import-parser"));
+        ExecutorService hasher = Executors.newSingleThreadExecutor(daemon("hashchain-import-hasher"));
+        BlockingQueue<Future<ParsedChunk>> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        try {
+            Future<Result> result = hasher.submit(() -> hashInOrder(queue, previousHash, duplicates));
+
+            long lineNumber = 0;
+            long firstLine = 1;
+            List<String> lines = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && hasHeader) {
+                    firstLine = 2;
+                    continue;
+                }
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    Chunk chunk = new Chunk(firstLine, lines);
+                    enqueue(queue, parsers.submit(() -> parse(chunk, duplicates != null)), result);
+                    firstLine = lineNumber + 1;
+                    lines = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!lines.isEmpty()) {
+                Chunk chunk = new Chunk(firstLine, lines);
+                enqueue(queue, parsers.submit(() -> parse(chunk, duplicates != null)), result);
+            }
+            enqueue(queue, END_OF_INPUT, result);
+
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Импорт прерван.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка при импорте: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            parsers.shutdownNow();
+            hasher.shutdownNow();
+        }
+    }
+
+    private static void enqueue(BlockingQueue<Future<ParsedChunk>> queue, Future<ParsedChunk> chunk, Future<Result> consumer)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (consumer.isDone()) {
+                consumer.get();
+                throw new IllegalStateException("Поток хеширования завершился раньше времени.");
+            }
+        }
+    }
+
+    private static Result hashInOrder(BlockingQueue<Future<ParsedChunk>> queue, byte[] previousHash, DuplicateCheck duplicates)
+            throws Exception {
+        List<HashRecord> records = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        int rejected = 0;
+        byte[] previous = previousHash;
+
+        while (true) {
+            Future<ParsedChunk> next = queue.take();
+            if (next == END_OF_INPUT) {
+                break;
+            }
+            ParsedChunk chunk = next.get();
+            for (int i = 0; i < chunk.count; i++) {
+                int existing = duplicates == null ? -1 : duplicates.probe(chunk.persons[i], chunk.keys[i]);
+                if (existing >= 0) {
+                    rejected++;
+                    if (errors.size() < MAX_ERRORS) {
+                        errors.add("Строка " + chunk.lines[i] + (existing < duplicates.chainSize()
+                                ? ": запись уже есть в цепочке (№" + (existing + 1) + ")"
+                                : ": запись повторяет одну из строк выше"));
+                    }
+                    continue;
+                }
+                byte[] hash = HashRecord.computeHash(chunk.payloads[i], previous);
+                records.add(new HashRecord(chunk.persons[i], previous, hash));
+                previous = hash;
+            }
+            rejected += chunk.rejected;
+            for (String error : chunk.errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(error);
+                }
+            }
+        }
+        return new Result(records, rejected, errors);
+    }
+
+    private ParsedChunk parse(Chunk chunk, boolean withKeys) {
+        int size = chunk.lines.size();
+        PersonData[] persons = new PersonData[size];
+        byte[][] payloads = new byte[size][];
+        DuplicateFilter.Key[] keys = withKeys ? new DuplicateFilter.Key[size] : null;
+        long[] lines = new long[size];
+        List<String> errors = new ArrayList<>();
+        int count = 0;
+        int rejected = 0;
+
+        for (int i = 0; i < size; i++) {
+            String line = chunk.lines.get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                PersonData person = parser.apply(line);
+                persons[count] = person;
+                payloads[count] = PersonCodec.encode(person);
+                if (withKeys) {
+                    keys[count] = DuplicateFilter.key(person);
+                }
+                lines[count] = chunk.firstLine + i;
+                count++;
+            } catch (IllegalArgumentException | DateTimeParseException | UncheckedIOException e) {
+                rejected++;
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add("Строка " + (chunk.firstLine + i) + ": " + e.getMessage());
+                }
+            }
+        }
+        return new ParsedChunk(persons, payloads, keys, lines, count, rejected, errors);
+    }
+
+    public static PersonData parseCsvLine(String line) {
+        String[] fields = line.split(line.indexOf(';') >= 0 ? ";" : ",", -1);
+        if (fields.length != 8) {
+            throw new IllegalArgumentException("ожидается 8 полей, получено " + fields.length);
+        }
+        String lastName = fields[0].trim();
+        String firstName = fields[1].trim();
+        String patronymic = fields[2].trim();
+        if (lastName.isEmpty() || firstName.isEmpty() || patronymic.isEmpty()) {
+            throw new IllegalArgumentException("фамилия, имя и отчество обязательны");
+        }
+
+        LocalDate birthDate = parseDate(fields[3].trim());
+
+        int x = Integer.parseInt(fields[4].trim());
+        int y = Integer.parseInt(fields[5].trim());
+        FingerprintType type = parseType(fields[6].trim());
+        int quality = Integer.parseInt(fields[7].trim());
+
+        return new PersonData(firstName, lastName, patronymic, birthDate, new FingerprintDot(x, y, type, quality));
+    }
+
+    static LocalDate parseDate(String date) {
+        return date.indexOf('.') >= 0 ? LocalDate.parse(date, RU_DATE) : LocalDate.parse(date);
+    }
+
+    private static FingerprintType parseType(String value) {
+        for (FingerprintType type : FingerprintType.values()) {
+            if (type.name().equalsIgnoreCase(value) || type.getDescription().equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("неизвестный тип точки: " + value);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,250 @@
+package io.hashchain.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+class ChainCore {
+
+    interface Listener {
+        void changed(View view, int from);
+
+        // The records at `indexes`, ascending from `from`, lost their payload; every hash is unchanged.
+        default void redacted(View view, int from, int[] indexes) {
+            changed(view, from);
+        }
+    }
+
+    // Immutable once published: appends fill slots past tailSize of a shared array, every other edit copies it.
+    // Redacted base records are overlaid, since the base is read from the log as it was written.
+    static final class View implements RecordSource {
+        private final RecordSource base;
+        private final int baseSize;
+        private final HashRecord[] tail;
+        private final int tailSize;
+        private final Map<Integer, HashRecord> redacted;
+
+        private View(RecordSource base, int baseSize, HashRecord[] tail, int tailSize) {
+            this(base, baseSize, tail, tailSize, Map.of());
+        }
+
+        private View(RecordSource base, int baseSize, HashRecord[] tail, int tailSize, Map<Integer, HashRecord> redacted) {
+            this.base = base;
+            this.baseSize = baseSize;
+            this.tail = tail;
+            this.tailSize = tailSize;
+            this.redacted = redacted;
+        }
+
+        @Override
+        public int size() {
+            return baseSize + tailSize;
+        }
+
+        @Override
+        public HashRecord get(int index) {
+            if (index < baseSize) {
+                HashRecord tombstone = redacted.isEmpty() ? null : redacted.get(index);
+                return tombstone != null ? tombstone : base.get(index);
+            }
+            return tail[checkTail(index)];
+        }
+
+        @Override
+        public byte[] hashAt(int index) {
+            if (index < baseSize) {
+                return base.hashAt(index);
+            }
+            return tail[checkTail(index)].getHashBytes();
+        }
+
+        byte[] lastHash() {
+            int size = size();
+            return size == 0 ? null : hashAt(size - 1);
+        }
+
+        private int checkTail(int index) {
+            int offset = index - baseSize;
+            if (index < 0 || offset >= tailSize) {
+                throw new IndexOutOfBoundsException("Индекс " + index + " вне диапазона 0.." + size());
+            }
+            return offset;
+        }
+    }
+
+    private static final HashRecord[] EMPTY = new HashRecord[0];
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile View view = new View(null, 0, EMPTY, 0);
+
+    View view() {
+        return view;
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    HashRecord append(PersonData data) {
+        writeLock.lock();
+        try {
+            HashRecord record = new HashRecord(data, view.lastHash());
+            publishAppend(new HashRecord[] {record}, 1);
+            return record;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    List<HashRecord> appendAll(List<PersonData> data) {
+        writeLock.lock();
+        try {
+            HashRecord[] records = new HashRecord[data.size()];
+            byte[] previous = view.lastHash();
+            for (int i = 0; i < records.length; i++) {
+                records[i] = new HashRecord(data.get(i), previous);
+                previous = records[i].getHashBytes();
+            }
+            publishAppend(records, records.length);
+            return Arrays.asList(records);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void appendPrepared(List<HashRecord> records) {
+        writeLock.lock();
+        try {
+            if (!Arrays.equals(records.get(0).getPreviousHashBytes(), view.lastHash())) {
+                throw new IllegalStateException("Пакет записей не продолжает текущую цепочку.");
+            }
+            HashRecord[] array = records.toArray(EMPTY);
+            publishAppend(array, array.length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void attach(RecordSource source) {
+        writeLock.lock();
+        try {
+            RecordSource base = source.size() == 0 ? null : new RecordCache(source, RecordCache.DEFAULT_MAX_PAGES);
+            publish(new View(base, source.size(), EMPTY, 0), 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void replace(View expected, int from, int to, List<HashRecord> inserted) {
+        writeLock.lock();
+        try {
+            View current = view;
+            if (expected != null && expected != current) {
+                throw new IllegalStateException("Цепочка изменена другим потоком, повторите операцию.");
+            }
+            if (from < 0 || to < from || to > current.size()) {
+                throw new IndexOutOfBoundsException("Диапазон " + from + ".." + to + " вне 0.." + current.size());
+            }
+            if (from >= current.baseSize) {
+                int tailFrom = from - current.baseSize;
+                int tailTo = to - current.baseSize;
+                HashRecord[] tail = new HashRecord[Math.max(16, current.tailSize - (tailTo - tailFrom) + inserted.size())];
+                System.arraycopy(current.tail, 0, tail, 0, tailFrom);
+                for (int i = 0; i < inserted.size(); i++) {
+                    tail[tailFrom + i] = inserted.get(i);
+                }
+                System.arraycopy(current.tail, tailTo, tail, tailFrom + inserted.size(), current.tailSize - tailTo);
+                publish(new View(current.base, current.baseSize, tail, current.tailSize - (tailTo - tailFrom) + inserted.size(),
+                        current.redacted), from);
+                return;
+            }
+            if (to == current.size()) {
+                HashRecord[] tail = inserted.toArray(new HashRecord[Math.max(16, inserted.size())]);
+                Map<Integer, HashRecord> redacted = new HashMap<>(current.redacted);
+                redacted.keySet().removeIf(index -> index >= from);
+                publish(new View(from == 0 ? null : current.base, from, tail, inserted.size(), Map.copyOf(redacted)), from);
+                return;
+            }
+            List<HashRecord> all = new ArrayList<>(current.size() - (to - from) + inserted.size());
+            for (int i = 0; i < from; i++) {
+                all.add(current.get(i));
+            }
+            all.addAll(inserted);
+            for (int i = to; i < current.size(); i++) {
+                all.add(current.get(i));
+            }
+            publish(new View(null, 0, all.toArray(EMPTY), all.size()), from);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Replaces the records at `indexes` by their tombstones in one publish; already redacted ones are kept.
+    void redact(int[] indexes) {
+        writeLock.lock();
+        try {
+            View current = view;
+            HashRecord[] tail = current.tail;
+            Map<Integer, HashRecord> redacted = null;
+            int[] changed = new int[indexes.length];
+            int count = 0;
+            for (int index : indexes) {
+                HashRecord record = current.get(index);
+                if (record.isRedacted()) {
+                    continue;
+                }
+                if (index >= current.baseSize) {
+                    if (tail == current.tail) {
+                        tail = Arrays.copyOf(current.tail, current.tail.length);
+                    }
+                    tail[index - current.baseSize] = record.redact();
+                } else {
+                    if (redacted == null) {
+                        redacted = new HashMap<>(current.redacted);
+                    }
+                    redacted.put(index, record.redact());
+                }
+                changed[count++] = index;
+            }
+            if (count == 0) {
+                return;
+            }
+            changed = Arrays.copyOf(changed, count);
+            Arrays.sort(changed);
+            View next = new View(current.base, current.baseSize, tail, current.tailSize,
+                    redacted == null ? current.redacted : Map.copyOf(redacted));
+            view = next;
+            for (Listener listener : listeners) {
+                listener.redacted(next, changed[0], changed);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void publishAppend(HashRecord[] records, int count) {
+        if (count == 0) {
+            return;
+        }
+        View current = view;
+        HashRecord[] tail = current.tail;
+        int tailSize = current.tailSize;
+        if (tailSize + count > tail.length) {
+            tail = Arrays.copyOf(tail, Math.max(Math.max(16, tail.length * 2), tailSize + count));
+        }
+        System.arraycopy(records, 0, tail, tailSize, count);
+        publish(new View(current.base, current.baseSize, tail, tailSize + count, current.redacted), current.size());
+    }
+
+    private void publish(View next, int from) {
+        view = next;
+        for (Listener listener : listeners) {
+            listener.changed(next, from);
+        }
+    }
+}
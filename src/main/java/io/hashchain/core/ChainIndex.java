@@ -0,0 +1,237 @@
+package io.hashchain.core;
+
+import io.hashchain.utils.HashUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class ChainIndex {
+
+    static final int MAGIC = 0x48434958;
+    static final int VERSION = 1;
+
+    private final PositionIndex byHash;
+    private final PositionIndex byLastName;
+    private final PositionIndex byFullName;
+    private final PositionIndex byBirthDate;
+    private long[] days = new long[64];
+    private int dayCount;
+    private byte[] lastHash;
+
+    ChainIndex() {
+        this(new PositionIndex(), new PositionIndex(), new PositionIndex(), new PositionIndex());
+    }
+
+    private ChainIndex(PositionIndex byHash, PositionIndex byLastName, PositionIndex byFullName, PositionIndex byBirthDate) {
+        this.byHash = byHash;
+        this.byLastName = byLastName;
+        this.byFullName = byFullName;
+        this.byBirthDate = byBirthDate;
+    }
+
+    public int size() {
+        return byHash.size();
+    }
+
+    public byte[] lastHash() {
+        return lastHash;
+    }
+
+    void append(HashRecord record) {
+        PersonData data = record.getData();
+        byHash.append(hashKey(record.getHashBytes()));
+        lastHash = record.getHashBytes();
+        if (data == null) {
+            byLastName.appendNone();
+            byFullName.appendNone();
+            byBirthDate.appendNone();
+            return;
+        }
+        byLastName.append(nameKey(data.getLastName()));
+        byFullName.append(nameKey(data.getLastName(), data.getFirstName(), data.getPatronymic()));
+        if (data.getBirthDate() == null) {
+            byBirthDate.appendNone();
+        } else {
+            long day = data.getBirthDate().toEpochDay();
+            if (!byBirthDate.contains(day)) {
+                addDay(day);
+            }
+            byBirthDate.append(day);
+        }
+    }
+
+    void truncate(int newSize, RecordSource records) {
+        if (newSize >= size()) {
+            return;
+        }
+        byHash.truncate(newSize);
+        byLastName.truncate(newSize);
+        byFullName.truncate(newSize);
+        byBirthDate.truncate(newSize);
+        lastHash = newSize == 0 ? null : records.hashAt(newSize - 1);
+    }
+
+    int positionOf(byte[] hash, RecordSource records) {
+        for (int p = byHash.head(hashKey(hash)); p != PositionIndex.NONE; p = byHash.next(p)) {
+            if (Arrays.equals(records.hashAt(p), hash)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    int[] findByName(String lastName, String firstName, String patronymic, RecordSource records) {
+        String last = normalize(lastName);
+        String first = normalize(firstName);
+        String middle = normalize(patronymic);
+        if (last.isEmpty()) {
+            return new int[0];
+        }
+        boolean fullName = !first.isEmpty() && !middle.isEmpty();
+
+        PositionIndex index = fullName ? byFullName : byLastName;
+        long key = fullName ? nameKey(lastName, firstName, patronymic) : nameKey(lastName);
+        IntList result = new IntList();
+        for (int p = index.head(key); p != PositionIndex.NONE; p = index.next(p)) {
+            PersonData data = records.get(p).getData();
+            if (data != null && normalize(data.getLastName()).equals(last)
+                    && (first.isEmpty() || normalize(data.getFirstName()).equals(first))
+                    && (middle.isEmpty() || normalize(data.getPatronymic()).equals(middle))) {
+                result.add(p);
+            }
+        }
+        return result.toSortedArray();
+    }
+
+    int[] findByBirthDate(LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        IntList result = new IntList();
+        int i = Arrays.binarySearch(days, 0, dayCount, fromDay);
+        for (i = i < 0 ? -i - 1 : i; i < dayCount && days[i] <= toDay; i++) {
+            for (int p = byBirthDate.head(days[i]); p != PositionIndex.NONE; p = byBirthDate.next(p)) {
+                result.add(p);
+            }
+        }
+        return result.toSortedArray();
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeBoolean(lastHash != null);
+        if (lastHash != null) {
+            out.write(lastHash);
+        }
+        byHash.write(out);
+        byLastName.write(out);
+        byFullName.write(out);
+        byBirthDate.write(out);
+        out.writeInt(dayCount);
+        for (int i = 0; i < dayCount; i++) {
+            out.writeLong(days[i]);
+        }
+    }
+
+    public static ChainIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Файл индекса имеет неизвестный формат.");
+        }
+        byte[] lastHash = null;
+        if (in.readBoolean()) {
+            lastHash = new byte[HashUtils.HASH_SIZE];
+            in.readFully(lastHash);
+        }
+        ChainIndex index = new ChainIndex(PositionIndex.read(in), PositionIndex.read(in), PositionIndex.read(in), PositionIndex.read(in));
+        int size = index.byHash.size();
+        if (index.byLastName.size() != size || index.byFullName.size() != size || index.byBirthDate.size() != size
+                || (size == 0) != (lastHash == null)) {
+            throw new IOException("Размеры индексов не совпадают.");
+        }
+        int dayCount = in.readInt();
+        if (dayCount < 0) {
+            throw new IOException("Некорректное число дат в индексе: " + dayCount);
+        }
+        index.days = new long[Math.max(dayCount, 64)];
+        for (int i = 0; i < dayCount; i++) {
+            index.days[i] = in.readLong();
+        }
+        index.dayCount = dayCount;
+        index.lastHash = lastHash;
+        return index;
+    }
+
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            c = Character.toLowerCase(c);
+            normalized.append(c == 'ё' ? 'е' : c);
+        }
+        return normalized.toString();
+    }
+
+    private void addDay(long day) {
+        int i = Arrays.binarySearch(days, 0, dayCount, day);
+        if (i >= 0) {
+            return;
+        }
+        i = -i - 1;
+        if (dayCount == days.length) {
+            days = Arrays.copyOf(days, days.length * 2);
+        }
+        System.arraycopy(days, i, days, i + 1, dayCount - i);
+        days[i] = day;
+        dayCount++;
+    }
+
+    private static long hashKey(byte[] hash) {
+        return ByteBuffer.wrap(hash).getLong();
+    }
+
+    private static long nameKey(String... parts) {
+        long hash = 0xcbf29ce484222325L;
+        for (String part : parts) {
+            String normalized = normalize(part);
+            for (int i = 0; i < normalized.length(); i++) {
+                hash = (hash ^ normalized.charAt(i)) * 0x100000001b3L;
+            }
+            hash = (hash ^ 0x1f) * 0x100000001b3L;
+        }
+        return PositionIndex.mix(hash);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toSortedArray() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
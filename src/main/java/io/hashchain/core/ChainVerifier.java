@@ -0,0 +1,199 @@
+package io.hashchain.core;
+
+import io.hashchain.metrics.Metrics;
+import io.hashchain.metrics.Operation;
+import io.hashchain.metrics.Span;
+import io.hashchain.utils.HashUtils;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+public class ChainVerifier {
+
+    private static final int SEQUENTIAL_THRESHOLD = 2048;
+
+    public static class Report {
+        public final boolean valid;
+        public final int recordCount;
+        public final int firstBrokenIndex;
+        public final String errorMessage;
+        public final byte[] merkleRoot;
+        public final byte[] chainHash;
+
+        private Report(boolean valid, int recordCount, int firstBrokenIndex, String errorMessage, byte[] merkleRoot, byte[] chainHash) {
+            this.valid = valid;
+            this.recordCount = recordCount;
+            this.firstBrokenIndex = firstBrokenIndex;
+            this.errorMessage = errorMessage;
+            this.merkleRoot = merkleRoot;
+            this.chainHash = chainHash;
+        }
+    }
+
+    private static final class Subtree {
+        final byte[] root;
+        final int firstBroken;
+        final boolean brokenLink;
+
+        Subtree(byte[] root, int firstBroken, boolean brokenLink) {
+            this.root = root;
+            this.firstBroken = firstBroken;
+            this.brokenLink = brokenLink;
+        }
+
+        Subtree merge(Subtree right) {
+            byte[] node = MerkleTree.nodeHash(root, right.root);
+            if (firstBroken >= 0) {
+                return new Subtree(node, firstBroken, brokenLink);
+            }
+            return new Subtree(node, right.firstBroken, right.brokenLink);
+        }
+    }
+
+    public static Report verify(RecordSource records) {
+        return verify(records, null, ForkJoinPool.commonPool());
+    }
+
+    public static Report verify(RecordSource records, byte[] expectedChainHash) {
+        return verify(records, expectedChainHash, ForkJoinPool.commonPool());
+    }
+
+    public static Report verify(RecordSource records, byte[] expectedChainHash, ForkJoinPool pool) {
+        return verify(records, expectedChainHash, null, pool);
+    }
+
+    public static Report verify(RecordSource records, byte[] expectedChainHash, byte[] expectedMerkleRoot) {
+        return verify(records, expectedChainHash, expectedMerkleRoot, ForkJoinPool.commonPool());
+    }
+
+    public static Report verify(RecordSource records, byte[] expectedChainHash, byte[] expectedMerkleRoot, ForkJoinPool pool) {
+        try (Span span = Metrics.begin(Operation.VERIFY)) {
+            span.records(records.size());
+            return observe(span, verifyAll(records, expectedChainHash, expectedMerkleRoot, pool));
+        }
+    }
+
+    private static Report verifyAll(RecordSource records, byte[] expectedChainHash, byte[] expectedMerkleRoot, ForkJoinPool pool) {
+        int size = records.size();
+        if (size == 0) {
+            byte[] chainHash = HashUtils.sha256(new byte[0]);
+            return check(0, new Subtree(MerkleTree.emptyRoot(), -1, false), chainHash, expectedChainHash, expectedMerkleRoot);
+        }
+
+        ForkJoinTask<Subtree> tree = pool.submit(new SubtreeTask(records, 0, size));
+
+        MessageDigest chainDigest = HashUtils.newSHA256Digest();
+        byte[] hex = new byte[HashUtils.HEX_SIZE];
+        for (int i = 0; i < size; i++) {
+            HashUtils.writeHexAscii(records.hashAt(i), hex, 0);
+            chainDigest.update(hex);
+        }
+
+        return check(size, tree.join(), chainDigest.digest(), expectedChainHash, expectedMerkleRoot);
+    }
+
+    // Checks links and record hashes from `from` on; records before it are covered by a snapshot, so the
+    // caller supplies the chain hash and Merkle root it resumed for the whole chain.
+    public static Report verifyFrom(RecordSource records, int from, byte[] chainHash, byte[] merkleRoot,
+                                    byte[] expectedChainHash, byte[] expectedMerkleRoot) {
+        try (Span span = Metrics.begin(Operation.VERIFY)) {
+            span.records(records.size() - from);
+            return observe(span, verifyTail(records, from, chainHash, merkleRoot, expectedChainHash, expectedMerkleRoot));
+        }
+    }
+
+    private static Report verifyTail(RecordSource records, int from, byte[] chainHash, byte[] merkleRoot,
+                                     byte[] expectedChainHash, byte[] expectedMerkleRoot) {
+        int size = records.size();
+        for (int i = from; i < size; i++) {
+            Subtree leaf = leaf(records, i);
+            if (leaf.firstBroken >= 0) {
+                return check(size, new Subtree(merkleRoot, leaf.firstBroken, leaf.brokenLink), chainHash, expectedChainHash, expectedMerkleRoot);
+            }
+        }
+        return check(size, new Subtree(merkleRoot, -1, false), chainHash, expectedChainHash, expectedMerkleRoot);
+    }
+
+    private static Report observe(Span span, Report report) {
+        if (!report.valid) {
+            span.failed();
+        }
+        return report;
+    }
+
+    private static Report check(int size, Subtree tree, byte[] chainHash, byte[] expectedChainHash, byte[] expectedMerkleRoot) {
+        if (tree.firstBroken >= 0) {
+            String reason = tree.brokenLink
+                    ? "ссылка на предыдущую запись не совпадает с её хешем"
+                    : "хеш записи не соответствует её данным";
+            return new Report(false, size, tree.firstBroken,
+                    "Запись №" + (tree.firstBroken + 1) + " повреждена: " + reason + ".", tree.root, chainHash);
+        }
+        if (expectedChainHash != null && !Arrays.equals(chainHash, expectedChainHash)) {
+            return new Report(false, size, -1,
+                    "Хеш цепочки не соответствует данным в файле. Файл повреждён или подделан.", tree.root, chainHash);
+        }
+        if (expectedMerkleRoot != null && !Arrays.equals(tree.root, expectedMerkleRoot)) {
+            return new Report(false, size, -1,
+                    "Корень дерева Меркла не соответствует подписанному значению. Файл повреждён или подделан.", tree.root, chainHash);
+        }
+        return new Report(true, size, -1, null, tree.root, chainHash);
+    }
+
+    private static final class SubtreeTask extends RecursiveTask<Subtree> {
+        private final RecordSource records;
+        private final int from;
+        private final int to;
+
+        SubtreeTask(RecordSource records, int from, int to) {
+            this.records = records;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Subtree compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                return subtree(records, from, to);
+            }
+            int mid = from + MerkleTree.split(to - from);
+            SubtreeTask left = new SubtreeTask(records, from, mid);
+            left.fork();
+            Subtree right = new SubtreeTask(records, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private static Subtree subtree(RecordSource records, int from, int to) {
+        if (to - from == 1) {
+            return leaf(records, from);
+        }
+        int mid = from + MerkleTree.split(to - from);
+        return subtree(records, from, mid).merge(subtree(records, mid, to));
+    }
+
+    private static Subtree leaf(RecordSource records, int index) {
+        byte[] storedHash = records.hashAt(index);
+        byte[] leaf = MerkleTree.leafHash(storedHash);
+        try {
+            HashRecord record = records.get(index);
+            byte[] expectedPrevious = index == 0 ? null : records.hashAt(index - 1);
+            if (!Arrays.equals(record.getPreviousHashBytes(), expectedPrevious)) {
+                return new Subtree(leaf, index, true);
+            }
+            if (record.isRedacted()) {
+                return new Subtree(leaf, record.isRedactionValid() && Arrays.equals(record.getHashBytes(), storedHash) ? -1 : index, false);
+            }
+            byte[] actualHash = HashRecord.computeHash(record.getData(), record.getPreviousHashBytes());
+            if (!Arrays.equals(actualHash, storedHash)) {
+                return new Subtree(leaf, index, false);
+            }
+            return new Subtree(leaf, -1, false);
+        } catch (RuntimeException e) {
+            return new Subtree(leaf, index, false);
+        }
+    }
+}
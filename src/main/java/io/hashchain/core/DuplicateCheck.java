@@ -0,0 +1,45 @@
+package io.hashchain.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One enrollment pass against the chain. People accepted earlier in the same pass are not in the chain yet,
+// so their keys are kept here; everyone else goes through the chain's filter and, on a hit, its name index.
+public final class DuplicateCheck {
+
+    private final HashChain chain;
+    private final int base;
+    private final Map<DuplicateFilter.Key, Integer> accepted = new HashMap<>();
+    private final List<PersonData> people = new ArrayList<>();
+
+    DuplicateCheck(HashChain chain) {
+        this.chain = chain;
+        this.base = chain.size();
+    }
+
+    // Records below this position were in the chain when the pass began.
+    public int chainSize() {
+        return base;
+    }
+
+    // Returns the position of an identical earlier record, or -1 after taking the person as the next new one.
+    public int probe(PersonData person) {
+        return probe(person, DuplicateFilter.key(person));
+    }
+
+    public int probe(PersonData person, DuplicateFilter.Key key) {
+        Integer earlier = accepted.get(key);
+        if (earlier != null && DuplicateFilter.sameEnrollment(people.get(earlier - base), person)) {
+            return earlier;
+        }
+        int existing = chain.findDuplicate(person, key);
+        if (existing >= 0) {
+            return existing;
+        }
+        accepted.putIfAbsent(key, base + people.size());
+        people.add(person);
+        return -1;
+    }
+}
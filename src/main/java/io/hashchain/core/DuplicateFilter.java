@@ -0,0 +1,341 @@
+package io.hashchain.core;
+
+import io.hashchain.utils.HashUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// Scalable Bloom filter over the enrollment keys of the chain: a miss proves the person is new, a hit only
+// says "probably seen" and has to be confirmed against the records. A full layer is followed by one twice
+// as large with half its false-positive rate, so the total stays under the target however far the chain
+// grows. Once the memory budget is spent the last layer keeps filling and only its hit rate degrades.
+public class DuplicateFilter {
+
+    static final int MAGIC = 0x48434446;
+    static final int VERSION = 1;
+
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.001;
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+    public static final int INITIAL_CAPACITY = 1 << 16;
+    // A miss has to look at every layer, so past this many the chain rebuilds the filter as one layer.
+    public static final int MAX_LAYERS = 3;
+
+    private static final double TIGHTENING = 0.5;
+    private static final int IO_CHUNK = 8192;
+
+    // 128 bits of the canonical enrollment fields; equal keys are confirmed field by field.
+    public static final class Key {
+        final long h1;
+        final long h2;
+
+        private Key(long h1, long h2) {
+            this.h1 = h1;
+            this.h2 = h2;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && key.h1 == h1 && key.h2 == h2;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(h1);
+        }
+    }
+
+    private static final class KeyHasher {
+        long a = 0x9e3779b97f4a7c15L;
+        long b = 0xc2b2ae3d27d4eb4fL;
+
+        void add(long value) {
+            a = Long.rotateLeft((a ^ value) * 0x87c37b91114253d5L, 31);
+            b = Long.rotateLeft((b ^ value) * 0x4cf5ad432745937fL, 27);
+        }
+
+        // Streams the name as ChainIndex.normalize would produce it, without building the string.
+        void name(String name) {
+            if (name != null) {
+                boolean started = false;
+                boolean space = false;
+                for (int i = 0; i < name.length(); i++) {
+                    char c = name.charAt(i);
+                    if (Character.isWhitespace(c)) {
+                        space = started;
+                        continue;
+                    }
+                    if (space) {
+                        add(' ');
+                        space = false;
+                    }
+                    c = Character.toLowerCase(c);
+                    add(c == 'ё' ? 'е' : c);
+                    started = true;
+                }
+            }
+            add(SEPARATOR);
+        }
+
+        Key key() {
+            return new Key(PositionIndex.mix(a), PositionIndex.mix(b ^ a));
+        }
+    }
+
+    private static final long SEPARATOR = 1L << 32;
+    private static final long ABSENT = -1;
+
+    // Blocked layout: all probes of a key fall into one 64-byte block, so a lookup costs a single cache
+    // miss. Blocks fill unevenly, which is paid for with a few more bits per key than a classic filter.
+    private static final class Layer {
+        static final int BLOCK_WORDS = 8;
+        static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+        static final double BLOCK_OVERHEAD = 1.2;
+        static final long LCG_MULTIPLIER = 0x9e3779b97f4a7c15L;
+        static final long LCG_INCREMENT = 0x632be59bd9b4e019L;
+
+        final long[] bits;
+        final int blocks;
+        final int capacity;
+        final int hashes;
+        int count;
+
+        Layer(long[] bits, int capacity, int hashes) {
+            this.bits = bits;
+            this.blocks = bits.length / BLOCK_WORDS;
+            this.capacity = capacity;
+            this.hashes = hashes;
+        }
+
+        static long idealBytes(long capacity, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2) * BLOCK_OVERHEAD);
+            return (bits + BLOCK_BITS - 1) / BLOCK_BITS * BLOCK_WORDS * Long.BYTES;
+        }
+
+        static Layer sized(int capacity, double falsePositiveRate, long maxBytes) {
+            long bytes = Math.min(idealBytes(capacity, falsePositiveRate), maxBytes / (BLOCK_WORDS * Long.BYTES) * BLOCK_WORDS * Long.BYTES);
+            int words = Math.toIntExact(Math.max(BLOCK_WORDS, bytes / Long.BYTES));
+            int hashes = (int) Math.max(1, Math.min(16, Math.round((double) words * Long.SIZE / BLOCK_OVERHEAD / capacity * Math.log(2))));
+            return new Layer(new long[words], capacity, hashes);
+        }
+
+        // Probe positions are the top nine bits of successive LCG steps from h2; plain double hashing
+        // modulo 512 repeats too few patterns and triples the false-positive rate.
+        boolean mightContain(long h1, long h2) {
+            int block = (int) Long.remainderUnsigned(h1, blocks) * BLOCK_WORDS;
+            long h = h2;
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) (h >>> 55);
+                if ((bits[block + (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+                h = h * LCG_MULTIPLIER + LCG_INCREMENT;
+            }
+            return true;
+        }
+
+        void add(long h1, long h2) {
+            int block = (int) Long.remainderUnsigned(h1, blocks) * BLOCK_WORDS;
+            long h = h2;
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) (h >>> 55);
+                bits[block + (bit >>> 6)] |= 1L << bit;
+                h = h * LCG_MULTIPLIER + LCG_INCREMENT;
+            }
+            count++;
+        }
+    }
+
+    private final double falsePositiveRate;
+    private final long memoryBudget;
+    private final List<Layer> layers = new ArrayList<>();
+    private long memoryUsed;
+    private int size;
+    private byte[] lastHash;
+
+    public DuplicateFilter(int expectedRecords, double falsePositiveRate, long memoryBudget) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1) || memoryBudget < Long.BYTES) {
+            throw new IllegalArgumentException("Некорректные параметры фильтра дубликатов.");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.memoryBudget = memoryBudget;
+        addLayer(Math.max(INITIAL_CAPACITY, expectedRecords));
+    }
+
+    private DuplicateFilter(double falsePositiveRate, long memoryBudget) {
+        this.falsePositiveRate = falsePositiveRate;
+        this.memoryBudget = memoryBudget;
+    }
+
+    // Records covered, including redacted ones that contribute no key.
+    public int size() {
+        return size;
+    }
+
+    public byte[] lastHash() {
+        return lastHash;
+    }
+
+    public long memoryUsed() {
+        return memoryUsed;
+    }
+
+    public int layerCount() {
+        return layers.size();
+    }
+
+    public boolean isSaturated() {
+        Layer last = layers.get(layers.size() - 1);
+        return last.count >= last.capacity && memoryUsed + nextLayerBytes(last) > memoryBudget;
+    }
+
+    // Canonical enrollment key: normalized full name, birth date and fingerprint dot. The template is left
+    // out, since two scans of the same finger never match byte for byte.
+    public static Key key(PersonData person) {
+        KeyHasher hasher = new KeyHasher();
+        hasher.name(person.getLastName());
+        hasher.name(person.getFirstName());
+        hasher.name(person.getPatronymic());
+        hasher.add(person.getBirthDate() == null ? ABSENT : person.getBirthDate().toEpochDay());
+        FingerprintDot dot = person.getFingerprintDot();
+        if (dot == null) {
+            hasher.add(ABSENT);
+        } else {
+            hasher.add(dot.getX_position());
+            hasher.add(dot.getY_position());
+            hasher.add(dot.getType() == null ? ABSENT : dot.getType().ordinal());
+            hasher.add(dot.getQuality());
+        }
+        return hasher.key();
+    }
+
+    public static boolean sameEnrollment(PersonData a, PersonData b) {
+        FingerprintDot dotA = a.getFingerprintDot();
+        FingerprintDot dotB = b.getFingerprintDot();
+        return ChainIndex.normalize(a.getLastName()).equals(ChainIndex.normalize(b.getLastName()))
+                && ChainIndex.normalize(a.getFirstName()).equals(ChainIndex.normalize(b.getFirstName()))
+                && ChainIndex.normalize(a.getPatronymic()).equals(ChainIndex.normalize(b.getPatronymic()))
+                && Objects.equals(a.getBirthDate(), b.getBirthDate())
+                && (dotA == null ? dotB == null : dotB != null && dotA.getX_position() == dotB.getX_position()
+                        && dotA.getY_position() == dotB.getY_position() && dotA.getType() == dotB.getType()
+                        && dotA.getQuality() == dotB.getQuality());
+    }
+
+    public boolean mightContain(Key key) {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            if (layers.get(i).mightContain(key.h1, key.h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void append(HashRecord record) {
+        PersonData data = record.getData();
+        append(record, data == null ? null : key(data));
+    }
+
+    void append(HashRecord record, Key key) {
+        if (key != null) {
+            add(key);
+        }
+        lastHash = record.getHashBytes();
+        size++;
+    }
+
+    private void add(Key key) {
+        Layer last = layers.get(layers.size() - 1);
+        if (last.count >= last.capacity && memoryUsed + nextLayerBytes(last) <= memoryBudget) {
+            last = addLayer((int) Math.min(Integer.MAX_VALUE, (long) last.capacity * 2));
+        }
+        last.add(key.h1, key.h2);
+    }
+
+    private Layer addLayer(int capacity) {
+        Layer layer = Layer.sized(capacity, layerFalsePositiveRate(layers.size()), memoryBudget - memoryUsed);
+        layers.add(layer);
+        memoryUsed += (long) layer.bits.length * Long.BYTES;
+        return layer;
+    }
+
+    private long nextLayerBytes(Layer last) {
+        return Layer.idealBytes(Math.min(Integer.MAX_VALUE, (long) last.capacity * 2), layerFalsePositiveRate(layers.size()));
+    }
+
+    private double layerFalsePositiveRate(int layer) {
+        return falsePositiveRate * (1 - TIGHTENING) * Math.pow(TIGHTENING, layer);
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeDouble(falsePositiveRate);
+        out.writeLong(memoryBudget);
+        out.writeInt(size);
+        out.writeBoolean(lastHash != null);
+        if (lastHash != null) {
+            out.write(lastHash);
+        }
+        out.writeInt(layers.size());
+        ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK * Long.BYTES);
+        for (Layer layer : layers) {
+            out.writeInt(layer.capacity);
+            out.writeInt(layer.hashes);
+            out.writeInt(layer.count);
+            out.writeInt(layer.bits.length);
+            for (int from = 0; from < layer.bits.length; from += IO_CHUNK) {
+                int length = Math.min(IO_CHUNK, layer.bits.length - from);
+                chunk.clear();
+                chunk.asLongBuffer().put(layer.bits, from, length);
+                out.write(chunk.array(), 0, length * Long.BYTES);
+            }
+        }
+    }
+
+    public static DuplicateFilter read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Файл фильтра дубликатов имеет неизвестный формат.");
+        }
+        double falsePositiveRate = in.readDouble();
+        long memoryBudget = in.readLong();
+        int size = in.readInt();
+        byte[] lastHash = null;
+        if (in.readBoolean()) {
+            lastHash = new byte[HashUtils.HASH_SIZE];
+            in.readFully(lastHash);
+        }
+        int layerCount = in.readInt();
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1) || size < 0 || (size == 0) != (lastHash == null) || layerCount <= 0) {
+            throw new IOException("Некорректный заголовок фильтра дубликатов.");
+        }
+        DuplicateFilter filter = new DuplicateFilter(falsePositiveRate, memoryBudget);
+        byte[] chunk = new byte[IO_CHUNK * Long.BYTES];
+        for (int l = 0; l < layerCount; l++) {
+            int capacity = in.readInt();
+            int hashes = in.readInt();
+            int count = in.readInt();
+            int words = in.readInt();
+            if (capacity <= 0 || hashes <= 0 || count < 0 || words <= 0 || words % Layer.BLOCK_WORDS != 0
+                    || filter.memoryUsed + (long) words * Long.BYTES > Math.max(memoryBudget, Long.BYTES)) {
+                throw new IOException("Некорректный слой фильтра дубликатов.");
+            }
+            Layer layer = new Layer(new long[words], capacity, hashes);
+            for (int from = 0; from < words; from += IO_CHUNK) {
+                int length = Math.min(IO_CHUNK, words - from);
+                in.readFully(chunk, 0, length * Long.BYTES);
+                ByteBuffer.wrap(chunk, 0, length * Long.BYTES).asLongBuffer().get(layer.bits, from, length);
+            }
+            layer.count = count;
+            filter.layers.add(layer);
+            filter.memoryUsed += (long) words * Long.BYTES;
+        }
+        filter.size = size;
+        filter.lastHash = lastHash;
+        return filter;
+    }
+}
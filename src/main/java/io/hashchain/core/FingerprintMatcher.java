@@ -0,0 +1,317 @@
+package io.hashchain.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FingerprintMatcher {
+
+    public static final int DEFAULT_TOLERANCE = 12;
+    public static final double TYPE_MISMATCH_WEIGHT = 0.25;
+
+    private static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    public static class Match {
+        public final int recordIndex;
+        public final double score;
+
+        Match(int recordIndex, double score) {
+            this.recordIndex = recordIndex;
+            this.score = score;
+        }
+    }
+
+    public static class Result {
+        public final List<Match> matches;
+        public final int templatesScored;
+        public final int templatesPruned;
+        public final long elapsedNanos;
+        public final int parallelism;
+
+        private Result(List<Match> matches, int templatesScored, int templatesPruned, long elapsedNanos, int parallelism) {
+            this.matches = matches;
+            this.templatesScored = templatesScored;
+            this.templatesPruned = templatesPruned;
+            this.elapsedNanos = elapsedNanos;
+            this.parallelism = parallelism;
+        }
+
+        public double templatesPerSecondPerCore() {
+            if (elapsedNanos == 0) {
+                return 0;
+            }
+            return (templatesScored + templatesPruned) / (elapsedNanos / 1e9) / parallelism;
+        }
+    }
+
+    private final int tolerance;
+    private final ForkJoinPool pool;
+
+    public FingerprintMatcher() {
+        this(DEFAULT_TOLERANCE, ForkJoinPool.commonPool());
+    }
+
+    public FingerprintMatcher(int tolerance, ForkJoinPool pool) {
+        if (tolerance < 1) {
+            throw new IllegalArgumentException("Допуск должен быть положительным: " + tolerance);
+        }
+        this.tolerance = tolerance;
+        this.pool = pool;
+    }
+
+    public Result identify(TemplateGallery.Snapshot gallery, MinutiaeTemplate probe, int k, double minScore) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Число кандидатов должно быть положительным: " + k);
+        }
+        long start = System.nanoTime();
+        if (gallery.size == 0 || probe.size() == 0) {
+            return new Result(List.of(), 0, 0, System.nanoTime() - start, pool.getParallelism());
+        }
+
+        Probe prepared = new Probe(probe);
+        AtomicLong threshold = new AtomicLong(Double.doubleToLongBits(minScore));
+        TopK top = pool.invoke(new MatchTask(gallery, prepared, k, threshold, 0, gallery.size));
+
+        List<Match> matches = new ArrayList<>(top.size);
+        while (top.size > 0) {
+            int record = top.records[0];
+            double score = top.scores[0];
+            top.pop();
+            if (score >= minScore) {
+                matches.add(new Match(record, score));
+            }
+        }
+        return new Result(matches.reversed(), top.scored, top.pruned, System.nanoTime() - start, pool.getParallelism());
+    }
+
+    private final class Probe {
+        final int size;
+        final int[] xs;
+        final int[] ys;
+        final int[] types;
+        final double[] weights;
+        final double[] remaining;
+        final double totalWeight;
+
+        Probe(MinutiaeTemplate template) {
+            size = template.size();
+            xs = new int[size];
+            ys = new int[size];
+            types = new int[size];
+            weights = new double[size];
+            remaining = new double[size + 1];
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                xs[i] = template.x(i);
+                ys[i] = template.y(i);
+                types[i] = template.typeOrdinal(i);
+                weights[i] = qualityWeight(template.quality(i));
+                total += weights[i];
+            }
+            for (int i = size - 1; i >= 0; i--) {
+                remaining[i] = remaining[i + 1] + weights[i];
+            }
+            totalWeight = total;
+        }
+    }
+
+    private double score(Probe probe, short[] columns, int offset, int count, double threshold) {
+        long toleranceSquared = (long) tolerance * tolerance;
+        int ys = offset + count;
+        int typeQuality = offset + 2 * count;
+        double matched = 0;
+
+        for (int i = 0; i < probe.size; i++) {
+            if ((matched + probe.remaining[i]) / probe.totalWeight < threshold) {
+                return -1;
+            }
+            int px = probe.xs[i];
+            int py = probe.ys[i];
+            double best = 0;
+            for (int j = lowerBound(columns, offset, count, px - tolerance); j < count; j++) {
+                int dx = columns[offset + j] - px;
+                if (dx > tolerance) {
+                    break;
+                }
+                int dy = columns[ys + j] - py;
+                long distanceSquared = (long) dx * dx + (long) dy * dy;
+                if (distanceSquared > toleranceSquared) {
+                    continue;
+                }
+                int packed = columns[typeQuality + j];
+                double similarity = 1.0 - (double) distanceSquared / toleranceSquared;
+                if (((packed >>> 8) & 0xff) != probe.types[i]) {
+                    similarity *= TYPE_MISMATCH_WEIGHT;
+                }
+                similarity *= 0.5 + 0.5 * qualityWeight(packed & 0xff);
+                if (similarity > best) {
+                    best = similarity;
+                }
+            }
+            matched += best * probe.weights[i];
+        }
+        return matched / probe.totalWeight;
+    }
+
+    private static int lowerBound(short[] columns, int offset, int count, int x) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (columns[offset + mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double qualityWeight(int quality) {
+        return (quality + 1) / (MinutiaeTemplate.MAX_QUALITY + 1.0);
+    }
+
+    private final class MatchTask extends RecursiveTask<TopK> {
+        private final TemplateGallery.Snapshot gallery;
+        private final Probe probe;
+        private final int k;
+        private final AtomicLong threshold;
+        private final int from;
+        private final int to;
+
+        MatchTask(TemplateGallery.Snapshot gallery, Probe probe, int k, AtomicLong threshold, int from, int to) {
+            this.gallery = gallery;
+            this.probe = probe;
+            this.k = k;
+            this.threshold = threshold;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                return scan();
+            }
+            int mid = (from + to) >>> 1;
+            MatchTask left = new MatchTask(gallery, probe, k, threshold, from, mid);
+            left.fork();
+            TopK right = new MatchTask(gallery, probe, k, threshold, mid, to).compute();
+            return left.join().merge(right);
+        }
+
+        private TopK scan() {
+            TopK top = new TopK(k);
+            double bound = Double.longBitsToDouble(threshold.get());
+            for (int t = from; t < to; t++) {
+                int offset = gallery.offsets[t];
+                int count = (gallery.offsets[t + 1] - offset) / 3;
+                double score = score(probe, gallery.columns, offset, count, bound);
+                if (score < 0) {
+                    top.pruned++;
+                    continue;
+                }
+                top.scored++;
+                if (top.offer(gallery.records[t], score) && top.size == k && top.scores[0] > bound) {
+                    bound = raise(top.scores[0]);
+                }
+            }
+            return top;
+        }
+
+        private double raise(double candidate) {
+            long bits = threshold.accumulateAndGet(Double.doubleToLongBits(candidate),
+                    (current, next) -> Double.longBitsToDouble(next) > Double.longBitsToDouble(current) ? next : current);
+            return Double.longBitsToDouble(bits);
+        }
+    }
+
+    private static final class TopK {
+        final int capacity;
+        final int[] records;
+        final double[] scores;
+        int size;
+        int scored;
+        int pruned;
+
+        TopK(int capacity) {
+            this.capacity = capacity;
+            this.records = new int[capacity];
+            this.scores = new double[capacity];
+        }
+
+        boolean offer(int record, double score) {
+            if (size < capacity) {
+                records[size] = record;
+                scores[size] = score;
+                siftUp(size++);
+                return true;
+            }
+            if (score <= scores[0]) {
+                return false;
+            }
+            records[0] = record;
+            scores[0] = score;
+            siftDown();
+            return true;
+        }
+
+        void pop() {
+            size--;
+            records[0] = records[size];
+            scores[0] = scores[size];
+            siftDown();
+        }
+
+        TopK merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.records[i], other.scores[i]);
+            }
+            scored += other.scored;
+            pruned += other.pruned;
+            return this;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown() {
+            int i = 0;
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int record = records[i];
+            records[i] = records[j];
+            records[j] = record;
+            double score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+}
@@ -1,27 +1,806 @@
 package io.hashchain.core;
 
+import io.hashchain.metrics.Metrics;
+import io.hashchain.metrics.Operation;
+import io.hashchain.metrics.Span;
 import io.hashchain.utils.HashUtils;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
 public class HashChain {
-    private final ObservableList<HashRecord> chain = FXCollections.observableArrayList();
+    public static final int CHECKPOINT_INTERVAL = 1024;
+    private static final int MERKLE_FILL_BATCH = 1 << 16;
+    private static final Pattern HEX_HASH = Pattern.compile("[0-9a-fA-F]+");
+    private static final boolean REJECT_DUPLICATES = "reject".equalsIgnoreCase(System.getProperty("hashchain.duplicates"));
+    private static final double DUPLICATE_FALSE_POSITIVE_RATE = Double.parseDouble(
+            System.getProperty("hashchain.duplicates.fpp", Double.toString(DuplicateFilter.DEFAULT_FALSE_POSITIVE_RATE)));
+    // Records a duplicate check may still add to the filter itself, under the lock.
+    private static final int DUPLICATE_CATCH_UP = 4096;
+    private static final long DUPLICATE_MEMORY_BUDGET = Long.getLong("hashchain.duplicates.memory", DuplicateFilter.DEFAULT_MEMORY_BUDGET);
+
+    public static class CommitPoint {
+        public final List<HashRecord> records;
+        public final byte[] chainHash;
+        public final byte[] merkleRoot;
+
+        private CommitPoint(List<HashRecord> records, byte[] chainHash, byte[] merkleRoot) {
+            this.records = records;
+            this.chainHash = chainHash;
+            this.merkleRoot = merkleRoot;
+        }
+
+        public int size() {
+            return records.size();
+        }
+    }
+
+    public static class DuplicateRecordException extends IllegalArgumentException {
+        public final int position;
+        public final int existing;
+
+        private DuplicateRecordException(int position, int existing, String message) {
+            super(message);
+            this.position = position;
+            this.existing = existing;
+        }
+    }
+
+    // Changes published since current() last ran: the newest view and the first record each kind touched.
+    private static final class Change {
+        final ChainCore.View view;
+        final int changedFrom;
+        final int redactedFrom;
+
+        Change(ChainCore.View view, int changedFrom, int redactedFrom) {
+            this.view = view;
+            this.changedFrom = changedFrom;
+            this.redactedFrom = redactedFrom;
+        }
+    }
+
+    private final ChainCore core = new ChainCore();
+    private final AtomicReference<Change> pending = new AtomicReference<>();
+    // The view the derived state below follows; it only moves on in current().
+    private RecordSource synced = core.view();
+    private final Executor listExecutor;
+    private ObservableList<HashRecord> chain;
+
+    private final List<MessageDigest> checkpoints = new ArrayList<>();
+    private MessageDigest runningDigest = HashUtils.newSHA256Digest();
+    private int digestedCount;
+    private final byte[] hexScratch = new byte[HashUtils.HEX_SIZE];
+    private MerkleTree merkleTree = new MerkleTree();
+    // Bumped whenever the tree is replaced or cut back, so a fill running without the lock can tell.
+    private long merkleGeneration;
+    private boolean merkleFilling;
+    private ChainIndex chainIndex = new ChainIndex();
+    private final SpatialIndex spatialIndex = new SpatialIndex();
+    private int spatialCount;
+    private final TemplateGallery gallery = new TemplateGallery();
+    private int galleryCount;
+    // An index restored from disk may predate a redaction and still hold the erased names.
+    private int redactedFrom = Integer.MAX_VALUE;
+    private DuplicateFilter duplicateFilter;
+    private CompletableFuture<Void> duplicateBuild;
+    private volatile boolean rejectDuplicates = REJECT_DUPLICATES;
+    private final Object enrollLock = new Object();
+
+    public HashChain() {
+        this(null);
+    }
+
+    public HashChain(Executor listExecutor) {
+        checkpoints.add(HashUtils.cloneDigest(runningDigest));
+        // Runs under the core's write lock, so it only notes the change; current() applies it.
+        core.addListener(new ChainCore.Listener() {
+            @Override
+            public void changed(ChainCore.View view, int from) {
+                pending.getAndUpdate(change -> change == null ? new Change(view, from, Integer.MAX_VALUE)
+                        : new Change(view, Math.min(change.changedFrom, from), change.redactedFrom));
+            }
+
+            @Override
+            public void redacted(ChainCore.View view, int from, int[] indexes) {
+                pending.getAndUpdate(change -> change == null ? new Change(view, Integer.MAX_VALUE, from)
+                        : new Change(view, change.changedFrom, Math.min(change.redactedFrom, from)));
+            }
+        });
+        this.listExecutor = listExecutor;
+    }
+
+    public HashRecord addRecord(PersonData data) {
+        try (Span span = Metrics.begin(Operation.APPEND)) {
+            span.records(1);
+            if (!rejectDuplicates) {
+                return core.append(data);
+            }
+            synchronized (enrollLock) {
+                DuplicateFilter.Key[] keys = rejectDuplicates(span, List.of(data));
+                HashRecord record = core.append(data);
+                rememberKeys(List.of(record), keys);
+                return record;
+            }
+        }
+    }
+
+    // With duplicate rejection on, a batch containing a person who is already enrolled (or appears twice
+    // in the batch) is refused as a whole before anything is appended.
+    public List<HashRecord> addRecords(List<PersonData> data) {
+        try (Span span = Metrics.begin(Operation.APPEND)) {
+            span.records(data.size());
+            if (!rejectDuplicates) {
+                return core.appendAll(data);
+            }
+            synchronized (enrollLock) {
+                DuplicateFilter.Key[] keys = rejectDuplicates(span, data);
+                List<HashRecord> records = core.appendAll(data);
+                rememberKeys(records, keys);
+                return records;
+            }
+        }
+    }
+
+    // Re-creates records of a chain saved elsewhere, which may already hold duplicates from before the check.
+    public List<HashRecord> restoreRecords(List<PersonData> data) {
+        try (Span span = Metrics.begin(Operation.APPEND)) {
+            span.records(data.size());
+            return core.appendAll(data);
+        }
+    }
+
+    private DuplicateFilter.Key[] rejectDuplicates(Span span, List<PersonData> data) {
+        DuplicateCheck check = duplicateCheck();
+        DuplicateFilter.Key[] keys = new DuplicateFilter.Key[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            PersonData person = data.get(i);
+            keys[i] = DuplicateFilter.key(person);
+            int existing = check.probe(person, keys[i]);
+            if (existing >= 0) {
+                span.failed();
+                String name = person.getLastName() + " " + person.getFirstName() + " " + person.getPatronymic();
+                throw new DuplicateRecordException(i, existing, existing < check.chainSize()
+                        ? "Запись «" + name + "» уже есть в цепочке (№" + (existing + 1) + ")."
+                        : "Запись «" + name + "» повторяется в пакете.");
+            }
+        }
+        return keys;
+    }
+
+    // Saves the catch-up from hashing the batch again, unless something else was appended in between.
+    private synchronized void rememberKeys(List<HashRecord> records, DuplicateFilter.Key[] keys) {
+        current();
+        if (duplicateFilter == null || records.isEmpty()
+                || !Arrays.equals(duplicateFilter.lastHash(), records.get(0).getPreviousHashBytes())) {
+            return;
+        }
+        for (int i = 0; i < records.size(); i++) {
+            duplicateFilter.append(records.get(i), keys[i]);
+        }
+    }
+
+    public boolean isRejectDuplicates() {
+        return rejectDuplicates;
+    }
+
+    public void setRejectDuplicates(boolean rejectDuplicates) {
+        this.rejectDuplicates = rejectDuplicates;
+    }
+
+    public DuplicateCheck duplicateCheck() {
+        return new DuplicateCheck(this);
+    }
+
+    // Position of an enrolled record identical to the person, or -1. A filter miss answers in O(1);
+    // only a probable hit touches the name index and the records behind it.
+    public int findDuplicate(PersonData person) {
+        return findDuplicate(person, DuplicateFilter.key(person));
+    }
+
+    // Until the filter is ready every check goes to the name index, so enrollment never waits for a build.
+    synchronized int findDuplicate(PersonData person, DuplicateFilter.Key key) {
+        DuplicateFilter filter = readyDuplicateFilter();
+        if (filter == null) {
+            prepareDuplicateFilter();
+        } else if (!filter.mightContain(key)) {
+            return -1;
+        }
+        RecordSource view = catchUpIndex();
+        for (int position : chainIndex.findByName(person.getLastName(), person.getFirstName(), person.getPatronymic(), view)) {
+            PersonData data = view.get(position).getData();
+            if (data != null && DuplicateFilter.sameEnrollment(data, person)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    public List<HashRecord> appendPrepared(List<HashRecord> records) {
+        if (!records.isEmpty()) {
+            try (Span span = Metrics.begin(Operation.APPEND)) {
+                span.records(records.size());
+                core.appendPrepared(records);
+            }
+        }
+        return records;
+    }
+
+    public BatchImporter.Result importBatch(BufferedReader reader) throws IOException {
+        return importBatch(reader, new BatchImporter());
+    }
 
-    public void addRecord(PersonData data) {
-        String previousHash = chain.isEmpty() ? null : chain.get(chain.size() - 1).getHash();
-        HashRecord record = new HashRecord(data, previousHash);
-        chain.add(record);
+    public BatchImporter.Result importBatch(BufferedReader reader, BatchImporter importer) throws IOException {
+        BatchImporter.Result result = importer.prepare(reader, lastHash(), rejectDuplicates ? duplicateCheck() : null);
+        appendPrepared(result.records);
+        return result;
     }
 
-    public ObservableList<HashRecord> getChain() {
+    public byte[] lastHash() {
+        return core.view().lastHash();
+    }
+
+    public int size() {
+        return core.view().size();
+    }
+
+    public HashRecord get(int index) {
+        return core.view().get(index);
+    }
+
+    public synchronized ObservableList<HashRecord> getChain() {
+        if (chain == null) {
+            chain = RecordList.observe(core, listExecutor);
+        }
         return chain;
     }
 
+    public void attach(RecordSource source) {
+        core.attach(source);
+    }
+
+    // Seeds the chain digest and Merkle tree with state saved for the first `size` records, so only records
+    // after them are hashed. Digest checkpoints and Merkle nodes below `size` are rebuilt on first use.
+    public synchronized boolean resume(int size, byte[] lastHash, MessageDigest digest, List<byte[]> merkleFrontier) {
+        RecordSource view = current();
+        if (size > view.size() || (size > 0 && !Arrays.equals(lastHash, view.hashAt(size - 1)))) {
+            return false;
+        }
+        checkpoints.subList(1, checkpoints.size()).clear();
+        for (int k = 1; k <= size / CHECKPOINT_INTERVAL; k++) {
+            checkpoints.add(null);
+        }
+        if (size > 0 && size % CHECKPOINT_INTERVAL == 0) {
+            checkpoints.set(size / CHECKPOINT_INTERVAL, HashUtils.cloneDigest(digest));
+        }
+        runningDigest = HashUtils.cloneDigest(digest);
+        digestedCount = size;
+        merkleTree = MerkleTree.fromFrontier(size, merkleFrontier);
+        merkleGeneration++;
+        return true;
+    }
+
+    public RecordSource snapshot() {
+        return core.view();
+    }
+
+    public List<HashRecord> records() {
+        return asList(core.view());
+    }
+
+    public synchronized CommitPoint commitPoint() {
+        RecordSource view = current();
+        catchUp(view, view.size());
+        catchUpMerkle(view);
+        return new CommitPoint(asList(view), HashUtils.cloneDigest(runningDigest).digest(), merkleTree.root());
+    }
+
+    public void replaceAll(List<HashRecord> records) {
+        core.replace(null, 0, size(), records);
+    }
+
+    public void clear() {
+        replaceAll(List.of());
+    }
+
+    // Drops the payload of the given records but keeps their hashes, so the chain hash, the Merkle root
+    // and every proof stay as they were. Search indexes are rebuilt from the first redacted record.
+    public void redact(int... indexes) {
+        core.redact(indexes);
+    }
+
+    public void truncate(int length) {
+        RecordSource view = core.view();
+        if (length < view.size()) {
+            core.replace(null, length, view.size(), List.of());
+        }
+    }
+
     public String computeChainHash() {
-        StringBuilder sb = new StringBuilder();
-        for (HashRecord record : chain) {
-            sb.append(record.getHash());
+        return HashUtils.toHex(computeChainHashBytes());
+    }
+
+    public synchronized byte[] computeChainHashBytes() {
+        RecordSource view = current();
+        catchUp(view, view.size());
+        return HashUtils.cloneDigest(runningDigest).digest();
+    }
+
+    public String computeChainHash(int length) {
+        return HashUtils.toHex(computeChainHashBytes(length));
+    }
+
+    public synchronized byte[] computeChainHashBytes(int length) {
+        RecordSource view = current();
+        if (length < 0 || length > view.size()) {
+            throw new IndexOutOfBoundsException("Длина префикса " + length + " вне диапазона 0.." + view.size());
         }
-        return HashUtils.calculateSHA256(sb.toString());
+        if (length >= digestedCount) {
+            catchUp(view, length);
+            return HashUtils.cloneDigest(runningDigest).digest();
+        }
+        int checkpoint = length / CHECKPOINT_INTERVAL;
+        MessageDigest digest = HashUtils.cloneDigest(checkpoint(checkpoint, view));
+        byte[] hex = new byte[HashUtils.HEX_SIZE];
+        for (int i = checkpoint * CHECKPOINT_INTERVAL; i < length; i++) {
+            HashUtils.writeHexAscii(view.hashAt(i), hex, 0);
+            digest.update(hex);
+        }
+        return digest.digest();
+    }
+
+    public String computeChainHmac() {
+        return HashUtils.toHex(computeChainHmacBytes());
+    }
+
+    public byte[] computeChainHmacBytes() {
+        return HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), HashUtils.toHexAscii(computeChainHashBytes()));
+    }
+
+    public synchronized byte[] computeMerkleRoot() {
+        catchUpMerkle(current());
+        return merkleTree.root();
+    }
+
+    public synchronized MerkleTree.SignedRoot signedRoot() {
+        RecordSource view = current();
+        catchUpMerkle(view);
+        return MerkleTree.SignedRoot.sign(view.size(), merkleTree.root());
+    }
+
+    public synchronized MerkleTree.Proof proveInclusion(int index) {
+        RecordSource view = current();
+        catchUpMerkle(view);
+        return proveAgainst(index, merkleTree.size(), merkleTree.root(), view);
+    }
+
+    // Proof against a root signed earlier, e.g. by the last commit; it has to lead to that root.
+    public synchronized MerkleTree.Proof proveInclusion(int index, MerkleTree.SignedRoot signedRoot) {
+        RecordSource view = current();
+        catchUpMerkle(view);
+        if (signedRoot.treeSize > merkleTree.size()) {
+            throw new IndexOutOfBoundsException("Размер " + signedRoot.treeSize + " вне диапазона 0.." + merkleTree.size());
+        }
+        MerkleTree.Proof proof = proveAgainst(index, (int) signedRoot.treeSize, signedRoot.root, view);
+        if (!MerkleTree.verifyInclusion(proof, signedRoot)) {
+            throw new IllegalStateException("Подписанный корень не соответствует цепочке.");
+        }
+        return proof;
+    }
+
+    public synchronized byte[] merkleRootAt(int size) {
+        RecordSource view = current();
+        catchUpMerkle(view);
+        return merkleTree.rootAt(size, view);
+    }
+
+    // Moves the tree onto nodes kept outside the heap. The store must hold the nodes of the first
+    // `storedSize` records of this chain; a tree that is behind it is taken from the store as it is.
+    public synchronized void attachMerkleStore(MerkleTree.NodeStore store, int storedSize) {
+        RecordSource view = current();
+        int size = Math.min(storedSize, view.size());
+        if (merkleTree.size() <= size) {
+            store.truncate(size);
+            merkleTree = MerkleTree.fromStore(store, size, view);
+        } else {
+            merkleTree.attach(store, size);
+        }
+        merkleGeneration++;
+    }
+
+    // Writes the nodes the store is missing, e.g. after a start from a snapshot, on a background thread that
+    // holds the lock for no more than a batch at a time. Appends only go to the store once it has caught up.
+    public synchronized void startMerkleFill() {
+        if (merkleFilling || !merkleTree.hasStore() || merkleTree.storedSize() >= merkleTree.size()) {
+            return;
+        }
+        merkleFilling = true;
+        Thread thread = new Thread(this::fillMerkleStore, "hashchain-merkle");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void fillMerkleStore() {
+        while (true) {
+            MerkleTree tree;
+            RecordSource view;
+            long generation;
+            int from;
+            int to;
+            synchronized (this) {
+                view = current();
+                catchUpMerkle(view);
+                tree = merkleTree;
+                generation = merkleGeneration;
+                from = tree.storedSize();
+                to = Math.min(tree.size(), from + MERKLE_FILL_BATCH);
+                if (!tree.hasStore() || from >= tree.size()) {
+                    merkleFilling = false;
+                    return;
+                }
+            }
+            try {
+                tree.fill(from, to, view);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    merkleFilling = false;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                if (generation != merkleGeneration) {
+                    continue;
+                }
+                tree.markStored(to);
+            }
+        }
+    }
+
+    // A proof reads stored nodes. One that misses the root the tree vouches for means the store is damaged:
+    // it is dropped, the proof is rehashed from the records and the store is filled again.
+    private MerkleTree.Proof proveAgainst(int index, int treeSize, byte[] root, RecordSource view) {
+        if (merkleTree.hasStore() && merkleTree.storedSize() > 0) {
+            try {
+                MerkleTree.Proof proof = merkleTree.prove(index, treeSize, view);
+                if (Arrays.equals(MerkleTree.rootFromPath(proof), root)) {
+                    return proof;
+                }
+            } catch (UncheckedIOException | IllegalStateException e) {
+                // same as a wrong node
+            }
+            merkleTree.dropStored();
+            merkleGeneration++;
+            startMerkleFill();
+        }
+        return merkleTree.prove(index, treeSize, view);
+    }
+
+    public MerkleTree.Proof proveInclusion(HashRecord record) {
+        int index = positionOf(record.getHashBytes());
+        if (index < 0) {
+            throw new IllegalArgumentException("Запись " + record.getHash() + " не входит в цепочку.");
+        }
+        return proveInclusion(index);
+    }
+
+    public synchronized int positionOf(byte[] hash) {
+        return chainIndex.positionOf(hash, catchUpIndex());
+    }
+
+    public int positionOf(String hash) {
+        return positionOf(HashUtils.fromHex(hash));
+    }
+
+    public synchronized int[] findByName(String lastName, String firstName, String patronymic) {
+        return chainIndex.findByName(lastName, firstName, patronymic, catchUpIndex());
+    }
+
+    public synchronized int[] findByBirthDate(LocalDate from, LocalDate to) {
+        catchUpIndex();
+        return chainIndex.findByBirthDate(from, to);
+    }
+
+    public int[] search(String query) {
+        String text = query == null ? "" : query.strip();
+        if (text.isEmpty()) {
+            return new int[0];
+        }
+        if (text.length() == HashUtils.HEX_SIZE && HEX_HASH.matcher(text).matches()) {
+            int position = positionOf(text.toLowerCase(Locale.ROOT));
+            return position < 0 ? new int[0] : new int[] {position};
+        }
+        if (Character.isDigit(text.charAt(0))) {
+            String[] range = text.split("\\s*\\.\\.\\s*|\\s+-\\s+", 2);
+            try {
+                LocalDate from = BatchImporter.parseDate(range[0]);
+                LocalDate to = range.length > 1 ? BatchImporter.parseDate(range[1]) : from;
+                return findByBirthDate(from, to);
+            } catch (DateTimeParseException e) {
+                return new int[0];
+            }
+        }
+        String[] names = text.split("\\s+", 3);
+        return findByName(names[0], names.length > 1 ? names[1] : null, names.length > 2 ? names[2] : null);
+    }
+
+    public synchronized ChainIndex index() {
+        catchUpIndex();
+        return chainIndex;
+    }
+
+    // The index as far as queries have built it, without catching it up.
+    public synchronized ChainIndex builtIndex() {
+        current();
+        return chainIndex;
+    }
+
+    public synchronized boolean restoreIndex(ChainIndex restored) {
+        RecordSource view = current();
+        int size = restored.size();
+        if (size > view.size() || size <= chainIndex.size() || (size > 0 && !Arrays.equals(restored.lastHash(), view.hashAt(size - 1)))) {
+            return false;
+        }
+        if (size > redactedFrom) {
+            if (redactedFrom <= chainIndex.size()) {
+                return false;
+            }
+            restored.truncate(redactedFrom, view);
+        }
+        chainIndex = restored;
+        return true;
+    }
+
+    public DuplicateFilter duplicateFilter() {
+        DuplicateFilter filter;
+        while ((filter = readyDuplicateFilter()) == null) {
+            prepareDuplicateFilter().join();
+        }
+        return filter;
+    }
+
+    // The duplicate filter if one has been built, possibly behind the chain; null otherwise.
+    public synchronized DuplicateFilter builtDuplicateFilter() {
+        current();
+        return duplicateFilter;
+    }
+
+    // True when a duplicate check answers without waiting for the filter to be built or caught up.
+    public synchronized boolean isDuplicateFilterReady() {
+        RecordSource view = current();
+        return duplicateFilter != null && duplicateFilter.layerCount() <= DuplicateFilter.MAX_LAYERS
+                && view.size() - duplicateFilter.size() <= DUPLICATE_CATCH_UP;
+    }
+
+    // Builds or catches up the filter on a background thread from a view taken under the lock, and installs
+    // it if the chain still starts with that view. Rebuilt with room for twice the chain once it has grown
+    // through too many layers, which keeps the rebuilds amortized O(1) per record.
+    public synchronized CompletableFuture<Void> prepareDuplicateFilter() {
+        if (isDuplicateFilterReady()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (duplicateBuild == null) {
+            RecordSource view = synced;
+            DuplicateFilter base = duplicateFilter != null && duplicateFilter.layerCount() <= DuplicateFilter.MAX_LAYERS ? duplicateFilter : null;
+            int capacity = duplicateFilter == null ? view.size() : (int) Math.min(Integer.MAX_VALUE, view.size() * 2L);
+            // Taken out while it catches up; appends in the meantime skip rememberKeys.
+            duplicateFilter = null;
+            CompletableFuture<DuplicateFilter> build = CompletableFuture.supplyAsync(() -> {
+                DuplicateFilter filter = base != null ? base : new DuplicateFilter(capacity, DUPLICATE_FALSE_POSITIVE_RATE, DUPLICATE_MEMORY_BUDGET);
+                while (filter.size() < view.size()) {
+                    filter.append(view.get(filter.size()));
+                }
+                return filter;
+            });
+            CompletableFuture<Void> installed = new CompletableFuture<>();
+            duplicateBuild = installed;
+            build.whenComplete((filter, error) -> {
+                installDuplicateFilter(installed, filter);
+                if (error != null) {
+                    installed.completeExceptionally(error);
+                } else {
+                    installed.complete(null);
+                }
+            });
+            return installed;
+        }
+        return duplicateBuild;
+    }
+
+    private synchronized void installDuplicateFilter(CompletableFuture<Void> installed, DuplicateFilter built) {
+        if (duplicateBuild == installed) {
+            duplicateBuild = null;
+        }
+        if (built == null) {
+            return;
+        }
+        RecordSource view = current();
+        int size = built.size();
+        if (size <= view.size() && (duplicateFilter == null || duplicateFilter.size() < size)
+                && (size == 0 || Arrays.equals(built.lastHash(), view.hashAt(size - 1)))) {
+            duplicateFilter = built;
+        }
+    }
+
+    private synchronized DuplicateFilter readyDuplicateFilter() {
+        if (!isDuplicateFilterReady()) {
+            return null;
+        }
+        RecordSource view = synced;
+        while (duplicateFilter.size() < view.size()) {
+            duplicateFilter.append(view.get(duplicateFilter.size()));
+        }
+        return duplicateFilter;
+    }
+
+    // Redacted records may still have keys in a restored filter; that only costs a false positive.
+    public synchronized boolean restoreDuplicateFilter(DuplicateFilter restored) {
+        RecordSource view = current();
+        int size = restored.size();
+        if (size > view.size() || size <= (duplicateFilter == null ? 0 : duplicateFilter.size())
+                || (size > 0 && !Arrays.equals(restored.lastHash(), view.hashAt(size - 1)))) {
+            return false;
+        }
+        duplicateFilter = restored;
+        return true;
+    }
+
+    public synchronized SpatialIndex spatialIndex() {
+        RecordSource view = current();
+        while (spatialCount < view.size()) {
+            PersonData data = view.get(spatialCount).getData();
+            if (data == null) {
+                spatialCount++;
+                continue;
+            }
+            spatialIndex.add(spatialCount, data.getFingerprintDot());
+            MinutiaeTemplate template = data.getTemplate();
+            if (template != null) {
+                for (int i = 0; i < template.size(); i++) {
+                    spatialIndex.add(spatialCount, template.x(i), template.y(i), template.type(i), template.quality(i));
+                }
+            }
+            spatialCount++;
+        }
+        return spatialIndex;
+    }
+
+    public synchronized TemplateGallery.Snapshot templateGallery() {
+        RecordSource view = current();
+        while (galleryCount < view.size()) {
+            PersonData data = view.get(galleryCount).getData();
+            MinutiaeTemplate template = data == null ? null : data.getTemplate();
+            if (template != null) {
+                gallery.add(galleryCount, template);
+            }
+            galleryCount++;
+        }
+        return gallery.snapshot();
+    }
+
+    // The newest published view, once the derived state has been rewound past everything changed in it.
+    // Caught up against any later view, an index could keep records a change not yet applied replaced.
+    private RecordSource current() {
+        Change change = pending.getAndSet(null);
+        if (change == null) {
+            return synced;
+        }
+        int from = change.changedFrom;
+        if (from < Math.max(Math.max(digestedCount, merkleTree.size()), Math.max(Math.max(chainIndex.size(), spatialCount), galleryCount))
+                || (duplicateFilter != null && from < duplicateFilter.size())) {
+            rewindTo(from, change.view);
+        }
+        if (change.redactedFrom != Integer.MAX_VALUE) {
+            redactedFrom = Math.min(redactedFrom, change.redactedFrom);
+            rewindIndexes(change.redactedFrom, change.view);
+        }
+        synced = change.view;
+        return synced;
+    }
+
+    private RecordSource catchUpIndex() {
+        RecordSource view = current();
+        while (chainIndex.size() < view.size()) {
+            chainIndex.append(view.get(chainIndex.size()));
+        }
+        return view;
+    }
+
+    private void catchUpMerkle(RecordSource view) {
+        while (merkleTree.size() < view.size()) {
+            merkleTree.append(view.hashAt(merkleTree.size()));
+        }
+    }
+
+    private void catchUp(RecordSource view, int length) {
+        if (digestedCount >= length) {
+            return;
+        }
+        try (Span span = Metrics.begin(Operation.CHAIN_HASH)) {
+            span.records(length - digestedCount);
+            while (digestedCount < length) {
+                HashUtils.writeHexAscii(view.hashAt(digestedCount), hexScratch, 0);
+                runningDigest.update(hexScratch);
+                digestedCount++;
+                if (digestedCount % CHECKPOINT_INTERVAL == 0) {
+                    checkpoints.add(HashUtils.cloneDigest(runningDigest));
+                }
+            }
+        }
+    }
+
+    private MessageDigest checkpoint(int checkpoint, RecordSource view) {
+        if (checkpoints.get(checkpoint) == null) {
+            int known = checkpoint;
+            while (checkpoints.get(known) == null) {
+                known--;
+            }
+            MessageDigest digest = HashUtils.cloneDigest(checkpoints.get(known));
+            byte[] hex = new byte[HashUtils.HEX_SIZE];
+            for (int i = known * CHECKPOINT_INTERVAL; i < checkpoint * CHECKPOINT_INTERVAL; i++) {
+                HashUtils.writeHexAscii(view.hashAt(i), hex, 0);
+                digest.update(hex);
+                if ((i + 1) % CHECKPOINT_INTERVAL == 0) {
+                    checkpoints.set((i + 1) / CHECKPOINT_INTERVAL, HashUtils.cloneDigest(digest));
+                }
+            }
+        }
+        return checkpoints.get(checkpoint);
+    }
+
+    private void rewindTo(int index, RecordSource view) {
+        if (index < merkleTree.size()) {
+            merkleTree.truncate(index, view);
+            merkleGeneration++;
+        }
+        rewindIndexes(index, view);
+        if (duplicateFilter != null && index < duplicateFilter.size()) {
+            duplicateFilter = null;
+        }
+        if (index >= digestedCount) {
+            return;
+        }
+        int checkpoint = index / CHECKPOINT_INTERVAL;
+        checkpoints.subList(checkpoint + 1, checkpoints.size()).clear();
+        runningDigest = HashUtils.cloneDigest(checkpoint(checkpoint, view));
+        digestedCount = checkpoint * CHECKPOINT_INTERVAL;
+    }
+
+    private void rewindIndexes(int index, RecordSource view) {
+        chainIndex.truncate(index, view);
+        if (index < spatialCount) {
+            spatialIndex.truncateRecords(index);
+            spatialCount = index;
+        }
+        if (index < galleryCount) {
+            gallery.truncateRecords(index);
+            galleryCount = index;
+        }
+    }
+
+    private static List<HashRecord> asList(RecordSource view) {
+        return new AbstractList<>() {
+            @Override
+            public HashRecord get(int index) {
+                return view.get(index);
+            }
+
+            @Override
+            public int size() {
+                return view.size();
+            }
+        };
     }
 }
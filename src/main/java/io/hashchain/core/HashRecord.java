@@ -2,20 +2,96 @@ package io.hashchain.core;
 
 import io.hashchain.utils.HashUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
 public class HashRecord {
+    private static final byte[] REDACTION_TAG = "HCRD".getBytes(StandardCharsets.US_ASCII);
+
     private final PersonData data;
-    private final String hash;
-    private final String previousHash;
+    private final byte[] hash;
+    private final byte[] previousHash;
+    private final byte[] redactionSeal;
+    private String hashHex;
+    private String previousHashHex;
 
     public HashRecord(PersonData data, String previousHash) {
+        this(data, previousHash == null ? null : HashUtils.fromHex(previousHash));
+    }
+
+    public HashRecord(PersonData data, byte[] previousHash) {
+        this(data, previousHash, computeHash(data, previousHash));
+    }
+
+    public HashRecord(PersonData data, String previousHash, String hash) {
+        this(data, previousHash == null ? null : HashUtils.fromHex(previousHash), HashUtils.fromHex(hash));
+    }
+
+    public HashRecord(PersonData data, byte[] previousHash, byte[] hash) {
+        this(data, previousHash, hash, null);
+    }
+
+    private HashRecord(PersonData data, byte[] previousHash, byte[] hash, byte[] redactionSeal) {
         this.data = data;
         this.previousHash = previousHash;
-        this.hash = HashUtils.calculateSHA256(
-                data.toString() + (previousHash == null ? "" : previousHash)
-        );
+        this.hash = hash;
+        this.redactionSeal = redactionSeal;
+    }
+
+    // A redacted record keeps its place in the chain by its hash alone; the seal shows the payload
+    // was removed by the holder of the chain secret rather than lost or tampered with.
+    public static HashRecord tombstone(byte[] previousHash, byte[] hash, byte[] redactionSeal) {
+        return new HashRecord(null, previousHash, hash, redactionSeal);
+    }
+
+    public HashRecord redact() {
+        return isRedacted() ? this : tombstone(previousHash, hash, redactionSeal(hash));
     }
 
-    public String getHash() { return hash; }
-    public String getPreviousHash() { return previousHash; }
+    public static byte[] redactionSeal(byte[] hash) {
+        byte[] message = new byte[REDACTION_TAG.length + hash.length];
+        System.arraycopy(REDACTION_TAG, 0, message, 0, REDACTION_TAG.length);
+        System.arraycopy(hash, 0, message, REDACTION_TAG.length, hash.length);
+        return HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), message);
+    }
+
+    public static byte[] computeHash(PersonData data, byte[] previousHash) {
+        return computeHash(PersonCodec.encode(data), previousHash);
+    }
+
+    public static byte[] computeHash(byte[] encodedData, byte[] previousHash) {
+        MessageDigest digest = HashUtils.sha256Digest();
+        digest.update(encodedData);
+        if (previousHash != null) {
+            digest.update(HashUtils.toHexAscii(previousHash));
+        }
+        return digest.digest();
+    }
+
+    public String getHash() {
+        if (hashHex == null) {
+            hashHex = HashUtils.toHex(hash);
+        }
+        return hashHex;
+    }
+
+    public String getPreviousHash() {
+        if (previousHash != null && previousHashHex == null) {
+            previousHashHex = HashUtils.toHex(previousHash);
+        }
+        return previousHashHex;
+    }
+
+    public byte[] getHashBytes() { return hash; }
+    public byte[] getPreviousHashBytes() { return previousHash; }
     public PersonData getData() { return data; }
+    public byte[] getRedactionSeal() { return redactionSeal; }
+
+    public boolean isRedacted() {
+        return redactionSeal != null;
+    }
+
+    public boolean isRedactionValid() {
+        return redactionSeal != null && MessageDigest.isEqual(redactionSeal, redactionSeal(hash));
+    }
 }
@@ -0,0 +1,425 @@
+package io.hashchain.core;
+
+import io.hashchain.utils.HashUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    private static final byte[] ROOT_SIGNATURE_TAG = "HCMR".getBytes(StandardCharsets.US_ASCII);
+    private static final int HASH_SIZE = HashUtils.HASH_SIZE;
+
+    public static class Proof {
+        public final int leafIndex;
+        public final int treeSize;
+        public final byte[] recordHash;
+        public final List<byte[]> path;
+
+        public Proof(int leafIndex, int treeSize, byte[] recordHash, List<byte[]> path) {
+            this.leafIndex = leafIndex;
+            this.treeSize = treeSize;
+            this.recordHash = recordHash;
+            this.path = List.copyOf(path);
+        }
+    }
+
+    public static class SignedRoot {
+        public final long treeSize;
+        public final byte[] root;
+        public final byte[] signature;
+
+        public SignedRoot(long treeSize, byte[] root, byte[] signature) {
+            this.treeSize = treeSize;
+            this.root = root;
+            this.signature = signature;
+        }
+
+        public static SignedRoot sign(long treeSize, byte[] root) {
+            return new SignedRoot(treeSize, root, signature(treeSize, root));
+        }
+
+        public boolean isSignatureValid() {
+            return MessageDigest.isEqual(signature, signature(treeSize, root));
+        }
+
+        private static byte[] signature(long treeSize, byte[] root) {
+            ByteBuffer message = ByteBuffer.allocate(ROOT_SIGNATURE_TAG.length + Long.BYTES + HASH_SIZE);
+            message.put(ROOT_SIGNATURE_TAG).putLong(treeSize).put(root);
+            return HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), message.array());
+        }
+    }
+
+    // Nodes of complete subtrees: node `index` of `level` covers leaves [index << level, (index + 1) << level).
+    // Levels below lowestLevel() are not kept; they are recomputed from the record hashes when needed.
+    public interface NodeStore {
+        int lowestLevel();
+
+        byte[] get(int level, int index);
+
+        void put(int level, int index, byte[] node);
+
+        // Keeps the nodes of the first `size` leaves.
+        void truncate(int size);
+    }
+
+    // Roots of the complete subtrees the tree ends with: frontier[l] is set exactly when bit l of size is.
+    private final byte[][] frontier = new byte[Integer.SIZE][];
+    private NodeStore store;
+    private int size;
+    // Leaves whose complete subtrees are all in the store; nodes past it come from the frontier or the leaves.
+    private int storedSize;
+
+    public MerkleTree() {
+        this(new HeapNodes());
+    }
+
+    private MerkleTree(NodeStore store) {
+        this.store = store;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasStore() {
+        return store != null;
+    }
+
+    public int storedSize() {
+        return store == null ? 0 : storedSize;
+    }
+
+    public void append(byte[] recordHash) {
+        byte[] node = leafHash(recordHash);
+        boolean stored = store != null && storedSize == size;
+        int index = size;
+        int level = 0;
+        while (true) {
+            if (stored && level >= store.lowestLevel()) {
+                store.put(level, index, node);
+            }
+            if ((index & 1) == 0) {
+                frontier[level] = node;
+                break;
+            }
+            node = nodeHash(frontier[level], node);
+            frontier[level] = null;
+            index >>= 1;
+            level++;
+        }
+        size++;
+        if (stored) {
+            storedSize = size;
+        }
+    }
+
+    // Roots of the perfect subtrees that make up the tree, largest first: enough to keep appending and
+    // to compute the root without the leaves underneath.
+    public List<byte[]> frontier() {
+        List<byte[]> nodes = new ArrayList<>();
+        for (int level = Integer.SIZE - 1; level >= 0; level--) {
+            if (frontier[level] != null) {
+                nodes.add(frontier[level]);
+            }
+        }
+        return nodes;
+    }
+
+    // A tree without a store: appends and the root are O(log n), proofs and prefix roots rehash the leaves.
+    public static MerkleTree fromFrontier(int size, List<byte[]> frontier) {
+        if (size < 0 || Integer.bitCount(size) != frontier.size()) {
+            throw new IllegalArgumentException("Граница дерева Меркла не соответствует размеру " + size);
+        }
+        MerkleTree tree = new MerkleTree(null);
+        int next = 0;
+        for (int level = Integer.SIZE - 1; level >= 0; level--) {
+            if ((size & (1 << level)) != 0) {
+                tree.frontier[level] = frontier.get(next++);
+            }
+        }
+        tree.size = size;
+        return tree;
+    }
+
+    // The tree of the first `size` leaves, all of whose nodes the store already holds.
+    public static MerkleTree fromStore(NodeStore store, int size, RecordSource records) {
+        MerkleTree tree = new MerkleTree(store);
+        tree.size = size;
+        tree.storedSize = size;
+        for (int level = 0; level < Integer.SIZE; level++) {
+            if ((size & (1 << level)) != 0) {
+                tree.frontier[level] = tree.node(level, (size >> level) - 1, records);
+            }
+        }
+        return tree;
+    }
+
+    // Takes a store holding the nodes of the first `storedSize` leaves of this tree; fill() adds the rest.
+    public void attach(NodeStore store, int storedSize) {
+        this.store = store;
+        this.storedSize = Math.min(storedSize, size);
+        store.truncate(this.storedSize);
+    }
+
+    // Writes the nodes of leaves [from, to) into the store, given the nodes of the leaves before `from`.
+    // Reads neither the frontier nor the size, so it can run while others use the tree; markStored()
+    // then publishes the nodes.
+    public void fill(int from, int to, RecordSource records) {
+        if (store == null || from >= to) {
+            return;
+        }
+        byte[][] nodes = new byte[Integer.SIZE][];
+        for (int level = 0; level < Integer.SIZE; level++) {
+            if ((from & (1 << level)) != 0) {
+                nodes[level] = storedNode(level, (from >> level) - 1, records);
+            }
+        }
+        for (int i = from; i < to; i++) {
+            byte[] node = leafHash(records.hashAt(i));
+            int index = i;
+            int level = 0;
+            while (true) {
+                if (level >= store.lowestLevel()) {
+                    store.put(level, index, node);
+                }
+                if ((index & 1) == 0) {
+                    nodes[level] = node;
+                    break;
+                }
+                node = nodeHash(nodes[level], node);
+                nodes[level] = null;
+                index >>= 1;
+                level++;
+            }
+        }
+    }
+
+    public void markStored(int to) {
+        if (store != null && to > storedSize && to <= size) {
+            storedSize = to;
+        }
+    }
+
+    // Forgets the stored nodes, e.g. after one of them turned out to be wrong.
+    public void dropStored() {
+        if (store != null) {
+            storedSize = 0;
+            store.truncate(0);
+        }
+    }
+
+    public void truncate(int newSize, RecordSource records) {
+        if (newSize >= size) {
+            return;
+        }
+        newSize = Math.max(newSize, 0);
+        byte[][] nodes = new byte[Integer.SIZE][];
+        for (int level = 0; level < Integer.SIZE; level++) {
+            if ((newSize & (1 << level)) != 0) {
+                nodes[level] = node(level, (newSize >> level) - 1, records);
+            }
+        }
+        System.arraycopy(nodes, 0, frontier, 0, nodes.length);
+        size = newSize;
+        if (store != null && storedSize > newSize) {
+            storedSize = newSize;
+            store.truncate(newSize);
+        }
+    }
+
+    public byte[] root() {
+        byte[] root = null;
+        for (byte[] node : frontier) {
+            if (node != null) {
+                root = root == null ? node : nodeHash(node, root);
+            }
+        }
+        return root == null ? emptyRoot() : root;
+    }
+
+    // Root of the tree as it was at `prefixSize` leaves; perfect subtrees of a prefix never change, so with
+    // the nodes stored this is O(log n).
+    public byte[] rootAt(int prefixSize, RecordSource records) {
+        if (prefixSize < 0 || prefixSize > size) {
+            throw new IndexOutOfBoundsException("Размер " + prefixSize + " вне диапазона 0.." + size);
+        }
+        return prefixSize == 0 ? emptyRoot() : subtreeHash(0, prefixSize, records);
+    }
+
+    public Proof prove(int leafIndex, RecordSource records) {
+        return prove(leafIndex, size, records);
+    }
+
+    // Inclusion proof against the tree as it was at `treeSize` leaves.
+    public Proof prove(int leafIndex, int treeSize, RecordSource records) {
+        if (treeSize < 0 || treeSize > size) {
+            throw new IndexOutOfBoundsException("Размер " + treeSize + " вне диапазона 0.." + size);
+        }
+        if (leafIndex < 0 || leafIndex >= treeSize) {
+            throw new IndexOutOfBoundsException("Индекс " + leafIndex + " вне диапазона 0.." + treeSize);
+        }
+        List<byte[]> path = new ArrayList<>();
+        collectPath(leafIndex, 0, treeSize, path, records);
+        return new Proof(leafIndex, treeSize, records.hashAt(leafIndex), path);
+    }
+
+    public static boolean verifyInclusion(Proof proof, SignedRoot signedRoot) {
+        if (!signedRoot.isSignatureValid() || signedRoot.treeSize != proof.treeSize) {
+            return false;
+        }
+        return Arrays.equals(rootFromPath(proof), signedRoot.root);
+    }
+
+    public static byte[] rootFromPath(Proof proof) {
+        if (proof.leafIndex < 0 || proof.leafIndex >= proof.treeSize) {
+            return null;
+        }
+        long fn = proof.leafIndex;
+        long sn = proof.treeSize - 1L;
+        byte[] r = leafHash(proof.recordHash);
+        for (byte[] p : proof.path) {
+            if (sn == 0) {
+                return null;
+            }
+            if ((fn & 1) == 1 || fn == sn) {
+                r = nodeHash(p, r);
+                while ((fn & 1) == 0 && fn != 0) {
+                    fn >>= 1;
+                    sn >>= 1;
+                }
+            } else {
+                r = nodeHash(r, p);
+            }
+            fn >>= 1;
+            sn >>= 1;
+        }
+        return sn == 0 ? r : null;
+    }
+
+    public static byte[] leafHash(byte[] recordHash) {
+        MessageDigest digest = HashUtils.sha256Digest();
+        digest.update(LEAF_PREFIX);
+        digest.update(recordHash);
+        return digest.digest();
+    }
+
+    public static byte[] nodeHash(byte[] left, byte[] right) {
+        MessageDigest digest = HashUtils.sha256Digest();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    public static byte[] emptyRoot() {
+        return HashUtils.sha256(new byte[0]);
+    }
+
+    static int split(int size) {
+        return Integer.highestOneBit(size - 1);
+    }
+
+    private void collectPath(int leafIndex, int from, int to, List<byte[]> path, RecordSource records) {
+        if (to - from == 1) {
+            return;
+        }
+        int mid = from + split(to - from);
+        if (leafIndex < mid) {
+            collectPath(leafIndex, from, mid, path, records);
+            path.add(subtreeHash(mid, to, records));
+        } else {
+            collectPath(leafIndex, mid, to, path, records);
+            path.add(subtreeHash(from, mid, records));
+        }
+    }
+
+    private byte[] subtreeHash(int from, int to, RecordSource records) {
+        int width = to - from;
+        if (Integer.bitCount(width) == 1 && from % width == 0) {
+            int level = Integer.numberOfTrailingZeros(width);
+            return node(level, from >> level, records);
+        }
+        int mid = from + split(width);
+        return nodeHash(subtreeHash(from, mid, records), subtreeHash(mid, to, records));
+    }
+
+    // A complete subtree below size: read from the store or the frontier, otherwise rebuilt from its leaves.
+    private byte[] node(int level, int index, RecordSource records) {
+        if (store != null && level >= store.lowestLevel() && ((long) index + 1 << level) <= storedSize) {
+            return store.get(level, index);
+        }
+        if (frontier[level] != null && index == (size >> level) - 1) {
+            return frontier[level];
+        }
+        if (level == 0) {
+            return leafHash(records.hashAt(index));
+        }
+        return nodeHash(node(level - 1, index * 2, records), node(level - 1, index * 2 + 1, records));
+    }
+
+    private byte[] storedNode(int level, int index, RecordSource records) {
+        if (level >= store.lowestLevel()) {
+            return store.get(level, index);
+        }
+        if (level == 0) {
+            return leafHash(records.hashAt(index));
+        }
+        return nodeHash(storedNode(level - 1, index * 2, records), storedNode(level - 1, index * 2 + 1, records));
+    }
+
+    // Every node in the heap, for chains that are in memory anyway. Levels are kept in chunks of CHUNK_NODES
+    // nodes, so byte offsets fit an int for any leaf count; only the last chunk of a level grows by doubling.
+    private static final class HeapNodes implements NodeStore {
+        private static final int CHUNK_BITS = 16;
+        private static final int CHUNK_NODES = 1 << CHUNK_BITS;
+        private static final int CHUNK_BYTES = CHUNK_NODES * HASH_SIZE;
+
+        private final List<List<byte[]>> levels = new ArrayList<>();
+
+        @Override
+        public int lowestLevel() {
+            return 0;
+        }
+
+        @Override
+        public byte[] get(int level, int index) {
+            int offset = (index & (CHUNK_NODES - 1)) * HASH_SIZE;
+            return Arrays.copyOfRange(levels.get(level).get(index >>> CHUNK_BITS), offset, offset + HASH_SIZE);
+        }
+
+        @Override
+        public void put(int level, int index, byte[] node) {
+            while (level >= levels.size()) {
+                levels.add(new ArrayList<>());
+            }
+            List<byte[]> chunks = levels.get(level);
+            int chunk = index >>> CHUNK_BITS;
+            while (chunk >= chunks.size()) {
+                int last = chunks.size() - 1;
+                if (last >= 0 && chunks.get(last).length < CHUNK_BYTES) {
+                    chunks.set(last, Arrays.copyOf(chunks.get(last), CHUNK_BYTES));
+                }
+                chunks.add(new byte[HASH_SIZE * 16]);
+            }
+            byte[] nodes = chunks.get(chunk);
+            int offset = (index & (CHUNK_NODES - 1)) * HASH_SIZE;
+            if (offset + HASH_SIZE > nodes.length) {
+                nodes = Arrays.copyOf(nodes, Math.min(CHUNK_BYTES, Math.max(nodes.length * 2, offset + HASH_SIZE)));
+                chunks.set(chunk, nodes);
+            }
+            System.arraycopy(node, 0, nodes, offset, HASH_SIZE);
+        }
+
+        @Override
+        public void truncate(int size) {
+            // Nodes past the size are overwritten by the next appends.
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.hashchain.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class MinutiaeTemplate {
+
+    public static final int MAX_COORDINATE = Short.MAX_VALUE;
+    public static final int MAX_QUALITY = 255;
+
+    private static final FingerprintType[] TYPES = FingerprintType.values();
+
+    private final int size;
+    private final short[] columns;
+
+    MinutiaeTemplate(short[] columns) {
+        if (columns.length % 3 != 0) {
+            throw new IllegalArgumentException("Некорректная длина шаблона: " + columns.length);
+        }
+        this.size = columns.length / 3;
+        this.columns = columns;
+    }
+
+    public static MinutiaeTemplate of(List<FingerprintDot> dots) {
+        int size = dots.size();
+        short[] columns = new short[size * 3];
+        for (int i = 0; i < size; i++) {
+            FingerprintDot dot = dots.get(i);
+            if (dot.getType() == null) {
+                throw new IllegalArgumentException("Не указан тип точки №" + (i + 1));
+            }
+            columns[i] = (short) checkRange(dot.getX_position(), MAX_COORDINATE, "X");
+            columns[size + i] = (short) checkRange(dot.getY_position(), MAX_COORDINATE, "Y");
+            columns[2 * size + i] = packTypeQuality(dot.getType().ordinal(), checkRange(dot.getQuality(), MAX_QUALITY, "качество"));
+        }
+        return new MinutiaeTemplate(columns);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int x(int i) {
+        return columns[checkIndex(i)];
+    }
+
+    public int y(int i) {
+        return columns[size + checkIndex(i)];
+    }
+
+    public FingerprintType type(int i) {
+        return TYPES[typeOrdinal(i)];
+    }
+
+    public int typeOrdinal(int i) {
+        return (columns[2 * size + checkIndex(i)] >>> 8) & 0xff;
+    }
+
+    public int quality(int i) {
+        return columns[2 * size + checkIndex(i)] & 0xff;
+    }
+
+    public FingerprintDot dot(int i) {
+        return new FingerprintDot(x(i), y(i), type(i), quality(i));
+    }
+
+    public List<FingerprintDot> toDots() {
+        List<FingerprintDot> dots = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            dots.add(dot(i));
+        }
+        return dots;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MinutiaeTemplate other)) {
+            return false;
+        }
+        return Arrays.equals(columns, other.columns);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(columns);
+    }
+
+    @Override
+    public String toString() {
+        return "Template[minutiae=" + size() + "]";
+    }
+
+    short[] columns() {
+        return columns;
+    }
+
+    static FingerprintType typeOf(int ordinal) {
+        if (ordinal < 0 || ordinal >= TYPES.length) {
+            throw new IllegalArgumentException("Неизвестный тип точки: " + ordinal);
+        }
+        return TYPES[ordinal];
+    }
+
+    static short packTypeQuality(int typeOrdinal, int quality) {
+        return (short) ((typeOrdinal << 8) | quality);
+    }
+
+    private int checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + i + " вне диапазона 0.." + size);
+        }
+        return i;
+    }
+
+    private static int checkRange(int value, int max, String field) {
+        if (value < 0 || value > max) {
+            throw new IllegalArgumentException("Значение поля «" + field + "» вне диапазона 0.." + max + ": " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,287 @@
+package io.hashchain.core;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+public final class PersonCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int HAS_BIRTH_DATE = 1;
+    private static final int HAS_FINGERPRINT = 1 << 1;
+    private static final int HAS_FINGERPRINT_TYPE = 1 << 2;
+    private static final int HAS_TEMPLATE = 1 << 3;
+    private static final int KNOWN_FLAGS = HAS_BIRTH_DATE | HAS_FINGERPRINT | HAS_FINGERPRINT_TYPE | HAS_TEMPLATE;
+    private static final FingerprintType[] TYPES = FingerprintType.values();
+
+    private PersonCodec() {
+    }
+
+    public static byte[] encode(PersonData person) {
+        byte[] lastName = utf8(person.getLastName(), "фамилия");
+        byte[] firstName = utf8(person.getFirstName(), "имя");
+        byte[] patronymic = utf8(person.getPatronymic(), "отчество");
+        LocalDate birthDate = person.getBirthDate();
+        FingerprintDot dot = person.getFingerprintDot();
+        MinutiaeTemplate template = person.getTemplate();
+
+        int flags = 0;
+        long epochDay = 0;
+        int size = 2
+                + varIntSize(lastName.length) + lastName.length
+                + varIntSize(firstName.length) + firstName.length
+                + varIntSize(patronymic.length) + patronymic.length;
+        if (birthDate != null) {
+            flags |= HAS_BIRTH_DATE;
+            epochDay = zigZag(birthDate.toEpochDay());
+            size += varLongSize(epochDay);
+        }
+        if (dot != null) {
+            flags |= HAS_FINGERPRINT;
+            size += varIntSize(zigZag(dot.getX_position()))
+                    + varIntSize(zigZag(dot.getY_position()))
+                    + varIntSize(zigZag(dot.getQuality()));
+            if (dot.getType() != null) {
+                flags |= HAS_FINGERPRINT_TYPE;
+                size++;
+            }
+        }
+        if (template != null) {
+            flags |= HAS_TEMPLATE;
+            size += templateSize(template);
+        }
+
+        byte[] out = new byte[size];
+        int pos = 0;
+        out[pos++] = VERSION;
+        out[pos++] = (byte) flags;
+        pos = putBytes(out, pos, lastName);
+        pos = putBytes(out, pos, firstName);
+        pos = putBytes(out, pos, patronymic);
+        if (birthDate != null) {
+            pos = putVarLong(out, pos, epochDay);
+        }
+        if (dot != null) {
+            pos = putVarInt(out, pos, zigZag(dot.getX_position()));
+            pos = putVarInt(out, pos, zigZag(dot.getY_position()));
+            if (dot.getType() != null) {
+                out[pos++] = (byte) dot.getType().ordinal();
+            }
+            pos = putVarInt(out, pos, zigZag(dot.getQuality()));
+        }
+        if (template != null) {
+            pos = putTemplate(out, pos, template);
+        }
+        return out;
+    }
+
+    public static PersonData decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    public static PersonData decode(byte[] bytes, int offset, int length) {
+        Reader in = new Reader(bytes, offset, offset + length);
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Неподдерживаемая версия кодека записи: " + version);
+        }
+        int flags = in.readByte() & 0xff;
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new IllegalArgumentException("Некорректные флаги записи: " + flags);
+        }
+
+        String lastName = in.readString();
+        String firstName = in.readString();
+        String patronymic = in.readString();
+        LocalDate birthDate = (flags & HAS_BIRTH_DATE) != 0 ? LocalDate.ofEpochDay(unZigZag(in.readVarLong())) : null;
+
+        FingerprintDot dot = null;
+        if ((flags & HAS_FINGERPRINT) != 0) {
+            int x = unZigZag(in.readVarInt());
+            int y = unZigZag(in.readVarInt());
+            FingerprintType type = null;
+            if ((flags & HAS_FINGERPRINT_TYPE) != 0) {
+                int ordinal = in.readByte() & 0xff;
+                if (ordinal >= TYPES.length) {
+                    throw new IllegalArgumentException("Неизвестный тип точки: " + ordinal);
+                }
+                type = TYPES[ordinal];
+            }
+            int quality = unZigZag(in.readVarInt());
+            dot = new FingerprintDot(x, y, type, quality);
+        }
+        MinutiaeTemplate template = (flags & HAS_TEMPLATE) != 0 ? readTemplate(in) : null;
+        if (in.position != in.limit) {
+            throw new IllegalArgumentException("Лишние байты в записи: " + (in.limit - in.position));
+        }
+        return new PersonData(firstName, lastName, patronymic, birthDate, dot, template);
+    }
+
+    private static int templateSize(MinutiaeTemplate template) {
+        int n = template.size();
+        int size = varIntSize(n) + n * 2;
+        for (int i = 0; i < n; i++) {
+            size += varIntSize(template.x(i)) + varIntSize(template.y(i));
+        }
+        return size;
+    }
+
+    private static int putTemplate(byte[] out, int pos, MinutiaeTemplate template) {
+        int n = template.size();
+        pos = putVarInt(out, pos, n);
+        for (int i = 0; i < n; i++) {
+            pos = putVarInt(out, pos, template.x(i));
+        }
+        for (int i = 0; i < n; i++) {
+            pos = putVarInt(out, pos, template.y(i));
+        }
+        for (int i = 0; i < n; i++) {
+            out[pos++] = (byte) template.typeOrdinal(i);
+        }
+        for (int i = 0; i < n; i++) {
+            out[pos++] = (byte) template.quality(i);
+        }
+        return pos;
+    }
+
+    private static MinutiaeTemplate readTemplate(Reader in) {
+        int n = in.readVarInt();
+        if (n < 0 || n > in.limit - in.position) {
+            throw new IllegalArgumentException("Некорректное число точек шаблона: " + n);
+        }
+        short[] columns = new short[n * 3];
+        for (int i = 0; i < n; i++) {
+            columns[i] = readCoordinate(in);
+        }
+        for (int i = 0; i < n; i++) {
+            columns[n + i] = readCoordinate(in);
+        }
+        int types = in.position;
+        for (int i = 0; i < n; i++) {
+            MinutiaeTemplate.typeOf(in.readByte());
+        }
+        for (int i = 0; i < n; i++) {
+            columns[2 * n + i] = MinutiaeTemplate.packTypeQuality(in.bytes[types + i], in.readByte() & 0xff);
+        }
+        return new MinutiaeTemplate(columns);
+    }
+
+    private static short readCoordinate(Reader in) {
+        int value = in.readVarInt();
+        if (value < 0 || value > MinutiaeTemplate.MAX_COORDINATE) {
+            throw new IllegalArgumentException("Координата точки шаблона вне диапазона: " + value);
+        }
+        return (short) value;
+    }
+
+    private static byte[] utf8(String value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("Поле «" + field + "» не заполнено.");
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int putBytes(byte[] out, int pos, byte[] value) {
+        pos = putVarInt(out, pos, value.length);
+        System.arraycopy(value, 0, out, pos, value.length);
+        return pos + value.length;
+    }
+
+    private static int putVarInt(byte[] out, int pos, int value) {
+        while ((value & ~0x7f) != 0) {
+            out[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int putVarLong(byte[] out, int pos, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int varIntSize(int value) {
+        return value == 0 ? 1 : (38 - Integer.numberOfLeadingZeros(value)) / 7;
+    }
+
+    private static int varLongSize(long value) {
+        return value == 0 ? 1 : (70 - Long.numberOfLeadingZeros(value)) / 7;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Reader {
+        final byte[] bytes;
+        final int limit;
+        int position;
+
+        Reader(byte[] bytes, int position, int limit) {
+            if (position < 0 || limit > bytes.length || position > limit) {
+                throw new IndexOutOfBoundsException("Диапазон " + position + ".." + limit + " вне массива длиной " + bytes.length);
+            }
+            this.bytes = bytes;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        byte readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("Запись обрезана.");
+            }
+            return bytes[position++];
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Некорректное число в записи.");
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Некорректное число в записи.");
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length < 0 || length > limit - position) {
+                throw new IllegalArgumentException("Некорректная длина строки в записи: " + length);
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -8,13 +8,19 @@ public class PersonData {
     private String patronymic;
     private LocalDate birthDate;
     private FingerprintDot fingerprintDot;
+    private MinutiaeTemplate template;
 
     public PersonData(String firstName, String lastName, String patronymic, LocalDate birthDate, FingerprintDot fingerprintDot) {
+        this(firstName, lastName, patronymic, birthDate, fingerprintDot, null);
+    }
+
+    public PersonData(String firstName, String lastName, String patronymic, LocalDate birthDate, FingerprintDot fingerprintDot, MinutiaeTemplate template) {
         this.firstName = firstName;
         this.lastName = lastName;
         this.patronymic = patronymic;
         this.birthDate = birthDate;
         this.fingerprintDot = fingerprintDot;
+        this.template = template;
     }
 
     public String getFirstName() { return firstName; }
@@ -22,12 +28,14 @@ public class PersonData {
     public String getPatronymic() { return patronymic; }
     public LocalDate getBirthDate() { return birthDate; }
     public FingerprintDot getFingerprintDot() { return fingerprintDot; }
+    public MinutiaeTemplate getTemplate() { return template; }
 
     public void setFirstName(String firstName) { this.firstName = firstName; }
     public void setLastName(String lastName) { this.lastName = lastName; }
     public void setPatronymic(String patronymic) { this.patronymic = patronymic; }
     public void setBirthDate(LocalDate birthDate) { this.birthDate = birthDate; }
     public void setFingerprintDot(FingerprintDot fingerprintDot) { this.fingerprintDot = fingerprintDot; }
+    public void setTemplate(MinutiaeTemplate template) { this.template = template; }
 
     @Override
     public String toString() {
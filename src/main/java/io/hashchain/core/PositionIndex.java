@@ -0,0 +1,166 @@
+package io.hashchain.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+class PositionIndex {
+
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] heads = new int[INITIAL_CAPACITY];
+    private int used;
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int size;
+
+    PositionIndex() {
+        Arrays.fill(heads, NONE - 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void append(long key) {
+        ensurePosition();
+        int slot = slotOf(key);
+        if (heads[slot] < NONE) {
+            keys[slot] = key;
+            heads[slot] = NONE;
+            used++;
+        }
+        next[size] = heads[slot];
+        heads[slot] = size;
+        size++;
+        if (used * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    void appendNone() {
+        ensurePosition();
+        next[size++] = NONE;
+    }
+
+    int head(long key) {
+        int head = heads[slotOf(key)];
+        return head < NONE ? NONE : head;
+    }
+
+    int next(int position) {
+        return next[position];
+    }
+
+    boolean contains(long key) {
+        return heads[slotOf(key)] >= NONE;
+    }
+
+    void truncate(int newSize) {
+        if (newSize >= size) {
+            return;
+        }
+        for (int slot = 0; slot < heads.length; slot++) {
+            int head = heads[slot];
+            while (head >= newSize) {
+                head = next[head];
+            }
+            if (heads[slot] >= NONE) {
+                heads[slot] = head;
+            }
+        }
+        size = Math.max(newSize, 0);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(next[i]);
+        }
+        out.writeInt(keys.length);
+        out.writeInt(used);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (heads[slot] >= NONE) {
+                out.writeInt(slot);
+                out.writeLong(keys[slot]);
+                out.writeInt(heads[slot]);
+            }
+        }
+    }
+
+    static PositionIndex read(DataInputStream in) throws IOException {
+        PositionIndex index = new PositionIndex();
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Некорректный размер индекса: " + size);
+        }
+        index.next = new int[Math.max(size, INITIAL_CAPACITY)];
+        for (int i = 0; i < size; i++) {
+            index.next[i] = in.readInt();
+        }
+        index.size = size;
+
+        int capacity = in.readInt();
+        int used = in.readInt();
+        if (Integer.bitCount(capacity) != 1 || used < 0 || used * 2 > capacity) {
+            throw new IOException("Некорректная таблица индекса.");
+        }
+        index.keys = new long[capacity];
+        index.heads = new int[capacity];
+        Arrays.fill(index.heads, NONE - 1);
+        for (int i = 0; i < used; i++) {
+            int slot = in.readInt();
+            long key = in.readLong();
+            int head = in.readInt();
+            if (slot < 0 || slot >= capacity || head < NONE || head >= size) {
+                throw new IOException("Некорректная запись индекса.");
+            }
+            index.keys[slot] = key;
+            index.heads[slot] = head;
+        }
+        index.used = used;
+        return index;
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (heads[slot] >= NONE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void ensurePosition() {
+        if (size == next.length) {
+            next = Arrays.copyOf(next, next.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        keys = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(heads, NONE - 1);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldHeads[slot] >= NONE) {
+                int target = slotOf(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                heads[target] = oldHeads[slot];
+            }
+        }
+    }
+
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
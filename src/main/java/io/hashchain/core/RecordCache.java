@@ -0,0 +1,54 @@
+package io.hashchain.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class RecordCache implements RecordSource {
+
+    static final int PAGE_SIZE = 256;
+    static final int DEFAULT_MAX_PAGES = Integer.getInteger("hashchain.view.cache.pages", 64);
+
+    private final RecordSource source;
+    private final Map<Integer, HashRecord[]> pages;
+
+    RecordCache(RecordSource source, int maxPages) {
+        if (maxPages < 1) {
+            throw new IllegalArgumentException("Размер кеша должен быть положительным: " + maxPages);
+        }
+        this.source = source;
+        this.pages = new LinkedHashMap<>(maxPages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, HashRecord[]> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public synchronized HashRecord get(int index) {
+        if (index < 0 || index >= source.size()) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " вне диапазона 0.." + source.size());
+        }
+        int page = index / PAGE_SIZE;
+        HashRecord[] records = pages.get(page);
+        if (records == null) {
+            int from = page * PAGE_SIZE;
+            records = new HashRecord[Math.min(PAGE_SIZE, source.size() - from)];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = source.get(from + i);
+            }
+            pages.put(page, records);
+        }
+        return records[index % PAGE_SIZE];
+    }
+
+    @Override
+    public byte[] hashAt(int index) {
+        return source.hashAt(index);
+    }
+}
@@ -0,0 +1,183 @@
+package io.hashchain.core;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+class RecordList extends ObservableListBase<HashRecord> implements RecordSource {
+
+    private final ChainCore core;
+    private final Executor executor;
+    private final Object pendingLock = new Object();
+    private ChainCore.View pendingView;
+    private int pendingFrom = Integer.MAX_VALUE;
+    private BitSet pendingRedacted = new BitSet();
+    private ChainCore.View shown;
+
+    // Headless callers never reach this class, so JavaFX is only loaded once a UI asks for the list.
+    static ObservableList<HashRecord> observe(ChainCore core, Executor executor) {
+        return new RecordList(core, executor);
+    }
+
+    private RecordList(ChainCore core, Executor executor) {
+        this.core = core;
+        this.executor = executor == null ? RecordList::runOnFxThread : executor;
+        this.shown = core.view();
+        core.addListener(new ChainCore.Listener() {
+            @Override
+            public void changed(ChainCore.View view, int from) {
+                pending(view, from, null);
+            }
+
+            // A redaction keeps every row in place, so only the redacted rows are reported, each as a set.
+            @Override
+            public void redacted(ChainCore.View view, int from, int[] indexes) {
+                pending(view, Integer.MAX_VALUE, indexes);
+            }
+        });
+    }
+
+    private void pending(ChainCore.View view, int from, int[] redacted) {
+        boolean schedule;
+        synchronized (pendingLock) {
+            schedule = pendingView == null;
+            pendingView = view;
+            pendingFrom = Math.min(pendingFrom, from);
+            if (redacted != null) {
+                for (int index : redacted) {
+                    pendingRedacted.set(index);
+                }
+            }
+        }
+        if (schedule) {
+            executor.execute(this::sync);
+        }
+    }
+
+    void sync() {
+        ChainCore.View next;
+        int from;
+        BitSet redacted;
+        synchronized (pendingLock) {
+            next = pendingView;
+            from = pendingFrom;
+            redacted = pendingRedacted;
+            pendingView = null;
+            pendingFrom = Integer.MAX_VALUE;
+            pendingRedacted = new BitSet();
+        }
+        if (next == null || next == shown) {
+            return;
+        }
+        ChainCore.View previous = shown;
+        int changedFrom = Math.min(from, Math.min(previous.size(), next.size()));
+        shown = next;
+
+        beginChange();
+        // Rows from changedFrom on are removed and added again below, which covers their redactions too.
+        for (int index = redacted.nextSetBit(0); index >= 0 && index < changedFrom; index = redacted.nextSetBit(index + 1)) {
+            nextSet(index, previous.get(index));
+        }
+        if (changedFrom < previous.size()) {
+            nextRemove(changedFrom, new AbstractList<HashRecord>() {
+                @Override
+                public HashRecord get(int index) {
+                    return previous.get(changedFrom + index);
+                }
+
+                @Override
+                public int size() {
+                    return previous.size() - changedFrom;
+                }
+            });
+        }
+        if (changedFrom < next.size()) {
+            nextAdd(changedFrom, next.size());
+        }
+        endChange();
+    }
+
+    @Override
+    public HashRecord get(int index) {
+        return shown.get(index);
+    }
+
+    @Override
+    public byte[] hashAt(int index) {
+        return shown.hashAt(index);
+    }
+
+    @Override
+    public int size() {
+        return shown.size();
+    }
+
+    @Override
+    public boolean add(HashRecord element) {
+        add(size(), element);
+        return true;
+    }
+
+    @Override
+    public void add(int index, HashRecord element) {
+        edit(index, index, List.of(element));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends HashRecord> elements) {
+        edit(size(), size(), new ArrayList<>(elements));
+        return !elements.isEmpty();
+    }
+
+    @Override
+    public HashRecord set(int index, HashRecord element) {
+        HashRecord old = get(index);
+        edit(index, index + 1, List.of(element));
+        return old;
+    }
+
+    @Override
+    public HashRecord remove(int index) {
+        HashRecord old = get(index);
+        edit(index, index + 1, List.of());
+        return old;
+    }
+
+    @Override
+    public void remove(int from, int to) {
+        edit(from, to, List.of());
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends HashRecord> elements) {
+        edit(0, size(), new ArrayList<>(elements));
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        edit(0, size(), List.of());
+    }
+
+    private static void runOnFxThread(Runnable command) {
+        try {
+            Platform.runLater(command);
+        } catch (IllegalStateException e) {
+            command.run();
+        }
+    }
+
+    // Index-based edits address the rows the caller sees, so pending changes are applied first.
+    private void edit(int from, int to, List<HashRecord> inserted) {
+        sync();
+        core.replace(shown, from, to, inserted);
+        sync();
+    }
+}
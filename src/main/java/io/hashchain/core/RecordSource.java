@@ -0,0 +1,10 @@
+package io.hashchain.core;
+
+public interface RecordSource {
+
+    int size();
+
+    HashRecord get(int index);
+
+    byte[] hashAt(int index);
+}
@@ -0,0 +1,265 @@
+package io.hashchain.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SpatialIndex {
+
+    public static final int DEFAULT_CELL_SIZE = 4;
+
+    private static final FingerprintType[] TYPES = FingerprintType.values();
+
+    public static class Hit {
+        public final int recordIndex;
+        public final int x;
+        public final int y;
+        public final FingerprintType type;
+        public final int quality;
+        public final double distance;
+
+        Hit(int recordIndex, int x, int y, FingerprintType type, int quality, double distance) {
+            this.recordIndex = recordIndex;
+            this.x = x;
+            this.y = y;
+            this.type = type;
+            this.quality = quality;
+            this.distance = distance;
+        }
+    }
+
+    private final int cellSize;
+    private final PositionIndex cells = new PositionIndex();
+    private int[] xs = new int[1024];
+    private int[] ys = new int[1024];
+    private byte[] types = new byte[1024];
+    private int[] qualities = new int[1024];
+    private int[] records = new int[1024];
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialIndex(int cellSize) {
+        if (cellSize < 1) {
+            throw new IllegalArgumentException("Размер ячейки должен быть положительным: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    public int size() {
+        return cells.size();
+    }
+
+    public int recordCount() {
+        int size = size();
+        return size == 0 ? 0 : records[size - 1] + 1;
+    }
+
+    public void add(int recordIndex, FingerprintDot dot) {
+        if (dot != null) {
+            add(recordIndex, dot.getX_position(), dot.getY_position(), dot.getType(), dot.getQuality());
+        }
+    }
+
+    public void add(int recordIndex, int x, int y, FingerprintType type, int quality) {
+        int point = size();
+        if (point > 0 && recordIndex < records[point - 1]) {
+            throw new IllegalArgumentException("Точки должны добавляться в порядке записей.");
+        }
+        if (point == xs.length) {
+            int capacity = point * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            types = Arrays.copyOf(types, capacity);
+            qualities = Arrays.copyOf(qualities, capacity);
+            records = Arrays.copyOf(records, capacity);
+        }
+        xs[point] = x;
+        ys[point] = y;
+        types[point] = type == null ? -1 : (byte) type.ordinal();
+        qualities[point] = quality;
+        records[point] = recordIndex;
+
+        int cellX = cellOf(x);
+        int cellY = cellOf(y);
+        minCellX = Math.min(minCellX, cellX);
+        maxCellX = Math.max(maxCellX, cellX);
+        minCellY = Math.min(minCellY, cellY);
+        maxCellY = Math.max(maxCellY, cellY);
+        cells.append(cellKey(cellX, cellY));
+    }
+
+    public void truncateRecords(int recordCount) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (records[mid] < recordCount) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        cells.truncate(low);
+    }
+
+    public List<Hit> nearest(int x, int y, int k, FingerprintType type, int minQuality) {
+        if (k < 1 || size() == 0) {
+            return List.of();
+        }
+        int typeFilter = type == null ? -1 : type.ordinal();
+        int[] heap = new int[k];
+        long[] heapDistances = new long[k];
+        int found = 0;
+
+        int centerX = cellOf(x);
+        int centerY = cellOf(y);
+        long maxRing = Math.max(
+                Math.max((long) centerX - minCellX, (long) maxCellX - centerX),
+                Math.max((long) centerY - minCellY, (long) maxCellY - centerY));
+
+        for (long ring = 0; ring <= maxRing; ring++) {
+            if (found == k && ring > 1) {
+                long reach = (ring - 1) * cellSize;
+                if (reach * reach > heapDistances[0]) {
+                    break;
+                }
+            }
+            long fromX = Math.max(centerX - ring, minCellX);
+            long toX = Math.min(centerX + ring, maxCellX);
+            for (long cx = fromX; cx <= toX; cx++) {
+                boolean edgeColumn = cx == centerX - ring || cx == centerX + ring;
+                long fromY = edgeColumn ? Math.max(centerY - ring, minCellY) : centerY - ring;
+                long toY = edgeColumn ? Math.min(centerY + ring, maxCellY) : centerY + ring;
+                long step = edgeColumn || ring == 0 ? 1 : 2 * ring;
+                for (long cy = fromY; cy <= toY; cy += step) {
+                    if (cy < minCellY || cy > maxCellY) {
+                        continue;
+                    }
+                    for (int p = cells.head(cellKey((int) cx, (int) cy)); p != PositionIndex.NONE; p = cells.next(p)) {
+                        if (!matches(p, typeFilter, minQuality)) {
+                            continue;
+                        }
+                        long distance = distanceSquared(p, x, y);
+                        if (found < k) {
+                            heap[found] = p;
+                            heapDistances[found] = distance;
+                            siftUp(heap, heapDistances, found++);
+                        } else if (distance < heapDistances[0]) {
+                            heap[0] = p;
+                            heapDistances[0] = distance;
+                            siftDown(heap, heapDistances, found);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(found);
+        for (int i = found - 1; i >= 0; i--) {
+            int p = heap[0];
+            long distance = heapDistances[0];
+            heap[0] = heap[i];
+            heapDistances[0] = heapDistances[i];
+            siftDown(heap, heapDistances, i);
+            hits.add(hit(p, distance));
+        }
+        return hits.reversed();
+    }
+
+    public List<Hit> withinRadius(int x, int y, int radius, FingerprintType type, int minQuality) {
+        if (radius < 0 || size() == 0) {
+            return List.of();
+        }
+        int typeFilter = type == null ? -1 : type.ordinal();
+        long radiusSquared = (long) radius * radius;
+        long fromX = Math.max(minCellX, cellOf((long) x - radius));
+        long toX = Math.min(maxCellX, cellOf((long) x + radius));
+        long fromY = Math.max(minCellY, cellOf((long) y - radius));
+        long toY = Math.min(maxCellY, cellOf((long) y + radius));
+
+        List<Hit> hits = new ArrayList<>();
+        for (long cx = fromX; cx <= toX; cx++) {
+            for (long cy = fromY; cy <= toY; cy++) {
+                for (int p = cells.head(cellKey((int) cx, (int) cy)); p != PositionIndex.NONE; p = cells.next(p)) {
+                    if (matches(p, typeFilter, minQuality)) {
+                        long distance = distanceSquared(p, x, y);
+                        if (distance <= radiusSquared) {
+                            hits.add(hit(p, distance));
+                        }
+                    }
+                }
+            }
+        }
+        hits.sort((a, b) -> Double.compare(a.distance, b.distance));
+        return hits;
+    }
+
+    private boolean matches(int p, int typeFilter, int minQuality) {
+        return qualities[p] >= minQuality && (typeFilter < 0 || types[p] == typeFilter);
+    }
+
+    private long distanceSquared(int p, int x, int y) {
+        long dx = (long) xs[p] - x;
+        long dy = (long) ys[p] - y;
+        return dx * dx + dy * dy;
+    }
+
+    private Hit hit(int p, long distanceSquared) {
+        FingerprintType type = types[p] < 0 ? null : TYPES[types[p]];
+        return new Hit(records[p], xs[p], ys[p], type, qualities[p], Math.sqrt((double) distanceSquared));
+    }
+
+    private int cellOf(long coordinate) {
+        return (int) Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private static void siftUp(int[] heap, long[] distances, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (distances[parent] >= distances[i]) {
+                return;
+            }
+            swap(heap, distances, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, long[] distances, int size) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && distances[left] > distances[largest]) {
+                largest = left;
+            }
+            if (right < size && distances[right] > distances[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(heap, distances, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swap(int[] heap, long[] distances, int i, int j) {
+        int point = heap[i];
+        heap[i] = heap[j];
+        heap[j] = point;
+        long distance = distances[i];
+        distances[i] = distances[j];
+        distances[j] = distance;
+    }
+}
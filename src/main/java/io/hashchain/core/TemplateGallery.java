@@ -0,0 +1,107 @@
+package io.hashchain.core;
+
+import java.util.Arrays;
+
+public class TemplateGallery {
+
+    public static class Snapshot {
+        final int[] records;
+        final int[] offsets;
+        final short[] columns;
+        final int size;
+
+        Snapshot(int[] records, int[] offsets, short[] columns, int size) {
+            this.records = records;
+            this.offsets = offsets;
+            this.columns = columns;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int recordIndex(int template) {
+            return records[template];
+        }
+
+        public int minutiaeCount(int template) {
+            return (offsets[template + 1] - offsets[template]) / 3;
+        }
+    }
+
+    private int[] records = new int[1024];
+    private int[] offsets = new int[1025];
+    private short[] columns = new short[1 << 16];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public int recordCount() {
+        return size == 0 ? 0 : records[size - 1] + 1;
+    }
+
+    public void add(int recordIndex, MinutiaeTemplate template) {
+        if (size > 0 && recordIndex <= records[size - 1]) {
+            throw new IllegalArgumentException("Шаблоны должны добавляться в порядке записей.");
+        }
+        short[] source = template.columns();
+        int from = offsets[size];
+        if (size + 1 == records.length) {
+            records = Arrays.copyOf(records, records.length * 2);
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        if (from + source.length > columns.length) {
+            columns = Arrays.copyOf(columns, Math.max(columns.length * 2, from + source.length));
+        }
+        copySortedByX(source, columns, from);
+        records[size] = recordIndex;
+        offsets[size + 1] = from + source.length;
+        size++;
+    }
+
+    public void truncateRecords(int recordCount) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (records[mid] < recordCount) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == size) {
+            return;
+        }
+        records = records.clone();
+        offsets = offsets.clone();
+        columns = columns.clone();
+        size = low;
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(records, offsets, columns, size);
+    }
+
+    // Minutiae order carries no meaning for matching; x-sorted columns let the matcher binary search its window.
+    private static void copySortedByX(short[] source, short[] target, int from) {
+        int n = source.length / 3;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            int j = i;
+            while (j > 0 && source[order[j - 1]] > source[i]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            target[from + i] = source[order[i]];
+            target[from + n + i] = source[n + order[i]];
+            target[from + 2 * n + i] = source[2 * n + order[i]];
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package io.hashchain.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JFR events, one type per operation, so recordings can be filtered and thresholded separately.
+final class ChainEvents {
+
+    private ChainEvents() {
+    }
+
+    static ChainEvent create(Operation operation) {
+        return switch (operation) {
+            case APPEND -> new AppendEvent();
+            case COMMIT -> new CommitEvent();
+            case CHAIN_HASH -> new ChainHashEvent();
+            case SAVE -> new SaveEvent();
+            case LOAD -> new LoadEvent();
+            case VERIFY -> new VerifyEvent();
+            case EXPORT -> new ExportEvent();
+            case IMPORT -> new ImportEvent();
+            case REPLICATE -> new ReplicateEvent();
+            case COMPACT -> new CompactEvent();
+            case DURABLE -> null;
+        };
+    }
+
+    @Category("Hashchain")
+    @StackTrace(false)
+    abstract static class ChainEvent extends Event {
+        @Label("Записей")
+        long records;
+
+        @Label("Объём")
+        @DataAmount
+        long bytes;
+
+        @Label("Ошибка")
+        boolean failed;
+    }
+
+    @Name("io.hashchain.Append")
+    @Label("Добавление записей")
+    static final class AppendEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Commit")
+    @Label("Групповая фиксация журнала")
+    @Description("Запись группы в сегмент, кадр фиксации и fsync.")
+    static final class CommitEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.ChainHash")
+    @Label("Вычисление хеша цепочки")
+    static final class ChainHashEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Save")
+    @Label("Сохранение цепочки")
+    static final class SaveEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Load")
+    @Label("Загрузка цепочки")
+    static final class LoadEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Verify")
+    @Label("Проверка цепочки")
+    static final class VerifyEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Export")
+    @Label("Экспорт в JSON")
+    static final class ExportEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Import")
+    @Label("Импорт из JSON")
+    static final class ImportEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Replicate")
+    @Label("Синхронизация реплики")
+    static final class ReplicateEvent extends ChainEvent {
+    }
+
+    @Name("io.hashchain.Compact")
+    @Label("Сжатие сегментов журнала")
+    static final class CompactEvent extends ChainEvent {
+    }
+}
@@ -0,0 +1,133 @@
+package io.hashchain.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear histogram of nanosecond latencies in the spirit of HdrHistogram: every power of two is split
+// into 32 buckets, so any reported value is within about 3% of the recorded one. Recording is lock-free.
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos, long itemCount, long byteCount, boolean failed) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        totalNanos.add(value);
+        items.add(itemCount);
+        bytes.add(byteCount);
+        if (failed) {
+            failures.increment();
+        }
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    Snapshot snapshot() {
+        return snapshot(System.nanoTime());
+    }
+
+    Snapshot snapshot(long takenAt) {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalNanos.sum(), items.sum(), bytes.sum(), failures.sum(), max.get(), takenAt, 0);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + mantissa;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long lowest = (long) (SUB_BUCKETS + (index - SUB_BUCKETS) % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    static final class Snapshot {
+        private final long[] counts;
+        final long count;
+        final long totalNanos;
+        final long items;
+        final long bytes;
+        final long failures;
+        final long maxNanos;
+        final long takenAt;
+        final long durationNanos;
+
+        private Snapshot(long[] counts, long count, long totalNanos, long items, long bytes, long failures, long maxNanos,
+                         long takenAt, long durationNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.items = items;
+            this.bytes = bytes;
+            this.failures = failures;
+            this.maxNanos = maxNanos;
+            this.takenAt = takenAt;
+            this.durationNanos = durationNanos;
+        }
+
+        static Snapshot empty(long takenAt) {
+            return new Snapshot(new long[BUCKETS], 0, 0, 0, 0, 0, 0, takenAt, 0);
+        }
+
+        // What was recorded between `earlier` and this snapshot; the maximum is taken from the buckets.
+        Snapshot since(Snapshot earlier) {
+            long[] delta = new long[BUCKETS];
+            long highest = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                delta[i] = counts[i] - earlier.counts[i];
+                if (delta[i] > 0) {
+                    highest = Math.min(highestValueOf(i), maxNanos);
+                }
+            }
+            return new Snapshot(delta, count - earlier.count, totalNanos - earlier.totalNanos, items - earlier.items,
+                    bytes - earlier.bytes, failures - earlier.failures, highest, takenAt, takenAt - earlier.takenAt);
+        }
+
+        long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        double perSecond(long amount) {
+            return durationNanos <= 0 ? 0 : amount * 1e9 / durationNanos;
+        }
+
+        double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+    }
+}
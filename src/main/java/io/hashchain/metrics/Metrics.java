@@ -0,0 +1,64 @@
+package io.hashchain.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Entry point for instrumentation. -Dhashchain.metrics.disabled=true turns every span into a constant
+// no-op that the JIT folds away, so call sites can stay in hot paths.
+public final class Metrics {
+
+    public static final boolean ENABLED = !Boolean.getBoolean("hashchain.metrics.disabled");
+
+    private static final long WINDOW_SECONDS = Math.max(1, Long.getLong("hashchain.metrics.window.seconds", 60));
+    private static final String DOMAIN = "io.hashchain";
+
+    private static final Map<Operation, OperationMetrics> OPERATIONS = new EnumMap<>(Operation.class);
+
+    static {
+        if (ENABLED) {
+            for (Operation operation : Operation.values()) {
+                OPERATIONS.put(operation, new OperationMetrics(WINDOW_SECONDS));
+            }
+            register();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static Span begin(Operation operation) {
+        if (!ENABLED) {
+            return Span.NOOP;
+        }
+        return new Span(operation, ChainEvents.create(operation));
+    }
+
+    // For latencies measured elsewhere, e.g. from submission to durability across threads.
+    public static void record(Operation operation, long nanos, long records, long bytes, boolean failed) {
+        if (ENABLED) {
+            OPERATIONS.get(operation).record(nanos, records, bytes, failed);
+        }
+    }
+
+    public static OperationMetricsMBean of(Operation operation) {
+        return OPERATIONS.get(operation);
+    }
+
+    private static void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Map.Entry<Operation, OperationMetrics> entry : OPERATIONS.entrySet()) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":type=Metrics,operation=" + entry.getKey().key);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(entry.getValue(), name);
+                }
+            } catch (JMException e) {
+                // Metrics still reach JFR and of(); only the JMX view is missing.
+            }
+        }
+    }
+}
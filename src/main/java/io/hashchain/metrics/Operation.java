@@ -0,0 +1,22 @@
+package io.hashchain.metrics;
+
+public enum Operation {
+    APPEND("append"),
+    COMMIT("commit"),
+    // Submission to durability of an appended batch, as seen by its caller; histogram only.
+    DURABLE("durable"),
+    CHAIN_HASH("chainHash"),
+    SAVE("save"),
+    LOAD("load"),
+    VERIFY("verify"),
+    EXPORT("export"),
+    IMPORT("import"),
+    REPLICATE("replicate"),
+    COMPACT("compact");
+
+    final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+}
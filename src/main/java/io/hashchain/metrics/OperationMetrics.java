@@ -0,0 +1,137 @@
+package io.hashchain.metrics;
+
+import java.util.function.LongSupplier;
+
+public final class OperationMetrics implements OperationMetricsMBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final long windowNanos;
+    private final LongSupplier clock;
+    private volatile long windowEnd;
+    private LatencyHistogram.Snapshot windowStart;
+    private LatencyHistogram.Snapshot lastWindow;
+
+    OperationMetrics(long windowSeconds) {
+        this(windowSeconds * 1_000_000_000L, System::nanoTime);
+    }
+
+    OperationMetrics(long windowNanos, LongSupplier clock) {
+        this.windowNanos = windowNanos;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        this.windowStart = LatencyHistogram.Snapshot.empty(now);
+        this.windowEnd = now + windowNanos;
+    }
+
+    void record(long nanos, long records, long bytes, boolean failed) {
+        if (clock.getAsLong() - windowEnd >= 0) {
+            roll();
+        }
+        histogram.record(nanos, records, bytes, failed);
+    }
+
+    // Windows are fixed intervals with no timer behind them: the first record or read past a window's end
+    // closes it. Nothing is recorded past the end before that, so the counts taken then are the counts at
+    // the end. If whole windows passed without either, the last complete one was empty.
+    private synchronized void roll() {
+        long now = clock.getAsLong();
+        if (now - windowEnd < 0) {
+            return;
+        }
+        long closed = windowEnd + (now - windowEnd) / windowNanos * windowNanos;
+        LatencyHistogram.Snapshot counts = histogram.snapshot(closed);
+        lastWindow = closed == windowEnd ? counts.since(windowStart)
+                : LatencyHistogram.Snapshot.empty(closed).since(LatencyHistogram.Snapshot.empty(closed - windowNanos));
+        windowStart = counts;
+        windowEnd = closed + windowNanos;
+    }
+
+    private synchronized LatencyHistogram.Snapshot window() {
+        roll();
+        return lastWindow != null ? lastWindow : histogram.snapshot(clock.getAsLong()).since(windowStart);
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.snapshot().count;
+    }
+
+    @Override
+    public long getRecordCount() {
+        return histogram.snapshot().items;
+    }
+
+    @Override
+    public long getByteCount() {
+        return histogram.snapshot().bytes;
+    }
+
+    @Override
+    public long getFailureCount() {
+        return histogram.snapshot().failures;
+    }
+
+    @Override
+    public double getTotalMeanMillis() {
+        return histogram.snapshot().meanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getTotalMaxMillis() {
+        return histogram.snapshot().maxNanos / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getWindowSeconds() {
+        return windowNanos / 1_000_000_000L;
+    }
+
+    @Override
+    public long getWindowCount() {
+        return window().count;
+    }
+
+    @Override
+    public double getWindowRecordsPerSecond() {
+        LatencyHistogram.Snapshot window = window();
+        return window.perSecond(window.items);
+    }
+
+    @Override
+    public double getWindowBytesPerSecond() {
+        LatencyHistogram.Snapshot window = window();
+        return window.perSecond(window.bytes);
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return window().meanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return window().percentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return window().percentile(90) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return window().percentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return window().percentile(99.9) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return window().maxNanos / NANOS_PER_MILLI;
+    }
+}
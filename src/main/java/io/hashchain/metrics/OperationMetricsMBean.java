@@ -0,0 +1,38 @@
+package io.hashchain.metrics;
+
+// Counters are totals since start; latencies and rates cover the last complete window, a fixed interval of
+// hashchain.metrics.window.seconds, or the current one until the first window closes.
+public interface OperationMetricsMBean {
+
+    long getCount();
+
+    long getRecordCount();
+
+    long getByteCount();
+
+    long getFailureCount();
+
+    double getTotalMeanMillis();
+
+    double getTotalMaxMillis();
+
+    long getWindowSeconds();
+
+    long getWindowCount();
+
+    double getWindowRecordsPerSecond();
+
+    double getWindowBytesPerSecond();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+}
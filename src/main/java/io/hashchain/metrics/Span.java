@@ -0,0 +1,69 @@
+package io.hashchain.metrics;
+
+// One timed operation: feeds the operation's histogram and, while a JFR recording has the event
+// enabled, commits a JFR event. With metrics disabled every span is the shared no-op instance, which
+// is shared across threads and so never changes.
+public final class Span implements AutoCloseable {
+
+    static final Span NOOP = new Span(null);
+
+    private final Operation operation;
+    private final ChainEvents.ChainEvent event;
+    private final long start;
+    private long records;
+    private long bytes;
+    private boolean failed;
+
+    private Span(Operation operation) {
+        this.operation = operation;
+        this.event = null;
+        this.start = 0;
+    }
+
+    Span(Operation operation, ChainEvents.ChainEvent event) {
+        this.operation = operation;
+        this.event = event;
+        if (event != null) {
+            event.begin();
+        }
+        this.start = System.nanoTime();
+    }
+
+    public Span records(long count) {
+        if (operation != null) {
+            records += count;
+        }
+        return this;
+    }
+
+    public Span bytes(long count) {
+        if (operation != null) {
+            bytes += count;
+        }
+        return this;
+    }
+
+    public Span failed() {
+        if (operation != null) {
+            failed = true;
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (operation == null) {
+            return;
+        }
+        Metrics.record(operation, System.nanoTime() - start, records, bytes, failed);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.records = records;
+                event.bytes = bytes;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+}
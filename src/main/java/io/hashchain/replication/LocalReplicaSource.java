@@ -0,0 +1,54 @@
+package io.hashchain.replication;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.RecordSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocalReplicaSource implements ReplicaSource {
+
+    private final HashChain hashChain;
+
+    public LocalReplicaSource(HashChain hashChain) {
+        this.hashChain = hashChain;
+    }
+
+    @Override
+    public MerkleTree.SignedRoot head() {
+        return hashChain.signedRoot();
+    }
+
+    @Override
+    public List<byte[]> prefixRoots(int[] sizes) throws IOException {
+        if (sizes.length > MAX_PROBES) {
+            throw new IOException("Слишком много размеров в одном запросе: " + sizes.length);
+        }
+        List<byte[]> roots = new ArrayList<>(sizes.length);
+        try {
+            for (int size : sizes) {
+                roots.add(hashChain.merkleRootAt(size));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return roots;
+    }
+
+    @Override
+    public List<HashRecord> records(int from, int count) throws IOException {
+        RecordSource view = hashChain.snapshot();
+        if (from < 0 || from > view.size() || count < 0) {
+            throw new IOException("Диапазон записей вне цепочки: " + from + "+" + count);
+        }
+        int to = from + Math.min(Math.min(count, MAX_PAGE), view.size() - from);
+        List<HashRecord> records = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            records.add(view.get(i));
+        }
+        return records;
+    }
+}
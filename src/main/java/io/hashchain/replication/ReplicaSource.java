@@ -0,0 +1,27 @@
+package io.hashchain.replication;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// The side of a replica pair that holds the records; every call is one round trip.
+public interface ReplicaSource extends Closeable {
+
+    int MAX_PROBES = 64;
+    int MAX_PAGE = 4096;
+
+    MerkleTree.SignedRoot head() throws IOException;
+
+    // Merkle roots of the source's prefixes of the given sizes, each no larger than the head.
+    List<byte[]> prefixRoots(int[] sizes) throws IOException;
+
+    // Up to `count` records starting at `from`; fewer only at the end of the chain.
+    List<HashRecord> records(int from, int count) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
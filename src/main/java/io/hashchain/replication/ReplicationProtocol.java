@@ -0,0 +1,102 @@
+package io.hashchain.replication;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.PersonCodec;
+import io.hashchain.utils.HashUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary request/response framing shared by the socket server and client.
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x48435250;
+    static final int VERSION = 2;
+
+    static final byte HEAD = 1;
+    static final byte PREFIX_ROOTS = 2;
+    static final byte RECORDS = 3;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    static final int MAX_RECORD_SIZE = 1 << 24;
+
+    static final int RECORD_HAS_PREVIOUS = 1;
+    static final int RECORD_REDACTED = 2;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeHead(DataOutputStream out, MerkleTree.SignedRoot head) throws IOException {
+        out.writeLong(head.treeSize);
+        out.write(head.root);
+        out.write(head.signature);
+    }
+
+    static MerkleTree.SignedRoot readHead(DataInputStream in) throws IOException {
+        long treeSize = in.readLong();
+        return new MerkleTree.SignedRoot(treeSize, readHash(in), readHash(in));
+    }
+
+    static void writeRecords(DataOutputStream out, List<HashRecord> records) throws IOException {
+        out.writeInt(records.size());
+        for (HashRecord record : records) {
+            byte[] previous = record.getPreviousHashBytes();
+            out.writeByte((previous != null ? RECORD_HAS_PREVIOUS : 0) | (record.isRedacted() ? RECORD_REDACTED : 0));
+            if (previous != null) {
+                out.write(previous);
+            }
+            out.write(record.getHashBytes());
+            if (record.isRedacted()) {
+                out.write(record.getRedactionSeal());
+                continue;
+            }
+            byte[] data = PersonCodec.encode(record.getData());
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    static List<HashRecord> readRecords(DataInputStream in, int limit) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > limit) {
+            throw new IOException("Некорректное число записей в ответе: " + count);
+        }
+        List<HashRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int flags = in.readUnsignedByte();
+            if ((flags & ~(RECORD_HAS_PREVIOUS | RECORD_REDACTED)) != 0) {
+                throw new IOException("Неизвестные флаги записи: " + flags);
+            }
+            byte[] previous = (flags & RECORD_HAS_PREVIOUS) != 0 ? readHash(in) : null;
+            byte[] hash = readHash(in);
+            if ((flags & RECORD_REDACTED) != 0) {
+                records.add(HashRecord.tombstone(previous, hash, readHash(in)));
+                continue;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > MAX_RECORD_SIZE) {
+                throw new IOException("Некорректная длина записи: " + length);
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            try {
+                records.add(new HashRecord(PersonCodec.decode(data), previous, hash));
+            } catch (RuntimeException e) {
+                throw new IOException("Не удалось разобрать запись: " + e.getMessage(), e);
+            }
+        }
+        return records;
+    }
+
+    static byte[] readHash(DataInputStream in) throws IOException {
+        byte[] hash = new byte[HashUtils.HASH_SIZE];
+        in.readFully(hash);
+        return hash;
+    }
+}
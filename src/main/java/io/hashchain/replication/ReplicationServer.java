@@ -0,0 +1,134 @@
+package io.hashchain.replication;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Serves a chain to SocketReplicaSource clients; one virtual thread per connection.
+public class ReplicationServer implements Closeable {
+
+    private final LocalReplicaSource source;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    public ReplicationServer(HashChain hashChain, InetSocketAddress address) throws IOException {
+        this.source = new LocalReplicaSource(hashChain);
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address);
+    }
+
+    public void start() {
+        Thread acceptor = new Thread(this::accept, "hashchain-replication");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        executor.close();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Ошибка сервера репликации: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != ReplicationProtocol.MAGIC || in.readInt() != ReplicationProtocol.VERSION) {
+                return;
+            }
+            while (true) {
+                byte request = in.readByte();
+                try {
+                    respond(request, in, out);
+                } catch (ProtocolException e) {
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    out.writeByte(ReplicationProtocol.ERROR);
+                    out.writeUTF(String.valueOf(e.getMessage()));
+                }
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // The replica disconnected.
+        } catch (IOException e) {
+            System.err.println("Ошибка соединения репликации: " + e.getMessage());
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void respond(byte request, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (request) {
+            case ReplicationProtocol.HEAD -> {
+                out.writeByte(ReplicationProtocol.OK);
+                ReplicationProtocol.writeHead(out, source.head());
+            }
+            case ReplicationProtocol.PREFIX_ROOTS -> {
+                int count = in.readInt();
+                if (count < 0 || count > ReplicaSource.MAX_PROBES) {
+                    throw new ProtocolException("Некорректное число размеров: " + count);
+                }
+                int[] sizes = new int[count];
+                for (int i = 0; i < count; i++) {
+                    sizes[i] = in.readInt();
+                }
+                List<byte[]> roots = source.prefixRoots(sizes);
+                out.writeByte(ReplicationProtocol.OK);
+                out.writeInt(roots.size());
+                for (byte[] root : roots) {
+                    out.write(root);
+                }
+            }
+            case ReplicationProtocol.RECORDS -> {
+                int from = in.readInt();
+                int count = in.readInt();
+                List<HashRecord> records = source.records(from, count);
+                out.writeByte(ReplicationProtocol.OK);
+                ReplicationProtocol.writeRecords(out, records);
+            }
+            default -> throw new ProtocolException("Неизвестный запрос репликации: " + request);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.hashchain.replication;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.metrics.Metrics;
+import io.hashchain.metrics.Operation;
+import io.hashchain.metrics.Span;
+import io.hashchain.utils.ChainStorage;
+import io.hashchain.utils.SegmentLog;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Brings a replica up to date with a source. Prefix roots locate the longest common prefix in
+// O(log n) round trips, then only the records past it are fetched, so the cost follows the delta.
+// The replica must not be appended to by anyone else while it is being synced.
+public final class Replicator {
+
+    // Sizes probed per round trip; each round narrows the search interval (probes + 1)-fold.
+    public static final int PROBES = Math.clamp(Integer.getInteger("hashchain.replication.probes", 15), 1, ReplicaSource.MAX_PROBES);
+
+    // Applies fetched records to the replica; STORAGE also writes them to the journal. A truncate returns the
+    // size kept, which is below the one asked for when the journal has no commit at that size.
+    public interface Sink {
+        CompletableFuture<Void> append(HashChain replica, List<HashRecord> records) throws IOException;
+
+        int truncate(HashChain replica, int size) throws IOException;
+    }
+
+    public static final Sink MEMORY = new Sink() {
+        @Override
+        public CompletableFuture<Void> append(HashChain replica, List<HashRecord> records) {
+            replica.appendPrepared(records);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public int truncate(HashChain replica, int size) {
+            replica.truncate(size);
+            return replica.size();
+        }
+    };
+
+    public static final Sink STORAGE = new Sink() {
+        @Override
+        public CompletableFuture<Void> append(HashChain replica, List<HashRecord> records) throws IOException {
+            return ChainStorage.appendPreparedAsync(replica, records);
+        }
+
+        @Override
+        public int truncate(HashChain replica, int size) throws IOException {
+            return ChainStorage.truncate(replica, size);
+        }
+    };
+
+    public static class Result {
+        public final int commonPrefix;
+        // First index where the replica disagrees with the source, or -1 if it is a prefix of it.
+        public final int divergedAt;
+        public final boolean rewound;
+        public final int fetched;
+        public final int roundTrips;
+        public final int size;
+
+        private Result(int commonPrefix, int divergedAt, boolean rewound, int fetched, int roundTrips, int size) {
+            this.commonPrefix = commonPrefix;
+            this.divergedAt = divergedAt;
+            this.rewound = rewound;
+            this.fetched = fetched;
+            this.roundTrips = roundTrips;
+            this.size = size;
+        }
+
+        public boolean isDiverged() {
+            return divergedAt >= 0;
+        }
+
+        // A diverged replica that was not allowed to rewind is left as it was.
+        public boolean isSynced() {
+            return !isDiverged() || rewound;
+        }
+    }
+
+    private Replicator() {
+    }
+
+    public static Result sync(HashChain replica, ReplicaSource source) throws IOException {
+        return sync(replica, source, MEMORY, false);
+    }
+
+    public static Result sync(HashChain replica, ReplicaSource source, Sink sink, boolean rewindOnDivergence) throws IOException {
+        try (Span span = Metrics.begin(Operation.REPLICATE)) {
+            Result result = new Session(replica, source, sink).run(rewindOnDivergence);
+            span.records(result.fetched);
+            return result;
+        }
+    }
+
+    private static final class Session {
+        final HashChain replica;
+        final ReplicaSource source;
+        final Sink sink;
+        int roundTrips;
+        // The journal write of the last page sent to the sink; a truncate must not run while it is in flight.
+        CompletableFuture<Void> durable = CompletableFuture.completedFuture(null);
+
+        Session(HashChain replica, ReplicaSource source, Sink sink) {
+            this.replica = replica;
+            this.source = source;
+            this.sink = sink;
+        }
+
+        Result run(boolean rewindOnDivergence) throws IOException {
+            MerkleTree.SignedRoot head = source.head();
+            roundTrips++;
+            if (!head.isSignatureValid() || head.treeSize < 0 || head.treeSize > Integer.MAX_VALUE) {
+                throw new SegmentLog.IntegrityException("Подпись корня источника репликации недействительна.");
+            }
+            int target = (int) head.treeSize;
+            int local = replica.size();
+
+            int common = local == target && Arrays.equals(replica.computeMerkleRoot(), head.root)
+                    ? local : commonPrefix(Math.min(local, target));
+            int divergedAt = common < local ? common : -1;
+            int from = common;
+            if (divergedAt >= 0) {
+                if (!rewindOnDivergence) {
+                    return new Result(common, divergedAt, false, 0, roundTrips, local);
+                }
+                from = sink.truncate(replica, common);
+            }
+
+            int fetched;
+            try {
+                fetched = fetch(from, target);
+                if (replica.size() != target || !Arrays.equals(replica.computeMerkleRoot(), head.root)) {
+                    throw new SegmentLog.IntegrityException("Записи источника не соответствуют его подписанному корню.");
+                }
+            } catch (IOException | RuntimeException e) {
+                durable.exceptionally(ignored -> null).join();
+                sink.truncate(replica, common);
+                throw e;
+            }
+            return new Result(common, divergedAt, divergedAt >= 0, fetched, roundTrips, target);
+        }
+
+        // Largest prefix size whose roots agree: equality is monotone in the size, so a (PROBES + 1)-ary
+        // search between a known-equal and a known-different size converges in log_(PROBES+1)(n) rounds.
+        int commonPrefix(int limit) throws IOException {
+            if (limit == 0 || matches(new int[]{limit})[0]) {
+                return limit;
+            }
+            int equal = 0;
+            int different = limit;
+            while (different - equal > 1) {
+                int gap = different - equal;
+                int probes = Math.min(PROBES, gap - 1);
+                int[] sizes = new int[probes];
+                for (int i = 0; i < probes; i++) {
+                    sizes[i] = equal + (int) ((long) gap * (i + 1) / (probes + 1));
+                }
+                boolean[] matches = matches(sizes);
+                int lower = equal;
+                for (int i = 0; i < probes; i++) {
+                    if (matches[i]) {
+                        lower = sizes[i];
+                    } else {
+                        different = sizes[i];
+                        break;
+                    }
+                }
+                equal = lower;
+            }
+            return equal;
+        }
+
+        boolean[] matches(int[] sizes) throws IOException {
+            List<byte[]> roots = source.prefixRoots(sizes);
+            roundTrips++;
+            if (roots.size() != sizes.length) {
+                throw new IOException("Источник вернул " + roots.size() + " корней вместо " + sizes.length);
+            }
+            boolean[] matches = new boolean[sizes.length];
+            for (int i = 0; i < sizes.length; i++) {
+                matches[i] = Arrays.equals(replica.merkleRootAt(sizes[i]), roots.get(i));
+            }
+            return matches;
+        }
+
+        int fetch(int from, int target) throws IOException {
+            byte[] previous = from == 0 ? null : replica.lastHash();
+            int position = from;
+            while (position < target) {
+                List<HashRecord> page = source.records(position, Math.min(ReplicaSource.MAX_PAGE, target - position));
+                roundTrips++;
+                if (page.isEmpty()) {
+                    throw new IOException("Источник не вернул записи начиная с " + position + " из " + target);
+                }
+                for (HashRecord record : page) {
+                    if (!Arrays.equals(record.getPreviousHashBytes(), previous) || !(record.isRedacted()
+                            ? record.isRedactionValid()
+                            : Arrays.equals(HashRecord.computeHash(record.getData(), previous), record.getHashBytes()))) {
+                        throw new SegmentLog.IntegrityException("Запись #" + (position + 1) + " от источника нарушает целостность цепочки.");
+                    }
+                    previous = record.getHashBytes();
+                    position++;
+                }
+                durable = sink.append(replica, page);
+            }
+            try {
+                durable.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause().getMessage(), e.getCause());
+            }
+            return position - from;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.hashchain.replication;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+// Client for ReplicationServer; requests on one connection are serialized.
+public class SocketReplicaSource implements ReplicaSource {
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = Integer.getInteger("hashchain.replication.timeout.ms", 30000);
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    public SocketReplicaSource(InetSocketAddress address) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(ReplicationProtocol.MAGIC);
+            out.writeInt(ReplicationProtocol.VERSION);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized MerkleTree.SignedRoot head() throws IOException {
+        out.writeByte(ReplicationProtocol.HEAD);
+        awaitResponse();
+        return ReplicationProtocol.readHead(in);
+    }
+
+    @Override
+    public synchronized List<byte[]> prefixRoots(int[] sizes) throws IOException {
+        if (sizes.length > MAX_PROBES) {
+            throw new IOException("Слишком много размеров в одном запросе: " + sizes.length);
+        }
+        out.writeByte(ReplicationProtocol.PREFIX_ROOTS);
+        out.writeInt(sizes.length);
+        for (int size : sizes) {
+            out.writeInt(size);
+        }
+        awaitResponse();
+        int count = in.readInt();
+        if (count != sizes.length) {
+            throw new IOException("Источник вернул " + count + " корней вместо " + sizes.length);
+        }
+        List<byte[]> roots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            roots.add(ReplicationProtocol.readHash(in));
+        }
+        return roots;
+    }
+
+    @Override
+    public synchronized List<HashRecord> records(int from, int count) throws IOException {
+        out.writeByte(ReplicationProtocol.RECORDS);
+        out.writeInt(from);
+        out.writeInt(count);
+        awaitResponse();
+        return ReplicationProtocol.readRecords(in, Math.min(count, MAX_PAGE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private void awaitResponse() throws IOException {
+        out.flush();
+        byte status = in.readByte();
+        if (status == ReplicationProtocol.ERROR) {
+            throw new IOException("Источник репликации: " + in.readUTF());
+        }
+        if (status != ReplicationProtocol.OK) {
+            throw new IOException("Некорректный ответ источника репликации: " + status);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package io.hashchain.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.hashchain.core.BatchImporter;
+import io.hashchain.core.ChainVerifier;
+import io.hashchain.core.FingerprintDot;
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.PersonCodec;
+import io.hashchain.core.PersonData;
+import io.hashchain.core.RecordSource;
+import io.hashchain.replication.ReplicationServer;
+import io.hashchain.utils.ChainStorage;
+import io.hashchain.utils.HashUtils;
+import io.hashchain.utils.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class HashchainServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_SCAN_LIMIT = 1000;
+
+    private static final int BACKLOG = Integer.getInteger("hashchain.server.backlog", 1024);
+
+    static {
+        // Headers and body are written separately; with Nagle on, keep-alive clients stall on delayed ACKs.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HashChain hashChain;
+    private final byte[] token;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public HashchainServer(HashChain hashChain, InetSocketAddress address) throws IOException {
+        this(hashChain, address, null);
+    }
+
+    // Without a token, records can only be appended or redacted by clients on this host.
+    public HashchainServer(HashChain hashChain, InetSocketAddress address, String token) throws IOException {
+        this.hashChain = hashChain;
+        this.token = token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/records", exchange -> handle(exchange, this::records));
+        server.createContext("/proof/", exchange -> handle(exchange, this::proof));
+        server.createContext("/verify", exchange -> handle(exchange, this::verify));
+        server.createContext("/status", exchange -> handle(exchange, this::status));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.close();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = System.getProperty("hashchain.server.host", "127.0.0.1");
+        String token = System.getProperty("hashchain.server.token");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger("hashchain.server.port", DEFAULT_PORT);
+
+        HashChain hashChain = new HashChain();
+        ChainStorage.LoadResult result = ChainStorage.load(hashChain, ChainStorage.LoadMode.MAPPED);
+        if (!result.success) {
+            System.err.println("Не удалось загрузить цепочку: " + result.errorMessage);
+            System.exit(1);
+        }
+        // A mapped load only checks what a snapshot does not cover; without one nothing is served unchecked.
+        if (result.snapshotSize == 0 || Boolean.getBoolean("hashchain.verify.deep")) {
+            ChainVerifier.Report report = ChainStorage.verify(hashChain);
+            if (!report.valid) {
+                System.err.println("Цепочка не прошла проверку: " + report.errorMessage);
+                ChainStorage.close();
+                System.exit(1);
+            }
+        }
+
+        HashchainServer server = new HashchainServer(hashChain, new InetSocketAddress(host, port), token);
+        Integer replicationPort = Integer.getInteger("hashchain.replication.port");
+        ReplicationServer replication = replicationPort == null ? null
+                : new ReplicationServer(hashChain, new InetSocketAddress(host, replicationPort));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                if (replication != null) {
+                    replication.close();
+                }
+                ChainStorage.saveIndex(hashChain);
+                ChainStorage.close();
+            } catch (IOException e) {
+                System.err.println("Ошибка при закрытии журнала: " + e.getMessage());
+            }
+        }, "hashchain-shutdown"));
+        server.start();
+        System.out.println("DataHashchain: " + hashChain.size() + " записей, http://" + host + ":" + server.getAddress().getPort());
+        if (replication != null) {
+            replication.start();
+            System.out.println("Репликация: " + host + ":" + replication.getAddress().getPort());
+        }
+    }
+
+    private interface Route {
+        void serve(HttpExchange exchange) throws IOException;
+    }
+
+    private static final class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // An exception that leaves this method makes the server drop the connection without closing the exchange.
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        try {
+            route.serve(exchange);
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            sendError(exchange, 400, e);
+        } catch (IOException | RuntimeException e) {
+            sendError(exchange, 500, e);
+        }
+        exchange.close();
+    }
+
+    private void records(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (path.equals("/records") || path.equals("/records/")) {
+            switch (method) {
+                case "GET" -> scan(exchange);
+                case "POST" -> append(exchange);
+                default -> throw new HttpError(405, "Метод " + method + " не поддерживается.");
+            }
+            return;
+        }
+        if (method.equals("DELETE")) {
+            requireWriteAccess(exchange);
+        } else {
+            requireMethod(exchange, "GET");
+        }
+        String hash = path.substring("/records/".length());
+        int index = positionOf(hash);
+        if (method.equals("DELETE")) {
+            ChainStorage.redact(hashChain, index);
+        }
+
+        HashRecord record = hashChain.snapshot().get(index);
+        sendJson(exchange, 200, json -> writeRecord(json, index, record));
+    }
+
+    private void append(HttpExchange exchange) throws IOException {
+        requireWriteAccess(exchange);
+        List<PersonData> people = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    people.add(BatchImporter.parseCsvLine(line));
+                } catch (RuntimeException e) {
+                    throw new HttpError(400, "Строка " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+        if (people.isEmpty()) {
+            throw new HttpError(400, "Тело запроса не содержит записей.");
+        }
+
+        List<HashRecord> records;
+        try {
+            records = ChainStorage.ingest(hashChain, people).join();
+        } catch (HashChain.DuplicateRecordException e) {
+            throw new HttpError(409, e.getMessage());
+        } catch (CompletionException e) {
+            throw new IOException("Не удалось записать цепочку в журнал: " + e.getCause().getMessage(), e.getCause());
+        }
+        sendJson(exchange, 201, json -> {
+            json.beginObject().name("appended").value(records.size()).name("records").beginArray();
+            for (HashRecord record : records) {
+                json.hexValue(record.getHashBytes());
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    private void scan(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        RecordSource snapshot = hashChain.snapshot();
+        int from = intParameter(query, "from", 0);
+        int limit = intParameter(query, "limit", DEFAULT_SCAN_LIMIT);
+        if (from < 0 || limit < 0) {
+            throw new HttpError(400, "Параметры from и limit должны быть неотрицательными.");
+        }
+        int to = (int) Math.min(snapshot.size(), (long) from + limit);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+        json.beginObject().name("size").value(snapshot.size()).name("from").value(from).name("records").beginArray();
+        for (int i = from; i < to; i++) {
+            writeRecord(json, i, snapshot.get(i));
+        }
+        json.endArray().endObject();
+        json.flush();
+    }
+
+    private void proof(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        int index = positionOf(exchange.getRequestURI().getPath().substring("/proof/".length()));
+        // Proved against the root the last commit signed, so a client can check both against the log.
+        MerkleTree.SignedRoot root = ChainStorage.getSignedRoot();
+        if (root == null || index >= root.treeSize) {
+            throw new HttpError(503, "Запись ещё не зафиксирована в журнале, повторите запрос позже.");
+        }
+        MerkleTree.Proof proof;
+        try {
+            proof = hashChain.proveInclusion(index, root);
+        } catch (IllegalStateException e) {
+            throw new HttpError(500, e.getMessage());
+        }
+
+        sendJson(exchange, 200, json -> {
+            json.beginObject()
+                    .name("leafIndex").value(proof.leafIndex)
+                    .name("treeSize").value(proof.treeSize)
+                    .name("recordHash").hexValue(proof.recordHash)
+                    .name("path").beginArray();
+            for (byte[] node : proof.path) {
+                json.hexValue(node);
+            }
+            json.endArray()
+                    .name("root").hexValue(root.root)
+                    .name("signature").hexValue(root.signature)
+                    .endObject();
+        });
+    }
+
+    private void verify(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        ChainVerifier.Report report = ChainStorage.verify(hashChain);
+        sendJson(exchange, report.valid ? 200 : 409, json -> json.beginObject()
+                .name("valid").value(report.valid)
+                .name("recordCount").value(report.recordCount)
+                .name("firstBrokenIndex").value(report.firstBrokenIndex)
+                .name("error").value(report.errorMessage)
+                .name("chainHash").hexValue(report.chainHash)
+                .name("merkleRoot").hexValue(report.merkleRoot)
+                .endObject());
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        requireMethod(exchange, "GET");
+        RecordSource snapshot = hashChain.snapshot();
+        int size = snapshot.size();
+        sendJson(exchange, 200, json -> json.beginObject()
+                .name("size").value(size)
+                .name("lastHash").hexValue(size == 0 ? null : snapshot.hashAt(size - 1))
+                .endObject());
+    }
+
+    private int positionOf(String hash) {
+        if (hash.length() != HashUtils.HEX_SIZE) {
+            throw new HttpError(400, "Хеш должен состоять из " + HashUtils.HEX_SIZE + " шестнадцатеричных символов.");
+        }
+        int index = hashChain.positionOf(hash);
+        if (index < 0) {
+            throw new HttpError(404, "Запись " + hash + " не найдена.");
+        }
+        return index;
+    }
+
+    private static void writeRecord(JsonWriter json, int index, HashRecord record) throws IOException {
+        json.beginObject()
+                .name("index").value(index)
+                .name("hash").hexValue(record.getHashBytes())
+                .name("previousHash").hexValue(record.getPreviousHashBytes());
+        if (record.isRedacted()) {
+            json.name("redacted").value(true).endObject();
+            return;
+        }
+        PersonData data = record.getData();
+        json.name("lastName").value(data.getLastName())
+                .name("firstName").value(data.getFirstName())
+                .name("patronymic").value(data.getPatronymic())
+                .name("birthDate").value(data.getBirthDate() == null ? null : data.getBirthDate().toString());
+        FingerprintDot dot = data.getFingerprintDot();
+        if (dot != null) {
+            json.name("fingerprint").beginObject()
+                    .name("x").value(dot.getX_position())
+                    .name("y").value(dot.getY_position())
+                    .name("type").value(dot.getType() == null ? null : dot.getType().name())
+                    .name("quality").value(dot.getQuality())
+                    .endObject();
+        }
+        if (data.getTemplate() != null) {
+            json.name("minutiae").value(data.getTemplate().size());
+        }
+        json.name("data").value(Base64.getEncoder().encodeToString(PersonCodec.encode(data)));
+        json.endObject();
+    }
+
+    private interface JsonBody {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        StringWriter buffer = new StringWriter(512);
+        JsonWriter json = new JsonWriter(buffer);
+        body.write(json);
+        json.flush();
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Once a streamed response has sent its headers, the status can no longer change. The failure is rethrown
+    // instead, so the chunked body is never terminated and the client cannot take a cut scan for a whole one.
+    private static void sendError(HttpExchange exchange, int status, Exception e) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            throw e instanceof IOException io ? io : new IOException(e.getMessage(), e);
+        }
+        sendJson(exchange, status, json -> json.beginObject().name("error").value(e.getMessage()).endObject());
+    }
+
+    private void requireWriteAccess(HttpExchange exchange) {
+        if (token == null) {
+            if (!exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+                throw new HttpError(403, "Без токена доступа цепочку можно изменять только с этого компьютера.");
+            }
+            return;
+        }
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] presented = header == null || !header.startsWith("Bearer ") ? null
+                : header.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8);
+        if (presented == null || !MessageDigest.isEqual(token, presented)) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            throw new HttpError(401, "Для изменения цепочки нужен токен доступа.");
+        }
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw new HttpError(405, "Метод " + exchange.getRequestMethod() + " не поддерживается.");
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return parameters;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Параметр " + name + " должен быть целым числом: " + value);
+        }
+    }
+}
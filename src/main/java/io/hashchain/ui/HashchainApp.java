@@ -1,5 +1,6 @@
 package io.hashchain.ui;
 
+import io.hashchain.utils.ChainStorage;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -7,15 +8,29 @@ import javafx.stage.Stage;
 
 public class HashchainApp extends Application {
 
+    private MainController controller;
+
     @Override
     public void start(Stage stage) throws Exception {
         FXMLLoader fxmlLoader = new FXMLLoader(HashchainApp.class.getResource("main-view.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 1000, 600);
+        controller = fxmlLoader.getController();
         stage.setTitle("DataHashchain");
         stage.setScene(scene);
         stage.show();
     }
 
+    @Override
+    public void stop() throws Exception {
+        try {
+            if (controller != null) {
+                controller.shutdown();
+            }
+        } finally {
+            ChainStorage.close();
+        }
+    }
+
     public static void main(String[] args) {
         launch();
     }
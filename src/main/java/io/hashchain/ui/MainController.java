@@ -1,5 +1,8 @@
 package io.hashchain.ui;
 
+import io.hashchain.core.BatchImporter;
+import io.hashchain.core.ChainVerifier;
+import io.hashchain.core.DuplicateCheck;
 import io.hashchain.core.FingerprintDot;
 import io.hashchain.core.FingerprintType;
 import io.hashchain.core.HashChain;
@@ -7,19 +10,28 @@ import io.hashchain.core.HashRecord;
 import io.hashchain.core.PersonData;
 import io.hashchain.utils.ChainStorage;
 import javafx.application.Platform;
-import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
+import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
+import javafx.stage.FileChooser;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class MainController {
 
@@ -41,6 +53,13 @@ public class MainController {
     @FXML
     private ComboBox<FingerprintType> typeCombo;
 
+    @FXML
+    private TextField searchField;
+    @FXML
+    private Label searchStatusLabel;
+    @FXML
+    private Label writeStatusLabel;
+
     @FXML
     private TableView<HashRecord> chainTable;
     @FXML
@@ -56,47 +75,35 @@ public class MainController {
     @FXML
     private TableColumn<HashRecord, String> qualityColumn;
 
+    private static final int CACHED_ROWS = 4096;
+    private static final double ROW_HEIGHT = 24;
+    // A load resumed from a snapshot has already checked the tail; a full pass is only on request.
+    private static final boolean DEEP_VERIFY = Boolean.getBoolean("hashchain.verify.deep");
+
     private final HashChain hashChain = new HashChain();
+    private final RecordCells cells = new RecordCells(CACHED_ROWS);
+    private String lastQuery;
+    private int[] searchResults = new int[0];
+    private int searchCursor;
+    private int searchedSize;
+    private boolean loaded;
 
     @FXML
     private void initialize() {
         typeCombo.getItems().setAll(FingerprintType.values());
 
+        chainTable.setFixedCellSize(ROW_HEIGHT);
         chainTable.setItems(hashChain.getChain());
 
         birthDatePicker.setValue(LocalDate.now());
         birthDatePicker.getEditor().setPromptText("дд.мм.гггг");
 
-        fioColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(
-                        cd.getValue().getData().getLastName() + " " +
-                                cd.getValue().getData().getFirstName() + " " +
-                                cd.getValue().getData().getPatronymic()
-                )
-        );
-        birthDateColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(
-                        String.valueOf(cd.getValue().getData().getBirthDate())
-                )
-        );
-        fingerprintTypeColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(
-                        cd.getValue().getData().getFingerprintDot().getType().getDescription()
-                )
-        );
-        qualityColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(
-                        String.valueOf(cd.getValue().getData().getFingerprintDot().getQuality())
-                )
-        );
-        hashColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(cd.getValue().getHash())
-        );
-        prevHashColumn.setCellValueFactory(cd ->
-                new ReadOnlyStringWrapper(
-                        cd.getValue().getPreviousHash() == null ? "" : cd.getValue().getPreviousHash()
-                )
-        );
+        fioColumn.setCellValueFactory(cd -> cells.cell(cd.getValue(), RecordCells.FIO));
+        birthDateColumn.setCellValueFactory(cd -> cells.cell(cd.getValue(), RecordCells.BIRTH_DATE));
+        fingerprintTypeColumn.setCellValueFactory(cd -> cells.cell(cd.getValue(), RecordCells.FINGERPRINT_TYPE));
+        qualityColumn.setCellValueFactory(cd -> cells.cell(cd.getValue(), RecordCells.QUALITY));
+        hashColumn.setCellValueFactory(cd -> cells.cell(cd.getValue(), RecordCells.HASH));
+        prevHashColumn.setCellValueFactory(cd -> cells.cell(cd.getValue(), RecordCells.PREVIOUS_HASH));
         
         hashColumn.setSortable(false);
         prevHashColumn.setSortable(false);
@@ -105,13 +112,38 @@ public class MainController {
         fingerprintTypeColumn.setSortable(false);
         qualityColumn.setSortable(false);
 
-        ChainStorage.LoadResult result = ChainStorage.load(hashChain);
+        ChainStorage.LoadResult result = ChainStorage.load(hashChain, ChainStorage.LoadMode.MAPPED);
         if (!result.success) {
             showError(result.errorMessage + " Приложение будет закрыто.");
             Platform.exit();
+            return;
+        }
+        loaded = true;
+        // The form asks before enrolling a duplicate instead of refusing it.
+        hashChain.setRejectDuplicates(false);
+        if (result.snapshotSize == 0 || DEEP_VERIFY) {
+            verifyInBackground();
         }
     }
 
+    private void verifyInBackground() {
+        CompletableFuture<ChainVerifier.Report> verification;
+        try {
+            verification = ChainStorage.verifyAsync(hashChain);
+        } catch (IOException e) {
+            showError("Не удалось проверить цепочку: " + e.getMessage());
+            return;
+        }
+        verification.whenComplete((report, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                showError("Не удалось проверить цепочку: " + error.getMessage());
+            } else if (!report.valid) {
+                chainTable.scrollTo(Math.max(report.firstBrokenIndex, 0));
+                showError(report.errorMessage);
+            }
+        }));
+    }
+
     @FXML
     private void onAddRecord() {
         if (!validateInputs()) {
@@ -131,15 +163,156 @@ public class MainController {
         FingerprintDot dot = new FingerprintDot(x, y, type, quality);
         PersonData person = new PersonData(firstName, lastName, patronymic, birthDate, dot);
 
-        hashChain.addRecord(person);
-        saveToFile();
+        if (hashChain.isDuplicateFilterReady()) {
+            addRecord(person, hashChain.findDuplicate(person));
+            return;
+        }
+        // The filter is still being built after the load; the name index answers instead, off the FX thread.
+        writeStatusLabel.setText("Проверка на повтор");
+        CompletableFuture.supplyAsync(() -> hashChain.findDuplicate(person))
+                .whenComplete((existing, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        writeStatusLabel.setText("");
+                        showError("Не удалось проверить запись на повтор: " + cause.getMessage());
+                        return;
+                    }
+                    addRecord(person, existing);
+                }));
+    }
+
+    private void addRecord(PersonData person, int existing) {
+        if (existing >= 0) {
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+            confirm.setTitle("Повторная запись");
+            confirm.setHeaderText(null);
+            confirm.setContentText("Такая запись уже есть в цепочке (№" + (existing + 1) + ").\nВсё равно добавить?");
+            Optional<ButtonType> answer = confirm.showAndWait();
+            if (answer.isEmpty() || answer.get() != ButtonType.OK) {
+                writeStatusLabel.setText("");
+                chainTable.scrollTo(existing);
+                return;
+            }
+        }
+
+        try {
+            reportWrite(ChainStorage.ingest(hashChain, List.of(person)), 1);
+        } catch (IOException e) {
+            reportWrite(CompletableFuture.failedFuture(e), 1);
+        }
         clearForm();
     }
-    private void saveToFile() {
+
+    private <T> CompletableFuture<T> reportWrite(CompletableFuture<T> durable, int records) {
+        writeStatusLabel.setText("Сохранение записей: " + records);
+        return durable.whenComplete((ignored, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                Platform.runLater(() -> {
+                    writeStatusLabel.setText("Записи не сохранены");
+                    showError("Ошибка при сохранении записей: " + cause.getMessage());
+                });
+            } else {
+                Platform.runLater(() -> writeStatusLabel.setText("Сохранено записей: " + records));
+            }
+        });
+    }
+
+    @FXML
+    private void onImportCsv() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Импорт записей из CSV");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
+        File source = chooser.showOpenDialog(chainTable.getScene().getWindow());
+        if (source == null) {
+            return;
+        }
+
+        byte[] previousHash = hashChain.lastHash();
+        DuplicateCheck duplicates = hashChain.duplicateCheck();
+        CompletableFuture
+                .supplyAsync(() -> {
+                    try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+                        return new BatchImporter().prepare(reader, previousHash, duplicates);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .whenComplete((result, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        showError("Ошибка при импорте: " + error.getMessage());
+                        return;
+                    }
+                    CompletableFuture<Void> durable;
+                    try {
+                        durable = ChainStorage.appendPreparedAsync(hashChain, result.records);
+                    } catch (IllegalStateException e) {
+                        showError("Ошибка при импорте: " + e.getMessage());
+                        return;
+                    } catch (IOException e) {
+                        durable = CompletableFuture.failedFuture(e);
+                    }
+                    reportWrite(durable, result.records.size()).thenRun(() -> Platform.runLater(() -> {
+                        StringBuilder message = new StringBuilder("Импортировано записей: " + result.records.size()
+                                + "\nОтклонено строк: " + result.rejected);
+                        for (String line : result.errors.subList(0, Math.min(result.errors.size(), 10))) {
+                            message.append("\n").append(line);
+                        }
+                        showInfo(message.toString());
+                    }));
+                }));
+    }
+
+    @FXML
+    private void onExportJson() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Экспорт цепочки в JSON");
+        chooser.setInitialFileName("hashchain.json");
+        chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("JSON", "*.json"),
+                new FileChooser.ExtensionFilter("JSON (gzip)", "*.json.gz"));
+        File target = chooser.showSaveDialog(chainTable.getScene().getWindow());
+        if (target == null) {
+            return;
+        }
+
         try {
-            ChainStorage.save(hashChain);
+            ChainStorage.exportJson(hashChain, target.toPath());
+            showInfo("Цепочка экспортирована в " + target.getAbsolutePath());
         } catch (IOException e) {
-            showError("Ошибка при сохранении цепочки: " + e.getMessage());
+            showError("Ошибка при экспорте цепочки: " + e.getMessage());
+        }
+    }
+
+    @FXML
+    private void onSearch() {
+        String query = searchField.getText() == null ? "" : searchField.getText().strip();
+        if (!query.equals(lastQuery) || searchedSize != hashChain.getChain().size()) {
+            try {
+                searchResults = hashChain.search(query);
+            } catch (IllegalArgumentException e) {
+                searchResults = new int[0];
+            }
+            lastQuery = query;
+            searchedSize = hashChain.getChain().size();
+            searchCursor = 0;
+        } else if (searchResults.length > 0) {
+            searchCursor = (searchCursor + 1) % searchResults.length;
+        }
+
+        if (searchResults.length == 0) {
+            searchStatusLabel.setText(query.isEmpty() ? "" : "Ничего не найдено");
+            return;
+        }
+        int index = searchResults[searchCursor];
+        chainTable.getSelectionModel().clearAndSelect(index);
+        chainTable.scrollTo(index);
+        searchStatusLabel.setText("Найдено: " + (searchCursor + 1) + " из " + searchResults.length);
+    }
+
+    // After a failed load the chain is empty, and saving would replace good index files with empty ones.
+    void shutdown() throws IOException {
+        if (loaded) {
+            ChainStorage.saveIndex(hashChain);
         }
     }
 
@@ -151,36 +324,28 @@ public class MainController {
             return;
         }
 
+        if (selected.isRedacted()) {
+            showWarning("Персональные данные этой записи уже удалены.");
+            return;
+        }
+
         Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
         confirm.setTitle("Удаление записи");
         confirm.setHeaderText(null);
-        confirm.setContentText("Удалить выбранную запись?");
+        confirm.setContentText("Удалить персональные данные выбранной записи?\nХеш записи останется в цепочке.");
         Optional<ButtonType> result = confirm.showAndWait();
         if (result.isEmpty() || result.get() != ButtonType.OK) {
             return;
         }
 
-        if (hashChain.getChain().isEmpty()) {
-            showWarning("Цепочка пуста.");
+        String chainHash = hashChain.computeChainHash();
+        try {
+            ChainStorage.redact(hashChain, hashChain.positionOf(selected.getHashBytes()));
+        } catch (IOException | IndexOutOfBoundsException e) {
+            showError("Не удалось удалить запись: " + e.getMessage());
             return;
         }
-
-        String oldHash = hashChain.computeChainHash();
-        int index = chainTable.getSelectionModel().getSelectedIndex();
-
-        hashChain.getChain().remove(index);
-        String newHash = hashChain.computeChainHash();
-
-        if (!newHash.equals(oldHash)) {
-            hashChain.getChain().add(index, selected);
-            showError("Попытка изменить цепочку нарушает целостность.\n" +
-                    "Исходный хеш цепочки: " + oldHash + "\n" +
-                    "Новый хеш цепочки: " + newHash + "\n" +
-                    "Изменения не применены.");
-        } else {
-            saveToFile();
-            showInfo("Удаление не изменило хеш цепочки.\nХеш: " + oldHash);
-        }
+        showInfo("Персональные данные записи удалены, хеш цепочки не изменился.\nХеш: " + chainHash);
     }
 
     private boolean validateInputs() {
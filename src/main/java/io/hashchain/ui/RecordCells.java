@@ -0,0 +1,62 @@
+package io.hashchain.ui;
+
+import io.hashchain.core.FingerprintDot;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.PersonData;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class RecordCells {
+
+    static final int FIO = 0;
+    static final int BIRTH_DATE = 1;
+    static final int FINGERPRINT_TYPE = 2;
+    static final int QUALITY = 3;
+    static final int HASH = 4;
+    static final int PREVIOUS_HASH = 5;
+
+    private static final int COLUMNS = 6;
+
+    private final Map<HashRecord, ReadOnlyStringProperty[]> rows;
+
+    RecordCells(int maxRows) {
+        this.rows = new LinkedHashMap<>(maxRows * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<HashRecord, ReadOnlyStringProperty[]> eldest) {
+                return size() > maxRows;
+            }
+        };
+    }
+
+    ReadOnlyStringProperty cell(HashRecord record, int column) {
+        return rows.computeIfAbsent(record, RecordCells::format)[column];
+    }
+
+    private static ReadOnlyStringProperty[] format(HashRecord record) {
+        PersonData data = record.getData();
+        String[] values = new String[COLUMNS];
+        if (data == null) {
+            values[FIO] = "[данные удалены]";
+            values[BIRTH_DATE] = "";
+            values[FINGERPRINT_TYPE] = "";
+            values[QUALITY] = "";
+        } else {
+            FingerprintDot dot = data.getFingerprintDot();
+            values[FIO] = data.getLastName() + " " + data.getFirstName() + " " + data.getPatronymic();
+            values[BIRTH_DATE] = String.valueOf(data.getBirthDate());
+            values[FINGERPRINT_TYPE] = dot == null || dot.getType() == null ? "" : dot.getType().getDescription();
+            values[QUALITY] = dot == null ? "" : String.valueOf(dot.getQuality());
+        }
+        values[HASH] = record.getHash();
+        values[PREVIOUS_HASH] = record.getPreviousHash() == null ? "" : record.getPreviousHash();
+
+        ReadOnlyStringProperty[] cells = new ReadOnlyStringProperty[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            cells[i] = new ReadOnlyStringWrapper(values[i]).getReadOnlyProperty();
+        }
+        return cells;
+    }
+}
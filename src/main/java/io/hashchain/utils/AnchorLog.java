@@ -0,0 +1,198 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.SecurityConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only file of anchors. Each anchor links to the previous one by hash and is signed with the HMAC
+// secret; a torn last frame is cut off on open, any other damage is reported.
+class AnchorLog implements Closeable {
+
+    static final int MAGIC = 0x48434148;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES * 3;
+
+    private final Path file;
+    private final int shardCount;
+    private final FileChannel channel;
+    private final List<ShardedChainStore.Anchor> anchors = new ArrayList<>();
+
+    private AnchorLog(Path file, int shardCount, FileChannel channel) {
+        this.file = file;
+        this.shardCount = shardCount;
+        this.channel = channel;
+    }
+
+    static AnchorLog open(Path file, int shardCount) throws IOException {
+        boolean created = !Files.exists(file) || Files.size(file) == 0;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            AnchorLog log = new AnchorLog(file, shardCount, channel);
+            if (created) {
+                log.writeHeader();
+            } else {
+                log.read();
+            }
+            return log;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Shard count as recorded in an existing file, or -1 if there is none yet.
+    static int readShardCount(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new SegmentLog.IntegrityException("Некорректный заголовок файла якорей " + file.getFileName());
+            }
+            return header.getInt();
+        }
+    }
+
+    ShardedChainStore.Anchor latest() {
+        return anchors.isEmpty() ? null : anchors.get(anchors.size() - 1);
+    }
+
+    List<ShardedChainStore.Anchor> anchors() {
+        return List.copyOf(anchors);
+    }
+
+    void append(ShardedChainStore.Anchor anchor) throws IOException {
+        byte[] payload = anchor.payload();
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + payload.length + HashUtils.HASH_SIZE * 2);
+        frame.putInt(payload.length).put(payload).put(anchor.hash).put(anchor.signature).flip();
+        long position = channel.size();
+        while (frame.hasRemaining()) {
+            position += channel.write(frame, position);
+        }
+        channel.force(false);
+        anchors.add(anchor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putInt(shardCount).flip();
+        channel.write(header, 0);
+        channel.force(true);
+        DurableFiles.forceDirectory(file.getParent());
+    }
+
+    private void read() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size < HEADER_SIZE) {
+            throw new SegmentLog.IntegrityException("Файл якорей " + file.getFileName() + " обрезан.");
+        }
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new SegmentLog.IntegrityException("Некорректный заголовок файла якорей " + file.getFileName());
+        }
+        if (header.getInt() != shardCount) {
+            throw new SegmentLog.IntegrityException("Число шардов не совпадает с записанным в " + file.getFileName());
+        }
+
+        long position = HEADER_SIZE;
+        byte[] previous = new byte[HashUtils.HASH_SIZE];
+        while (position < size) {
+            ShardedChainStore.Anchor anchor = readFrame(position, size);
+            if (anchor == null) {
+                channel.truncate(position);
+                channel.force(true);
+                break;
+            }
+            if (!Arrays.equals(anchor.previousHash, previous) || anchor.sequence != anchors.size() + 1) {
+                throw new SegmentLog.IntegrityException("Якорь №" + (anchors.size() + 1) + " не продолжает цепочку якорей.");
+            }
+            anchors.add(anchor);
+            previous = anchor.hash;
+            position += anchor.frameSize();
+        }
+    }
+
+    // Returns null for a torn last frame: a partial write, or a tail the file system left zero-filled.
+    private ShardedChainStore.Anchor readFrame(long position, long size) throws IOException {
+        long remaining = size - position;
+        int payloadSize = ShardedChainStore.Anchor.payloadSize(shardCount);
+        long frameSize = Integer.BYTES + payloadSize + HashUtils.HASH_SIZE * 2L;
+        if (remaining < Integer.BYTES) {
+            return null;
+        }
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length, position);
+        int recorded = length.flip().getInt();
+        if (recorded != payloadSize) {
+            if (recorded == 0 && isZeroFilled(position, size)) {
+                return null;
+            }
+            throw new SegmentLog.IntegrityException("Якорь №" + (anchors.size() + 1) + " повреждён.");
+        }
+        if (remaining < frameSize) {
+            return null;
+        }
+        ByteBuffer frame = ByteBuffer.allocate((int) frameSize - Integer.BYTES);
+        readFully(channel, frame, position + Integer.BYTES);
+        frame.flip();
+        byte[] payload = new byte[payloadSize];
+        byte[] hash = new byte[HashUtils.HASH_SIZE];
+        byte[] signature = new byte[HashUtils.HASH_SIZE];
+        frame.get(payload).get(hash).get(signature);
+        ShardedChainStore.Anchor anchor = ShardedChainStore.Anchor.fromPayload(payload, hash, signature);
+        if (!anchor.isSignatureValid()) {
+            if (remaining == frameSize) {
+                return null;
+            }
+            throw new SegmentLog.IntegrityException("Якорь №" + (anchors.size() + 1) + " повреждён или подделан.");
+        }
+        return anchor;
+    }
+
+    private boolean isZeroFilled(long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - position, 1 << 16));
+        while (position < size) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+            readFully(channel, buffer, position);
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) != 0) {
+                    return false;
+                }
+            }
+            position += buffer.limit();
+        }
+        return true;
+    }
+
+    static byte[] sign(byte[] hash) {
+        return HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), hash);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new SegmentLog.IntegrityException("Файл якорей обрезан.");
+            }
+            position += read;
+        }
+    }
+}
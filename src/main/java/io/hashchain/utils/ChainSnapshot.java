@@ -0,0 +1,177 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.SecurityConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Signed state of the chain at a commit: where the log stood, the running chain digest, the Merkle
+// frontier and the first record of every segment. Loading it replaces hashing and scanning the history.
+public class ChainSnapshot {
+
+    static final int MAGIC = 0x4843534e;
+    static final int VERSION = 1;
+
+    final int count;
+    final byte[] lastHash;
+    final long segment;
+    final long offset;
+    final byte[] chainHash;
+    final byte[] merkleRoot;
+    final int[] digestState;
+    final List<byte[]> merkleFrontier;
+    final int[] segmentStarts;
+
+    private ChainSnapshot(int count, byte[] lastHash, long segment, long offset, byte[] chainHash, byte[] merkleRoot,
+                          int[] digestState, List<byte[]> merkleFrontier, int[] segmentStarts) {
+        this.count = count;
+        this.lastHash = lastHash;
+        this.segment = segment;
+        this.offset = offset;
+        this.chainHash = chainHash;
+        this.merkleRoot = merkleRoot;
+        this.digestState = digestState;
+        this.merkleFrontier = merkleFrontier;
+        this.segmentStarts = segmentStarts;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] lastHash() {
+        return lastHash;
+    }
+
+    // Every record adds exactly one 64-byte block (its hash in hex), so the digest is always block-aligned.
+    public MessageDigest digest() {
+        return ResumableSha256.resume(digestState, count);
+    }
+
+    public List<byte[]> merkleFrontier() {
+        return merkleFrontier;
+    }
+
+    // Extends the previous snapshot with the records committed since; the reader must have been opened from it.
+    static ChainSnapshot build(MappedChainReader reader, ChainSnapshot previous) throws IOException {
+        int count = reader.size();
+        if (count == 0 || reader.getCommittedRoot() == null) {
+            return null;
+        }
+        List<Path> segments = reader.segmentFiles();
+        for (int s = 0; s <= reader.tailSegment; s++) {
+            if (SegmentLog.segmentIndexOf(segments.get(s)) != s) {
+                return null;
+            }
+        }
+
+        int from = reader.resumedSize();
+        ResumableSha256 digest = from == 0 ? new ResumableSha256() : (ResumableSha256) previous.digest();
+        MerkleTree tree = MerkleTree.fromFrontier(from, from == 0 ? List.of() : previous.merkleFrontier);
+        byte[] hex = new byte[HashUtils.HEX_SIZE];
+        for (int i = from; i < count; i++) {
+            byte[] hash = reader.hashAt(i);
+            HashUtils.writeHexAscii(hash, hex, 0);
+            digest.update(hex);
+            tree.append(hash);
+        }
+
+        byte[] chainHash = HashUtils.cloneDigest(digest).digest();
+        byte[] merkleRoot = tree.root();
+        if (!Arrays.equals(chainHash, reader.getCommittedChainHash()) || !Arrays.equals(merkleRoot, reader.getCommittedRoot().root)) {
+            throw new SegmentLog.IntegrityException("Хеш цепочки не соответствует данным в файле. Файл повреждён или подделан.");
+        }
+        return new ChainSnapshot(count, reader.hashAt(count - 1), reader.tailSegment, reader.tailOffset, chainHash, merkleRoot,
+                digest.state(), tree.frontier(), reader.segmentStarts());
+    }
+
+    void write(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(count);
+        out.write(lastHash);
+        out.writeLong(segment);
+        out.writeLong(offset);
+        out.write(chainHash);
+        out.write(merkleRoot);
+        for (int word : digestState) {
+            out.writeInt(word);
+        }
+        out.writeInt(merkleFrontier.size());
+        for (byte[] node : merkleFrontier) {
+            out.write(node);
+        }
+        out.writeInt(segmentStarts.length);
+        for (int start : segmentStarts) {
+            out.writeInt(start);
+        }
+        out.write(HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), bytes.toByteArray()));
+        DurableFiles.write(file, target -> bytes.writeTo(target));
+    }
+
+    // An unreadable, unsigned or foreign snapshot is not an error: startup just falls back to a full scan.
+    static ChainSnapshot read(Path file) {
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            int signed = bytes.length - HashUtils.HASH_SIZE;
+            if (signed <= 0 || !MessageDigest.isEqual(HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), bytes, 0, signed),
+                    Arrays.copyOfRange(bytes, signed, bytes.length))) {
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, signed));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int count = in.readInt();
+            byte[] lastHash = readHash(in);
+            long segment = in.readLong();
+            long offset = in.readLong();
+            byte[] chainHash = readHash(in);
+            byte[] merkleRoot = readHash(in);
+            int[] digestState = new int[ResumableSha256.STATE_WORDS];
+            for (int i = 0; i < digestState.length; i++) {
+                digestState[i] = in.readInt();
+            }
+            int frontierSize = in.readInt();
+            if (frontierSize != Integer.bitCount(count)) {
+                return null;
+            }
+            List<byte[]> frontier = new ArrayList<>(frontierSize);
+            for (int i = 0; i < frontierSize; i++) {
+                frontier.add(readHash(in));
+            }
+            int segments = in.readInt();
+            if (segments <= 0 || segments != segment + 1) {
+                return null;
+            }
+            int[] segmentStarts = new int[segments];
+            for (int i = 0; i < segments; i++) {
+                segmentStarts[i] = in.readInt();
+            }
+            return new ChainSnapshot(count, lastHash, segment, offset, chainHash, merkleRoot, digestState, frontier, segmentStarts);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] readHash(DataInputStream in) throws IOException {
+        byte[] hash = new byte[HashUtils.HASH_SIZE];
+        in.readFully(hash);
+        return hash;
+    }
+}
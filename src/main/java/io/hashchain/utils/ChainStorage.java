@@ -1,146 +1,935 @@
 package io.hashchain.utils;
 
+import io.hashchain.core.ChainIndex;
+import io.hashchain.core.ChainVerifier;
+import io.hashchain.core.DuplicateFilter;
 import io.hashchain.core.FingerprintDot;
 import io.hashchain.core.FingerprintType;
 import io.hashchain.core.HashChain;
 import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.PersonCodec;
 import io.hashchain.core.PersonData;
+import io.hashchain.core.RecordSource;
 import io.hashchain.core.SecurityConfig;
+import io.hashchain.metrics.Metrics;
+import io.hashchain.metrics.Operation;
+import io.hashchain.metrics.Span;
 
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class ChainStorage {
 
     private static final Path DEFAULT_CHAIN_FILE = Path.of(System.getProperty("user.dir"), "hashchain.json");
     private static final Path BACKUP_CHAIN_FILE = Path.of(System.getProperty("user.dir"), "hashchain_backup.json");
+    private static final Path DEFAULT_LOG_DIR = Path.of(System.getProperty("user.dir"), "hashchain-log");
+    private static final Path LEGACY_LOG_BACKUP_DIR = Path.of(System.getProperty("user.dir"), "hashchain-log-v2-backup");
+    private static final Path INDEX_FILE = DEFAULT_LOG_DIR.resolve("index.bin");
+    private static final Path SNAPSHOT_FILE = DEFAULT_LOG_DIR.resolve("snapshot.bin");
+    private static final Path DUPLICATES_FILE = DEFAULT_LOG_DIR.resolve("duplicates.bin");
+    private static final Path REDACTION_FILE = DEFAULT_LOG_DIR.resolve("redactions.log");
+    private static final Path MERKLE_DIR = DEFAULT_LOG_DIR.resolve("merkle");
+    private static final int JSON_FORMAT_VERSION = 2;
+    private static final int JSON_STREAM_BUFFER_SIZE = 1 << 16;
+    private static final int JSON_IMPORT_BATCH = 4096;
+    private static final long SEGMENT_SIZE = Long.getLong("hashchain.segment.size", SegmentLog.DEFAULT_SEGMENT_SIZE);
+    private static final long COMMIT_WINDOW_MILLIS = Long.getLong("hashchain.commit.window.ms", GroupCommitWriter.DEFAULT_WINDOW_MILLIS);
+    private static final long COMMIT_GROUP_BYTES = Long.getLong("hashchain.commit.bytes", GroupCommitWriter.DEFAULT_MAX_GROUP_BYTES);
+    private static final long SNAPSHOT_INTERVAL = Long.getLong("hashchain.snapshot.interval", 1_000_000);
+
+    private static SegmentLog log;
+    private static GroupCommitWriter writer;
+
+    // Last snapshot written or loaded; a rewrite bumps the generation so a snapshot built before it is dropped.
+    private static volatile ChainSnapshot snapshot;
+    private static long snapshotGeneration;
+    private static final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    // Records a load found in the log are trusted once a verify covered them: the full or tail check of the
+    // load itself, or a later verifyAsync that came back valid. No snapshot is signed over them before that.
+    private static boolean logVerified;
+    private static long loadedCount = Long.MAX_VALUE;
+    private static long loadGeneration;
+    private static RedactionLog redactions;
+    private static MerkleLevels merkleLevels;
+    // Last record hash covered by index.bin and duplicates.bin, as restored or last saved.
+    private static volatile byte[] savedIndexHash;
+    private static volatile byte[] savedFilterHash;
+    private static volatile boolean compactionRequested;
+    private static final AtomicBoolean compactionRunning = new AtomicBoolean();
+
+    public enum LoadMode {
+        FULL,
+        MAPPED
+    }
 
     public static class LoadResult {
         public final boolean success;
         public final String errorMessage;
+        public final int brokenIndex;
+        // Records taken from a snapshot and therefore not rehashed on load.
+        public final int snapshotSize;
 
-        private LoadResult(boolean success, String errorMessage) {
+        private LoadResult(boolean success, String errorMessage, int brokenIndex, int snapshotSize) {
             this.success = success;
             this.errorMessage = errorMessage;
+            this.brokenIndex = brokenIndex;
+            this.snapshotSize = snapshotSize;
         }
 
         public static LoadResult ok() {
-            return new LoadResult(true, null);
+            return new LoadResult(true, null, -1, 0);
+        }
+
+        public static LoadResult resumed(int snapshotSize) {
+            return new LoadResult(true, null, -1, snapshotSize);
         }
 
         public static LoadResult error(String message) {
-            return new LoadResult(false, message);
+            return new LoadResult(false, message, -1, 0);
+        }
+
+        public static LoadResult broken(String message, int brokenIndex) {
+            return new LoadResult(false, message, brokenIndex, 0);
+        }
+    }
+
+    public static void append(HashChain hashChain, HashRecord record) throws IOException {
+        appendBatch(hashChain, List.of(record));
+    }
+
+    public static void appendBatch(HashChain hashChain, List<HashRecord> records) throws IOException {
+        await(appendAsync(hashChain, records));
+    }
+
+    public static CompletableFuture<Void> appendAsync(HashChain hashChain, HashRecord record) throws IOException {
+        return appendAsync(hashChain, List.of(record));
+    }
+
+    public static synchronized CompletableFuture<Void> appendAsync(HashChain hashChain, List<HashRecord> records) throws IOException {
+        HashChain.CommitPoint point = hashChain.commitPoint();
+        SegmentLog segmentLog = log();
+        CompletableFuture<Void> durable = writer().submit(records, point.size(), point.chainHash, point.merkleRoot)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        rollBack(segmentLog, hashChain, records, point.size() - records.size());
+                    }
+                });
+        ChainSnapshot current = snapshot;
+        if (point.size() - (current == null ? 0 : current.size()) >= SNAPSHOT_INTERVAL) {
+            durable.thenRun(ChainStorage::scheduleSnapshot);
         }
+        return durable;
+    }
+
+    // A failed group leaves the log at its last commit; the chain drops what the log no longer has, unless
+    // the records were already replaced, e.g. by a load.
+    static void rollBack(SegmentLog segmentLog, HashChain hashChain, List<HashRecord> records, int position) {
+        if (records.isEmpty()) {
+            return;
+        }
+        RecordSource view = hashChain.snapshot();
+        long committed = segmentLog.getCommittedCount();
+        if (committed < position + records.size() && position < view.size()
+                && Arrays.equals(view.hashAt(position), records.get(0).getHashBytes())) {
+            hashChain.truncate((int) committed);
+        }
+    }
+
+    public static synchronized CompletableFuture<List<HashRecord>> ingest(HashChain hashChain, List<PersonData> people) throws IOException {
+        List<HashRecord> records = hashChain.addRecords(people);
+        return appendAsync(hashChain, records).thenApply(ignored -> records);
+    }
+
+    public static synchronized CompletableFuture<Void> appendPreparedAsync(HashChain hashChain, List<HashRecord> records) throws IOException {
+        hashChain.appendPrepared(records);
+        return appendAsync(hashChain, records);
     }
 
     public static void save(HashChain hashChain) throws IOException {
-        try (BufferedWriter writer = Files.newBufferedWriter(DEFAULT_CHAIN_FILE, StandardCharsets.UTF_8)) {
-            String chainHash = hashChain.computeChainHash();
-            String hmac = HashUtils.calculateHmacSHA256(SecurityConfig.getHmacSecret(), chainHash);
+        if (writer != null) {
+            await(writer.flush());
+        }
+        try (Span span = Metrics.begin(Operation.SAVE)) {
+            HashChain.CommitPoint point;
+            List<RedactionLog.Redaction> logged;
+            synchronized (ChainStorage.class) {
+                logged = redactions().entries();
+                point = hashChain.commitPoint();
+            }
+            span.records(point.size());
+            rewriteLog(log(), point);
+            redactions().discard(logged, Integer.MAX_VALUE);
+        }
+    }
 
-            writer.write("{\n");
-            writer.write("  \"records\": [\n");
+    // Drops the records after the last commit at or below `size` from the chain and then from the log. Unlike
+    // save, the records that stay are not rewritten. Returns the number of records kept.
+    public static int truncate(HashChain hashChain, int size) throws IOException {
+        if (writer != null) {
+            await(writer.flush());
+        }
+        synchronized (ChainStorage.class) {
+            hashChain.truncate(size);
+            int kept = (int) log().truncate(size);
+            hashChain.truncate(kept);
+            ChainSnapshot current = snapshot;
+            if (current != null && current.size() > kept) {
+                snapshotGeneration++;
+                snapshot = null;
+                Files.deleteIfExists(SNAPSHOT_FILE);
+            }
+            loadedCount = Math.min(loadedCount, kept);
+            return kept;
+        }
+    }
+
+    // Removes the personal data of the given records for good. The redaction is logged durably before the
+    // records turn into tombstones; the compactor later drops the payload from the sealed segments.
+    public static synchronized void redact(HashChain hashChain, int... indexes) throws IOException {
+        RecordSource view = hashChain.snapshot();
+        List<RedactionLog.Redaction> pending = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            if (index < 0 || index >= view.size()) {
+                throw new IndexOutOfBoundsException("Запись №" + (index + 1) + " отсутствует в цепочке.");
+            }
+            if (!view.get(index).isRedacted()) {
+                pending.add(new RedactionLog.Redaction(index, view.hashAt(index)));
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        redactions().append(pending);
+        hashChain.redact(indexes);
+        scheduleCompaction();
+    }
+
+    public static void exportJson(HashChain hashChain, Path target) throws IOException {
+        try (Span span = Metrics.begin(Operation.EXPORT)) {
+            HashChain.CommitPoint point = hashChain.commitPoint();
+            span.records(point.size());
+            boolean gzip = target.getFileName().toString().endsWith(".gz");
+            DurableFiles.write(target, file -> {
+                OutputStream out = gzip ? new GZIPOutputStream(file, JSON_STREAM_BUFFER_SIZE) : file;
+                try (JsonWriter json = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                    writeJson(json, point);
+                }
+            });
+            span.bytes(Files.size(target));
+        }
+    }
 
-            for (int i = 0; i < hashChain.getChain().size(); i++) {
-                HashRecord record = hashChain.getChain().get(i);
+    private static void writeJson(JsonWriter json, HashChain.CommitPoint point) throws IOException {
+        String chainHash = HashUtils.toHex(point.chainHash);
+        String hmac = HashUtils.calculateHmacSHA256(SecurityConfig.getHmacSecret(), chainHash);
+        Base64.Encoder base64 = Base64.getEncoder();
+
+        json.beginObject()
+                .name("format").value(JSON_FORMAT_VERSION)
+                .name("records").beginArray();
+        for (int i = 0; i < point.size(); i++) {
+            HashRecord record = point.records.get(i);
+            json.beginObject()
+                    .name("hash").hexValue(record.getHashBytes())
+                    .name("previousHash").hexValue(record.getPreviousHashBytes());
+            if (record.isRedacted()) {
+                json.name("redacted").hexValue(record.getRedactionSeal());
+            } else {
                 PersonData data = record.getData();
+                json.name("data").value(base64.encodeToString(PersonCodec.encode(data)))
+                        .name("person").value(data.toString());
+            }
+            json.endObject();
+        }
+        json.endArray()
+                .name("chainHash").value(chainHash)
+                .name("hmac").value(hmac)
+                .endObject();
+    }
 
-                writer.write("    {\n");
-                writer.write("      \"hash\": \"" + escapeJson(record.getHash()) + "\",\n");
+    public static LoadResult load(HashChain hashChain) {
+        return load(hashChain, LoadMode.FULL);
+    }
 
-                String prev = record.getPreviousHash();
-                if (prev == null) {
-                    writer.write("      \"previousHash\": null,\n");
-                } else {
-                    writer.write("      \"previousHash\": \"" + escapeJson(prev) + "\",\n");
+    public static LoadResult load(HashChain hashChain, LoadMode mode) {
+        try (Span span = Metrics.begin(Operation.LOAD)) {
+            return observe(span, hashChain, loadLog(hashChain, mode));
+        }
+    }
+
+    private static LoadResult observe(Span span, HashChain hashChain, LoadResult result) {
+        span.records(hashChain.size());
+        if (!result.success) {
+            span.failed();
+        }
+        return result;
+    }
+
+    private static LoadResult loadLog(HashChain hashChain, LoadMode mode) {
+        try {
+            SegmentLog segmentLog = log();
+            loaded(Long.MAX_VALUE, false);
+            savedIndexHash = null;
+            savedFilterHash = null;
+            segmentLog.recover();
+            if (segmentLog.isEmpty()) {
+                LoadResult result = migrateJson(hashChain, segmentLog);
+                if (result.success) {
+                    loaded(hashChain.size(), true);
+                    if (mode == LoadMode.MAPPED) {
+                        attachMerkleLevels(hashChain, hashChain.snapshot(), null);
+                    }
                 }
+                return result;
+            }
+            if (segmentLog.isLegacyFormat()) {
+                migrateLegacyLog(segmentLog);
+            }
+
+            if (mode == LoadMode.MAPPED) {
+                return applyRedactions(hashChain, loadMapped(hashChain, segmentLog));
+            }
+
+            List<HashRecord> records = new ArrayList<>();
+            segmentLog.replay(entry -> records.add(entry.record()));
+            hashChain.replaceAll(records);
+
+            ChainVerifier.Report report = ChainVerifier.verify(hashChain.snapshot(),
+                    segmentLog.getCommittedChainHash(), rootHash(segmentLog.getCommittedRoot()));
+            if (!report.valid) {
+                hashChain.clear();
+                return LoadResult.broken(report.errorMessage, report.firstBrokenIndex);
+            }
+            loaded(report.recordCount, true);
+            synchronized (ChainStorage.class) {
+                snapshot = ChainSnapshot.read(SNAPSHOT_FILE);
+            }
+            restoreIndexAsync(hashChain);
+            return applyRedactions(hashChain, LoadResult.ok());
+        } catch (SegmentLog.IntegrityException e) {
+            hashChain.clear();
+            return LoadResult.error(e.getMessage());
+        } catch (IOException e) {
+            hashChain.clear();
+            return LoadResult.error("Не удалось загрузить цепочку из файла: " + e.getMessage());
+        }
+    }
+
+    // Redactions the compactor has not carried into the segments yet. An entry only applies to the record it
+    // was made for; one left over from a rewritten log names a hash that is no longer there.
+    private static LoadResult applyRedactions(HashChain hashChain, LoadResult result) throws IOException {
+        if (!result.success) {
+            return result;
+        }
+        List<RedactionLog.Redaction> entries = redactions().entries();
+        if (entries.isEmpty()) {
+            return result;
+        }
+        RecordSource view = hashChain.snapshot();
+        hashChain.redact(entries.stream()
+                .filter(entry -> entry.index < view.size() && Arrays.equals(view.hashAt(entry.index), entry.hash))
+                .mapToInt(entry -> entry.index)
+                .toArray());
+        scheduleCompaction();
+        return result;
+    }
+
+    // With a valid snapshot only the records committed after it are hashed and checked; the rest is
+    // covered by the snapshot signature and the signed commit it ends at.
+    private static LoadResult loadMapped(HashChain hashChain, SegmentLog segmentLog) throws IOException {
+        ChainSnapshot saved = ChainSnapshot.read(SNAPSHOT_FILE);
+        MappedChainReader reader = segmentLog.openMapped(saved);
+        hashChain.attach(reader);
+        int resumed = reader.resumedSize();
+        if (resumed == 0 || !hashChain.resume(resumed, saved.lastHash(), saved.digest(), saved.merkleFrontier())) {
+            loaded(reader.size(), false);
+            attachMerkleLevels(hashChain, reader, null);
+            restoreIndexAsync(hashChain);
+            return LoadResult.ok();
+        }
+        ChainVerifier.Report report = ChainVerifier.verifyFrom(reader, resumed, hashChain.computeChainHashBytes(),
+                hashChain.computeMerkleRoot(), reader.getCommittedChainHash(), rootHash(reader.getCommittedRoot()));
+        if (!report.valid) {
+            hashChain.clear();
+            return LoadResult.broken(report.errorMessage, report.firstBrokenIndex);
+        }
+        loaded(reader.size(), true);
+        synchronized (ChainStorage.class) {
+            snapshot = saved;
+        }
+        attachMerkleLevels(hashChain, reader, saved);
+        restoreIndexAsync(hashChain);
+        return LoadResult.resumed(resumed);
+    }
+
+    // The stored tree levels are trusted as far as a signed root vouches for them: the last commit, else the
+    // snapshot. The rest is filled in the background; until then proofs there rehash the records.
+    private static void attachMerkleLevels(HashChain hashChain, RecordSource records, ChainSnapshot saved) throws IOException {
+        MerkleLevels levels = merkleLevels();
+        int stored = levels.size();
+        MerkleTree.SignedRoot committed = log().getCommittedRoot();
+        int trusted = 0;
+        if (committed != null && stored >= records.size() && storedRootMatches(levels, records.size(), records, committed.root)) {
+            trusted = records.size();
+        } else if (saved != null && stored >= saved.size() && storedRootMatches(levels, saved.size(), records, saved.merkleRoot)) {
+            trusted = saved.size();
+        }
+        hashChain.attachMerkleStore(levels, trusted);
+        hashChain.startMerkleFill();
+    }
+
+    private static boolean storedRootMatches(MerkleLevels levels, int size, RecordSource records, byte[] root) {
+        try {
+            return Arrays.equals(MerkleTree.fromStore(levels, size, records).root(), root);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    public static ChainVerifier.Report verify(HashChain hashChain) throws IOException {
+        return verifyAsync(hashChain).join();
+    }
+
+    // The committed prefix has to reproduce the signed chain hash and Merkle root, which the report then
+    // carries; records appended after the last commit are checked for their hashes and links.
+    public static CompletableFuture<ChainVerifier.Report> verifyAsync(HashChain hashChain) throws IOException {
+        long generation;
+        synchronized (ChainStorage.class) {
+            generation = loadGeneration;
+        }
+        SegmentLog.Head head = log().committedHead();
+        RecordSource snapshot = hashChain.snapshot();
+        int committed = (int) head.count;
+        if (committed == 0 || committed > snapshot.size() || !Arrays.equals(snapshot.hashAt(committed - 1), head.lastHash)) {
+            return CompletableFuture.supplyAsync(() -> ChainVerifier.verify(snapshot));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            ChainVerifier.Report report = ChainVerifier.verify(prefix(snapshot, committed), head.chainHash, rootHash(head.root));
+            verified(generation, committed, report.valid);
+            if (!report.valid || committed == snapshot.size()) {
+                return report;
+            }
+            return ChainVerifier.verifyFrom(snapshot, committed, report.chainHash, report.merkleRoot, null, null);
+        });
+    }
 
-                writer.write("      \"person\": \"" + escapeJson(data.toString()) + "\"\n");
-                writer.write("    }");
+    private static synchronized void loaded(long count, boolean verified) {
+        loadGeneration++;
+        loadedCount = count;
+        logVerified = verified || count == 0;
+    }
+
+    private static synchronized void verified(long generation, long count, boolean valid) {
+        if (!valid) {
+            logVerified = false;
+        } else if (generation == loadGeneration && count >= loadedCount) {
+            logVerified = true;
+        }
+    }
 
-                if (i < hashChain.getChain().size() - 1) {
-                    writer.write(",");
+    private static RecordSource prefix(RecordSource records, int size) {
+        return new RecordSource() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public HashRecord get(int index) {
+                return records.get(Objects.checkIndex(index, size));
+            }
+
+            @Override
+            public byte[] hashAt(int index) {
+                return records.hashAt(Objects.checkIndex(index, size));
+            }
+        };
+    }
+
+    // Persists only what has already been built, and only where it differs from the saved files, so it is
+    // cheap at shutdown. A structure is identified by its last record hash, which fixes the whole prefix.
+    public static void saveIndex(HashChain hashChain) throws IOException {
+        if (writer != null) {
+            await(writer.flush());
+        }
+        ChainIndex index = hashChain.builtIndex();
+        if (index.size() > 0 && !Arrays.equals(index.lastHash(), savedIndexHash)) {
+            Files.createDirectories(INDEX_FILE.getParent());
+            DurableFiles.writeSigned(INDEX_FILE, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                index.write(data);
+                data.flush();
+            });
+            savedIndexHash = index.lastHash();
+        }
+        DuplicateFilter filter = hashChain.builtDuplicateFilter();
+        if (filter != null && filter.size() > 0 && !Arrays.equals(filter.lastHash(), savedFilterHash)) {
+            Files.createDirectories(DUPLICATES_FILE.getParent());
+            DurableFiles.writeSigned(DUPLICATES_FILE, out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                filter.write(data);
+                data.flush();
+            });
+            savedFilterHash = filter.lastHash();
+        }
+    }
+
+    // Off the loading thread, which may be the FX thread: the saved indexes are read, and the duplicate
+    // filter is caught up (or built) so the first enrollment does not wait for it.
+    private static void restoreIndexAsync(HashChain hashChain) {
+        CompletableFuture.runAsync(() -> {
+            restoreIndex(hashChain);
+            hashChain.prepareDuplicateFilter();
+        });
+    }
+
+    // Files that fail their HMAC are ignored like missing ones.
+    private static void restoreIndex(HashChain hashChain) {
+        try {
+            ChainIndex index = DurableFiles.readSigned(INDEX_FILE, ChainIndex::read);
+            if (index != null) {
+                savedIndexHash = index.lastHash();
+                hashChain.restoreIndex(index);
+            }
+        } catch (IOException e) {
+            // The index is rebuilt lazily on the first query.
+        }
+        try {
+            DuplicateFilter filter = DurableFiles.readSigned(DUPLICATES_FILE, DuplicateFilter::read);
+            if (filter != null) {
+                savedFilterHash = filter.lastHash();
+                hashChain.restoreDuplicateFilter(filter);
+            }
+        } catch (IOException e) {
+            // Same for the duplicate filter, which is built from the records instead.
+        }
+    }
+
+    public static MerkleTree.SignedRoot getSignedRoot() throws IOException {
+        return log().getCommittedRoot();
+    }
+
+    private static byte[] rootHash(MerkleTree.SignedRoot signedRoot) {
+        return signedRoot == null ? null : signedRoot.root;
+    }
+
+    public static synchronized void close() throws IOException {
+        if (redactions != null) {
+            redactions.close();
+            redactions = null;
+        }
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        if (merkleLevels != null) {
+            merkleLevels.close();
+            merkleLevels = null;
+        }
+        if (log != null) {
+            ChainSnapshot current = snapshot;
+            if (log.getCommittedCount() > (current == null ? 0 : current.size())) {
+                try {
+                    writeSnapshot(log, current, snapshotGeneration);
+                } catch (IOException e) {
+                    // Without a snapshot the next start scans the whole log.
+                }
+            }
+            log.close();
+            log = null;
+        }
+    }
+
+    private static void scheduleSnapshot() {
+        if (!snapshotRunning.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                SegmentLog segmentLog;
+                ChainSnapshot current;
+                long generation;
+                synchronized (ChainStorage.class) {
+                    segmentLog = log;
+                    current = snapshot;
+                    generation = snapshotGeneration;
                 }
-                writer.newLine();
+                if (segmentLog != null) {
+                    writeSnapshot(segmentLog, current, generation);
+                }
+            } catch (IOException e) {
+                // The next interval retries; until then startup replays a longer tail.
+            } finally {
+                snapshotRunning.set(false);
             }
+        }, "hashchain-snapshot");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-            writer.write("  ],\n");
-            writer.write("  \"chainHash\": \"" + escapeJson(chainHash) + "\",\n");
-            writer.write("  \"hmac\": \"" + escapeJson(hmac) + "\"\n");
-            writer.write("}\n");
+    private static void scheduleCompaction() {
+        compactionRequested = true;
+        if (!compactionRunning.compareAndSet(false, true)) {
+            return;
         }
+        Thread thread = new Thread(() -> {
+            try {
+                while (compactionRequested) {
+                    compactionRequested = false;
+                    compactSegments();
+                }
+            } catch (IOException | RuntimeException e) {
+                // Entries stay in the redaction log; the next redaction or start retries.
+            } finally {
+                compactionRunning.set(false);
+                if (compactionRequested) {
+                    scheduleCompaction();
+                }
+            }
+        }, "hashchain-compactor");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-        Files.copy(DEFAULT_CHAIN_FILE, BACKUP_CHAIN_FILE, StandardCopyOption.REPLACE_EXISTING);
+    // Only sealed segments below the snapshot are compacted: the tail is still appended to and the
+    // snapshot keeps its record positions. Redactions in the tail wait until their segment is sealed.
+    private static void compactSegments() throws IOException {
+        SegmentLog segmentLog;
+        ChainSnapshot current;
+        RedactionLog redactionLog;
+        synchronized (ChainStorage.class) {
+            segmentLog = log;
+            current = snapshot;
+            redactionLog = redactions;
+        }
+        if (segmentLog == null || redactionLog == null) {
+            return;
+        }
+        List<RedactionLog.Redaction> entries = redactionLog.entries();
+        if (entries.isEmpty()) {
+            return;
+        }
+        try (Span span = Metrics.begin(Operation.COMPACT)) {
+            MappedChainReader reader = segmentLog.mapCommitted(current);
+            int[] starts = reader.segmentStarts();
+            if (starts.length == 0) {
+                return;
+            }
+            int sealed = current == null ? starts.length - 1 : (int) Math.min(starts.length - 1, current.segment);
+            int sealedRecords = starts[sealed];
+            BitSet redacted = new BitSet();
+            for (RedactionLog.Redaction entry : entries) {
+                if (entry.index < sealedRecords && Arrays.equals(reader.hashAt(entry.index), entry.hash)) {
+                    redacted.set(entry.index);
+                }
+            }
+            boolean complete = true;
+            long reclaimed = 0;
+            for (int s = 0; s < sealed; s++) {
+                int next = redacted.nextSetBit(starts[s]);
+                if (next < 0) {
+                    break;
+                }
+                if (next >= starts[s + 1]) {
+                    continue;
+                }
+                long saved = segmentLog.compact(s, starts[s], redacted::get);
+                if (saved < 0) {
+                    complete = false;
+                } else {
+                    reclaimed += saved;
+                }
+            }
+            span.records(redacted.cardinality());
+            span.bytes(reclaimed);
+            if (complete) {
+                redactionLog.discard(entries, sealedRecords);
+            }
+        }
     }
 
-    public static LoadResult load(HashChain hashChain) {
+    private static void writeSnapshot(SegmentLog segmentLog, ChainSnapshot previous, long generation) throws IOException {
+        synchronized (ChainStorage.class) {
+            if (!logVerified) {
+                return;
+            }
+        }
+        ChainSnapshot next = ChainSnapshot.build(segmentLog.mapCommitted(previous), previous);
+        if (next == null || (previous != null && next.size() <= previous.size())) {
+            return;
+        }
+        synchronized (ChainStorage.class) {
+            if (generation != snapshotGeneration) {
+                return;
+            }
+            next.write(SNAPSHOT_FILE);
+            snapshot = next;
+        }
+    }
+
+    // A rewrite moves every record, so the old snapshot is removed before the log changes under it.
+    private static synchronized void rewriteLog(SegmentLog segmentLog, HashChain.CommitPoint point) throws IOException {
+        snapshotGeneration++;
+        snapshot = null;
+        Files.deleteIfExists(SNAPSHOT_FILE);
+        segmentLog.rewrite(point.records, point.chainHash, point.merkleRoot);
+        if (point.size() >= SNAPSHOT_INTERVAL) {
+            scheduleSnapshot();
+        }
+    }
+
+    private static synchronized SegmentLog log() throws IOException {
+        if (log == null) {
+            log = new SegmentLog(DEFAULT_LOG_DIR, SEGMENT_SIZE);
+        }
+        return log;
+    }
+
+    private static synchronized MerkleLevels merkleLevels() throws IOException {
+        if (merkleLevels == null) {
+            merkleLevels = MerkleLevels.open(MERKLE_DIR);
+        }
+        return merkleLevels;
+    }
+
+    private static synchronized RedactionLog redactions() throws IOException {
+        if (redactions == null) {
+            Files.createDirectories(DEFAULT_LOG_DIR);
+            redactions = RedactionLog.open(REDACTION_FILE);
+        }
+        return redactions;
+    }
+
+    private static synchronized GroupCommitWriter writer() throws IOException {
+        if (writer == null) {
+            writer = new GroupCommitWriter(log(), COMMIT_WINDOW_MILLIS, COMMIT_GROUP_BYTES);
+        }
+        return writer;
+    }
+
+    private static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Не удалось записать цепочку в журнал: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static LoadResult migrateJson(HashChain hashChain, SegmentLog segmentLog) throws IOException {
         if (!Files.exists(DEFAULT_CHAIN_FILE)) {
             return LoadResult.ok();
         }
+        LoadResult result = loadJson(hashChain, DEFAULT_CHAIN_FILE);
+        if (result.success) {
+            Files.copy(DEFAULT_CHAIN_FILE, BACKUP_CHAIN_FILE, StandardCopyOption.REPLACE_EXISTING);
+            rewriteLog(segmentLog, hashChain.commitPoint());
+        }
+        return result;
+    }
 
-        try {
-            List<String> lines = Files.readAllLines(DEFAULT_CHAIN_FILE, StandardCharsets.UTF_8);
-            hashChain.getChain().clear();
+    private static void migrateLegacyLog(SegmentLog segmentLog) throws IOException {
+        List<HashRecord> records = new ArrayList<>();
+        segmentLog.replay(entry -> {
+            byte[] previous = records.isEmpty() ? null : records.get(records.size() - 1).getHashBytes();
+            if (!Arrays.equals(entry.previousHash, previous)
+                    || !Arrays.equals(HashRecord.computeHash(entry.data, entry.previousHash), entry.hash)) {
+                throw new SegmentLog.IntegrityException("Запись журнала №" + (records.size() + 1) + " не соответствует своему хешу. Файл повреждён или подделан.");
+            }
+            records.add(new HashRecord(entry.person(), entry.previousHash, entry.hash));
+        });
+
+        HashChain migrated = new HashChain();
+        List<HashRecord> rehashed = new ArrayList<>(records.size());
+        byte[] previous = null;
+        for (HashRecord record : records) {
+            HashRecord next = new HashRecord(record.getData(), previous);
+            rehashed.add(next);
+            previous = next.getHashBytes();
+        }
+        migrated.appendPrepared(rehashed);
 
-            String chainHashFromFile = null;
-            String hmacFromFile = null;
+        Files.createDirectories(LEGACY_LOG_BACKUP_DIR);
+        for (Path segment : SegmentLog.listSegments(segmentLog.getDirectory())) {
+            Files.copy(segment, LEGACY_LOG_BACKUP_DIR.resolve(segment.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        }
+        rewriteLog(segmentLog, migrated.commitPoint());
+    }
 
-            for (String line : lines) {
-                String trimmed = line.trim();
+    private static LoadResult loadJson(HashChain hashChain, Path source) {
+        try (Span span = Metrics.begin(Operation.IMPORT)) {
+            span.bytes(Files.size(source));
+            return observe(span, hashChain, readJson(hashChain, source));
+        } catch (IOException e) {
+            return LoadResult.error("Не удалось загрузить цепочку из файла: " + e.getMessage());
+        }
+    }
+
+    private static LoadResult readJson(HashChain hashChain, Path source) {
+        try (JsonReader json = new JsonReader(new InputStreamReader(openJson(source), StandardCharsets.UTF_8))) {
+            hashChain.clear();
 
-                if (trimmed.startsWith("\"person\"")) {
-                    String value = extractJsonValue(trimmed);
-                    if (value != null) {
-                        PersonData person = parsePersonString(value);
-                        if (person != null) {
-                            hashChain.addRecord(person);
+            String chainHashFromFile = null;
+            String hmacFromFile = null;
+            boolean codecFormat = false;
+            boolean legacyFormat = false;
+            MessageDigest legacyChainDigest = HashUtils.newSHA256Digest();
+            byte[] legacyPrevious = null;
+            List<PersonData> batch = new ArrayList<>(JSON_IMPORT_BATCH);
+            Base64.Decoder base64 = Base64.getDecoder();
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "format" -> {
+                        json.nextInt();
+                        codecFormat = true;
+                    }
+                    case "records" -> {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            String data = null;
+                            String person = null;
+                            String hash = null;
+                            String previousHash = null;
+                            String redacted = null;
+                            json.beginObject();
+                            while (json.hasNext()) {
+                                switch (json.nextName()) {
+                                    case "data" -> data = json.nextStringOrNull();
+                                    case "person" -> person = json.nextStringOrNull();
+                                    case "hash" -> hash = json.nextStringOrNull();
+                                    case "previousHash" -> previousHash = json.nextStringOrNull();
+                                    case "redacted" -> redacted = json.nextStringOrNull();
+                                    default -> json.skipValue();
+                                }
+                            }
+                            json.endObject();
+
+                            PersonData parsed;
+                            if (redacted != null) {
+                                codecFormat = true;
+                                if (!batch.isEmpty()) {
+                                    hashChain.restoreRecords(batch);
+                                    batch.clear();
+                                }
+                                appendTombstone(hashChain, hash, previousHash, redacted);
+                                parsed = null;
+                            } else if (data != null) {
+                                codecFormat = true;
+                                parsed = PersonCodec.decode(base64.decode(data));
+                            } else if (person != null) {
+                                legacyFormat = true;
+                                parsed = parsePersonString(person);
+                                if (parsed != null) {
+                                    legacyPrevious = HashRecord.computeHash(parsed.toString().getBytes(StandardCharsets.UTF_8), legacyPrevious);
+                                    legacyChainDigest.update(HashUtils.toHexAscii(legacyPrevious));
+                                }
+                            } else {
+                                parsed = null;
+                            }
+                            if (codecFormat && legacyFormat) {
+                                throw new IllegalArgumentException("файл смешивает записи старого и нового формата");
+                            }
+                            if (parsed != null) {
+                                batch.add(parsed);
+                                if (batch.size() == JSON_IMPORT_BATCH) {
+                                    hashChain.restoreRecords(batch);
+                                    batch.clear();
+                                }
+                            }
                         }
+                        json.endArray();
                     }
-                } else if (trimmed.startsWith("\"chainHash\"")) {
-                    chainHashFromFile = extractJsonValue(trimmed);
-                } else if (trimmed.startsWith("\"hmac\"")) {
-                    hmacFromFile = extractJsonValue(trimmed);
+                    case "chainHash" -> chainHashFromFile = json.nextStringOrNull();
+                    case "hmac" -> hmacFromFile = json.nextStringOrNull();
+                    default -> json.skipValue();
                 }
             }
+            json.endObject();
+            json.peek();
+            if (!batch.isEmpty()) {
+                hashChain.restoreRecords(batch);
+            }
 
             if (chainHashFromFile != null && hmacFromFile != null) {
                 String expectedHmac = HashUtils.calculateHmacSHA256(SecurityConfig.getHmacSecret(), chainHashFromFile);
                 if (!expectedHmac.equalsIgnoreCase(hmacFromFile)) {
-                    hashChain.getChain().clear();
+                    hashChain.clear();
                     return LoadResult.error("Подпись HMAC не совпадает. Файл цепочки повреждён или подделан.");
                 }
 
-                String actualChainHash = hashChain.computeChainHash();
+                String actualChainHash = legacyFormat ? HashUtils.toHex(legacyChainDigest.digest()) : hashChain.computeChainHash();
                 if (!actualChainHash.equals(chainHashFromFile)) {
-                    hashChain.getChain().clear();
+                    hashChain.clear();
                     return LoadResult.error("Хеш цепочки не соответствует данным в файле. Файл повреждён или подделан.");
                 }
             }
 
             return LoadResult.ok();
+        } catch (IllegalArgumentException e) {
+            hashChain.clear();
+            return LoadResult.error("Не удалось разобрать запись в файле цепочки: " + e.getMessage());
         } catch (IOException e) {
+            hashChain.clear();
             return LoadResult.error("Не удалось загрузить цепочку из файла: " + e.getMessage());
         }
     }
 
-    private static String extractJsonValue(String line) {
-        int colonIndex = line.indexOf(':');
-        int firstQuote = line.indexOf('"', colonIndex + 1);
-        int lastQuote = line.lastIndexOf('"');
-        if (firstQuote >= 0 && lastQuote > firstQuote) {
-            return line.substring(firstQuote + 1, lastQuote);
+    // A tombstone cannot be rehashed from its data, so it is taken as written once its seal and its link
+    // to the record before it check out; the chain hash check at the end covers the hash itself.
+    private static void appendTombstone(HashChain hashChain, String hash, String previousHash, String seal) {
+        int number = hashChain.size() + 1;
+        if (hash == null || hash.length() != HashUtils.HEX_SIZE) {
+            throw new IllegalArgumentException("у удалённой записи №" + number + " нет хеша");
+        }
+        HashRecord tombstone = HashRecord.tombstone(previousHash == null ? null : HashUtils.fromHex(previousHash),
+                HashUtils.fromHex(hash), HashUtils.fromHex(seal));
+        if (!Arrays.equals(tombstone.getPreviousHashBytes(), hashChain.lastHash()) || !tombstone.isRedactionValid()) {
+            throw new IllegalArgumentException("удалённая запись №" + number + " не связана с цепочкой или её отметка подделана");
+        }
+        hashChain.appendPrepared(List.of(tombstone));
+    }
+
+    private static InputStream openJson(Path source) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(source), JSON_STREAM_BUFFER_SIZE);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >>> 8)) {
+            return new GZIPInputStream(in, JSON_STREAM_BUFFER_SIZE);
         }
-        return null;
+        return in;
     }
 
-    private static PersonData parsePersonString(String s) {
+    static PersonData parsePersonString(String s) {
         try {
             int fpIndex = s.indexOf(" Fingerprint[");
             if (fpIndex < 0) {
@@ -189,22 +978,4 @@ public class ChainStorage {
             return null;
         }
     }
-
-    private static String escapeJson(String value) {
-        if (value == null) {
-            return "";
-        }
-        StringBuilder sb = new StringBuilder();
-        for (char c : value.toCharArray()) {
-            switch (c) {
-                case '\\' -> sb.append("\\\\");
-                case '"' -> sb.append("\\\"");
-                case '\n' -> sb.append("\\n");
-                case '\r' -> sb.append("\\r");
-                case '\t' -> sb.append("\\t");
-                default -> sb.append(c);
-            }
-        }
-        return sb.toString();
-    }
 }
@@ -0,0 +1,144 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.SecurityConfig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.stream.Stream;
+import javax.crypto.Mac;
+
+final class DurableFiles {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    @FunctionalInterface
+    interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Parser<T> {
+        T readFrom(DataInputStream in) throws IOException;
+    }
+
+    private DurableFiles() {
+    }
+
+    // Readers see either the previous file or the complete new one, never a torn write.
+    static void write(Path target, Content content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            content.writeTo(out);
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        move(temp, target);
+    }
+
+    // Like write, followed by an HMAC of the content, so readSigned refuses a file changed outside the application.
+    static void writeSigned(Path target, Content content) throws IOException {
+        write(target, out -> {
+            Mac mac = HashUtils.newHmacSHA256(SecurityConfig.getHmacSecret());
+            content.writeTo(new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    mac.update((byte) b);
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    mac.update(bytes, offset, length);
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+            out.write(mac.doFinal());
+        });
+    }
+
+    // Parses a file written by writeSigned once its HMAC matches; null when it is missing, cut short or forged.
+    static <T> T readSigned(Path file, Parser<T> parser) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long signed = channel.size() - HashUtils.HASH_SIZE;
+            if (signed < 0) {
+                return null;
+            }
+            Mac mac = HashUtils.newHmacSHA256(SecurityConfig.getHmacSecret());
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (long position = 0; position < signed; ) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, signed - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    return null;
+                }
+                position += read;
+                mac.update(buffer.flip());
+            }
+            ByteBuffer signature = ByteBuffer.allocate(HashUtils.HASH_SIZE);
+            while (signature.hasRemaining()) {
+                if (channel.read(signature, signed + signature.position()) < 0) {
+                    return null;
+                }
+            }
+            if (!MessageDigest.isEqual(mac.doFinal(), signature.array())) {
+                return null;
+            }
+            channel.position(0);
+            return parser.readFrom(new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE)));
+        }
+    }
+
+    static void move(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; renames are then only as durable as the filesystem makes them.
+        }
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,179 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.metrics.Metrics;
+import io.hashchain.metrics.Operation;
+import io.hashchain.metrics.Span;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class GroupCommitWriter implements Closeable {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 5;
+    public static final long DEFAULT_MAX_GROUP_BYTES = 1L << 20;
+
+    private static final class Request {
+        final List<HashRecord> records;
+        final long recordCount;
+        final byte[] chainHash;
+        final byte[] merkleRoot;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+        final long submitted = Metrics.ENABLED ? System.nanoTime() : 0;
+
+        Request(List<HashRecord> records, long recordCount, byte[] chainHash, byte[] merkleRoot) {
+            this.records = records;
+            this.recordCount = recordCount;
+            this.chainHash = chainHash;
+            this.merkleRoot = merkleRoot;
+        }
+    }
+
+    private static final Request SHUTDOWN = new Request(List.of(), -1, null, null);
+
+    private final SegmentLog log;
+    private final long windowNanos;
+    private final long maxGroupBytes;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public GroupCommitWriter(SegmentLog log, long windowMillis, long maxGroupBytes) {
+        this.log = log;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxGroupBytes = maxGroupBytes;
+        this.thread = new Thread(this::run, "hashchain-group-commit");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public CompletableFuture<Void> submit(List<HashRecord> records, long recordCount, byte[] chainHash, byte[] merkleRoot) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IOException("Журнал цепочки закрыт."));
+        }
+        Request request = new Request(List.copyOf(records), recordCount, chainHash, merkleRoot);
+        queue.add(request);
+        return request.durable;
+    }
+
+    public CompletableFuture<Void> flush() {
+        if (closed) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Request barrier = new Request(List.of(), -1, null, null);
+        queue.add(barrier);
+        return barrier.durable;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(SHUTDOWN);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ожидание записи журнала прервано.", e);
+        }
+    }
+
+    private void run() {
+        List<Request> group = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                Request first = queue.take();
+                if (first == SHUTDOWN) {
+                    break;
+                }
+                group.add(first);
+                long bytes = log.appendAll(first.records);
+                long deadline = System.nanoTime() + windowNanos;
+
+                while (bytes < maxGroupBytes) {
+                    long wait = deadline - System.nanoTime();
+                    Request next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        running = false;
+                        break;
+                    }
+                    group.add(next);
+                    bytes += log.appendAll(next.records);
+                }
+
+                commit(group, bytes);
+                long completed = Metrics.ENABLED ? System.nanoTime() : 0;
+                for (Request request : group) {
+                    request.durable.complete(null);
+                    if (request.recordCount >= 0) {
+                        Metrics.record(Operation.DURABLE, completed - request.submitted, request.records.size(), 0, false);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                fail(group, new IOException("Запись журнала прервана.", e));
+            } catch (IOException | RuntimeException e) {
+                // Callers roll their chains back to the committed count, so the log is recovered first.
+                recover();
+                fail(group, e);
+            }
+            group.clear();
+        }
+
+        Request pending;
+        while ((pending = queue.poll()) != null) {
+            pending.durable.completeExceptionally(new IOException("Журнал цепочки закрыт."));
+        }
+    }
+
+    private void commit(List<Request> group, long bytes) throws IOException {
+        Request last = null;
+        int records = 0;
+        for (Request request : group) {
+            if (request.recordCount >= 0) {
+                last = request;
+            }
+            records += request.records.size();
+        }
+        if (last == null) {
+            return;
+        }
+        try (Span span = Metrics.begin(Operation.COMMIT)) {
+            span.records(records).bytes(bytes);
+            try {
+                log.commit(last.recordCount, last.chainHash, last.merkleRoot);
+                log.force();
+            } catch (IOException | RuntimeException e) {
+                span.failed();
+                throw e;
+            }
+        }
+    }
+
+    private void fail(List<Request> group, Throwable error) {
+        for (Request request : group) {
+            request.durable.completeExceptionally(error);
+        }
+    }
+
+    private void recover() {
+        try {
+            log.recover();
+        } catch (IOException e) {
+            // The next request reports the problem to its caller.
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.hashchain.utils;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import javax.crypto.Mac;
@@ -7,40 +8,143 @@ import javax.crypto.spec.SecretKeySpec;
 
 public class HashUtils {
 
+    public static final int HASH_SIZE = 32;
+    public static final int HEX_SIZE = HASH_SIZE * 2;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(HashUtils::newSHA256Digest);
+    private static final ThreadLocal<KeyedMac> HMAC_SHA256 = new ThreadLocal<>();
+
+    private static final class KeyedMac {
+        final String secret;
+        final Mac mac;
+
+        KeyedMac(String secret, Mac mac) {
+            this.secret = secret;
+            this.mac = mac;
+        }
+    }
+
     public static String calculateSHA256(String input) {
+        return toHex(sha256(input.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String calculateHmacSHA256(String secret, String data) {
+        return toHex(hmacSHA256(secret, data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static byte[] sha256(byte[] input) {
+        return sha256(input, 0, input.length);
+    }
+
+    public static byte[] sha256(byte[] input, int offset, int length) {
+        MessageDigest digest = sha256Digest();
+        digest.update(input, offset, length);
+        return digest.digest();
+    }
+
+    public static byte[] sha256(ByteBuffer input) {
+        MessageDigest digest = sha256Digest();
+        digest.update(input);
+        return digest.digest();
+    }
+
+    public static MessageDigest sha256Digest() {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest;
+    }
+
+    public static byte[] hmacSHA256(String secret, byte[] data) {
+        return hmacSHA256(secret, data, 0, data.length);
+    }
+
+    public static byte[] hmacSHA256(String secret, byte[] data, int offset, int length) {
+        Mac mac = keyedMac(secret);
+        mac.update(data, offset, length);
+        return mac.doFinal();
+    }
+
+    public static byte[] hmacSHA256(String secret, ByteBuffer data) {
+        Mac mac = keyedMac(secret);
+        mac.update(data);
+        return mac.doFinal();
+    }
+
+    private static Mac keyedMac(String secret) {
+        KeyedMac cached = HMAC_SHA256.get();
+        if (cached != null && cached.secret.equals(secret)) {
+            cached.mac.reset();
+            return cached.mac;
+        }
+        Mac mac = newHmacSHA256(secret);
+        HMAC_SHA256.set(new KeyedMac(secret, mac));
+        return mac;
+    }
+
+    public static Mac newHmacSHA256(String secret) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] encoded = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-
-            StringBuilder hex = new StringBuilder();
-            for (byte b : encoded) {
-                String hexByte = Integer.toHexString(0xff & b);
-                if (hexByte.length() == 1) hex.append('0');
-                hex.append(hexByte);
-            }
-            return hex.toString();
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return mac;
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при вычислении HMAC-SHA256", e);
+        }
+    }
+
+    public static MessageDigest newSHA256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при вычислении SHA-256", e);
         }
     }
 
-    public static String calculateHmacSHA256(String secret, String data) {
+    public static MessageDigest cloneDigest(MessageDigest digest) {
         try {
-            byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-            SecretKeySpec keySpec = new SecretKeySpec(keyBytes, "HmacSHA256");
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(keySpec);
-            byte[] rawHmac = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-
-            StringBuilder hex = new StringBuilder();
-            for (byte b : rawHmac) {
-                String hexByte = Integer.toHexString(0xff & b);
-                if (hexByte.length() == 1) hex.append('0');
-                hex.append(hexByte);
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException("Ошибка при вычислении SHA-256", e);
+        }
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[] HEX_ASCII = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    public static byte[] toHexAscii(byte[] bytes) {
+        byte[] hex = new byte[bytes.length * 2];
+        writeHexAscii(bytes, hex, 0);
+        return hex;
+    }
+
+    public static void writeHexAscii(byte[] bytes, byte[] out, int offset) {
+        for (int i = 0; i < bytes.length; i++) {
+            out[offset + i * 2] = HEX_ASCII[(bytes[i] >> 4) & 0x0f];
+            out[offset + i * 2 + 1] = HEX_ASCII[bytes[i] & 0x0f];
+        }
+    }
+
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Некорректная длина hex-строки: " + hex.length());
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int hi = Character.digit(hex.charAt(i * 2), 16);
+            int lo = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("Некорректный символ в hex-строке: " + hex);
             }
-            return hex.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Ошибка при вычислении HMAC-SHA256", e);
+            bytes[i] = (byte) ((hi << 4) | lo);
         }
+        return bytes;
     }
 }
@@ -0,0 +1,394 @@
+package io.hashchain.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+public class JsonReader implements Closeable {
+
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    public static class SyntaxException extends IOException {
+        public SyntaxException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long bufferOffset;
+    private final StringBuilder scratch = new StringBuilder();
+
+    private int[] scopes = new int[32];
+    private int depth;
+    private Token peeked;
+    private boolean literal;
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        scopes[depth++] = EMPTY_DOCUMENT;
+    }
+
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        switch (scopes[depth - 1]) {
+            case EMPTY_DOCUMENT -> {
+                scopes[depth - 1] = NONEMPTY_DOCUMENT;
+                if (position < limit || fill()) {
+                    if (buffer[position] == '\uFEFF') {
+                        position++;
+                    }
+                }
+            }
+            case NONEMPTY_DOCUMENT -> {
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("лишние данные после конца документа");
+                }
+                return peeked = Token.END_DOCUMENT;
+            }
+            case EMPTY_ARRAY -> {
+                scopes[depth - 1] = NONEMPTY_ARRAY;
+                if (nextNonWhitespace() == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                position--;
+            }
+            case NONEMPTY_ARRAY -> {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("ожидается ',' или ']'");
+                }
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                int c = nextNonWhitespace();
+                if (scopes[depth - 1] == NONEMPTY_OBJECT) {
+                    if (c == '}') {
+                        return peeked = Token.END_OBJECT;
+                    }
+                    if (c != ',') {
+                        throw syntaxError("ожидается ',' или '}'");
+                    }
+                    c = nextNonWhitespace();
+                } else if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (c != '"') {
+                    throw syntaxError("ожидается имя поля");
+                }
+                scopes[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            }
+            case DANGLING_NAME -> {
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("ожидается ':'");
+                }
+                scopes[depth - 1] = NONEMPTY_OBJECT;
+            }
+            default -> throw new IllegalStateException("Некорректное состояние разбора JSON.");
+        }
+        return peeked = peekValue();
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return readString();
+    }
+
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        String number = readNumber();
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            throw syntaxError("ожидается целое число, получено " + number);
+        }
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw syntaxError("число вне диапазона int: " + value);
+        }
+        return (int) value;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return literal;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    public String nextStringOrNull() throws IOException {
+        if (peek() == Token.NULL) {
+            nextNull();
+            return null;
+        }
+        return nextString();
+    }
+
+    public void skipValue() throws IOException {
+        int nested = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    nested++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    nested++;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    nested--;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    nested--;
+                }
+                case NAME -> nextName();
+                case STRING -> nextString();
+                case NUMBER -> {
+                    peeked = null;
+                    readNumber();
+                }
+                case BOOLEAN, NULL -> peeked = null;
+                case END_DOCUMENT -> throw syntaxError("неожиданный конец документа");
+            }
+        } while (nested > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Token peekValue() throws IOException {
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+                readLiteral("rue");
+                literal = true;
+                return Token.BOOLEAN;
+            case 'f':
+                readLiteral("alse");
+                literal = false;
+                return Token.BOOLEAN;
+            case 'n':
+                readLiteral("ull");
+                return Token.NULL;
+            case -1:
+                throw syntaxError("неожиданный конец документа");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    position--;
+                    return Token.NUMBER;
+                }
+                throw syntaxError("неожиданный символ '" + (char) c + "'");
+        }
+    }
+
+    private void expect(Token token) throws IOException {
+        Token actual = peek();
+        if (actual != token) {
+            throw syntaxError("ожидается " + token + ", получено " + actual);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+        scopes[depth++] = scope;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (position < limit || fill()) {
+            char c = buffer[position++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private String readString() throws IOException {
+        int start = position;
+        while (position < limit) {
+            char c = buffer[position];
+            if (c == '"') {
+                position++;
+                return new String(buffer, start, position - 1 - start);
+            }
+            if (c == '\\' || c < 0x20) {
+                break;
+            }
+            position++;
+        }
+
+        scratch.setLength(0);
+        scratch.append(buffer, start, position - start);
+        while (true) {
+            if (position == limit && !fill()) {
+                throw syntaxError("незакрытая строка");
+            }
+            char c = buffer[position++];
+            if (c == '"') {
+                return scratch.toString();
+            }
+            if (c == '\\') {
+                scratch.append(readEscape());
+            } else if (c < 0x20) {
+                throw syntaxError("управляющий символ в строке");
+            } else {
+                scratch.append(c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (position == limit && !fill()) {
+            throw syntaxError("незакрытая строка");
+        }
+        char c = buffer[position++];
+        switch (c) {
+            case '"', '\\', '/':
+                return c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (position == limit && !fill()) {
+                        throw syntaxError("незакрытая строка");
+                    }
+                    int digit = Character.digit(buffer[position++], 16);
+                    if (digit < 0) {
+                        throw syntaxError("некорректная escape-последовательность \\u");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("некорректная escape-последовательность \\" + c);
+        }
+    }
+
+    private String readNumber() throws IOException {
+        scratch.setLength(0);
+        while (position < limit || fill()) {
+            char c = buffer[position];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                scratch.append(c);
+                position++;
+            } else {
+                break;
+            }
+        }
+        return scratch.toString();
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if ((position == limit && !fill()) || buffer[position++] != rest.charAt(i)) {
+                throw syntaxError("некорректный литерал");
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        int read;
+        while ((read = in.read(buffer, 0, buffer.length)) == 0) {
+            // Reader contract allows zero-length reads only for empty buffers; retry.
+        }
+        if (read < 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private SyntaxException syntaxError(String message) {
+        return new SyntaxException("Некорректный JSON (символ " + (bufferOffset + position) + "): " + message);
+    }
+}
@@ -0,0 +1,224 @@
+package io.hashchain.utils;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int BUFFER_SIZE = 1 << 13;
+    private static final int STRING_RUN = 256;
+
+    private final Writer out;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        write('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        write('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        write(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        write(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter hexValue(byte[] value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        ensure(value.length * 2 + 2);
+        buffer[position++] = '"';
+        for (byte b : value) {
+            buffer[position++] = HEX_DIGITS[(b >> 4) & 0x0f];
+            buffer[position++] = HEX_DIGITS[b & 0x0f];
+        }
+        buffer[position++] = '"';
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        write("null");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        out.close();
+    }
+
+    private void push() {
+        if (depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth++] = false;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        separate();
+    }
+
+    private void separate() throws IOException {
+        if (depth > 0) {
+            if (hasElements[depth - 1]) {
+                write(',');
+            }
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    // Copies runs straight into the buffer and rewinds to the first character that needs escaping;
+    // runs are capped so escape-heavy strings do not recopy a whole buffer per escape.
+    private void writeString(String value) throws IOException {
+        write('"');
+        int offset = 0;
+        int length = value.length();
+        while (offset < length) {
+            if (position == buffer.length) {
+                drain();
+            }
+            int chunk = Math.min(Math.min(length - offset, buffer.length - position), STRING_RUN);
+            value.getChars(offset, offset + chunk, buffer, position);
+            int end = position + chunk;
+            int i = position;
+            while (i < end) {
+                char c = buffer[i];
+                if (c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029') {
+                    break;
+                }
+                i++;
+            }
+            offset += i - position;
+            position = i;
+            if (i < end) {
+                writeEscaped(value.charAt(offset++));
+            }
+        }
+        write('"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        switch (c) {
+            case '"' -> write("\\\"", 0, 2);
+            case '\\' -> write("\\\\", 0, 2);
+            case '\n' -> write("\\n", 0, 2);
+            case '\r' -> write("\\r", 0, 2);
+            case '\t' -> write("\\t", 0, 2);
+            default -> {
+                ensure(6);
+                buffer[position++] = '\\';
+                buffer[position++] = 'u';
+                buffer[position++] = HEX_DIGITS[(c >> 12) & 0x0f];
+                buffer[position++] = HEX_DIGITS[(c >> 8) & 0x0f];
+                buffer[position++] = HEX_DIGITS[(c >> 4) & 0x0f];
+                buffer[position++] = HEX_DIGITS[c & 0x0f];
+            }
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = c;
+    }
+
+    private void write(String value) throws IOException {
+        write(value, 0, value.length());
+    }
+
+    private void write(String value, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == buffer.length) {
+                drain();
+            }
+            int chunk = Math.min(length, buffer.length - position);
+            value.getChars(offset, offset + chunk, buffer, position);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void ensure(int length) throws IOException {
+        if (buffer.length - position < length) {
+            drain();
+        }
+        if (length > buffer.length) {
+            throw new IllegalArgumentException("Значение длиннее буфера: " + length);
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
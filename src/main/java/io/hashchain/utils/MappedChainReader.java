@@ -0,0 +1,307 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.RecordSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class MappedChainReader implements RecordSource {
+
+    private final List<Path> segmentFiles;
+    private final MappedByteBuffer[] segments;
+    private final int[] firstRecord;
+    private long[] offsets = new long[1024];
+    private int size;
+    private byte[] committedChainHash;
+    private MerkleTree.SignedRoot committedRoot;
+
+    // Segments covered by a snapshot are indexed on first access instead of at open.
+    private int lazySegments;
+    private int resumedSize;
+    private long lazyEnd;
+    private AtomicIntegerArray indexed;
+
+    int tailSegment = -1;
+    long tailOffset = SegmentLog.SEGMENT_HEADER_SIZE;
+
+    private MappedChainReader(List<Path> segmentFiles) {
+        this.segmentFiles = segmentFiles;
+        this.segments = new MappedByteBuffer[segmentFiles.size()];
+        this.firstRecord = new int[segmentFiles.size()];
+    }
+
+    static MappedChainReader open(List<Path> segmentFiles) throws IOException {
+        return open(segmentFiles, null);
+    }
+
+    static MappedChainReader open(List<Path> segmentFiles, ChainSnapshot snapshot) throws IOException {
+        MappedChainReader reader = new MappedChainReader(segmentFiles);
+        for (int s = 0; s < segmentFiles.size(); s++) {
+            Path segment = segmentFiles.get(s);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new SegmentLog.IntegrityException("Сегмент " + segment.getFileName() + " слишком велик для отображения в память.");
+                }
+                reader.segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            checkHeader(segment, reader.segments[s]);
+        }
+
+        int first = 0;
+        int start = SegmentLog.SEGMENT_HEADER_SIZE;
+        int recordCount = 0;
+        if (snapshot != null && reader.adopt(snapshot)) {
+            first = (int) snapshot.segment;
+            start = (int) snapshot.offset;
+            recordCount = snapshot.count;
+        }
+        for (int s = first; s < segmentFiles.size(); s++) {
+            recordCount = reader.scanSegment(segmentFiles.get(s), s, reader.segments[s], s == first ? start : SegmentLog.SEGMENT_HEADER_SIZE,
+                    recordCount, s == segmentFiles.size() - 1);
+        }
+        return reader;
+    }
+
+    private static void checkHeader(Path segment, ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < SegmentLog.SEGMENT_HEADER_SIZE
+                || buffer.getInt(0) != SegmentLog.SEGMENT_MAGIC
+                || buffer.getInt(4) < 1
+                || buffer.getInt(4) > SegmentLog.FORMAT_VERSION
+                || buffer.getLong(8) != SegmentLog.segmentIndexOf(segment)) {
+            throw new SegmentLog.IntegrityException("Некорректный заголовок сегмента " + segment.getFileName());
+        }
+        if (buffer.getInt(4) < SegmentLog.CODEC_FORMAT_VERSION) {
+            throw new SegmentLog.IntegrityException("Сегмент " + segment.getFileName() + " записан в устаревшем формате, требуется миграция.");
+        }
+    }
+
+    // A snapshot is used only if its segments are still in place and it ends exactly at a signed commit
+    // that matches its chain hash and Merkle root; otherwise the log is scanned in full.
+    private boolean adopt(ChainSnapshot snapshot) throws IOException {
+        if (snapshot.segment >= segments.length || snapshot.segmentStarts.length != snapshot.segment + 1) {
+            return false;
+        }
+        for (int s = 0; s <= snapshot.segment; s++) {
+            if (SegmentLog.segmentIndexOf(segmentFiles.get(s)) != s
+                    || snapshot.segmentStarts[s] < (s == 0 ? 0 : snapshot.segmentStarts[s - 1])
+                    || snapshot.segmentStarts[s] > snapshot.count) {
+                return false;
+            }
+        }
+        ByteBuffer buffer = segments[(int) snapshot.segment];
+        int frame = (int) snapshot.offset - SegmentLog.COMMIT_FRAME_SIZE;
+        if (frame < SegmentLog.SEGMENT_HEADER_SIZE || snapshot.offset > buffer.limit()
+                || buffer.get(frame) != SegmentLog.FRAME_COMMIT
+                || buffer.getInt(frame + 1) != SegmentLog.COMMIT_PAYLOAD_SIZE) {
+            return false;
+        }
+        byte[] payload = new byte[SegmentLog.COMMIT_PAYLOAD_SIZE];
+        buffer.get(frame + SegmentLog.FRAME_HEADER_SIZE, payload);
+        if (SegmentLog.crc32(payload) != buffer.getInt(frame + 5)) {
+            return false;
+        }
+        SegmentLog.Commit commit;
+        try {
+            commit = SegmentLog.checkCommit(payload, snapshot.count);
+        } catch (SegmentLog.IntegrityException e) {
+            return false;
+        }
+        if (commit.signedRoot == null || !Arrays.equals(commit.chainHash, snapshot.chainHash)
+                || !Arrays.equals(commit.signedRoot.root, snapshot.merkleRoot)) {
+            return false;
+        }
+
+        offsets = new long[Math.max(1024, snapshot.count + 1024)];
+        System.arraycopy(snapshot.segmentStarts, 0, firstRecord, 0, snapshot.segmentStarts.length);
+        lazySegments = snapshot.segmentStarts.length;
+        resumedSize = snapshot.count;
+        lazyEnd = snapshot.offset;
+        indexed = new AtomicIntegerArray(lazySegments);
+        size = snapshot.count;
+        committedChainHash = commit.chainHash;
+        committedRoot = commit.signedRoot;
+        tailSegment = (int) snapshot.segment;
+        tailOffset = snapshot.offset;
+        return true;
+    }
+
+    private int scanSegment(Path segment, int s, ByteBuffer buffer, int start, int recordCount, boolean lastSegment) throws IOException {
+        int limit = buffer.limit();
+        if (start == SegmentLog.SEGMENT_HEADER_SIZE) {
+            firstRecord[s] = recordCount;
+        }
+
+        int position = start;
+        while (position + SegmentLog.FRAME_HEADER_SIZE <= limit) {
+            byte type = buffer.get(position);
+            int length = buffer.getInt(position + 1);
+            int payloadOffset = position + SegmentLog.FRAME_HEADER_SIZE;
+            if (length < 0 || length > limit - payloadOffset) {
+                break;
+            }
+            int next = payloadOffset + length;
+
+            if (type == SegmentLog.FRAME_RECORD) {
+                if (recordCount == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[recordCount++] = ((long) s << 32) | payloadOffset;
+            } else if (type == SegmentLog.FRAME_COMMIT) {
+                byte[] payload = new byte[length];
+                buffer.get(payloadOffset, payload);
+                if (SegmentLog.crc32(payload) != buffer.getInt(position + 5)) {
+                    if (lastSegment && next == limit) {
+                        break;
+                    }
+                    throw new SegmentLog.IntegrityException("Контрольная сумма кадра в сегменте " + segment.getFileName() + " не совпадает.");
+                }
+                SegmentLog.Commit commit = SegmentLog.checkCommit(payload, recordCount);
+                committedChainHash = commit.chainHash;
+                committedRoot = commit.signedRoot;
+                size = recordCount;
+                tailSegment = s;
+                tailOffset = next;
+            } else {
+                throw new SegmentLog.IntegrityException("Неизвестный тип кадра " + type + " в сегменте " + segment.getFileName());
+            }
+            position = next;
+        }
+
+        if (position + SegmentLog.FRAME_HEADER_SIZE <= limit && !lastSegment) {
+            throw new SegmentLog.IntegrityException("Сегмент " + segment.getFileName() + " повреждён.");
+        }
+        return recordCount;
+    }
+
+    private synchronized void indexSegment(int s) {
+        if (indexed.get(s) != 0) {
+            return;
+        }
+        Path segment = segmentFiles.get(s);
+        ByteBuffer buffer = segments[s];
+        int end = s == lazySegments - 1 ? (int) lazyEnd : buffer.limit();
+        int last = s == lazySegments - 1 ? resumedSize : firstRecord[s + 1];
+        int recordCount = firstRecord[s];
+        int position = SegmentLog.SEGMENT_HEADER_SIZE;
+        try {
+            while (position + SegmentLog.FRAME_HEADER_SIZE <= end) {
+                byte type = buffer.get(position);
+                int length = buffer.getInt(position + 1);
+                int payloadOffset = position + SegmentLog.FRAME_HEADER_SIZE;
+                if (length < 0 || length > end - payloadOffset) {
+                    break;
+                }
+                if (type == SegmentLog.FRAME_RECORD) {
+                    if (recordCount == last) {
+                        break;
+                    }
+                    offsets[recordCount++] = ((long) s << 32) | payloadOffset;
+                } else if (type == SegmentLog.FRAME_COMMIT) {
+                    byte[] payload = new byte[length];
+                    buffer.get(payloadOffset, payload);
+                    if (SegmentLog.crc32(payload) != buffer.getInt(position + 5)) {
+                        break;
+                    }
+                    SegmentLog.checkCommit(payload, recordCount);
+                } else {
+                    break;
+                }
+                position = payloadOffset + length;
+            }
+            if (position != end || recordCount != last) {
+                throw new SegmentLog.IntegrityException("Сегмент " + segment.getFileName() + " не соответствует снимку цепочки.");
+            }
+        } catch (SegmentLog.IntegrityException e) {
+            throw new UncheckedIOException(e);
+        }
+        indexed.set(s, 1);
+    }
+
+    private long offsetOf(int index) {
+        checkIndex(index);
+        if (index < resumedSize) {
+            int low = 0;
+            int high = lazySegments - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (firstRecord[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (indexed.get(low) == 0) {
+                indexSegment(low);
+            }
+        }
+        return offsets[index];
+    }
+
+    int resumedSize() {
+        return resumedSize;
+    }
+
+    List<Path> segmentFiles() {
+        return segmentFiles;
+    }
+
+    int[] segmentStarts() {
+        return Arrays.copyOf(firstRecord, tailSegment + 1);
+    }
+
+    public byte[] getCommittedChainHash() {
+        return committedChainHash;
+    }
+
+    public MerkleTree.SignedRoot getCommittedRoot() {
+        return committedRoot;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public byte[] hashAt(int index) {
+        long offset = offsetOf(index);
+        byte[] hash = new byte[SegmentLog.HASH_SIZE];
+        segments[(int) (offset >>> 32)].get((int) offset, hash);
+        return hash;
+    }
+
+    @Override
+    public HashRecord get(int index) {
+        long offset = offsetOf(index);
+        ByteBuffer buffer = segments[(int) (offset >>> 32)];
+        int payloadOffset = (int) offset;
+        int length = buffer.getInt(payloadOffset - 8);
+        byte[] payload = new byte[length];
+        buffer.get(payloadOffset, payload);
+
+        try {
+            if (SegmentLog.crc32(payload) != buffer.getInt(payloadOffset - 4)) {
+                throw new SegmentLog.IntegrityException("Контрольная сумма записи " + index + " не совпадает.");
+            }
+            return SegmentLog.decodeRecord(payload, false).record();
+        } catch (SegmentLog.IntegrityException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " вне диапазона 0.." + size);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.MerkleTree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Merkle tree nodes from LOWEST_LEVEL up, one file per level, so a proof reads O(log n) nodes instead of the
+// tree living in the heap. The files only repeat what the log already says: they are not forced, and a
+// caller checks them against a signed root before trusting them.
+class MerkleLevels implements MerkleTree.NodeStore, Closeable {
+
+    static final int LOWEST_LEVEL = 4;
+    private static final int HASH_SIZE = HashUtils.HASH_SIZE;
+    private static final int BUFFERED_NODES = 128;
+
+    private static final class Level {
+        final FileChannel channel;
+        long count;
+        final ByteBuffer pending = ByteBuffer.allocate(BUFFERED_NODES * HASH_SIZE);
+        long pendingFrom;
+
+        Level(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.count = channel.size() / HASH_SIZE;
+        }
+
+        long end() {
+            return pending.position() == 0 ? count : Math.max(count, pendingFrom + pending.position() / HASH_SIZE);
+        }
+
+        void flush() throws IOException {
+            if (pending.position() == 0) {
+                return;
+            }
+            pending.flip();
+            long position = pendingFrom * HASH_SIZE;
+            while (pending.hasRemaining()) {
+                position += channel.write(pending, position);
+            }
+            count = Math.max(count, pendingFrom + pending.limit() / HASH_SIZE);
+            pending.clear();
+        }
+    }
+
+    private final Path directory;
+    private final Level[] levels = new Level[Integer.SIZE];
+
+    private MerkleLevels(Path directory) {
+        this.directory = directory;
+    }
+
+    static MerkleLevels open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MerkleLevels store = new MerkleLevels(directory);
+        try {
+            for (int level = LOWEST_LEVEL; level < Integer.SIZE; level++) {
+                Path file = store.file(level);
+                if (Files.exists(file)) {
+                    store.levels[level] = new Level(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+                }
+            }
+            return store;
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+    }
+
+    // Leaves all of whose nodes are in the files: level l needs size >> l nodes.
+    synchronized int size() {
+        long size = Integer.MAX_VALUE;
+        for (int level = LOWEST_LEVEL; level < Integer.SIZE; level++) {
+            long count = levels[level] == null ? 0 : levels[level].end();
+            size = Math.min(size, ((count + 1) << level) - 1);
+        }
+        return (int) size;
+    }
+
+    @Override
+    public int lowestLevel() {
+        return LOWEST_LEVEL;
+    }
+
+    @Override
+    public synchronized byte[] get(int level, int index) {
+        byte[] node = new byte[HASH_SIZE];
+        Level nodes;
+        try {
+            if (levels[level] == null && !Files.exists(file(level))) {
+                throw new IllegalStateException("Уровень " + level + " дерева Меркла не сохранён.");
+            }
+            nodes = level(level);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (nodes.pending.position() > 0 && index >= nodes.pendingFrom && index < nodes.end()) {
+            nodes.pending.get((int) (index - nodes.pendingFrom) * HASH_SIZE, node);
+            return node;
+        }
+        try {
+            ByteBuffer target = ByteBuffer.wrap(node);
+            long position = (long) index * HASH_SIZE;
+            while (target.hasRemaining()) {
+                if (nodes.channel.read(target, position + target.position()) < 0) {
+                    throw new IllegalStateException("Узел " + index + " уровня " + level + " дерева Меркла отсутствует.");
+                }
+            }
+            return node;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void put(int level, int index, byte[] node) {
+        try {
+            Level nodes = level(level);
+            long end = nodes.end();
+            if (index > end) {
+                // A gap would read as stored nodes; this only happens to a fill overtaken by a truncation.
+                return;
+            }
+            if (nodes.pending.position() > 0 && (index != end || !nodes.pending.hasRemaining())) {
+                nodes.flush();
+            }
+            if (index < nodes.count) {
+                nodes.channel.write(ByteBuffer.wrap(node), (long) index * HASH_SIZE);
+                return;
+            }
+            if (nodes.pending.position() == 0) {
+                nodes.pendingFrom = index;
+            }
+            nodes.pending.put(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void truncate(int size) {
+        try {
+            for (int level = LOWEST_LEVEL; level < Integer.SIZE; level++) {
+                Level nodes = levels[level];
+                if (nodes == null) {
+                    continue;
+                }
+                nodes.flush();
+                long keep = size >> level;
+                if (nodes.count > keep) {
+                    nodes.channel.truncate(keep * HASH_SIZE);
+                    nodes.count = keep;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized void flush() throws IOException {
+        for (Level nodes : levels) {
+            if (nodes != null) {
+                nodes.flush();
+            }
+        }
+    }
+
+    // Levels are opened again on their next use, so a tree still holding the store keeps working.
+    @Override
+    public synchronized void close() throws IOException {
+        IOException failure = null;
+        for (int level = 0; level < levels.length; level++) {
+            if (levels[level] == null) {
+                continue;
+            }
+            try {
+                levels[level].flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+            levels[level].channel.close();
+            levels[level] = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Level level(int level) throws IOException {
+        if (levels[level] == null) {
+            levels[level] = new Level(FileChannel.open(file(level), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+        return levels[level];
+    }
+
+    private Path file(int level) {
+        return directory.resolve(String.format("level-%02d.bin", level));
+    }
+}
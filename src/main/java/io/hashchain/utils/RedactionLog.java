@@ -0,0 +1,155 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.SecurityConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+// Redactions not yet carried into the segments. Each entry names a record by position and hash and is
+// signed, so an entry can neither be forged nor moved onto another record. A torn last entry is cut off.
+class RedactionLog implements Closeable {
+
+    static final int MAGIC = 0x48435244;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+    static final int ENTRY_SIZE = Integer.BYTES + HashUtils.HASH_SIZE * 2;
+
+    static class Redaction {
+        final int index;
+        final byte[] hash;
+
+        Redaction(int index, byte[] hash) {
+            this.index = index;
+            this.hash = hash;
+        }
+    }
+
+    private final Path file;
+    private FileChannel channel;
+    private final List<Redaction> entries = new ArrayList<>();
+
+    private RedactionLog(Path file) {
+        this.file = file;
+    }
+
+    static RedactionLog open(Path file) throws IOException {
+        RedactionLog log = new RedactionLog(file);
+        log.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (log.channel.size() == 0) {
+                log.channel.write(header(), 0);
+                log.channel.force(true);
+                DurableFiles.forceDirectory(file.toAbsolutePath().getParent());
+            } else {
+                log.read();
+            }
+            return log;
+        } catch (IOException | RuntimeException e) {
+            log.channel.close();
+            throw e;
+        }
+    }
+
+    synchronized List<Redaction> entries() {
+        return List.copyOf(entries);
+    }
+
+    synchronized void append(List<Redaction> redactions) throws IOException {
+        if (redactions.isEmpty()) {
+            return;
+        }
+        ByteBuffer frames = ByteBuffer.allocate(ENTRY_SIZE * redactions.size());
+        for (Redaction redaction : redactions) {
+            frames.put(entry(redaction));
+        }
+        frames.flip();
+        long position = channel.size();
+        while (frames.hasRemaining()) {
+            position += channel.write(frames, position);
+        }
+        channel.force(false);
+        entries.addAll(redactions);
+    }
+
+    // Drops the given entries that are now reflected in the segments; entries appended since are kept.
+    synchronized void discard(List<Redaction> processed, int below) throws IOException {
+        Set<Redaction> done = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Redaction redaction : processed) {
+            if (redaction.index < below) {
+                done.add(redaction);
+            }
+        }
+        List<Redaction> kept = new ArrayList<>(entries);
+        if (!kept.removeIf(done::contains)) {
+            return;
+        }
+        channel.close();
+        DurableFiles.write(file, out -> {
+            out.write(header().array());
+            for (Redaction redaction : kept) {
+                out.write(entry(redaction));
+            }
+        });
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        entries.clear();
+        entries.addAll(kept);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void read() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (size < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE
+                || header.getInt(0) != MAGIC || header.getInt(Integer.BYTES) != VERSION) {
+            throw new SegmentLog.IntegrityException("Некорректный заголовок журнала удалений " + file.getFileName());
+        }
+        ByteBuffer frame = ByteBuffer.allocate(ENTRY_SIZE);
+        long position = HEADER_SIZE;
+        for (; position + ENTRY_SIZE <= size; position += ENTRY_SIZE) {
+            frame.clear();
+            while (frame.hasRemaining()) {
+                channel.read(frame, position + frame.position());
+            }
+            byte[] bytes = frame.array();
+            byte[] signature = HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), bytes, 0, ENTRY_SIZE - HashUtils.HASH_SIZE);
+            if (!MessageDigest.isEqual(signature, Arrays.copyOfRange(bytes, ENTRY_SIZE - HashUtils.HASH_SIZE, ENTRY_SIZE))) {
+                if (position + ENTRY_SIZE == size) {
+                    break;
+                }
+                throw new SegmentLog.IntegrityException("Запись №" + (entries.size() + 1) + " журнала удалений повреждена или подделана.");
+            }
+            entries.add(new Redaction(frame.getInt(0), Arrays.copyOfRange(bytes, Integer.BYTES, Integer.BYTES + HashUtils.HASH_SIZE)));
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static byte[] entry(Redaction redaction) {
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        entry.putInt(redaction.index).put(redaction.hash);
+        entry.put(HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), entry.array(), 0, entry.position()));
+        return entry.array();
+    }
+}
@@ -0,0 +1,188 @@
+package io.hashchain.utils;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+// SHA-256 whose intermediate state can be saved and restored at a block boundary. The JDK digest keeps
+// its state private, so this is what lets a snapshot continue the chain digest instead of recomputing it.
+public final class ResumableSha256 extends MessageDigest implements Cloneable {
+
+    public static final int STATE_WORDS = 8;
+    public static final int BLOCK_SIZE = 64;
+
+    private static final int[] INITIAL = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private int[] state = INITIAL.clone();
+    private byte[] buffer = new byte[BLOCK_SIZE];
+    private int buffered;
+    private long blocks;
+    private int[] schedule = new int[64];
+
+    public ResumableSha256() {
+        super("SHA-256");
+    }
+
+    public static ResumableSha256 resume(int[] state, long blocks) {
+        if (state.length != STATE_WORDS || blocks < 0) {
+            throw new IllegalArgumentException("Некорректное состояние SHA-256.");
+        }
+        ResumableSha256 digest = new ResumableSha256();
+        digest.state = state.clone();
+        digest.blocks = blocks;
+        return digest;
+    }
+
+    public int[] state() {
+        checkAligned();
+        return state.clone();
+    }
+
+    public long blocks() {
+        checkAligned();
+        return blocks;
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return HashUtils.HASH_SIZE;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        buffer[buffered++] = input;
+        if (buffered == BLOCK_SIZE) {
+            compress(buffer, 0);
+            buffered = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int length) {
+        if (buffered > 0) {
+            int take = Math.min(BLOCK_SIZE - buffered, length);
+            System.arraycopy(input, offset, buffer, buffered, take);
+            buffered += take;
+            offset += take;
+            length -= take;
+            if (buffered < BLOCK_SIZE) {
+                return;
+            }
+            compress(buffer, 0);
+            buffered = 0;
+        }
+        while (length >= BLOCK_SIZE) {
+            compress(input, offset);
+            offset += BLOCK_SIZE;
+            length -= BLOCK_SIZE;
+        }
+        System.arraycopy(input, offset, buffer, 0, length);
+        buffered = length;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long bits = (blocks * BLOCK_SIZE + buffered) * 8;
+        buffer[buffered++] = (byte) 0x80;
+        if (buffered > BLOCK_SIZE - Long.BYTES) {
+            Arrays.fill(buffer, buffered, BLOCK_SIZE, (byte) 0);
+            compress(buffer, 0);
+            buffered = 0;
+        }
+        Arrays.fill(buffer, buffered, BLOCK_SIZE - Long.BYTES, (byte) 0);
+        for (int i = 0; i < Long.BYTES; i++) {
+            buffer[BLOCK_SIZE - 1 - i] = (byte) (bits >>> (8 * i));
+        }
+        compress(buffer, 0);
+
+        byte[] out = new byte[HashUtils.HASH_SIZE];
+        for (int i = 0; i < STATE_WORDS; i++) {
+            int word = state[i];
+            out[i * 4] = (byte) (word >>> 24);
+            out[i * 4 + 1] = (byte) (word >>> 16);
+            out[i * 4 + 2] = (byte) (word >>> 8);
+            out[i * 4 + 3] = (byte) word;
+        }
+        engineReset();
+        return out;
+    }
+
+    @Override
+    protected void engineReset() {
+        state = INITIAL.clone();
+        buffered = 0;
+        blocks = 0;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        ResumableSha256 copy = (ResumableSha256) super.clone();
+        copy.state = state.clone();
+        copy.buffer = buffer.clone();
+        copy.schedule = new int[64];
+        return copy;
+    }
+
+    private void checkAligned() {
+        if (buffered != 0) {
+            throw new IllegalStateException("Состояние SHA-256 можно сохранить только на границе блока.");
+        }
+    }
+
+    private void compress(byte[] block, int offset) {
+        int[] w = schedule;
+        for (int i = 0; i < 16; i++) {
+            int p = offset + i * 4;
+            w[i] = (block[p] << 24) | ((block[p + 1] & 0xff) << 16) | ((block[p + 2] & 0xff) << 8) | (block[p + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            int s0 = Integer.rotateRight(w[i - 15], 7) ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+            int s1 = Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+        int f = state[5];
+        int g = state[6];
+        int h = state[7];
+        for (int i = 0; i < 64; i++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int t1 = h + s1 + ((e & f) ^ (~e & g)) + K[i] + w[i];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int t2 = s0 + ((a & b) ^ (a & c) ^ (b & c));
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+        state[5] += f;
+        state[6] += g;
+        state[7] += h;
+        blocks++;
+    }
+}
@@ -0,0 +1,1031 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.PersonCodec;
+import io.hashchain.core.PersonData;
+import io.hashchain.core.SecurityConfig;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class SegmentLog implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    static final int SEGMENT_MAGIC = 0x48435347;
+    // Version 4 segments may hold redacted records, written without their payload.
+    static final int FORMAT_VERSION = 4;
+    static final int CODEC_FORMAT_VERSION = 3;
+    static final int SEGMENT_HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 9;
+    static final byte FRAME_RECORD = 1;
+    static final byte FRAME_COMMIT = 2;
+    static final byte RECORD_HAS_PREVIOUS = 1;
+    static final byte RECORD_REDACTED = 1 << 1;
+    static final int HASH_SIZE = HashUtils.HASH_SIZE;
+    static final int LEGACY_COMMIT_PAYLOAD_SIZE = Long.BYTES + HASH_SIZE * 2;
+    static final int COMMIT_PAYLOAD_SIZE = Long.BYTES + HASH_SIZE * 4;
+    static final int COMMIT_FRAME_SIZE = FRAME_HEADER_SIZE + COMMIT_PAYLOAD_SIZE;
+
+    static final int CHECKPOINT_MAGIC = 0x48434350;
+    static final int CHECKPOINT_SIZE = Integer.BYTES + Long.BYTES * 3 + 1 + HASH_SIZE * 2;
+    static final long CHECKPOINT_INTERVAL = 8L * 1024 * 1024;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String REWRITE_DIR = "rewrite";
+    private static final String REWRITE_MARKER = "rewrite.commit";
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    public static class Entry {
+        public final byte[] hash;
+        public final byte[] previousHash;
+        public final byte[] data;
+        public final boolean legacy;
+        public final byte[] redactionSeal;
+
+        Entry(byte[] hash, byte[] previousHash, byte[] data, boolean legacy, byte[] redactionSeal) {
+            this.hash = hash;
+            this.previousHash = previousHash;
+            this.data = data;
+            this.legacy = legacy;
+            this.redactionSeal = redactionSeal;
+        }
+
+        public HashRecord record() throws IntegrityException {
+            return redactionSeal != null ? HashRecord.tombstone(previousHash, hash, redactionSeal) : new HashRecord(person(), previousHash, hash);
+        }
+
+        public PersonData person() throws IntegrityException {
+            if (redactionSeal != null) {
+                throw new IntegrityException("Данные записи журнала удалены.");
+            }
+            if (legacy) {
+                PersonData person = ChainStorage.parsePersonString(new String(data, StandardCharsets.UTF_8));
+                if (person == null) {
+                    throw new IntegrityException("Не удалось разобрать запись журнала: " + new String(data, StandardCharsets.UTF_8));
+                }
+                return person;
+            }
+            try {
+                return PersonCodec.decode(data);
+            } catch (IllegalArgumentException e) {
+                throw new IntegrityException("Запись журнала повреждена: " + e.getMessage());
+            }
+        }
+    }
+
+    static class Commit {
+        final long count;
+        final byte[] chainHash;
+        final MerkleTree.SignedRoot signedRoot;
+
+        Commit(long count, byte[] chainHash, MerkleTree.SignedRoot signedRoot) {
+            this.count = count;
+            this.chainHash = chainHash;
+            this.signedRoot = signedRoot;
+        }
+    }
+
+    private static class Checkpoint {
+        final long segment;
+        final long offset;
+        final long count;
+        final byte[] lastHash;
+        final Commit commit;
+
+        Checkpoint(long segment, long offset, long count, byte[] lastHash, Commit commit) {
+            this.segment = segment;
+            this.offset = offset;
+            this.count = count;
+            this.lastHash = lastHash;
+            this.commit = commit;
+        }
+    }
+
+    static class Head {
+        final long count;
+        final byte[] lastHash;
+        final byte[] chainHash;
+        final MerkleTree.SignedRoot root;
+
+        Head(long count, byte[] lastHash, byte[] chainHash, MerkleTree.SignedRoot root) {
+            this.count = count;
+            this.lastHash = lastHash;
+            this.chainHash = chainHash;
+            this.root = root;
+        }
+    }
+
+    public static class IntegrityException extends IOException {
+        public IntegrityException(String message) {
+            super(message);
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(Entry entry) throws IOException;
+    }
+
+    private final Path directory;
+    private final long maxSegmentSize;
+
+    private FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private long segmentIndex;
+    private int segmentVersion = FORMAT_VERSION;
+    private long committedCount;
+    private byte[] committedChainHash;
+    private MerkleTree.SignedRoot committedRoot;
+    private long pendingCount;
+    private byte[] committedLastHash;
+    private byte[] pendingLastHash;
+    private long commitSegment = -1;
+    private long commitOffset;
+    private long checkpointSegment = -1;
+    private long checkpointOffset;
+    private long rewrites;
+
+    public SegmentLog(Path directory, long maxSegmentSize) throws IOException {
+        if (maxSegmentSize < SEGMENT_HEADER_SIZE + FRAME_HEADER_SIZE + COMMIT_PAYLOAD_SIZE
+                || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Слишком маленький размер сегмента: " + maxSegmentSize);
+        }
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    public synchronized long getCommittedCount() {
+        return committedCount;
+    }
+
+    public synchronized byte[] getCommittedChainHash() {
+        return committedChainHash;
+    }
+
+    public synchronized MerkleTree.SignedRoot getCommittedRoot() {
+        return committedRoot;
+    }
+
+    // The last commit read under one lock, so count, last hash and chain hash belong together.
+    synchronized Head committedHead() {
+        return new Head(committedCount, committedLastHash, committedChainHash, committedRoot);
+    }
+
+    public boolean isEmpty() throws IOException {
+        return listSegments(directory).isEmpty();
+    }
+
+    public boolean isLegacyFormat() throws IOException {
+        for (Path segment : listSegments(directory)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(segment))) {
+                if (readSegmentHeader(in, segment, segmentIndexOf(segment)) < CODEC_FORMAT_VERSION) {
+                    return true;
+                }
+            } catch (EOFException e) {
+                throw new IntegrityException("Сегмент " + segment.getFileName() + " обрезан.");
+            }
+        }
+        return false;
+    }
+
+    public synchronized MappedChainReader openMapped() throws IOException {
+        return openMapped(null);
+    }
+
+    public synchronized MappedChainReader openMapped(ChainSnapshot snapshot) throws IOException {
+        close();
+        List<Path> segments = listSegments(directory);
+        MappedChainReader reader = MappedChainReader.open(segments, snapshot);
+        committedCount = reader.size();
+        committedChainHash = reader.getCommittedChainHash();
+        committedRoot = reader.getCommittedRoot();
+        pendingCount = 0;
+        committedLastHash = reader.size() == 0 ? null : reader.hashAt(reader.size() - 1);
+        discardUncommittedTail(segments, reader.tailSegment, reader.tailOffset);
+        return reader;
+    }
+
+    // Maps the log as of its last commit without closing it; appends wait only while the tail is scanned.
+    synchronized MappedChainReader mapCommitted(ChainSnapshot snapshot) throws IOException {
+        if (channel != null) {
+            flush();
+        }
+        return MappedChainReader.open(listSegments(directory), snapshot);
+    }
+
+    public synchronized long replay(EntryVisitor visitor) throws IOException {
+        close();
+        committedCount = 0;
+        committedChainHash = null;
+        committedRoot = null;
+        committedLastHash = null;
+        pendingCount = 0;
+
+        MessageDigest chainDigest = HashUtils.newSHA256Digest();
+        byte[] hexScratch = new byte[HashUtils.HEX_SIZE];
+        List<Path> segments = listSegments(directory);
+        List<Entry> pending = new ArrayList<>();
+        int tailSegment = -1;
+        long tailOffset = SEGMENT_HEADER_SIZE;
+
+        for (int s = 0; s < segments.size(); s++) {
+            Path segment = segments.get(s);
+            long size = Files.size(segment);
+            long position = SEGMENT_HEADER_SIZE;
+            boolean lastSegment = s == segments.size() - 1;
+
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment), 1 << 16))) {
+                boolean legacy = readSegmentHeader(in, segment, segmentIndexOf(segment)) < CODEC_FORMAT_VERSION;
+
+                while (position + FRAME_HEADER_SIZE <= size) {
+                    byte type = in.readByte();
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 0 || position + FRAME_HEADER_SIZE + length > size) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    position += FRAME_HEADER_SIZE + length;
+                    if (crc32(payload) != crc) {
+                        if (!lastSegment || position < size) {
+                            throw new IntegrityException("Контрольная сумма кадра в сегменте " + segment.getFileName() + " не совпадает.");
+                        }
+                        position -= FRAME_HEADER_SIZE + length;
+                        break;
+                    }
+
+                    if (type == FRAME_RECORD) {
+                        Entry entry = decodeRecord(payload, legacy);
+                        HashUtils.writeHexAscii(entry.hash, hexScratch, 0);
+                        chainDigest.update(hexScratch);
+                        pending.add(entry);
+                    } else if (type == FRAME_COMMIT) {
+                        Commit commit = verifyCommit(payload, committedCount + pending.size(), chainDigest);
+                        committedChainHash = commit.chainHash;
+                        committedRoot = commit.signedRoot;
+                        for (Entry entry : pending) {
+                            visitor.visit(entry);
+                        }
+                        if (!pending.isEmpty()) {
+                            committedLastHash = pending.get(pending.size() - 1).hash;
+                        }
+                        committedCount += pending.size();
+                        pending.clear();
+                        tailSegment = s;
+                        tailOffset = position;
+                    } else {
+                        throw new IntegrityException("Неизвестный тип кадра " + type + " в сегменте " + segment.getFileName());
+                    }
+                }
+            } catch (EOFException e) {
+                throw new IntegrityException("Сегмент " + segment.getFileName() + " обрезан.");
+            }
+
+            if (position < size && !lastSegment) {
+                throw new IntegrityException("Сегмент " + segment.getFileName() + " повреждён.");
+            }
+        }
+
+        discardUncommittedTail(segments, tailSegment, tailOffset);
+        return committedCount;
+    }
+
+    // Startup recovery: finishes or rolls back an interrupted rewrite, then scans only the frames written
+    // after the last checkpoint and truncates to the last HMAC-signed commit among them.
+    public synchronized void recover() throws IOException {
+        close();
+        finishRewrite();
+        deleteCompactionLeftovers();
+        if (isLegacyFormat()) {
+            replay(entry -> { });
+            return;
+        }
+        committedCount = 0;
+        committedChainHash = null;
+        committedRoot = null;
+        committedLastHash = null;
+        pendingCount = 0;
+
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+        int first = 0;
+        long start = SEGMENT_HEADER_SIZE;
+        int tailSegment = -1;
+        long tailOffset = SEGMENT_HEADER_SIZE;
+        Checkpoint checkpoint = readCheckpoint(segments);
+        if (checkpoint != null) {
+            first = segments.indexOf(segmentPath(directory, checkpoint.segment));
+            start = checkpoint.offset;
+            tailSegment = first;
+            tailOffset = checkpoint.offset;
+            committedCount = checkpoint.count;
+            committedChainHash = checkpoint.commit.chainHash;
+            committedRoot = checkpoint.commit.signedRoot;
+            committedLastHash = checkpoint.lastHash;
+            checkpointSegment = checkpoint.segment;
+            checkpointOffset = checkpoint.offset;
+        }
+
+        long pending = 0;
+        byte[] lastHash = committedLastHash;
+        for (int s = first; s < segments.size(); s++) {
+            Path segment = segments.get(s);
+            long size = Files.size(segment);
+            long position = s == first ? start : SEGMENT_HEADER_SIZE;
+            boolean lastSegment = s == segments.size() - 1;
+
+            try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+                readSegmentHeader(new DataInputStream(Channels.newInputStream(file)), segment, segmentIndexOf(segment));
+                file.position(position);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file), 1 << 16));
+
+                while (position + FRAME_HEADER_SIZE <= size) {
+                    byte type = in.readByte();
+                    int length = in.readInt();
+                    int crc = in.readInt();
+                    if (length < 0 || position + FRAME_HEADER_SIZE + length > size) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    position += FRAME_HEADER_SIZE + length;
+                    if (crc32(payload) != crc) {
+                        if (!lastSegment || position < size) {
+                            throw new IntegrityException("Контрольная сумма кадра в сегменте " + segment.getFileName() + " не совпадает.");
+                        }
+                        position -= FRAME_HEADER_SIZE + length;
+                        break;
+                    }
+
+                    if (type == FRAME_RECORD) {
+                        Entry entry = decodeRecord(payload, false);
+                        if (!Arrays.equals(entry.previousHash, lastHash)) {
+                            throw new IntegrityException("Запись журнала №" + (committedCount + pending + 1) + " не продолжает цепочку.");
+                        }
+                        lastHash = entry.hash;
+                        pending++;
+                    } else if (type == FRAME_COMMIT) {
+                        Commit commit = checkCommit(payload, committedCount + pending);
+                        committedCount += pending;
+                        committedChainHash = commit.chainHash;
+                        committedRoot = commit.signedRoot;
+                        committedLastHash = lastHash;
+                        pending = 0;
+                        tailSegment = s;
+                        tailOffset = position;
+                    } else {
+                        throw new IntegrityException("Неизвестный тип кадра " + type + " в сегменте " + segment.getFileName());
+                    }
+                }
+            } catch (EOFException e) {
+                throw new IntegrityException("Сегмент " + segment.getFileName() + " обрезан.");
+            }
+
+            if (position < size && !lastSegment) {
+                throw new IntegrityException("Сегмент " + segment.getFileName() + " повреждён.");
+            }
+        }
+
+        discardUncommittedTail(segments, tailSegment, tailOffset);
+    }
+
+    public synchronized int append(HashRecord record) throws IOException {
+        ensureOpen();
+        if (segmentVersion < CODEC_FORMAT_VERSION) {
+            throw new IllegalStateException("Журнал записан в устаревшем формате, требуется миграция.");
+        }
+        byte[] last = pendingCount > 0 ? pendingLastHash : committedLastHash;
+        if (!Arrays.equals(record.getPreviousHashBytes(), last)) {
+            // Recovery would stop at such a frame, so it never reaches the log.
+            throw new IntegrityException("Запись журнала №" + (committedCount + pendingCount + 1) + " не продолжает цепочку.");
+        }
+        byte[] payload = encodeRecord(record);
+        writeFrame(FRAME_RECORD, payload);
+        pendingCount++;
+        pendingLastHash = record.getHashBytes();
+        return FRAME_HEADER_SIZE + payload.length;
+    }
+
+    public synchronized long appendAll(List<HashRecord> records) throws IOException {
+        long bytes = 0;
+        for (HashRecord record : records) {
+            bytes += append(record);
+        }
+        return bytes;
+    }
+
+    public synchronized void force() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.force(false);
+            if (commitSegment != checkpointSegment || commitOffset - checkpointOffset >= CHECKPOINT_INTERVAL) {
+                writeCheckpoint();
+            }
+        }
+    }
+
+    public synchronized void commit(long recordCount, byte[] chainHash, byte[] merkleRoot) throws IOException {
+        ensureOpen();
+        if (recordCount != committedCount + pendingCount) {
+            throw new IllegalStateException("Журнал содержит " + (committedCount + pendingCount) + " записей, а цепочка " + recordCount);
+        }
+        byte[] hmac = HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), HashUtils.toHexAscii(chainHash));
+        MerkleTree.SignedRoot signedRoot = MerkleTree.SignedRoot.sign(recordCount, merkleRoot);
+
+        ByteBuffer payload = ByteBuffer.allocate(COMMIT_PAYLOAD_SIZE);
+        payload.putLong(recordCount);
+        payload.put(chainHash);
+        payload.put(hmac);
+        payload.put(signedRoot.root);
+        payload.put(signedRoot.signature);
+        writeFrame(FRAME_COMMIT, payload.array());
+        flush();
+
+        if (pendingCount > 0) {
+            committedLastHash = pendingLastHash;
+        }
+        committedCount += pendingCount;
+        committedChainHash = chainHash;
+        committedRoot = signedRoot;
+        pendingCount = 0;
+        commitSegment = segmentIndex;
+        commitOffset = channel.position();
+    }
+
+    // Cuts the log back to its last commit at or below `count` without rewriting what stays. The checkpoint and
+    // the later segments are removed before the tail segment is cut, so a crash in between leaves a log that
+    // recovers to a commit between the two. Returns the number of records kept.
+    public synchronized long truncate(long count) throws IOException {
+        ensureOpen();
+        if (segmentVersion < CODEC_FORMAT_VERSION) {
+            throw new IllegalStateException("Журнал записан в устаревшем формате, требуется миграция.");
+        }
+        if (count >= committedCount) {
+            return committedCount;
+        }
+        rewrites++;
+        close();
+
+        List<Path> segments = listSegments(directory);
+        int first = 0;
+        long start = SEGMENT_HEADER_SIZE;
+        long kept = 0;
+        byte[] keptLastHash = null;
+        Commit keptCommit = null;
+        int tailSegment = -1;
+        long tailOffset = SEGMENT_HEADER_SIZE;
+        Checkpoint checkpoint = readCheckpoint(segments);
+        if (checkpoint != null && checkpoint.count <= count) {
+            first = segments.indexOf(segmentPath(directory, checkpoint.segment));
+            start = checkpoint.offset;
+            kept = checkpoint.count;
+            keptLastHash = checkpoint.lastHash;
+            keptCommit = checkpoint.commit;
+            tailSegment = first;
+            tailOffset = checkpoint.offset;
+        }
+
+        // Everything up to the last commit was checked by recovery, so only hashes and commits are read here.
+        long records = kept;
+        byte[] lastHash = keptLastHash;
+        scan:
+        for (int s = first; s < segments.size(); s++) {
+            Path segment = segments.get(s);
+            long size = Files.size(segment);
+            long position = s == first ? start : SEGMENT_HEADER_SIZE;
+            try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+                file.position(position);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file), 1 << 16));
+                while (position + FRAME_HEADER_SIZE <= size) {
+                    byte type = in.readByte();
+                    int length = in.readInt();
+                    in.readInt();
+                    position += FRAME_HEADER_SIZE + length;
+                    if (type == FRAME_RECORD) {
+                        lastHash = new byte[HASH_SIZE];
+                        in.readFully(lastHash);
+                        in.skipNBytes(length - HASH_SIZE);
+                        records++;
+                    } else {
+                        byte[] payload = new byte[length];
+                        in.readFully(payload);
+                        Commit commit = checkCommit(payload, records);
+                        if (commit.count > count) {
+                            break scan;
+                        }
+                        kept = commit.count;
+                        keptLastHash = lastHash;
+                        keptCommit = commit;
+                        tailSegment = s;
+                        tailOffset = position;
+                    }
+                }
+            } catch (EOFException e) {
+                throw new IntegrityException("Сегмент " + segment.getFileName() + " обрезан.");
+            }
+        }
+
+        Files.deleteIfExists(directory.resolve(CHECKPOINT_FILE));
+        checkpointSegment = -1;
+        for (int s = segments.size() - 1; s > tailSegment; s--) {
+            Files.delete(segments.get(s));
+        }
+        DurableFiles.forceDirectory(directory);
+
+        committedCount = kept;
+        committedLastHash = keptLastHash;
+        committedChainHash = keptCommit == null ? null : keptCommit.chainHash;
+        committedRoot = keptCommit == null ? null : keptCommit.signedRoot;
+        pendingCount = 0;
+        discardUncommittedTail(segments.subList(0, tailSegment + 1), tailSegment, tailOffset);
+        return kept;
+    }
+
+    // The new log is built and forced in a side directory; the marker file is the atomic commit point,
+    // after which the segments are moved over the old ones. Recovery redoes the move if it was interrupted.
+    public synchronized void rewrite(List<HashRecord> records, byte[] chainHash, byte[] merkleRoot) throws IOException {
+        rewrites++;
+        close();
+        finishRewrite();
+        Path stage = directory.resolve(REWRITE_DIR);
+
+        long segmentCount;
+        try (SegmentLog staged = new SegmentLog(stage, maxSegmentSize)) {
+            staged.openSegment(0);
+            staged.appendAll(records);
+            staged.commit(records.size(), chainHash, merkleRoot);
+            staged.force();
+            segmentCount = staged.segmentIndex + 1;
+        }
+        DurableFiles.forceDirectory(stage);
+        DurableFiles.write(directory.resolve(REWRITE_MARKER), out -> out.write(ByteBuffer.allocate(Long.BYTES).putLong(segmentCount).array()));
+
+        checkpointSegment = -1;
+        recover();
+    }
+
+    // Rewrites a sealed segment without the payload of the records `redacted` selects. Frames keep their
+    // order and hashes, so commits, checkpoints and snapshots before it stay valid. The copy is built
+    // without the lock; it replaces the segment only if no rewrite ran meanwhile. Returns the bytes reclaimed,
+    // or -1 if the segment could not be compacted now.
+    public long compact(long index, int firstRecord, IntPredicate redacted) throws IOException {
+        long generation;
+        synchronized (this) {
+            if (!isSealed(index)) {
+                return -1;
+            }
+            generation = rewrites;
+        }
+        Path segment = segmentPath(directory, index);
+        ByteBuffer buffer;
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        }
+        if (buffer.limit() < SEGMENT_HEADER_SIZE || buffer.getInt(4) < CODEC_FORMAT_VERSION) {
+            return -1;
+        }
+
+        List<Integer> frames = new ArrayList<>();
+        int position = SEGMENT_HEADER_SIZE;
+        int record = firstRecord;
+        while (position < buffer.limit()) {
+            int length = position + FRAME_HEADER_SIZE <= buffer.limit() ? buffer.getInt(position + 1) : -1;
+            if (length < 0 || length > buffer.limit() - position - FRAME_HEADER_SIZE) {
+                throw new IntegrityException("Сегмент " + segment.getFileName() + " повреждён.");
+            }
+            if (buffer.get(position) == FRAME_RECORD) {
+                if (redacted.test(record) && (buffer.get(position + FRAME_HEADER_SIZE + HASH_SIZE) & RECORD_REDACTED) == 0) {
+                    frames.add(position);
+                }
+                record++;
+            }
+            position += FRAME_HEADER_SIZE + length;
+        }
+        if (frames.isEmpty()) {
+            return 0;
+        }
+
+        Path compacted = segment.resolveSibling(segment.getFileName() + COMPACT_SUFFIX);
+        long[] written = new long[1];
+        DurableFiles.write(compacted, out -> {
+            WritableByteChannel target = Channels.newChannel(out);
+            target.write(ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).putLong(index).flip());
+            int copied = SEGMENT_HEADER_SIZE;
+            for (int frame : frames) {
+                target.write(buffer.slice(copied, frame - copied));
+                byte[] payload = new byte[buffer.getInt(frame + 1)];
+                buffer.get(frame + FRAME_HEADER_SIZE, payload);
+                if (crc32(payload) != buffer.getInt(frame + 5)) {
+                    throw new IntegrityException("Контрольная сумма кадра в сегменте " + segment.getFileName() + " не совпадает.");
+                }
+                byte[] tombstone = encodeRecord(decodeRecord(payload, false).record().redact());
+                target.write(ByteBuffer.allocate(FRAME_HEADER_SIZE).put(FRAME_RECORD).putInt(tombstone.length).putInt(crc32(tombstone)).flip());
+                target.write(ByteBuffer.wrap(tombstone));
+                written[0] += (frame - copied) + FRAME_HEADER_SIZE + tombstone.length;
+                copied = frame + FRAME_HEADER_SIZE + payload.length;
+            }
+            target.write(buffer.slice(copied, buffer.limit() - copied));
+            written[0] += SEGMENT_HEADER_SIZE + buffer.limit() - copied;
+        });
+
+        synchronized (this) {
+            if (generation != rewrites || !isSealed(index)) {
+                Files.deleteIfExists(compacted);
+                return -1;
+            }
+            DurableFiles.move(compacted, segment);
+        }
+        return buffer.limit() - written[0];
+    }
+
+    // Sealed: no longer written to, and neither the last commit nor the checkpoint points into it.
+    private boolean isSealed(long index) {
+        return channel != null && index < segmentIndex && index < commitSegment && (checkpointSegment < 0 || index < checkpointSegment);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.force(false);
+            writeCheckpoint();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            recover();
+        }
+        if (channel == null) {
+            openSegment(0);
+        }
+    }
+
+    private void finishRewrite() throws IOException {
+        Path stage = directory.resolve(REWRITE_DIR);
+        Path marker = directory.resolve(REWRITE_MARKER);
+        if (!Files.exists(marker)) {
+            DurableFiles.deleteDirectory(stage);
+            return;
+        }
+        long segmentCount = ByteBuffer.wrap(Files.readAllBytes(marker)).getLong();
+        for (Path segment : listSegments(directory)) {
+            if (segmentIndexOf(segment) >= segmentCount) {
+                Files.delete(segment);
+            }
+        }
+        for (long i = 0; i < segmentCount; i++) {
+            Path staged = segmentPath(stage, i);
+            if (Files.exists(staged)) {
+                Files.move(staged, segmentPath(directory, i), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Path stagedCheckpoint = stage.resolve(CHECKPOINT_FILE);
+        if (Files.exists(stagedCheckpoint)) {
+            Files.move(stagedCheckpoint, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        DurableFiles.forceDirectory(directory);
+        DurableFiles.deleteDirectory(stage);
+        Files.delete(marker);
+        DurableFiles.forceDirectory(directory);
+    }
+
+    private void deleteCompactionLeftovers() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && (name.endsWith(COMPACT_SUFFIX) || name.endsWith(COMPACT_SUFFIX + ".tmp"))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    // Written only after the segment holding the commit has been forced, so it never points past durable data.
+    private void writeCheckpoint() throws IOException {
+        if (commitSegment < 0 || (commitSegment == checkpointSegment && commitOffset == checkpointOffset)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        buffer.putInt(CHECKPOINT_MAGIC).putLong(commitSegment).putLong(commitOffset).putLong(committedCount);
+        if (committedLastHash == null) {
+            buffer.put((byte) 0).put(new byte[HASH_SIZE]);
+        } else {
+            buffer.put((byte) 1).put(committedLastHash);
+        }
+        buffer.put(HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), buffer.array(), 0, buffer.position()));
+        DurableFiles.write(directory.resolve(CHECKPOINT_FILE), out -> out.write(buffer.array()));
+        checkpointSegment = commitSegment;
+        checkpointOffset = commitOffset;
+    }
+
+    // A checkpoint that is missing, unsigned or no longer matches the commit frame it points at is ignored,
+    // and recovery falls back to scanning the whole log.
+    private Checkpoint readCheckpoint(List<Path> segments) throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length != CHECKPOINT_SIZE) {
+            return null;
+        }
+        byte[] hmac = HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), bytes, 0, CHECKPOINT_SIZE - HASH_SIZE);
+        if (!MessageDigest.isEqual(hmac, Arrays.copyOfRange(bytes, CHECKPOINT_SIZE - HASH_SIZE, CHECKPOINT_SIZE))) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != CHECKPOINT_MAGIC) {
+            return null;
+        }
+        long segment = buffer.getLong();
+        long offset = buffer.getLong();
+        long count = buffer.getLong();
+        boolean hasLast = buffer.get() != 0;
+        byte[] lastHash = new byte[HASH_SIZE];
+        buffer.get(lastHash);
+
+        Path segmentFile = segmentPath(directory, segment);
+        if (!segments.contains(segmentFile) || offset < SEGMENT_HEADER_SIZE + COMMIT_FRAME_SIZE || Files.size(segmentFile) < offset) {
+            return null;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(COMMIT_FRAME_SIZE);
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+            while (frame.hasRemaining() && channel.read(frame, offset - COMMIT_FRAME_SIZE + frame.position()) > 0) {
+                // keep reading until the frame is complete
+            }
+        }
+        frame.flip();
+        if (frame.remaining() != COMMIT_FRAME_SIZE || frame.get() != FRAME_COMMIT || frame.getInt() != COMMIT_PAYLOAD_SIZE) {
+            return null;
+        }
+        int crc = frame.getInt();
+        byte[] payload = new byte[COMMIT_PAYLOAD_SIZE];
+        frame.get(payload);
+        if (crc32(payload) != crc) {
+            return null;
+        }
+        try {
+            return new Checkpoint(segment, offset, count, hasLast ? lastHash : null, checkCommit(payload, count));
+        } catch (IntegrityException e) {
+            return null;
+        }
+    }
+
+    private void discardUncommittedTail(List<Path> segments, int tailSegment, long tailOffset) throws IOException {
+        int keep = tailSegment < 0 ? 0 : tailSegment + 1;
+        for (int s = segments.size() - 1; s >= keep; s--) {
+            Files.delete(segments.get(s));
+        }
+        // The deletions must be durable before the tail is cut, or a crash could bring back segments that
+        // no longer continue it.
+        if (keep < segments.size()) {
+            DurableFiles.forceDirectory(directory);
+        }
+        if (tailSegment < 0) {
+            commitSegment = -1;
+            openSegment(0);
+            return;
+        }
+        Path tail = segments.get(tailSegment);
+        segmentIndex = segmentIndexOf(tail);
+        channel = FileChannel.open(tail, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer version = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(version, Integer.BYTES);
+        segmentVersion = version.getInt(0);
+        if (channel.size() > tailOffset) {
+            channel.truncate(tailOffset);
+        }
+        channel.position(tailOffset);
+        channel.force(false);
+        commitSegment = segmentIndex;
+        commitOffset = tailOffset;
+        if (segmentVersion >= CODEC_FORMAT_VERSION) {
+            writeCheckpoint();
+        }
+    }
+
+    private void writeFrame(byte type, byte[] payload) throws IOException {
+        long frameSize = FRAME_HEADER_SIZE + (long) payload.length;
+        long position = channel.position() + writeBuffer.position();
+        if (position > SEGMENT_HEADER_SIZE && position + frameSize > maxSegmentSize) {
+            flush();
+            channel.force(false);
+            channel.close();
+            openSegment(segmentIndex + 1);
+        }
+
+        if (frameSize > writeBuffer.remaining()) {
+            flush();
+        }
+        if (frameSize > writeBuffer.capacity()) {
+            ByteBuffer frame = ByteBuffer.allocate((int) frameSize);
+            frame.put(type).putInt(payload.length).putInt(crc32(payload)).put(payload).flip();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            return;
+        }
+        writeBuffer.put(type).putInt(payload.length).putInt(crc32(payload)).put(payload);
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void openSegment(long index) throws IOException {
+        Path segment = segmentPath(directory, index);
+        segmentIndex = index;
+        segmentVersion = FORMAT_VERSION;
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            header.putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).putLong(index).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(false);
+            DurableFiles.forceDirectory(directory);
+        } else {
+            channel.position(channel.size());
+        }
+    }
+
+    private Commit verifyCommit(byte[] payload, long expectedCount, MessageDigest chainDigest) throws IntegrityException {
+        Commit commit = checkCommit(payload, expectedCount);
+        if (!MessageDigest.isEqual(HashUtils.cloneDigest(chainDigest).digest(), commit.chainHash)) {
+            throw new IntegrityException("Хеш цепочки не соответствует данным в файле. Файл повреждён или подделан.");
+        }
+        return commit;
+    }
+
+    static Commit checkCommit(byte[] payload, long expectedCount) throws IntegrityException {
+        if (payload.length != COMMIT_PAYLOAD_SIZE && payload.length != LEGACY_COMMIT_PAYLOAD_SIZE) {
+            throw new IntegrityException("Некорректный размер записи фиксации.");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long count = buffer.getLong();
+        byte[] chainHash = new byte[HASH_SIZE];
+        byte[] hmac = new byte[HASH_SIZE];
+        buffer.get(chainHash).get(hmac);
+
+        if (count != expectedCount) {
+            throw new IntegrityException("Количество записей в фиксации (" + count + ") не совпадает с журналом (" + expectedCount + ").");
+        }
+        byte[] expectedHmac = HashUtils.hmacSHA256(SecurityConfig.getHmacSecret(), HashUtils.toHexAscii(chainHash));
+        if (!MessageDigest.isEqual(expectedHmac, hmac)) {
+            throw new IntegrityException("Подпись HMAC не совпадает. Файл цепочки повреждён или подделан.");
+        }
+
+        MerkleTree.SignedRoot signedRoot = null;
+        if (payload.length == COMMIT_PAYLOAD_SIZE) {
+            byte[] root = new byte[HASH_SIZE];
+            byte[] signature = new byte[HASH_SIZE];
+            buffer.get(root).get(signature);
+            signedRoot = new MerkleTree.SignedRoot(count, root, signature);
+            if (!signedRoot.isSignatureValid()) {
+                throw new IntegrityException("Подпись корня дерева Меркла не совпадает. Файл цепочки повреждён или подделан.");
+            }
+        }
+        return new Commit(count, chainHash, signedRoot);
+    }
+
+    static int readSegmentHeader(DataInputStream in, Path segment, long expectedIndex) throws IOException {
+        int magic = in.readInt();
+        int version = in.readInt();
+        long index = in.readLong();
+        if (magic != SEGMENT_MAGIC) {
+            throw new IntegrityException("Файл " + segment.getFileName() + " не является сегментом цепочки.");
+        }
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IntegrityException("Неподдерживаемая версия сегмента: " + version);
+        }
+        if (index != expectedIndex) {
+            throw new IntegrityException("Номер сегмента " + segment.getFileName() + " не совпадает с заголовком.");
+        }
+        return version;
+    }
+
+    static byte[] encodeRecord(HashRecord record) {
+        byte[] person = record.isRedacted() ? record.getRedactionSeal() : PersonCodec.encode(record.getData());
+        byte[] previousHash = record.getPreviousHashBytes();
+        int size = HASH_SIZE + 1 + (previousHash == null ? 0 : HASH_SIZE) + (record.isRedacted() ? 0 : Integer.BYTES) + person.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(record.getHashBytes());
+        byte flags = (byte) ((previousHash == null ? 0 : RECORD_HAS_PREVIOUS) | (record.isRedacted() ? RECORD_REDACTED : 0));
+        buffer.put(flags);
+        if (previousHash != null) {
+            buffer.put(previousHash);
+        }
+        if (record.isRedacted()) {
+            buffer.put(person);
+        } else {
+            buffer.putInt(person.length).put(person);
+        }
+        return buffer.array();
+    }
+
+    static Entry decodeRecord(byte[] payload, boolean legacy) throws IntegrityException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            byte[] hash = new byte[HASH_SIZE];
+            buffer.get(hash);
+            byte flags = buffer.get();
+            if ((flags & ~(RECORD_HAS_PREVIOUS | RECORD_REDACTED)) != 0 || (legacy && flags > RECORD_HAS_PREVIOUS)) {
+                throw new IntegrityException("Запись журнала повреждена.");
+            }
+            byte[] previousHash = null;
+            if ((flags & RECORD_HAS_PREVIOUS) != 0) {
+                previousHash = new byte[HASH_SIZE];
+                buffer.get(previousHash);
+            }
+            if ((flags & RECORD_REDACTED) != 0) {
+                byte[] seal = new byte[HASH_SIZE];
+                buffer.get(seal);
+                return new Entry(hash, previousHash, null, false, seal);
+            }
+            byte[] person = new byte[buffer.getInt()];
+            buffer.get(person);
+            return new Entry(hash, previousHash, person, legacy, null);
+        } catch (RuntimeException e) {
+            throw new IntegrityException("Запись журнала повреждена.");
+        }
+    }
+
+    static int crc32(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Path segmentPath(Path directory, long index) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    static long segmentIndexOf(Path segment) throws IntegrityException {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IntegrityException("Некорректное имя сегмента: " + name);
+        }
+    }
+}
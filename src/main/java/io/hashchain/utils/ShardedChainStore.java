@@ -0,0 +1,447 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.ChainVerifier;
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.PersonData;
+import io.hashchain.core.RecordSource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// N independent chains, each with its own segment log and group-commit writer, so appends to different
+// shards never wait on each other. An anchor chain signed with the HMAC secret periodically records every
+// shard's committed head; the latest anchor hash is the integrity root of the whole store.
+public class ShardedChainStore implements Closeable {
+
+    public static final long DEFAULT_ANCHOR_INTERVAL_MILLIS = 1000;
+
+    private static final String ANCHOR_FILE = "anchors.log";
+    private static final long SEGMENT_SIZE = Long.getLong("hashchain.segment.size", SegmentLog.DEFAULT_SEGMENT_SIZE);
+    private static final long COMMIT_WINDOW_MILLIS = Long.getLong("hashchain.commit.window.ms", GroupCommitWriter.DEFAULT_WINDOW_MILLIS);
+    private static final long COMMIT_GROUP_BYTES = Long.getLong("hashchain.commit.bytes", GroupCommitWriter.DEFAULT_MAX_GROUP_BYTES);
+    private static final long ANCHOR_INTERVAL_MILLIS = Long.getLong("hashchain.anchor.interval.ms", DEFAULT_ANCHOR_INTERVAL_MILLIS);
+
+    public static class Anchor {
+        public final long sequence;
+        public final long timestamp;
+        public final long[] counts;
+        public final byte[][] lastHashes;
+        public final byte[][] chainHashes;
+        public final byte[] previousHash;
+        public final byte[] hash;
+        public final byte[] signature;
+
+        private Anchor(long sequence, long timestamp, long[] counts, byte[][] lastHashes, byte[][] chainHashes,
+                       byte[] previousHash, byte[] hash, byte[] signature) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.counts = counts;
+            this.lastHashes = lastHashes;
+            this.chainHashes = chainHashes;
+            this.previousHash = previousHash;
+            this.hash = hash;
+            this.signature = signature;
+        }
+
+        static Anchor create(long sequence, long timestamp, SegmentLog.Head[] heads, byte[] previousHash) {
+            long[] counts = new long[heads.length];
+            byte[][] lastHashes = new byte[heads.length][];
+            byte[][] chainHashes = new byte[heads.length][];
+            for (int i = 0; i < heads.length; i++) {
+                counts[i] = heads[i].count;
+                lastHashes[i] = orZero(heads[i].lastHash);
+                chainHashes[i] = orZero(heads[i].chainHash);
+            }
+            Anchor unsigned = new Anchor(sequence, timestamp, counts, lastHashes, chainHashes, previousHash, null, null);
+            byte[] hash = HashUtils.sha256(unsigned.payload());
+            return new Anchor(sequence, timestamp, counts, lastHashes, chainHashes, previousHash, hash, AnchorLog.sign(hash));
+        }
+
+        static int payloadSize(int shardCount) {
+            return Long.BYTES * 2 + Integer.BYTES + shardCount * (Long.BYTES + HashUtils.HASH_SIZE * 2) + HashUtils.HASH_SIZE;
+        }
+
+        static Anchor fromPayload(byte[] payload, byte[] hash, byte[] signature) {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            long sequence = buffer.getLong();
+            long timestamp = buffer.getLong();
+            int shardCount = buffer.getInt();
+            long[] counts = new long[shardCount];
+            byte[][] lastHashes = new byte[shardCount][HashUtils.HASH_SIZE];
+            byte[][] chainHashes = new byte[shardCount][HashUtils.HASH_SIZE];
+            for (int i = 0; i < shardCount; i++) {
+                counts[i] = buffer.getLong();
+                buffer.get(lastHashes[i]).get(chainHashes[i]);
+            }
+            byte[] previousHash = new byte[HashUtils.HASH_SIZE];
+            buffer.get(previousHash);
+            return new Anchor(sequence, timestamp, counts, lastHashes, chainHashes, previousHash, hash, signature);
+        }
+
+        byte[] payload() {
+            ByteBuffer buffer = ByteBuffer.allocate(payloadSize(counts.length));
+            buffer.putLong(sequence).putLong(timestamp).putInt(counts.length);
+            for (int i = 0; i < counts.length; i++) {
+                buffer.putLong(counts[i]).put(lastHashes[i]).put(chainHashes[i]);
+            }
+            buffer.put(previousHash);
+            return buffer.array();
+        }
+
+        int frameSize() {
+            return Integer.BYTES + payloadSize(counts.length) + HashUtils.HASH_SIZE * 2;
+        }
+
+        public int shardCount() {
+            return counts.length;
+        }
+
+        public boolean isSignatureValid() {
+            return MessageDigest.isEqual(HashUtils.sha256(payload()), hash) && MessageDigest.isEqual(AnchorLog.sign(hash), signature);
+        }
+
+        private boolean covers(SegmentLog.Head[] heads) {
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i].count != counts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static byte[] orZero(byte[] hash) {
+            return hash == null ? new byte[HashUtils.HASH_SIZE] : hash;
+        }
+    }
+
+    public static class Report {
+        public final boolean valid;
+        public final int brokenShard;
+        public final int firstBrokenIndex;
+        public final String errorMessage;
+        public final Anchor anchor;
+
+        private Report(boolean valid, int brokenShard, int firstBrokenIndex, String errorMessage, Anchor anchor) {
+            this.valid = valid;
+            this.brokenShard = brokenShard;
+            this.firstBrokenIndex = firstBrokenIndex;
+            this.errorMessage = errorMessage;
+            this.anchor = anchor;
+        }
+    }
+
+    private static final class Shard {
+        final HashChain chain;
+        final SegmentLog log;
+        final GroupCommitWriter writer;
+
+        Shard(HashChain chain, SegmentLog log, GroupCommitWriter writer) {
+            this.chain = chain;
+            this.log = log;
+            this.writer = writer;
+        }
+    }
+
+    private final Shard[] shards;
+    private final AnchorLog anchors;
+    private final ScheduledExecutorService anchorTimer;
+    private volatile boolean closed;
+
+    private ShardedChainStore(Shard[] shards, AnchorLog anchors, long anchorIntervalMillis) {
+        this.shards = shards;
+        this.anchors = anchors;
+        this.anchorTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hashchain-anchor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        anchorTimer.scheduleWithFixedDelay(this::anchorQuietly, anchorIntervalMillis, anchorIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static ShardedChainStore open(Path directory, int shardCount) throws IOException {
+        return open(directory, shardCount, SEGMENT_SIZE, ANCHOR_INTERVAL_MILLIS);
+    }
+
+    public static ShardedChainStore open(Path directory, int shardCount, long segmentSize, long anchorIntervalMillis) throws IOException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Число шардов должно быть положительным: " + shardCount);
+        }
+        Files.createDirectories(directory);
+        Path anchorFile = directory.resolve(ANCHOR_FILE);
+        int recorded = AnchorLog.readShardCount(anchorFile);
+        if (recorded >= 0 && recorded != shardCount) {
+            // Keys are routed by shard count, so a different count would send them to other chains.
+            throw new SegmentLog.IntegrityException("Хранилище разбито на " + recorded + " шардов, а не на " + shardCount + ".");
+        }
+
+        List<CompletableFuture<Shard>> opening = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            Path shardDirectory = directory.resolve(String.format("shard-%03d", i));
+            opening.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return openShard(shardDirectory, segmentSize);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        Shard[] shards = new Shard[shardCount];
+        AnchorLog anchors = null;
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = join(opening.get(i));
+            }
+            anchors = AnchorLog.open(anchorFile, shardCount);
+            checkAnchored(shards, anchors.latest());
+            return new ShardedChainStore(shards, anchors, anchorIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < shardCount; i++) {
+                Shard shard = shards[i] != null ? shards[i] : opening.get(i).exceptionally(error -> null).join();
+                if (shard != null) {
+                    closeQuietly(shard);
+                }
+            }
+            if (anchors != null) {
+                anchors.close();
+            }
+            throw e;
+        }
+    }
+
+    // Stable across JVMs: String.hashCode is specified, and the finalizer spreads nearby keys.
+    public static int shardOf(String key, int shardCount) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shardCount);
+    }
+
+    public static String keyOf(PersonData person) {
+        return person.getLastName() + ' ' + person.getFirstName() + ' ' + person.getPatronymic() + ' ' + person.getBirthDate();
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public int shardOf(String key) {
+        return shardOf(key, shards.length);
+    }
+
+    public HashChain shard(int index) {
+        return shards[index].chain;
+    }
+
+    public CompletableFuture<List<HashRecord>> append(String key, List<PersonData> people) {
+        return append(shardOf(key), people);
+    }
+
+    // Records of one shard are hashed and queued under that shard's lock only; the future completes once
+    // they are durable in the shard's log.
+    public CompletableFuture<List<HashRecord>> append(int shardIndex, List<PersonData> people) {
+        Shard shard = shards[shardIndex];
+        synchronized (shard) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IOException("Хранилище цепочек закрыто."));
+            }
+            List<HashRecord> records = shard.chain.addRecords(people);
+            HashChain.CommitPoint point = shard.chain.commitPoint();
+            return shard.writer.submit(records, point.size(), point.chainHash, point.merkleRoot)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            ChainStorage.rollBack(shard.log, shard.chain, records, point.size() - records.size());
+                        }
+                    })
+                    .thenApply(ignored -> records);
+        }
+    }
+
+    // Routes every person by keyOf and appends each shard's part in parallel.
+    public CompletableFuture<Void> appendAll(List<PersonData> people) {
+        List<List<PersonData>> routed = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            routed.add(new ArrayList<>());
+        }
+        for (PersonData person : people) {
+            routed.get(shardOf(keyOf(person))).add(person);
+        }
+        List<CompletableFuture<?>> appends = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            if (!routed.get(i).isEmpty()) {
+                int shardIndex = i;
+                appends.add(CompletableFuture.supplyAsync(() -> append(shardIndex, routed.get(shardIndex))).thenCompose(future -> future));
+            }
+        }
+        return CompletableFuture.allOf(appends.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Anchors what every shard has made durable; returns the latest anchor unchanged if nothing moved.
+    public synchronized Anchor anchor() throws IOException {
+        SegmentLog.Head[] heads = new SegmentLog.Head[shards.length];
+        boolean empty = true;
+        for (int i = 0; i < shards.length; i++) {
+            heads[i] = shards[i].log.committedHead();
+            empty &= heads[i].count == 0;
+        }
+        Anchor latest = anchors.latest();
+        if (latest == null ? empty : latest.covers(heads)) {
+            return latest;
+        }
+        long sequence = latest == null ? 1 : latest.sequence + 1;
+        byte[] previous = latest == null ? new byte[HashUtils.HASH_SIZE] : latest.hash;
+        Anchor next = Anchor.create(sequence, System.currentTimeMillis(), heads, previous);
+        anchors.append(next);
+        return next;
+    }
+
+    public synchronized Anchor latestAnchor() {
+        return anchors.latest();
+    }
+
+    public synchronized List<Anchor> anchors() {
+        return anchors.anchors();
+    }
+
+    // Verifies every shard against its own log and against the latest anchor.
+    public Report verify() {
+        Anchor latest = latestAnchor();
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            SegmentLog.Head head = shard.log.committedHead();
+            RecordSource view = shard.chain.snapshot();
+            boolean committed = view.size() == head.count;
+            ChainVerifier.Report report = ChainVerifier.verify(view, committed ? head.chainHash : null,
+                    committed && head.root != null ? head.root.root : null);
+            if (!report.valid) {
+                return new Report(false, i, report.firstBrokenIndex, "Шард " + i + ": " + report.errorMessage, latest);
+            }
+            if (latest != null && !matches(shard.chain, view, latest, i)) {
+                return new Report(false, i, -1, "Шард " + i + " не соответствует якорю №" + latest.sequence
+                        + ". Данные повреждены или подделаны.", latest);
+            }
+        }
+        return new Report(true, -1, -1, null, latest);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                // Waits for an append that passed the check to finish queueing.
+            }
+        }
+        anchorTimer.shutdown();
+        try {
+            anchorTimer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException failure = null;
+        for (Shard shard : shards) {
+            try {
+                shard.writer.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        try {
+            anchor();
+        } catch (IOException e) {
+            failure = failure == null ? e : failure;
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.log.close();
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        anchors.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void anchorQuietly() {
+        try {
+            anchor();
+        } catch (IOException e) {
+            // Retried on the next tick; shards stay durable on their own.
+        }
+    }
+
+    private static Shard openShard(Path directory, long segmentSize) throws IOException {
+        SegmentLog log = new SegmentLog(directory, segmentSize);
+        HashChain chain = new HashChain();
+        log.recover();
+        if (!log.isEmpty()) {
+            if (log.isLegacyFormat()) {
+                throw new SegmentLog.IntegrityException("Шард " + directory.getFileName() + " записан в устаревшем формате.");
+            }
+            chain.attach(log.openMapped());
+        }
+        return new Shard(chain, log, new GroupCommitWriter(log, COMMIT_WINDOW_MILLIS, COMMIT_GROUP_BYTES));
+    }
+
+    // A shard that lost records the anchor already vouched for cannot be silently shortened.
+    private static void checkAnchored(Shard[] shards, Anchor latest) throws IOException {
+        if (latest == null) {
+            return;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            RecordSource view = shards[i].chain.snapshot();
+            long count = latest.counts[i];
+            if (count > view.size() || (count > 0 && !Arrays.equals(view.hashAt((int) count - 1), latest.lastHashes[i]))) {
+                throw new SegmentLog.IntegrityException("Шард " + i + " не содержит записей, зафиксированных якорем №"
+                        + latest.sequence + ". Файлы повреждены или подделаны.");
+            }
+        }
+    }
+
+    private static boolean matches(HashChain chain, RecordSource view, Anchor anchor, int shard) {
+        long count = anchor.counts[shard];
+        if (count == 0) {
+            return true;
+        }
+        return count <= view.size()
+                && Arrays.equals(view.hashAt((int) count - 1), anchor.lastHashes[shard])
+                && Arrays.equals(chain.computeChainHashBytes((int) count), anchor.chainHashes[shard]);
+    }
+
+    private static Shard join(CompletableFuture<Shard> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(Shard shard) {
+        try {
+            shard.writer.close();
+            shard.log.close();
+        } catch (IOException e) {
+            // Already failing; the original error is reported.
+        }
+    }
+}
@@ -1,11 +1,22 @@
 module io.hashchain {
-    requires javafx.controls;
-    requires javafx.fxml;
-    requires transitive javafx.graphics;
+    // Only the desktop UI needs JavaFX; the HTTP server runs without it on the module path.
+    requires static javafx.base;
+    requires static javafx.controls;
+    requires static javafx.fxml;
+    requires static transitive javafx.graphics;
+    requires jdk.httpserver;
+    requires jdk.jfr;
+    requires java.management;
 
     exports io.hashchain.core;
     opens io.hashchain.core to javafx.fxml;
 
+    exports io.hashchain.metrics;
+
+    exports io.hashchain.replication;
+
+    exports io.hashchain.server;
+
     exports io.hashchain.ui;
     opens io.hashchain.ui to javafx.fxml;
-}
\ No newline at end of file
+}
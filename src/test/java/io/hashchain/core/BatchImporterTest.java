@@ -0,0 +1,76 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchImporterTest {
+
+    static String csv(int rows) {
+        StringBuilder csv = new StringBuilder("Фамилия;Имя;Отчество;Дата;X;Y;Тип;Качество\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("Фамилия").append(i).append(";Имя").append(i).append(";Отчество;")
+                    .append(String.format("%02d.03.19%02d", 1 + i % 28, i % 100)).append(';')
+                    .append(i % 500).append(';').append(i % 300).append(';')
+                    .append(i % 2 == 0 ? "DOT" : "Ядро").append(';').append(i % 100).append('\n');
+        }
+        return csv.toString();
+    }
+
+    @Test
+    void chainsRecordsInInputOrderAcrossChunks() throws IOException {
+        HashChain chain = new HashChain();
+        chain.addRecord(TestPeople.person(0));
+        BatchImporter importer = new BatchImporter(4, 2, 7, true, BatchImporter::parseCsvLine);
+
+        BatchImporter.Result result = chain.importBatch(new BufferedReader(new StringReader(csv(1_000))), importer);
+
+        assertEquals(1_000, result.records.size());
+        assertEquals(0, result.rejected);
+        assertEquals(1_001, chain.getChain().size());
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("Фамилия" + i, chain.getChain().get(i + 1).getData().getLastName());
+        }
+        assertArrayEquals(chain.getChain().get(0).getHashBytes(), result.records.get(0).getPreviousHashBytes());
+        assertTrue(ChainVerifier.verify(chain.snapshot()).valid);
+
+        HashChain sequential = new HashChain();
+        sequential.addRecord(chain.getChain().get(0).getData());
+        for (HashRecord record : result.records) {
+            sequential.addRecord(record.getData());
+        }
+        assertArrayEquals(sequential.computeChainHashBytes(), chain.computeChainHashBytes());
+    }
+
+    @Test
+    void reportsMalformedLinesByNumber() throws IOException {
+        String csv = """
+                Фамилия,Имя,Отчество,Дата,X,Y,Тип,Качество
+                Петров,Пётр,Петрович,1990-01-02,10,20,DOT,50
+                Сидоров,Сидор
+                Кузнецов,Кузьма,Кузьмич,1991-02-03,11,21,DELTA,60
+
+                Смирнов,Семён,Семёнович,32.01.1990,12,22,CORE,70
+                Орлов,Олег,Олегович,1992-03-04,13,23,Спираль,80
+                Волков,Виктор,Викторович,1993-04-05,14,24,Дельта,90
+                """;
+        BatchImporter importer = new BatchImporter(2, 1, 2, true, BatchImporter::parseCsvLine);
+
+        BatchImporter.Result result = importer.prepare(new BufferedReader(new StringReader(csv)), null);
+
+        assertEquals(List.of("Петров", "Кузнецов", "Волков"),
+                result.records.stream().map(record -> record.getData().getLastName()).toList());
+        assertEquals(3, result.rejected);
+        assertEquals(3, result.errors.size());
+        assertTrue(result.errors.get(0).startsWith("Строка 3:"), result.errors.get(0));
+        assertTrue(result.errors.get(1).startsWith("Строка 6:"), result.errors.get(1));
+        assertTrue(result.errors.get(2).startsWith("Строка 7:"), result.errors.get(2));
+    }
+}
@@ -0,0 +1,77 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChainCoreTest {
+
+    private static final int WRITERS = 4;
+    private static final int BATCHES = 50;
+    private static final int BATCH = 5;
+
+    @Test
+    void readersSeeConsistentSnapshotsWhileWritersAppend() throws Exception {
+        HashChain chain = new HashChain();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger snapshots = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 2);
+        try {
+            Future<?>[] writers = new Future<?>[WRITERS];
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers[w] = executor.submit(() -> {
+                    for (int b = 0; b < BATCHES; b++) {
+                        int from = (writer * BATCHES + b) * BATCH;
+                        chain.addRecords(TestPeople.people(from, from + BATCH));
+                    }
+                });
+            }
+            Future<?>[] readers = new Future<?>[2];
+            for (int r = 0; r < readers.length; r++) {
+                readers[r] = executor.submit(() -> {
+                    int seen = 0;
+                    do {
+                        RecordSource view = chain.snapshot();
+                        int size = view.size();
+                        assertTrue(size >= seen);
+                        assertEquals(0, size % BATCH, "a batch is published whole");
+                        ChainVerifier.Report report = ChainVerifier.verify(view);
+                        assertTrue(report.valid, report.errorMessage);
+                        assertEquals(size, view.size());
+                        seen = size;
+                        snapshots.incrementAndGet();
+                    } while (writing.get());
+                });
+            }
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(snapshots.get() > 0);
+        assertEquals(WRITERS * BATCHES * BATCH, chain.size());
+        Set<String> names = new HashSet<>();
+        for (HashRecord record : chain.records()) {
+            names.add(record.getData().getFirstName());
+        }
+        assertEquals(chain.size(), names.size());
+        assertTrue(ChainVerifier.verify(chain.snapshot(), chain.computeChainHashBytes(), chain.computeMerkleRoot()).valid);
+    }
+}
@@ -0,0 +1,91 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChainIndexTest {
+
+    static HashChain chain() {
+        HashChain chain = new HashChain();
+        for (PersonData person : List.of(
+                new PersonData("Пётр", "Петров", "Петрович", LocalDate.of(1990, 1, 2), new FingerprintDot(1, 1, FingerprintType.DOT, 10)),
+                new PersonData("Анна", "Иванова", "Сергеевна", LocalDate.of(1985, 6, 1), new FingerprintDot(2, 2, FingerprintType.CORE, 20)),
+                new PersonData("Пётр", "Петров", "Иванович", LocalDate.of(1990, 1, 3), new FingerprintDot(3, 3, FingerprintType.DELTA, 30)),
+                new PersonData("Петр", "ПЕТРОВ", "Петрович", LocalDate.of(2001, 12, 31), new FingerprintDot(4, 4, FingerprintType.DOT, 40)))) {
+            chain.addRecord(person);
+        }
+        return chain;
+    }
+
+    static ChainIndex copy(ChainIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+        return ChainIndex.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    void findsByNormalizedNamePrefixes() {
+        HashChain chain = chain();
+        assertArrayEquals(new int[] {0, 2, 3}, chain.findByName("петров", null, null));
+        assertArrayEquals(new int[] {0, 3}, chain.findByName("Петров", "Петр", "Петрович"));
+        assertArrayEquals(new int[] {0, 2, 3}, chain.search("  петров   пётр "));
+        assertArrayEquals(new int[] {1}, chain.search("Иванова Анна"));
+        assertArrayEquals(new int[0], chain.search("Сидоров"));
+    }
+
+    @Test
+    void findsByBirthDateAndHash() {
+        HashChain chain = chain();
+        assertArrayEquals(new int[] {0, 2}, chain.findByBirthDate(LocalDate.of(1990, 1, 1), LocalDate.of(1990, 1, 31)));
+        int[] range = chain.search("1985-01-01 .. 1999-12-31");
+        Arrays.sort(range);
+        assertArrayEquals(new int[] {0, 1, 2}, range);
+        assertArrayEquals(new int[] {3}, chain.search("31.12.2001"));
+        assertArrayEquals(new int[] {2}, chain.search(chain.getChain().get(2).getHash().toUpperCase()));
+        assertEquals(-1, chain.positionOf("00".repeat(32)));
+    }
+
+    @Test
+    void followsTruncationAndRedaction() {
+        HashChain chain = chain();
+        assertArrayEquals(new int[] {0, 2, 3}, chain.search("Петров"));
+        chain.truncate(3);
+        assertArrayEquals(new int[] {0, 2}, chain.search("Петров"));
+        assertEquals(-1, chain.positionOf(chain().getChain().get(3).getHashBytes()));
+        chain.redact(0);
+        assertArrayEquals(new int[] {2}, chain.search("Петров"));
+        assertEquals(0, chain.positionOf(chain.getChain().get(0).getHashBytes()));
+    }
+
+    @Test
+    void restoresASavedIndexOnlyOverTheSameRecords() throws IOException {
+        HashChain chain = chain();
+        ChainIndex saved = copy(chain.index());
+
+        HashChain longer = chain();
+        longer.addRecord(TestPeople.person(1));
+        assertTrue(longer.restoreIndex(saved));
+        assertArrayEquals(new int[] {4}, longer.search("Фамилия1"));
+        assertArrayEquals(new int[] {0, 2, 3}, longer.search("Петров"));
+
+        HashChain other = new HashChain();
+        for (int i = 0; i < 5; i++) {
+            other.addRecord(TestPeople.person(i));
+        }
+        assertFalse(other.restoreIndex(saved));
+        assertFalse(new HashChain().restoreIndex(saved));
+    }
+}
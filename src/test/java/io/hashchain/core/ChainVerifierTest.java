@@ -0,0 +1,109 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChainVerifierTest {
+
+    private static final int SIZE = 10_000;
+
+    private static HashChain chain;
+
+    @BeforeAll
+    static void buildChain() {
+        chain = new HashChain();
+        for (int i = 0; i < SIZE; i++) {
+            chain.addRecord(TestPeople.person(i));
+        }
+    }
+
+    static RecordSource source(List<HashRecord> records) {
+        return new RecordSource() {
+            @Override
+            public int size() {
+                return records.size();
+            }
+
+            @Override
+            public HashRecord get(int index) {
+                return records.get(index);
+            }
+
+            @Override
+            public byte[] hashAt(int index) {
+                return records.get(index).getHashBytes();
+            }
+        };
+    }
+
+    @Test
+    void validChainMatchesIncrementalHashes() {
+        ChainVerifier.Report report = ChainVerifier.verify(chain.snapshot(), chain.computeChainHashBytes(), chain.computeMerkleRoot());
+        assertTrue(report.valid, report.errorMessage);
+        assertEquals(SIZE, report.recordCount);
+        assertArrayEquals(chain.computeMerkleRoot(), report.merkleRoot);
+        assertArrayEquals(chain.computeChainHashBytes(), report.chainHash);
+    }
+
+    @Test
+    void reportsFirstBrokenRecordAcrossParallelSubtrees() {
+        List<HashRecord> records = new ArrayList<>(chain.getChain());
+        for (int index : new int[] {7_000, 3_001}) {
+            HashRecord original = records.get(index);
+            records.set(index, new HashRecord(TestPeople.person(SIZE + index), original.getPreviousHashBytes(), original.getHashBytes()));
+        }
+        ChainVerifier.Report report = ChainVerifier.verify(source(records), null, new ForkJoinPool(4));
+        assertFalse(report.valid);
+        assertEquals(3_001, report.firstBrokenIndex);
+        assertTrue(report.errorMessage.contains("№3002"), report.errorMessage);
+    }
+
+    @Test
+    void reportsBrokenLink() {
+        List<HashRecord> records = new ArrayList<>(chain.getChain());
+        HashRecord original = records.get(5_000);
+        records.set(5_000, new HashRecord(original.getData(), records.get(10).getHashBytes(), original.getHashBytes()));
+        ChainVerifier.Report report = ChainVerifier.verify(source(records));
+        assertFalse(report.valid);
+        assertEquals(5_000, report.firstBrokenIndex);
+        assertTrue(report.errorMessage.contains("ссылка"), report.errorMessage);
+    }
+
+    @Test
+    void wrongExpectedChainHashIsNotAttributedToARecord() {
+        byte[] forged = chain.computeChainHashBytes().clone();
+        forged[0] ^= 1;
+        ChainVerifier.Report report = ChainVerifier.verify(chain.snapshot(), forged);
+        assertFalse(report.valid);
+        assertEquals(-1, report.firstBrokenIndex);
+
+        byte[] forgedRoot = chain.computeMerkleRoot().clone();
+        forgedRoot[0] ^= 1;
+        report = ChainVerifier.verify(chain.snapshot(), null, forgedRoot);
+        assertFalse(report.valid);
+        assertEquals(-1, report.firstBrokenIndex);
+    }
+
+    @Test
+    void verifyFromChecksOnlyTheTail() {
+        List<HashRecord> records = new ArrayList<>(chain.records());
+        HashRecord original = records.get(9_500);
+        records.set(9_500, new HashRecord(TestPeople.person(SIZE), original.getPreviousHashBytes(), original.getHashBytes()));
+        byte[] chainHash = chain.computeChainHashBytes();
+        byte[] root = chain.computeMerkleRoot();
+
+        assertTrue(ChainVerifier.verifyFrom(source(records), 9_501, chainHash, root, chainHash, root).valid);
+        ChainVerifier.Report report = ChainVerifier.verifyFrom(source(records), 9_000, chainHash, root, chainHash, root);
+        assertFalse(report.valid);
+        assertEquals(9_500, report.firstBrokenIndex);
+    }
+}
@@ -0,0 +1,126 @@
+package io.hashchain.core;
+
+import io.hashchain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateFilterTest {
+
+    static DuplicateFilter filter(int from, int to) {
+        DuplicateFilter filter = new DuplicateFilter(0, 0.01, DuplicateFilter.DEFAULT_MEMORY_BUDGET);
+        for (int i = from; i < to; i++) {
+            filter.append(new HashRecord(TestPeople.person(i), null, HashUtils.sha256(new byte[] {(byte) i})), DuplicateFilter.key(TestPeople.person(i)));
+        }
+        return filter;
+    }
+
+    @Test
+    void neverMissesAcrossLayersAndRarelyFalselyMatches() {
+        DuplicateFilter filter = filter(0, 150_000);
+        assertTrue(filter.layerCount() > 1);
+        for (int i = 0; i < 150_000; i++) {
+            assertTrue(filter.mightContain(DuplicateFilter.key(TestPeople.person(i))), "record " + i);
+        }
+        int falsePositives = 0;
+        for (int i = 1_000_000; i < 1_100_000; i++) {
+            if (filter.mightContain(DuplicateFilter.key(TestPeople.person(i)))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives");
+    }
+
+    @Test
+    void survivesWriteAndRead() throws IOException {
+        DuplicateFilter filter = filter(0, 1_000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.write(new DataOutputStream(bytes));
+        DuplicateFilter read = DuplicateFilter.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(filter.size(), read.size());
+        assertArrayEquals(filter.lastHash(), read.lastHash());
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(read.mightContain(DuplicateFilter.key(TestPeople.person(i))));
+        }
+        byte[] damaged = bytes.toByteArray();
+        damaged[0] ^= 1;
+        assertThrows(IOException.class, () -> DuplicateFilter.read(new DataInputStream(new ByteArrayInputStream(damaged))));
+    }
+
+    @Test
+    void chainRejectsRepeatedEnrollment() {
+        HashChain chain = new HashChain();
+        chain.setRejectDuplicates(true);
+        chain.addRecords(TestPeople.people(0, 500));
+        chain.prepareDuplicateFilter().join();
+
+        PersonData same = TestPeople.person(123);
+        PersonData respelled = new PersonData(" имя123 ", "ФАМИЛИЯ123", "Отчество", same.getBirthDate(), same.getFingerprintDot());
+        assertEquals(123, chain.findDuplicate(respelled));
+        HashChain.DuplicateRecordException e = assertThrows(HashChain.DuplicateRecordException.class, () -> chain.addRecord(respelled));
+        assertEquals(123, e.existing);
+
+        PersonData other = new PersonData("Имя123", "Фамилия123", "Отчество", same.getBirthDate().plusDays(1), same.getFingerprintDot());
+        assertEquals(-1, chain.findDuplicate(other));
+        e = assertThrows(HashChain.DuplicateRecordException.class, () -> chain.addRecords(List.of(other, TestPeople.person(600), other)));
+        assertEquals(2, e.position);
+        assertEquals(500, chain.size());
+        chain.addRecord(other);
+
+        chain.redact(123);
+        chain.addRecord(same);
+        assertEquals(502, chain.size());
+    }
+
+    @Test
+    void rejectionIsOptInAndDoesNotWaitForTheFilter() {
+        HashChain chain = new HashChain();
+        assertFalse(chain.isRejectDuplicates());
+        chain.addRecords(TestPeople.people(0, 300));
+        chain.addRecord(TestPeople.person(7));
+        assertFalse(chain.isDuplicateFilterReady());
+
+        chain.setRejectDuplicates(true);
+        HashChain.DuplicateRecordException e = assertThrows(HashChain.DuplicateRecordException.class, () -> chain.addRecord(TestPeople.person(42)));
+        assertEquals(42, e.existing);
+        assertEquals(-1, chain.findDuplicate(TestPeople.person(300)));
+        chain.addRecord(TestPeople.person(300));
+        assertEquals(302, chain.size());
+    }
+
+    @Test
+    void importRejectsPeopleAlreadyEnrolled() throws IOException {
+        HashChain chain = new HashChain();
+        chain.setRejectDuplicates(true);
+        chain.addRecord(new PersonData("Пётр", "Петров", "Петрович", LocalDate.of(1990, 1, 2), new FingerprintDot(10, 20, FingerprintType.DOT, 50)));
+        String csv = """
+                Петров,Петр,Петрович,1990-01-02,10,20,DOT,50
+                Кузнецов,Кузьма,Кузьмич,1991-02-03,11,21,DELTA,60
+                Кузнецов,Кузьма,Кузьмич,1991-02-03,11,21,DELTA,60
+                """;
+
+        BatchImporter.Result result = chain.importBatch(new BufferedReader(new StringReader(csv)),
+                new BatchImporter(2, 4, 1, false, BatchImporter::parseCsvLine));
+
+        assertEquals(1, result.records.size());
+        assertEquals(2, result.rejected);
+        assertTrue(result.errors.get(0).startsWith("Строка 1: запись уже есть в цепочке (№1)"), result.errors.get(0));
+        assertTrue(result.errors.get(1).startsWith("Строка 3:"), result.errors.get(1));
+        assertEquals(2, chain.size());
+    }
+}
@@ -0,0 +1,81 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintMatcherTest {
+
+    private static final int PEOPLE = 400;
+    private static final FingerprintType[] TYPES = FingerprintType.values();
+
+    private static HashChain chain;
+
+    @BeforeAll
+    static void enroll() {
+        Random random = new Random(7);
+        chain = new HashChain();
+        for (int i = 0; i < PEOPLE; i++) {
+            List<FingerprintDot> dots = new ArrayList<>();
+            for (int m = 0; m < 30; m++) {
+                dots.add(new FingerprintDot(random.nextInt(500), random.nextInt(500), TYPES[random.nextInt(TYPES.length)], 40 + random.nextInt(200)));
+            }
+            PersonData person = TestPeople.person(i);
+            person.setFingerprintDot(dots.get(0));
+            person.setTemplate(MinutiaeTemplate.of(dots));
+            chain.addRecord(person);
+        }
+    }
+
+    // Another scan of the same finger: every point moved a little, a few missing.
+    static MinutiaeTemplate rescan(MinutiaeTemplate template, long seed) {
+        Random random = new Random(seed);
+        List<FingerprintDot> dots = new ArrayList<>();
+        for (FingerprintDot dot : template.toDots()) {
+            if (random.nextInt(10) == 0) {
+                continue;
+            }
+            dots.add(new FingerprintDot(Math.max(0, dot.getX_position() + random.nextInt(7) - 3),
+                    Math.max(0, dot.getY_position() + random.nextInt(7) - 3), dot.getType(), dot.getQuality()));
+        }
+        return MinutiaeTemplate.of(dots);
+    }
+
+    @Test
+    void identifiesTheEnrolledFinger() {
+        TemplateGallery.Snapshot gallery = chain.templateGallery();
+        assertEquals(PEOPLE, gallery.size());
+        FingerprintMatcher matcher = new FingerprintMatcher();
+        for (int person : new int[] {0, 77, PEOPLE - 1}) {
+            MinutiaeTemplate probe = rescan(chain.getChain().get(person).getData().getTemplate(), person);
+            FingerprintMatcher.Result result = matcher.identify(gallery, probe, 2, 0);
+            assertEquals(person, result.matches.get(0).recordIndex);
+            assertTrue(result.matches.get(0).score > 2 * result.matches.get(1).score, "person " + person);
+            assertEquals(1, matcher.identify(gallery, probe, 2, result.matches.get(1).score + 1e-9).matches.size());
+        }
+    }
+
+    @Test
+    void parallelismDoesNotChangeTheRanking() {
+        TemplateGallery.Snapshot gallery = chain.templateGallery();
+        MinutiaeTemplate probe = rescan(chain.getChain().get(200).getData().getTemplate(), 1);
+        FingerprintMatcher.Result serial = new FingerprintMatcher(FingerprintMatcher.DEFAULT_TOLERANCE, new ForkJoinPool(1)).identify(gallery, probe, 10, 0);
+        FingerprintMatcher.Result parallel = new FingerprintMatcher(FingerprintMatcher.DEFAULT_TOLERANCE, new ForkJoinPool(4)).identify(gallery, probe, 10, 0);
+
+        assertEquals(10, serial.matches.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(serial.matches.get(i).recordIndex, parallel.matches.get(i).recordIndex);
+            assertEquals(serial.matches.get(i).score, parallel.matches.get(i).score, 1e-12);
+        }
+        for (int i = 1; i < 10; i++) {
+            assertTrue(serial.matches.get(i - 1).score >= serial.matches.get(i).score);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.hashchain.core;
+
+import io.hashchain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HashChainTest {
+
+    // The chain hash as the original implementation computed it: SHA-256 over every record hash in hex.
+    static byte[] referenceChainHash(HashChain chain, int length) {
+        MessageDigest digest = HashUtils.newSHA256Digest();
+        for (int i = 0; i < length; i++) {
+            digest.update(chain.get(i).getHash().getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    @Test
+    void runningHashMatchesFullRecomputation() {
+        HashChain chain = new HashChain();
+        assertArrayEquals(referenceChainHash(chain, 0), chain.computeChainHashBytes());
+        chain.addRecords(TestPeople.people(0, 3_000));
+        assertArrayEquals(referenceChainHash(chain, 3_000), chain.computeChainHashBytes());
+        for (int length : new int[] {0, 1, 1_023, 1_024, 1_025, 2_048, 2_999}) {
+            assertArrayEquals(referenceChainHash(chain, length), chain.computeChainHashBytes(length), "prefix " + length);
+        }
+        assertEquals(HashUtils.toHex(chain.computeChainHashBytes()), chain.computeChainHash());
+        assertThrows(IndexOutOfBoundsException.class, () -> chain.computeChainHashBytes(3_001));
+    }
+
+    @Test
+    void runningHashFollowsTruncationAndReplacement() {
+        HashChain chain = new HashChain();
+        chain.addRecords(TestPeople.people(0, 2_500));
+        chain.computeChainHashBytes();
+
+        chain.truncate(1_100);
+        assertArrayEquals(referenceChainHash(chain, 1_100), chain.computeChainHashBytes());
+        chain.addRecords(TestPeople.people(5_000, 5_010));
+        assertArrayEquals(referenceChainHash(chain, 1_110), chain.computeChainHashBytes());
+
+        HashChain other = new HashChain();
+        other.addRecords(TestPeople.people(7_000, 7_050));
+        chain.replaceAll(other.records());
+        assertArrayEquals(other.computeChainHashBytes(), chain.computeChainHashBytes());
+        chain.clear();
+        assertArrayEquals(referenceChainHash(chain, 0), chain.computeChainHashBytes());
+    }
+}
@@ -0,0 +1,176 @@
+package io.hashchain.core;
+
+import io.hashchain.utils.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleTreeTest {
+
+    static RecordSource hashes(int size) {
+        List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            hashes.add(HashUtils.sha256(new byte[] {(byte) i, (byte) (i >> 8), (byte) (i >> 16)}));
+        }
+        return new RecordSource() {
+            @Override
+            public int size() {
+                return hashes.size();
+            }
+
+            @Override
+            public HashRecord get(int index) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public byte[] hashAt(int index) {
+                return hashes.get(index);
+            }
+        };
+    }
+
+    static MerkleTree tree(RecordSource records, int size) {
+        MerkleTree tree = new MerkleTree();
+        for (int i = 0; i < size; i++) {
+            tree.append(records.hashAt(i));
+        }
+        return tree;
+    }
+
+    // RFC 6962 tree hash, computed the slow way.
+    static byte[] referenceRoot(RecordSource records, int from, int to) {
+        if (to - from == 1) {
+            return MerkleTree.leafHash(records.hashAt(from));
+        }
+        int split = Integer.highestOneBit(to - from - 1);
+        return MerkleTree.nodeHash(referenceRoot(records, from, from + split), referenceRoot(records, from + split, to));
+    }
+
+    @Test
+    void leavesAndNodesArePrefixedAsInRfc6962() {
+        byte[] left = HashUtils.sha256(new byte[] {1});
+        byte[] right = HashUtils.sha256(new byte[] {2});
+        byte[] leaf = new byte[1 + HashUtils.HASH_SIZE];
+        System.arraycopy(left, 0, leaf, 1, HashUtils.HASH_SIZE);
+        byte[] node = new byte[1 + 2 * HashUtils.HASH_SIZE];
+        node[0] = 1;
+        System.arraycopy(left, 0, node, 1, HashUtils.HASH_SIZE);
+        System.arraycopy(right, 0, node, 1 + HashUtils.HASH_SIZE, HashUtils.HASH_SIZE);
+
+        assertArrayEquals(HashUtils.sha256(leaf), MerkleTree.leafHash(left));
+        assertArrayEquals(HashUtils.sha256(node), MerkleTree.nodeHash(left, right));
+        assertArrayEquals(HashUtils.sha256(new byte[0]), MerkleTree.emptyRoot());
+    }
+
+    @Test
+    void verifierRootMatchesReferenceForEverySize() {
+        RecordSource records = hashes(70);
+        for (int size = 0; size <= 70; size++) {
+            List<HashRecord> prefix = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                prefix.add(new HashRecord(TestPeople.person(i), i == 0 ? null : records.hashAt(i - 1), records.hashAt(i)));
+            }
+            byte[] expected = size == 0 ? MerkleTree.emptyRoot() : referenceRoot(records, 0, size);
+            assertArrayEquals(expected, ChainVerifier.verify(ChainVerifierTest.source(prefix)).merkleRoot, "size " + size);
+        }
+    }
+
+    @Test
+    void rootsMatchReferenceForEverySize() {
+        RecordSource records = hashes(70);
+        MerkleTree tree = new MerkleTree();
+        assertArrayEquals(MerkleTree.emptyRoot(), tree.root());
+        for (int size = 1; size <= 70; size++) {
+            tree.append(records.hashAt(size - 1));
+            assertArrayEquals(referenceRoot(records, 0, size), tree.root(), "size " + size);
+        }
+        for (int size = 1; size <= 70; size++) {
+            assertArrayEquals(referenceRoot(records, 0, size), tree.rootAt(size, records), "prefix " + size);
+        }
+    }
+
+    @Test
+    void proofsVerifyForEveryLeafAndTreeSize() {
+        RecordSource records = hashes(40);
+        MerkleTree tree = tree(records, 40);
+        for (int size = 1; size <= 40; size++) {
+            MerkleTree.SignedRoot root = MerkleTree.SignedRoot.sign(size, tree.rootAt(size, records));
+            for (int leaf = 0; leaf < size; leaf++) {
+                assertTrue(MerkleTree.verifyInclusion(tree.prove(leaf, size, records), root), leaf + " of " + size);
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.prove(40, records));
+    }
+
+    @Test
+    void rejectsForgedProofsAndRoots() {
+        RecordSource records = hashes(13);
+        MerkleTree tree = tree(records, 13);
+        MerkleTree.SignedRoot root = MerkleTree.SignedRoot.sign(13, tree.root());
+        MerkleTree.Proof proof = tree.prove(6, records);
+
+        MerkleTree.Proof otherRecord = new MerkleTree.Proof(6, 13, records.hashAt(7), proof.path);
+        MerkleTree.Proof otherIndex = new MerkleTree.Proof(5, 13, proof.recordHash, proof.path);
+        byte[] signature = root.signature.clone();
+        signature[0] ^= 1;
+        byte[] forgedRoot = tree.rootAt(12, records);
+
+        assertTrue(MerkleTree.verifyInclusion(proof, root));
+        assertFalse(MerkleTree.verifyInclusion(otherRecord, root));
+        assertFalse(MerkleTree.verifyInclusion(otherIndex, root));
+        assertFalse(MerkleTree.verifyInclusion(proof, new MerkleTree.SignedRoot(13, root.root, signature)));
+        assertFalse(MerkleTree.verifyInclusion(proof, new MerkleTree.SignedRoot(13, forgedRoot, root.signature)));
+        assertFalse(MerkleTree.verifyInclusion(proof, MerkleTree.SignedRoot.sign(12, forgedRoot)));
+    }
+
+    @Test
+    void frontierAndTruncationKeepTheRoot() {
+        RecordSource records = hashes(50);
+        MerkleTree tree = tree(records, 50);
+        MerkleTree resumed = MerkleTree.fromFrontier(50, tree.frontier());
+        assertArrayEquals(tree.root(), resumed.root());
+        assertArrayEquals(tree.prove(33, records).path.get(0), resumed.prove(33, records).path.get(0));
+
+        tree.truncate(21, records);
+        assertArrayEquals(referenceRoot(records, 0, 21), tree.root());
+        tree.append(records.hashAt(21));
+        assertArrayEquals(referenceRoot(records, 0, 22), tree.root());
+    }
+
+    @Test
+    void heapNodesSpanChunks() {
+        int size = (1 << 16) + 300;
+        RecordSource records = hashes(size);
+        MerkleTree tree = tree(records, size);
+        MerkleTree.SignedRoot root = MerkleTree.SignedRoot.sign(size, tree.root());
+        for (int leaf : new int[] {0, (1 << 16) - 1, 1 << 16, (1 << 16) + 1, size - 1}) {
+            assertTrue(MerkleTree.verifyInclusion(tree.prove(leaf, records), root), "leaf " + leaf);
+        }
+        assertArrayEquals(tree(records, (1 << 16) + 1).root(), tree.rootAt((1 << 16) + 1, records));
+    }
+
+    @Test
+    void chainProvesItsRecords() {
+        HashChain chain = new HashChain();
+        for (int i = 0; i < 100; i++) {
+            chain.addRecord(TestPeople.person(i));
+        }
+        MerkleTree.SignedRoot root = chain.signedRoot();
+        for (int i = 0; i < 100; i += 7) {
+            assertTrue(MerkleTree.verifyInclusion(chain.proveInclusion(i), root));
+        }
+        assertTrue(MerkleTree.verifyInclusion(chain.proveInclusion(chain.getChain().get(42)), root));
+
+        chain.addRecord(TestPeople.person(100));
+        MerkleTree.Proof earlier = chain.proveInclusion(42, root);
+        assertTrue(MerkleTree.verifyInclusion(earlier, root));
+        assertThrows(IllegalStateException.class, () -> chain.proveInclusion(42, MerkleTree.SignedRoot.sign(100, new byte[32])));
+    }
+}
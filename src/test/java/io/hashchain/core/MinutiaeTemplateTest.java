@@ -0,0 +1,41 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MinutiaeTemplateTest {
+
+    @Test
+    void keepsEveryMinutiaInColumns() {
+        List<FingerprintDot> dots = List.of(
+                new FingerprintDot(0, 0, FingerprintType.DOT, 0),
+                new FingerprintDot(MinutiaeTemplate.MAX_COORDINATE, 17, FingerprintType.DELTA, MinutiaeTemplate.MAX_QUALITY),
+                new FingerprintDot(300, MinutiaeTemplate.MAX_COORDINATE, FingerprintType.CORE, 128));
+        MinutiaeTemplate template = MinutiaeTemplate.of(dots);
+
+        assertEquals(3, template.size());
+        assertEquals(MinutiaeTemplate.MAX_COORDINATE, template.x(1));
+        assertEquals(FingerprintType.CORE, template.type(2));
+        assertEquals(MinutiaeTemplate.MAX_QUALITY, template.quality(1));
+        assertEquals(dots.toString(), template.toDots().toString());
+        assertEquals(template, MinutiaeTemplate.of(template.toDots()));
+        assertEquals(template.hashCode(), MinutiaeTemplate.of(template.toDots()).hashCode());
+        assertNotEquals(template, MinutiaeTemplate.of(dots.subList(0, 2)));
+        assertThrows(IndexOutOfBoundsException.class, () -> template.x(3));
+    }
+
+    @Test
+    void rejectsValuesOutsideTheColumns() {
+        assertThrows(IllegalArgumentException.class, () -> MinutiaeTemplate.of(List.of(new FingerprintDot(-1, 0, FingerprintType.DOT, 0))));
+        assertThrows(IllegalArgumentException.class,
+                () -> MinutiaeTemplate.of(List.of(new FingerprintDot(0, MinutiaeTemplate.MAX_COORDINATE + 1, FingerprintType.DOT, 0))));
+        assertThrows(IllegalArgumentException.class,
+                () -> MinutiaeTemplate.of(List.of(new FingerprintDot(0, 0, FingerprintType.DOT, MinutiaeTemplate.MAX_QUALITY + 1))));
+        assertThrows(IllegalArgumentException.class, () -> MinutiaeTemplate.of(List.of(new FingerprintDot(0, 0, null, 0))));
+    }
+}
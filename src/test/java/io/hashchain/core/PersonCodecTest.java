@@ -0,0 +1,81 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PersonCodecTest {
+
+    static void assertSamePerson(PersonData expected, PersonData actual) {
+        assertEquals(expected.getLastName(), actual.getLastName());
+        assertEquals(expected.getFirstName(), actual.getFirstName());
+        assertEquals(expected.getPatronymic(), actual.getPatronymic());
+        assertEquals(expected.getBirthDate(), actual.getBirthDate());
+        assertEquals(String.valueOf(expected.getFingerprintDot()), String.valueOf(actual.getFingerprintDot()));
+        assertEquals(expected.getTemplate(), actual.getTemplate());
+    }
+
+    @Test
+    void roundTripsEveryField() {
+        MinutiaeTemplate template = MinutiaeTemplate.of(List.of(
+                new FingerprintDot(0, MinutiaeTemplate.MAX_COORDINATE, FingerprintType.CORE, 0),
+                new FingerprintDot(123, 456, FingerprintType.DELTA, MinutiaeTemplate.MAX_QUALITY)));
+        PersonData[] people = {
+                new PersonData("Анна-Мария", "Д'Артаньян", "Ёжиковна 🙂", LocalDate.of(1, 1, 1),
+                        new FingerprintDot(-5, Integer.MAX_VALUE, FingerprintType.DOT, Integer.MIN_VALUE), template),
+                new PersonData("", "", "", LocalDate.of(9999, 12, 31), new FingerprintDot(0, 0, null, 0)),
+                new PersonData("Пётр", "Петров", "Петрович", null, null),
+        };
+        for (PersonData person : people) {
+            byte[] encoded = PersonCodec.encode(person);
+            assertEquals(PersonCodec.VERSION, encoded[0]);
+            assertSamePerson(person, PersonCodec.decode(encoded));
+        }
+        assertNull(PersonCodec.decode(PersonCodec.encode(people[1])).getFingerprintDot().getType());
+    }
+
+    @Test
+    void decodesFromTheMiddleOfABuffer() {
+        PersonData person = new PersonData("Олег", "Орлов", "Олегович", LocalDate.of(1985, 7, 9),
+                new FingerprintDot(10, 20, FingerprintType.DELTA, 30));
+        byte[] encoded = PersonCodec.encode(person);
+        byte[] framed = new byte[encoded.length + 10];
+        Arrays.fill(framed, (byte) 0x7f);
+        System.arraycopy(encoded, 0, framed, 3, encoded.length);
+
+        assertSamePerson(person, PersonCodec.decode(framed, 3, encoded.length));
+        assertArrayEquals(encoded, PersonCodec.encode(PersonCodec.decode(framed, 3, encoded.length)));
+    }
+
+    @Test
+    void rejectsDamagedRecords() {
+        byte[] encoded = PersonCodec.encode(new PersonData("Иван", "Иванов", "Иванович", LocalDate.of(1990, 1, 1),
+                new FingerprintDot(1, 2, FingerprintType.CORE, 3)));
+
+        assertThrows(IllegalArgumentException.class, () -> PersonCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> PersonCodec.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+        byte[] version = encoded.clone();
+        version[0] = PersonCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> PersonCodec.decode(version));
+        byte[] flags = encoded.clone();
+        flags[1] = (byte) 0x80;
+        assertThrows(IllegalArgumentException.class, () -> PersonCodec.decode(flags));
+        byte[] length = encoded.clone();
+        length[2] = 120;
+        assertThrows(IllegalArgumentException.class, () -> PersonCodec.decode(length));
+        assertThrows(IndexOutOfBoundsException.class, () -> PersonCodec.decode(encoded, 4, encoded.length));
+    }
+
+    @Test
+    void refusesMissingNames() {
+        PersonData person = new PersonData(null, "Иванов", "Иванович", null, null);
+        assertThrows(IllegalArgumentException.class, () -> PersonCodec.encode(person));
+    }
+}
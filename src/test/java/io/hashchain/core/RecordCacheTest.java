@@ -0,0 +1,80 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RecordCacheTest {
+
+    private static final int PAGE = RecordCache.PAGE_SIZE;
+
+    // Counts the records it decodes.
+    static final class CountingSource implements RecordSource {
+        final List<HashRecord> records = new ArrayList<>();
+        int decoded;
+
+        CountingSource(int size) {
+            HashChain chain = new HashChain();
+            for (int i = 0; i < size; i++) {
+                records.add(chain.addRecord(TestPeople.person(i)));
+            }
+        }
+
+        @Override
+        public int size() {
+            return records.size();
+        }
+
+        @Override
+        public HashRecord get(int index) {
+            decoded++;
+            return records.get(index);
+        }
+
+        @Override
+        public byte[] hashAt(int index) {
+            return records.get(index).getHashBytes();
+        }
+    }
+
+    @Test
+    void decodesEachPageOnce() {
+        CountingSource source = new CountingSource(PAGE * 2 + 10);
+        RecordCache cache = new RecordCache(source, 4);
+
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < source.size(); i++) {
+                assertSame(source.records.get(i), cache.get(i));
+            }
+        }
+        assertEquals(source.size(), source.decoded);
+        assertArrayEquals(source.records.get(7).getHashBytes(), cache.hashAt(7));
+        assertEquals(source.size(), source.decoded);
+        assertThrows(IndexOutOfBoundsException.class, () -> cache.get(source.size()));
+        assertThrows(IndexOutOfBoundsException.class, () -> cache.get(-1));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedPage() {
+        CountingSource source = new CountingSource(PAGE * 3);
+        RecordCache cache = new RecordCache(source, 2);
+
+        cache.get(0);
+        cache.get(PAGE);
+        cache.get(1);
+        cache.get(PAGE * 2);
+        assertEquals(PAGE * 3, source.decoded);
+
+        cache.get(2);
+        assertEquals(PAGE * 3, source.decoded);
+        cache.get(PAGE + 1);
+        assertEquals(PAGE * 4, source.decoded);
+        assertThrows(IllegalArgumentException.class, () -> new RecordCache(source, 0));
+    }
+}
@@ -0,0 +1,75 @@
+package io.hashchain.core;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordListTest {
+
+    // Each sub-change as "set 3", "add 10..12" or "remove 4..9", with the rows it removed.
+    static List<String> record(ObservableList<HashRecord> list, List<HashRecord> removed) {
+        List<String> changes = new ArrayList<>();
+        list.addListener((ListChangeListener<HashRecord>) change -> {
+            while (change.next()) {
+                if (change.wasReplaced()) {
+                    changes.add("set " + change.getFrom() + (change.getTo() - change.getFrom() > 1 ? ".." + change.getTo() : ""));
+                } else if (change.wasAdded()) {
+                    changes.add("add " + change.getFrom() + ".." + change.getTo());
+                } else if (change.wasRemoved()) {
+                    changes.add("remove " + change.getFrom() + ".." + (change.getFrom() + change.getRemovedSize()));
+                }
+                removed.addAll(change.getRemoved());
+            }
+        });
+        return changes;
+    }
+
+    @Test
+    void redactionReplacesOnlyTheRedactedRows() {
+        HashChain chain = new HashChain(Runnable::run);
+        chain.addRecords(TestPeople.people(0, 10));
+        ObservableList<HashRecord> list = chain.getChain();
+        HashRecord third = list.get(3);
+        List<HashRecord> removed = new ArrayList<>();
+        List<String> changes = record(list, removed);
+
+        chain.redact(7, 3, 3);
+
+        assertEquals(List.of("set 3", "set 7"), changes);
+        assertSame(third, removed.get(0));
+        assertFalse(removed.get(1).isRedacted());
+        assertTrue(list.get(3).isRedacted() && list.get(7).isRedacted());
+        assertEquals(10, list.size());
+    }
+
+    @Test
+    void redactionsCoalesceWithPendingAppends() {
+        Queue<Runnable> fxThread = new ArrayDeque<>();
+        HashChain chain = new HashChain(fxThread::add);
+        chain.addRecords(TestPeople.people(0, 10));
+        ObservableList<HashRecord> list = chain.getChain();
+        List<HashRecord> removed = new ArrayList<>();
+        List<String> changes = record(list, removed);
+
+        chain.addRecords(TestPeople.people(10, 12));
+        chain.redact(2, 11);
+        chain.redact(5);
+        while (!fxThread.isEmpty()) {
+            fxThread.poll().run();
+        }
+
+        assertEquals(List.of("set 2", "set 5", "add 10..12"), changes);
+        assertTrue(list.get(11).isRedacted());
+        assertEquals(12, list.size());
+    }
+}
@@ -0,0 +1,89 @@
+package io.hashchain.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialIndexTest {
+
+    private static final FingerprintType[] TYPES = FingerprintType.values();
+
+    record Point(int record, int x, int y, FingerprintType type, int quality) {
+        double distance(int px, int py) {
+            return Math.sqrt((double) (x - px) * (x - px) + (double) (y - py) * (y - py));
+        }
+    }
+
+    static List<Point> points(SpatialIndex index, int count, long seed) {
+        Random random = new Random(seed);
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Point point = new Point(i / 3, random.nextInt(800) - 100, random.nextInt(600), TYPES[random.nextInt(TYPES.length)], random.nextInt(101));
+            index.add(point.record, point.x, point.y, point.type, point.quality);
+            points.add(point);
+        }
+        return points;
+    }
+
+    static List<Double> bruteForce(List<Point> points, int x, int y, FingerprintType type, int minQuality) {
+        return points.stream()
+                .filter(p -> (type == null || p.type == type) && p.quality >= minQuality)
+                .map(p -> p.distance(x, y))
+                .sorted(Comparator.naturalOrder())
+                .toList();
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        SpatialIndex index = new SpatialIndex(16);
+        List<Point> points = points(index, 5_000, 1);
+        Random random = new Random(2);
+        for (int q = 0; q < 200; q++) {
+            int x = random.nextInt(1_200) - 300;
+            int y = random.nextInt(1_000) - 200;
+            int k = 1 + random.nextInt(20);
+            FingerprintType type = q % 3 == 0 ? null : TYPES[q % TYPES.length];
+            int minQuality = q % 2 == 0 ? 0 : 60;
+
+            List<Double> expected = bruteForce(points, x, y, type, minQuality);
+            List<SpatialIndex.Hit> hits = index.nearest(x, y, k, type, minQuality);
+            assertEquals(Math.min(k, expected.size()), hits.size());
+            for (int i = 0; i < hits.size(); i++) {
+                assertEquals(expected.get(i), hits.get(i).distance, 1e-9, "query " + q + " hit " + i);
+                assertTrue(type == null || hits.get(i).type == type);
+                assertTrue(hits.get(i).quality >= minQuality);
+            }
+        }
+    }
+
+    @Test
+    void radiusQueryMatchesBruteForce() {
+        SpatialIndex index = new SpatialIndex();
+        List<Point> points = points(index, 3_000, 3);
+        for (int radius : new int[] {0, 5, 37, 250}) {
+            List<Double> expected = bruteForce(points, 300, 300, FingerprintType.CORE, 20).stream()
+                    .filter(distance -> distance <= radius).toList();
+            List<Double> actual = index.withinRadius(300, 300, radius, FingerprintType.CORE, 20).stream()
+                    .map(hit -> hit.distance).toList();
+            assertEquals(expected, actual, "radius " + radius);
+        }
+    }
+
+    @Test
+    void truncationDropsLaterRecords() {
+        SpatialIndex index = new SpatialIndex();
+        List<Point> points = points(index, 900, 4);
+        index.truncateRecords(100);
+        assertEquals(300, index.size());
+        List<SpatialIndex.Hit> hits = index.nearest(350, 300, 1_000, null, 0);
+        assertEquals(300, hits.size());
+        assertTrue(hits.stream().allMatch(hit -> hit.recordIndex < 100));
+        assertEquals(bruteForce(points.subList(0, 300), 350, 300, null, 0).get(0), hits.get(0).distance, 1e-9);
+    }
+}
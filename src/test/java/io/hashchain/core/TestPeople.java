@@ -0,0 +1,25 @@
+package io.hashchain.core;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Distinct people for tests: person i differs from every other in names, birth date and fingerprint.
+public final class TestPeople {
+
+    private TestPeople() {
+    }
+
+    public static PersonData person(int i) {
+        return new PersonData("Имя" + i, "Фамилия" + i, "Отчество", LocalDate.of(1960, 1, 1).plusDays(i % 20_000),
+                new FingerprintDot(i % 500, i % 400, FingerprintType.DOT, i % 100));
+    }
+
+    public static List<PersonData> people(int from, int to) {
+        List<PersonData> people = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            people.add(person(i));
+        }
+        return people;
+    }
+}
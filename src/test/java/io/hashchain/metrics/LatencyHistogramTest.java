@@ -0,0 +1,71 @@
+package io.hashchain.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    // Reported values may exceed the recorded ones by one sub-bucket, 1/32 of the power of two.
+    static void assertClose(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 32, expected + " ~ " + actual);
+    }
+
+    @Test
+    void bucketsCoverEveryValueWithinOneSubBucket() {
+        for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertClose(value, highest);
+            assertEquals(LatencyHistogram.indexOf(value), LatencyHistogram.indexOf(highest));
+        }
+        assertEquals(LatencyHistogram.indexOf(Long.MAX_VALUE), LatencyHistogram.indexOf(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void percentilesFollowRecordedLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1000; i >= 1; i--) {
+            histogram.record(i * 1_000L, 2, 100, i % 10 == 0);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count);
+        assertEquals(2000, snapshot.items);
+        assertEquals(100_000, snapshot.bytes);
+        assertEquals(100, snapshot.failures);
+        assertEquals(1_000_000, snapshot.maxNanos);
+        assertEquals(500_500.0, snapshot.meanNanos());
+        assertClose(500_000, snapshot.percentile(50));
+        assertClose(900_000, snapshot.percentile(90));
+        assertClose(990_000, snapshot.percentile(99));
+        assertEquals(1_000_000, snapshot.percentile(100));
+        assertClose(1_000, snapshot.percentile(0));
+        assertEquals(0, LatencyHistogram.Snapshot.empty(0).percentile(99));
+    }
+
+    @Test
+    void sinceCoversOnlyLaterRecords() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 900; i++) {
+            histogram.record(50_000_000, 1, 10, false);
+        }
+        LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10_000L, 3, 0, true);
+        }
+        LatencyHistogram.Snapshot later = histogram.snapshot();
+        LatencyHistogram.Snapshot window = later.since(earlier);
+
+        assertEquals(100, window.count);
+        assertEquals(300, window.items);
+        assertEquals(0, window.bytes);
+        assertEquals(100, window.failures);
+        assertEquals(50_500.0 * 10, window.meanNanos());
+        assertClose(500_000, window.percentile(50));
+        assertClose(1_000_000, window.maxNanos);
+        assertEquals(later.takenAt - earlier.takenAt, window.durationNanos);
+        assertEquals(1000, later.count);
+        assertEquals(50_000_000, later.maxNanos);
+    }
+}
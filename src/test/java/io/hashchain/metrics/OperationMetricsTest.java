@@ -0,0 +1,44 @@
+package io.hashchain.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OperationMetricsTest {
+
+    private static final long WINDOW = 1_000_000;
+
+    @Test
+    void windowsAreFixedIntervalsHoweverRarelyTheyAreRead() {
+        AtomicLong clock = new AtomicLong();
+        OperationMetrics metrics = new OperationMetrics(WINDOW, clock::get);
+
+        clock.set(100);
+        for (int i = 0; i < 3; i++) {
+            metrics.record(1_000, 2, 0, false);
+        }
+        assertEquals(3, metrics.getWindowCount(), "the current window until the first one closes");
+
+        clock.set(WINDOW + WINDOW / 2);
+        metrics.record(5_000, 1, 0, false);
+        assertEquals(3, metrics.getWindowCount());
+        assertEquals(6 * 1e9 / WINDOW, metrics.getWindowRecordsPerSecond());
+
+        clock.set(2 * WINDOW - 1);
+        assertEquals(3, metrics.getWindowCount());
+        clock.set(2 * WINDOW);
+        assertEquals(1, metrics.getWindowCount());
+        assertEquals(1e9 / WINDOW, metrics.getWindowRecordsPerSecond());
+
+        clock.set(5 * WINDOW + WINDOW / 2);
+        assertEquals(0, metrics.getWindowCount(), "nothing was recorded in the last complete window");
+        assertEquals(0, metrics.getMaxMillis());
+
+        metrics.record(2_000, 1, 0, false);
+        clock.set(6 * WINDOW);
+        assertEquals(1, metrics.getWindowCount());
+        assertEquals(5, metrics.getCount());
+    }
+}
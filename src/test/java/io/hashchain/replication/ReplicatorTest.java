@@ -0,0 +1,146 @@
+package io.hashchain.replication;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.PersonData;
+import io.hashchain.core.TestPeople;
+import io.hashchain.utils.ChainStorage;
+import io.hashchain.utils.TestStorage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicatorTest {
+
+    private static final int SIZE = 2000;
+
+    static HashChain chain(List<PersonData> people) {
+        HashChain chain = new HashChain();
+        chain.addRecords(people);
+        return chain;
+    }
+
+    @Test
+    void fetchesOnlyTheMissingTail() throws Exception {
+        HashChain source = chain(TestPeople.people(0, SIZE));
+        HashChain replica = chain(TestPeople.people(0, 1500));
+
+        Replicator.Result result = Replicator.sync(replica, new LocalReplicaSource(source));
+
+        assertEquals(1500, result.commonPrefix);
+        assertFalse(result.isDiverged());
+        assertEquals(SIZE - 1500, result.fetched);
+        assertEquals(SIZE, replica.size());
+        assertArrayEquals(source.computeMerkleRoot(), replica.computeMerkleRoot());
+
+        Replicator.Result again = Replicator.sync(replica, new LocalReplicaSource(source));
+        assertEquals(0, again.fetched);
+        assertEquals(1, again.roundTrips);
+    }
+
+    @Test
+    void findsTheDivergenceAndRewindsOnlyWhenAllowed() throws Exception {
+        HashChain source = chain(TestPeople.people(0, SIZE));
+        List<PersonData> forked = TestPeople.people(0, 700);
+        forked.addAll(TestPeople.people(SIZE, SIZE + 50));
+        HashChain replica = chain(forked);
+        byte[] before = replica.computeMerkleRoot();
+
+        Replicator.Result refused = Replicator.sync(replica, new LocalReplicaSource(source));
+        assertEquals(700, refused.divergedAt);
+        assertFalse(refused.isSynced());
+        assertArrayEquals(before, replica.computeMerkleRoot());
+        assertTrue(refused.roundTrips < 10, "round trips " + refused.roundTrips);
+
+        Replicator.Result rewound = Replicator.sync(replica, new LocalReplicaSource(source), Replicator.MEMORY, true);
+        assertEquals(700, rewound.divergedAt);
+        assertTrue(rewound.isSynced());
+        assertEquals(SIZE - 700, rewound.fetched);
+        assertArrayEquals(source.computeMerkleRoot(), replica.computeMerkleRoot());
+    }
+
+    @Test
+    void failedFetchWaitsForThePendingWriteBeforeTruncating() throws Exception {
+        HashChain source = chain(TestPeople.people(0, ReplicaSource.MAX_PAGE + 100));
+        HashChain replica = new HashChain();
+        LocalReplicaSource local = new LocalReplicaSource(source);
+        ReplicaSource failing = new ReplicaSource() {
+            @Override
+            public MerkleTree.SignedRoot head() throws IOException {
+                return local.head();
+            }
+
+            @Override
+            public List<byte[]> prefixRoots(int[] sizes) throws IOException {
+                return local.prefixRoots(sizes);
+            }
+
+            @Override
+            public List<HashRecord> records(int from, int count) throws IOException {
+                if (from > 0) {
+                    throw new IOException("Соединение прервано.");
+                }
+                return local.records(from, count);
+            }
+        };
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        boolean[] writtenBeforeTruncate = new boolean[1];
+        Replicator.Sink slow = new Replicator.Sink() {
+            @Override
+            public CompletableFuture<Void> append(HashChain chain, List<HashRecord> records) {
+                chain.appendPrepared(records);
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS).execute(() -> written.complete(null));
+                return written;
+            }
+
+            @Override
+            public int truncate(HashChain chain, int size) {
+                writtenBeforeTruncate[0] = written.isDone();
+                chain.truncate(size);
+                return size;
+            }
+        };
+
+        assertThrows(IOException.class, () -> Replicator.sync(replica, failing, slow, false));
+        assertTrue(writtenBeforeTruncate[0]);
+        assertEquals(0, replica.size());
+    }
+
+    @Test
+    void storageRewindCutsTheJournalBackToACommit() throws Exception {
+        TestStorage.reset();
+        try {
+            HashChain source = chain(TestPeople.people(0, SIZE));
+            HashChain replica = new HashChain();
+            assertTrue(ChainStorage.load(replica).success);
+            ChainStorage.ingest(replica, TestPeople.people(0, 600)).join();
+            List<PersonData> forked = TestPeople.people(600, 700);
+            forked.addAll(TestPeople.people(SIZE, SIZE + 50));
+            ChainStorage.ingest(replica, forked).join();
+
+            // The journal has commits at 600 and 750 only, so the rewind to 700 keeps 600 and refetches the rest.
+            Replicator.Result result = Replicator.sync(replica, new LocalReplicaSource(source), Replicator.STORAGE, true);
+            assertEquals(700, result.divergedAt);
+            assertEquals(SIZE - 600, result.fetched);
+            assertArrayEquals(source.computeMerkleRoot(), replica.computeMerkleRoot());
+
+            ChainStorage.close();
+            HashChain reloaded = new HashChain();
+            assertTrue(ChainStorage.load(reloaded).success);
+            assertEquals(SIZE, reloaded.size());
+            assertArrayEquals(source.computeMerkleRoot(), reloaded.computeMerkleRoot());
+        } finally {
+            TestStorage.reset();
+        }
+    }
+}
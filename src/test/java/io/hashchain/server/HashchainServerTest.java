@@ -0,0 +1,198 @@
+package io.hashchain.server;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.RecordSource;
+import io.hashchain.core.TestPeople;
+import io.hashchain.utils.ChainStorage;
+import io.hashchain.utils.TestStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HashchainServerTest {
+
+    static final String TOKEN = "s3cret";
+    static final String CSV = "Фамилия1;Имя1;Отчество;1960-01-02;1;1;DOT;1\nФамилия2;Имя2;Отчество;1960-01-03;2;2;DOT;2\n";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HashchainServer server;
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() throws IOException {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+        TestStorage.reset();
+    }
+
+    void start(HashChain chain, InetAddress host, String token) throws IOException {
+        server = new HashchainServer(chain, new InetSocketAddress(host, 0), token);
+        server.start();
+    }
+
+    HashChain startWithStorage(String token) throws IOException {
+        HashChain chain = new HashChain();
+        assertTrue(ChainStorage.load(chain).success);
+        start(chain, InetAddress.getLoopbackAddress(), token);
+        return chain;
+    }
+
+    HttpResponse<String> send(String method, String path, String body, String token) throws IOException, InterruptedException {
+        InetSocketAddress address = server.getAddress();
+        URI uri = URI.create("http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + path);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send("GET", path, null, null);
+    }
+
+    @Test
+    void servesRecordsProofsAndStatus() throws Exception {
+        HashChain chain = startWithStorage(null);
+        ChainStorage.ingest(chain, TestPeople.people(0, 10)).join();
+        String hash = chain.snapshot().get(3).getHash();
+
+        HttpResponse<String> status = get("/status");
+        assertEquals(200, status.statusCode());
+        assertTrue(status.body().contains("\"size\":10"), status.body());
+
+        HttpResponse<String> scan = get("/records?from=8");
+        assertEquals(200, scan.statusCode());
+        assertTrue(scan.body().contains("\"index\":9") && !scan.body().contains("\"index\":7"), scan.body());
+
+        HttpResponse<String> record = get("/records/" + hash);
+        assertEquals(200, record.statusCode());
+        assertTrue(record.body().contains("\"index\":3") && record.body().contains("Фамилия3"), record.body());
+
+        HttpResponse<String> proof = get("/proof/" + hash);
+        assertEquals(200, proof.statusCode());
+        assertTrue(proof.body().contains("\"leafIndex\":3") && proof.body().contains("\"treeSize\":10"), proof.body());
+
+        assertEquals(404, get("/records/" + "0".repeat(64)).statusCode());
+        assertEquals(400, get("/records/abc").statusCode());
+        assertEquals(400, get("/records?limit=-1").statusCode());
+        assertEquals(405, send("PUT", "/records", "", null).statusCode());
+        assertEquals(405, send("POST", "/status", "", null).statusCode());
+    }
+
+    @Test
+    void mutationsNeedTheToken() throws Exception {
+        HashChain chain = startWithStorage(TOKEN);
+        ChainStorage.ingest(chain, TestPeople.people(10, 15)).join();
+        String hash = chain.snapshot().get(2).getHash();
+
+        HttpResponse<String> anonymous = send("POST", "/records", CSV, null);
+        assertEquals(401, anonymous.statusCode());
+        assertEquals("Bearer", anonymous.headers().firstValue("WWW-Authenticate").orElse(null));
+        assertEquals(401, send("POST", "/records", CSV, "wrong").statusCode());
+        assertEquals(401, send("DELETE", "/records/" + hash, null, null).statusCode());
+        assertEquals(401, send("DELETE", "/records/" + "0".repeat(64), null, "wrong").statusCode());
+        assertEquals(5, chain.size());
+        assertFalse(chain.snapshot().get(2).isRedacted());
+
+        HttpResponse<String> appended = send("POST", "/records", CSV, TOKEN);
+        assertEquals(201, appended.statusCode());
+        assertTrue(appended.body().contains("\"appended\":2"), appended.body());
+        assertEquals(7, chain.size());
+
+        HttpResponse<String> redacted = send("DELETE", "/records/" + hash, null, TOKEN);
+        assertEquals(200, redacted.statusCode());
+        assertTrue(redacted.body().contains("\"redacted\":true"), redacted.body());
+        assertTrue(chain.snapshot().get(2).isRedacted());
+    }
+
+    @Test
+    void withoutTokenOnlyLocalClientsMayWrite() throws Exception {
+        startWithStorage(null);
+        assertEquals(201, send("POST", "/records", CSV, null).statusCode());
+        server.stop();
+
+        InetAddress external = externalAddress();
+        assumeTrue(external != null, "нет внешнего сетевого адреса");
+        start(new HashChain(), external, null);
+        assertEquals(403, send("POST", "/records", CSV, null).statusCode());
+        assertEquals(200, get("/status").statusCode());
+    }
+
+    static InetAddress externalAddress() throws IOException {
+        for (NetworkInterface network : NetworkInterface.networkInterfaces().toList()) {
+            if (!network.isUp() || network.isLoopback()) {
+                continue;
+            }
+            for (InetAddress address : network.inetAddresses().toList()) {
+                if (address instanceof Inet4Address && !address.isLoopbackAddress()) {
+                    return address;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Serves the records of `chain`, failing on `broken` as a damaged mapped record would. The attached view
+    // reads whole cache pages, so a failure is seen by every request that touches the page holding it.
+    static RecordSource failingAt(HashChain chain, int broken) {
+        RecordSource records = chain.snapshot();
+        return new RecordSource() {
+            @Override
+            public int size() {
+                return records.size();
+            }
+
+            @Override
+            public HashRecord get(int index) {
+                if (index == broken) {
+                    throw new IllegalStateException("Запись №" + (index + 1) + " повреждена.");
+                }
+                return records.get(index);
+            }
+
+            @Override
+            public byte[] hashAt(int index) {
+                return records.hashAt(index);
+            }
+        };
+    }
+
+    @Test
+    void scanFailingMidStreamBreaksTheResponse() throws Exception {
+        HashChain source = new HashChain();
+        source.addRecords(TestPeople.people(0, 600));
+        HashChain chain = new HashChain();
+        chain.attach(failingAt(source, 400));
+        start(chain, InetAddress.getLoopbackAddress(), null);
+
+        HttpResponse<String> page = get("/records?from=0&limit=256");
+        assertEquals(200, page.statusCode());
+        assertTrue(page.body().endsWith("]}"), page.body());
+
+        assertThrows(IOException.class, () -> get("/records?from=200&limit=300"));
+
+        HttpResponse<String> after = get("/records?from=520&limit=5");
+        assertEquals(200, after.statusCode());
+    }
+}
@@ -0,0 +1,57 @@
+package io.hashchain.ui;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.TestPeople;
+import javafx.beans.property.ReadOnlyStringProperty;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RecordCellsTest {
+
+    @Test
+    void formatsEachRecordOnce() {
+        HashChain chain = new HashChain();
+        HashRecord first = chain.addRecord(TestPeople.person(1));
+        HashRecord second = chain.addRecord(TestPeople.person(2));
+        RecordCells cells = new RecordCells(10);
+
+        assertEquals("Фамилия1 Имя1 Отчество", cells.cell(first, RecordCells.FIO).get());
+        assertEquals("", cells.cell(first, RecordCells.PREVIOUS_HASH).get());
+        assertEquals(first.getHash(), cells.cell(second, RecordCells.PREVIOUS_HASH).get());
+        assertEquals(TestPeople.person(2).getFingerprintDot().getType().getDescription(),
+                cells.cell(second, RecordCells.FINGERPRINT_TYPE).get());
+        assertSame(cells.cell(first, RecordCells.HASH), cells.cell(first, RecordCells.HASH));
+    }
+
+    @Test
+    void keysRowsByRecordIdentity() {
+        HashRecord record = new HashChain().addRecord(TestPeople.person(1));
+        HashRecord replaced = new HashRecord(TestPeople.person(2), record.getPreviousHashBytes(), record.getHashBytes());
+        RecordCells cells = new RecordCells(10);
+
+        assertEquals("Фамилия1 Имя1 Отчество", cells.cell(record, RecordCells.FIO).get());
+        assertEquals("Фамилия2 Имя2 Отчество", cells.cell(replaced, RecordCells.FIO).get());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyShownRow() {
+        HashChain chain = new HashChain();
+        HashRecord[] records = new HashRecord[3];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = chain.addRecord(TestPeople.person(i));
+        }
+        RecordCells cells = new RecordCells(2);
+
+        ReadOnlyStringProperty first = cells.cell(records[0], RecordCells.FIO);
+        ReadOnlyStringProperty second = cells.cell(records[1], RecordCells.FIO);
+        assertSame(first, cells.cell(records[0], RecordCells.FIO));
+        cells.cell(records[2], RecordCells.FIO);
+
+        assertSame(first, cells.cell(records[0], RecordCells.FIO));
+        assertNotSame(second, cells.cell(records[1], RecordCells.FIO));
+    }
+}
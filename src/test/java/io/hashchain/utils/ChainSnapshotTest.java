@@ -0,0 +1,102 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.ChainVerifier;
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.TestPeople;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChainSnapshotTest {
+
+    private static final long SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private HashChain chain;
+    private SegmentLog log;
+    private Path file;
+
+    @BeforeEach
+    void writeLog() throws Exception {
+        chain = new HashChain();
+        log = new SegmentLog(directory.resolve("log"), SEGMENT_SIZE);
+        log.recover();
+        appendCommitted(0, 3_000);
+        file = directory.resolve("snapshot.bin");
+        ChainSnapshot.build(log.openMapped(), null).write(file);
+    }
+
+    void appendCommitted(int from, int count) throws Exception {
+        for (int i = from; i < from + count; i += 500) {
+            SegmentLogTest.append(chain, log, i, Math.min(500, from + count - i));
+            SegmentLogTest.commit(chain, log);
+        }
+    }
+
+    @Test
+    void resumesFromSnapshotAndReplaysOnlyTheTail() throws Exception {
+        appendCommitted(3_000, 700);
+        ChainSnapshot saved = ChainSnapshot.read(file);
+        assertNotNull(saved);
+        assertEquals(3_000, saved.size());
+        assertTrue(SegmentLog.listSegments(log.getDirectory()).size() > 1);
+
+        MappedChainReader reader = log.openMapped(saved);
+        assertEquals(3_000, reader.resumedSize());
+        assertEquals(3_700, reader.size());
+
+        HashChain loaded = new HashChain();
+        loaded.attach(reader);
+        assertTrue(loaded.resume(saved.size(), saved.lastHash(), saved.digest(), saved.merkleFrontier()));
+        ChainVerifier.Report report = ChainVerifier.verifyFrom(reader, saved.size(), loaded.computeChainHashBytes(),
+                loaded.computeMerkleRoot(), reader.getCommittedChainHash(), reader.getCommittedRoot().root);
+        assertTrue(report.valid, report.errorMessage);
+        assertArrayEquals(chain.computeChainHashBytes(), loaded.computeChainHashBytes());
+        assertArrayEquals(chain.computeMerkleRoot(), loaded.computeMerkleRoot());
+        assertEquals(chain.get(1_234).getData().getLastName(), loaded.get(1_234).getData().getLastName());
+        assertArrayEquals(chain.computeChainHashBytes(1_500), loaded.computeChainHashBytes(1_500));
+
+        ChainSnapshot extended = ChainSnapshot.build(reader, saved);
+        ChainSnapshot full = ChainSnapshot.build(log.openMapped(), null);
+        assertEquals(full.size(), extended.size());
+        assertArrayEquals(full.chainHash, extended.chainHash);
+        assertArrayEquals(full.merkleRoot, extended.merkleRoot);
+        assertArrayEquals(full.segmentStarts, extended.segmentStarts);
+        log.close();
+    }
+
+    @Test
+    void ignoresTamperedOrStaleSnapshots() throws Exception {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[12] ^= 1;
+        Path tampered = directory.resolve("tampered.bin");
+        Files.write(tampered, bytes);
+        assertNull(ChainSnapshot.read(tampered));
+        assertNull(ChainSnapshot.read(directory.resolve("missing.bin")));
+
+        chain.truncate(2_000);
+        HashChain.CommitPoint point = chain.commitPoint();
+        log.rewrite(point.records, point.chainHash, point.merkleRoot);
+        List<HashRecord> more = chain.addRecords(List.of(TestPeople.person(9_000)));
+        log.appendAll(more);
+        SegmentLogTest.commit(chain, log);
+
+        MappedChainReader reader = log.openMapped(ChainSnapshot.read(file));
+        assertEquals(0, reader.resumedSize());
+        assertEquals(2_001, reader.size());
+        log.close();
+    }
+}
@@ -0,0 +1,126 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.FingerprintDot;
+import io.hashchain.core.FingerprintType;
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.PersonData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChainStorageTest {
+
+    static final Path WORK = TestStorage.WORK;
+    static final Path CHAIN_FILE = WORK.resolve("hashchain.json");
+
+    @BeforeEach
+    @AfterEach
+    void cleanUp() throws IOException {
+        TestStorage.reset();
+    }
+
+    static HashChain chain(int size) {
+        HashChain chain = new HashChain();
+        List<PersonData> people = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            people.add(new PersonData("Имя" + i, "Фамилия \"" + i + "\"", "Отчество", LocalDate.of(1980, 1, 1).plusDays(i),
+                    new FingerprintDot(i % 300, i % 200, FingerprintType.DELTA, 70)));
+        }
+        chain.addRecords(people);
+        return chain;
+    }
+
+    @Test
+    void importsGzipExport() throws IOException {
+        HashChain source = chain(5_000);
+        source.redact(17);
+        ChainStorage.exportJson(source, WORK.resolve("export.json.gz"));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(WORK.resolve("export.json.gz")))) {
+            assertTrue(in.readAllBytes().length > 0);
+        }
+        Files.move(WORK.resolve("export.json.gz"), CHAIN_FILE);
+
+        HashChain loaded = new HashChain();
+        ChainStorage.LoadResult result = ChainStorage.load(loaded);
+        assertTrue(result.success, result.errorMessage);
+        assertEquals(5_000, loaded.size());
+        assertArrayEquals(source.computeChainHashBytes(), loaded.computeChainHashBytes());
+        assertTrue(loaded.get(17).isRedacted());
+        assertEquals(source.get(18).getData().getLastName(), loaded.get(18).getData().getLastName());
+    }
+
+    @Test
+    void rejectsTamperedExport() throws IOException {
+        ChainStorage.exportJson(chain(100), CHAIN_FILE);
+        String text = Files.readString(CHAIN_FILE);
+        Files.writeString(CHAIN_FILE, text.replaceFirst("\"chainHash\"\\s*:\\s*\"[0-9a-f]", "\"chainHash\":\"x"));
+
+        ChainStorage.LoadResult result = ChainStorage.load(new HashChain());
+        assertFalse(result.success);
+    }
+
+    @Test
+    void redactionSurvivesReload() throws IOException {
+        HashChain chain = new HashChain();
+        assertTrue(ChainStorage.load(chain).success);
+        HashChain source = chain(50);
+        ChainStorage.ingest(chain, source.records().stream().map(HashRecord::getData).toList()).join();
+        ChainStorage.redact(chain, 3, 30);
+        assertTrue(chain.get(3).isRedacted());
+        ChainStorage.close();
+
+        for (ChainStorage.LoadMode mode : ChainStorage.LoadMode.values()) {
+            HashChain loaded = new HashChain();
+            ChainStorage.LoadResult result = ChainStorage.load(loaded, mode);
+            assertTrue(result.success, result.errorMessage);
+            assertTrue(loaded.get(3).isRedacted() && loaded.get(30).isRedacted(), mode.name());
+            assertFalse(loaded.get(4).isRedacted());
+            assertArrayEquals(source.computeChainHashBytes(), loaded.computeChainHashBytes());
+            assertTrue(ChainStorage.verify(loaded).valid);
+            ChainStorage.close();
+        }
+    }
+
+    @Test
+    void saveIndexWritesOnlyBuiltAndChangedStructures() throws IOException {
+        Path index = WORK.resolve("hashchain-log").resolve("index.bin");
+        Path duplicates = WORK.resolve("hashchain-log").resolve("duplicates.bin");
+        HashChain chain = new HashChain();
+        assertTrue(ChainStorage.load(chain).success);
+        ChainStorage.ingest(chain, chain(40).records().stream().map(HashRecord::getData).toList()).join();
+
+        ChainStorage.saveIndex(chain);
+        assertFalse(Files.exists(index));
+        assertFalse(Files.exists(duplicates));
+
+        assertArrayEquals(new int[] {7}, chain.search(chain.get(7).getHash()));
+        chain.prepareDuplicateFilter().join();
+        ChainStorage.saveIndex(chain);
+        assertTrue(Files.exists(index));
+        assertTrue(Files.exists(duplicates));
+
+        Files.delete(index);
+        ChainStorage.saveIndex(chain);
+        assertFalse(Files.exists(index));
+
+        ChainStorage.ingest(chain, List.of(chain(41).get(40).getData())).join();
+        chain.search(chain.get(40).getHash());
+        ChainStorage.saveIndex(chain);
+        assertTrue(Files.exists(index));
+    }
+}
@@ -0,0 +1,68 @@
+package io.hashchain.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DurableFilesTest {
+
+    @TempDir
+    Path directory;
+
+    static void writeNumbers(Path file, int count) throws IOException {
+        DurableFiles.writeSigned(file, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                data.writeLong(i * 31L);
+            }
+            data.flush();
+        });
+    }
+
+    static Long sum(Path file) throws IOException {
+        return DurableFiles.readSigned(file, in -> {
+            long sum = 0;
+            for (int i = in.readInt(); i > 0; i--) {
+                sum += in.readLong();
+            }
+            return sum;
+        });
+    }
+
+    @Test
+    void readsBackSignedContent() throws IOException {
+        Path file = directory.resolve("numbers.bin");
+        writeNumbers(file, 50_000);
+        assertEquals(31L * 50_000 * 49_999 / 2, sum(file));
+        assertFalse(Files.exists(directory.resolve("numbers.bin.tmp")));
+        assertNull(sum(directory.resolve("missing.bin")));
+    }
+
+    @Test
+    void refusesChangedOrTruncatedFiles() throws IOException {
+        Path file = directory.resolve("numbers.bin");
+        writeNumbers(file, 1_000);
+        byte[] bytes = Files.readAllBytes(file);
+
+        byte[] changed = bytes.clone();
+        changed[100] ^= 1;
+        Files.write(file, changed);
+        assertNull(sum(file));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(sum(file));
+
+        Files.write(file, new byte[HashUtils.HASH_SIZE - 1]);
+        assertNull(sum(file));
+    }
+}
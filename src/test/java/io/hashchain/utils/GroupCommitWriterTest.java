@@ -0,0 +1,85 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.TestPeople;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupCommitWriterTest {
+
+    @TempDir
+    Path directory;
+
+    static CompletableFuture<Void> submit(GroupCommitWriter writer, HashChain chain, List<HashRecord> records) {
+        HashChain.CommitPoint point = chain.commitPoint();
+        return writer.submit(records, point.size(), point.chainHash, point.merkleRoot);
+    }
+
+    @Test
+    void everySubmissionBecomesDurable() throws Exception {
+        HashChain chain = new HashChain();
+        List<CompletableFuture<Void>> durable = new ArrayList<>();
+        try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE);
+             GroupCommitWriter writer = new GroupCommitWriter(log, 20, 4096)) {
+            log.recover();
+            for (int i = 0; i < 300; i++) {
+                durable.add(submit(writer, chain, List.of(chain.addRecord(TestPeople.person(i)))));
+            }
+            writer.flush().join();
+            durable.forEach(CompletableFuture::join);
+            assertEquals(300, log.getCommittedCount());
+        }
+        try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+            assertEquals(300, log.replay(entry -> { }));
+            assertArrayEquals(chain.computeChainHashBytes(), log.getCommittedChainHash());
+        }
+    }
+
+    @Test
+    void failedGroupRollsLogAndChainBackToTheLastCommit() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE);
+             GroupCommitWriter writer = new GroupCommitWriter(log, 0, 4096)) {
+            log.recover();
+            submit(writer, chain, chain.addRecords(List.of(TestPeople.person(0), TestPeople.person(1)))).join();
+
+            List<HashRecord> lost = chain.addRecords(List.of(TestPeople.person(2), TestPeople.person(3)));
+            HashChain.CommitPoint point = chain.commitPoint();
+            CompletableFuture<Void> failed = writer.submit(lost, point.size() + 1, point.chainHash, point.merkleRoot)
+                    .whenComplete((ignored, error) -> ChainStorage.rollBack(log, chain, lost, 2));
+            CompletionException error = assertThrows(CompletionException.class, failed::join);
+            assertTrue(error.getCause() instanceof IllegalStateException, String.valueOf(error.getCause()));
+
+            assertEquals(2, log.getCommittedCount());
+            assertEquals(2, chain.size());
+            submit(writer, chain, List.of(chain.addRecord(TestPeople.person(4)))).join();
+        }
+        try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+            assertEquals(3, log.replay(entry -> { }));
+            assertArrayEquals(chain.computeChainHashBytes(), log.getCommittedChainHash());
+        }
+    }
+
+    @Test
+    void closedWriterRefusesWork() throws Exception {
+        try (SegmentLog log = new SegmentLog(directory, SegmentLog.DEFAULT_SEGMENT_SIZE)) {
+            log.recover();
+            GroupCommitWriter writer = new GroupCommitWriter(log, 0, 4096);
+            writer.close();
+            HashChain chain = new HashChain();
+            assertThrows(CompletionException.class, () -> submit(writer, chain, List.of(chain.addRecord(TestPeople.person(0)))).join());
+        }
+    }
+}
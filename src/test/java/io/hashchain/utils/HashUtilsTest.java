@@ -0,0 +1,59 @@
+package io.hashchain.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HashUtilsTest {
+
+    static byte[] data(int i) {
+        return ("запись " + i).repeat(i % 7 + 1).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void cachedDigestsMatchFreshOnesAcrossThreads() throws Exception {
+        MessageDigest reference = MessageDigest.getInstance("SHA-256");
+        byte[][] expected = IntStream.range(0, 2_000).mapToObj(i -> reference.digest(data(i))).toArray(byte[][]::new);
+
+        IntStream.range(0, 2_000).parallel().forEach(i -> {
+            assertArrayEquals(expected[i], HashUtils.sha256(data(i)));
+            assertArrayEquals(expected[i], HashUtils.sha256(ByteBuffer.wrap(data(i))));
+        });
+        byte[] padded = new byte[data(3).length + 8];
+        System.arraycopy(data(3), 0, padded, 5, data(3).length);
+        assertArrayEquals(expected[3], HashUtils.sha256(padded, 5, data(3).length));
+    }
+
+    @Test
+    void cachedMacFollowsTheSecret() throws Exception {
+        for (String secret : new String[] {"первый", "второй", "первый"}) {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            assertArrayEquals(mac.doFinal(data(5)), HashUtils.hmacSHA256(secret, data(5)));
+            assertEquals(HexFormat.of().formatHex(mac.doFinal("abc".getBytes(StandardCharsets.UTF_8))),
+                    HashUtils.calculateHmacSHA256(secret, "abc"));
+        }
+    }
+
+    @Test
+    void hexRoundTrips() {
+        byte[] bytes = HashUtils.sha256(data(1));
+        String hex = HashUtils.toHex(bytes);
+        assertEquals(HexFormat.of().formatHex(bytes), hex);
+        assertEquals(hex, new String(HashUtils.toHexAscii(bytes), StandardCharsets.US_ASCII));
+        assertArrayEquals(bytes, HashUtils.fromHex(hex));
+        assertArrayEquals(bytes, HashUtils.fromHex(hex.toUpperCase()));
+        assertThrows(IllegalArgumentException.class, () -> HashUtils.fromHex("abc"));
+        assertThrows(IllegalArgumentException.class, () -> HashUtils.fromHex("zz"));
+    }
+}
@@ -0,0 +1,96 @@
+package io.hashchain.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonReaderTest {
+
+    @Test
+    void readsEscapesAndSkipsUnknownValues() throws IOException {
+        String text = "{\"name\": \"a\\\"b\\\\c\\/d\\n\\t\\u0416\\u00e9\", \"skip\": {\"x\": [1, -2.5e3, true, null]}, \"count\": 42, \"ok\": false}";
+        try (JsonReader json = new JsonReader(new StringReader(text))) {
+            json.beginObject();
+            assertEquals("name", json.nextName());
+            assertEquals("a\"b\\c/d\n\tЖé", json.nextString());
+            assertEquals("skip", json.nextName());
+            json.skipValue();
+            assertEquals("count", json.nextName());
+            assertEquals(42, json.nextInt());
+            assertEquals("ok", json.nextName());
+            assertFalse(json.nextBoolean());
+            assertFalse(json.hasNext());
+            json.endObject();
+            assertEquals(JsonReader.Token.END_DOCUMENT, json.peek());
+        }
+    }
+
+    @Test
+    void skipsByteOrderMark() throws IOException {
+        try (JsonReader json = new JsonReader(new StringReader("\uFEFF[\"x\"]"))) {
+            json.beginArray();
+            assertEquals("x", json.nextString());
+            json.endArray();
+        }
+    }
+
+    @Test
+    void readsStringsAcrossBufferBoundaries() throws IOException {
+        String plain = "ё".repeat(70_000);
+        String escaped = "\\u0451".repeat(20_000);
+        try (JsonReader json = new JsonReader(new StringReader("[\"" + plain + "\", \"" + escaped + "\"]"))) {
+            json.beginArray();
+            assertEquals(plain, json.nextString());
+            assertEquals("ё".repeat(20_000), json.nextString());
+            json.endArray();
+        }
+    }
+
+    @Test
+    void reportsErrorOffsetPastFirstBuffer() throws IOException {
+        String text = "[" + " ".repeat(70_000) + "x]";
+        try (JsonReader json = new JsonReader(new StringReader(text))) {
+            json.beginArray();
+            JsonReader.SyntaxException e = assertThrows(JsonReader.SyntaxException.class, json::peek);
+            assertTrue(e.getMessage().contains("символ 70002"), e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsMalformedInput() throws IOException {
+        for (String text : new String[] {"{\"a\" 1}", "[1 2]", "\"\\q\"", "\"open", "{} []", "[tru]"}) {
+            try (JsonReader json = new JsonReader(new StringReader(text))) {
+                assertThrows(JsonReader.SyntaxException.class, () -> {
+                    json.skipValue();
+                    json.peek();
+                }, text);
+            }
+        }
+    }
+
+    @Test
+    void readsWhatTheWriterWrites() throws IOException {
+        String value = "кавычка \" слеш \\ перевод\nстроки \u0001";
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.beginObject().name("value").value(value).name("hash").hexValue(new byte[] {0x0a, (byte) 0xff}).name("n").value(-7L).endObject();
+        }
+        try (JsonReader json = new JsonReader(new StringReader(out.toString()))) {
+            json.beginObject();
+            assertEquals("value", json.nextName());
+            assertEquals(value, json.nextString());
+            assertEquals("hash", json.nextName());
+            assertEquals("0aff", json.nextString());
+            assertEquals("n", json.nextName());
+            assertEquals(-7L, json.nextLong());
+            json.endObject();
+        }
+    }
+}
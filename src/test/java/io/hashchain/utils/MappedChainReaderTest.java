@@ -0,0 +1,103 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.HashChain;
+import io.hashchain.core.TestPeople;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedChainReaderTest {
+
+    private static final long SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    HashChain write(int batches, int uncommitted) throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            for (int batch = 0; batch < batches; batch++) {
+                SegmentLogTest.append(chain, log, batch * 20, 20);
+                SegmentLogTest.commit(chain, log);
+            }
+            SegmentLogTest.append(chain, log, 1000, uncommitted);
+        }
+        return chain;
+    }
+
+    @Test
+    void servesCommittedRecordsAcrossSegments() throws Exception {
+        HashChain chain = write(10, 5);
+        assertTrue(SegmentLog.listSegments(directory).size() > 1);
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            MappedChainReader reader = log.openMapped();
+            assertEquals(200, reader.size());
+            for (int i = 0; i < reader.size(); i++) {
+                assertArrayEquals(chain.getChain().get(i).getHashBytes(), reader.hashAt(i));
+                assertEquals(chain.getChain().get(i).getData().toString(), reader.get(i).getData().toString());
+                assertEquals(chain.getChain().get(i).getPreviousHash(), reader.get(i).getPreviousHash());
+            }
+            chain.getChain().remove(200, chain.getChain().size());
+            assertArrayEquals(chain.computeChainHashBytes(), reader.getCommittedChainHash());
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.get(200));
+            assertThrows(IndexOutOfBoundsException.class, () -> reader.hashAt(-1));
+
+            HashChain mapped = new HashChain();
+            mapped.attach(reader);
+            log.append(mapped.addRecord(TestPeople.person(500)));
+            chain.addRecord(TestPeople.person(500));
+            assertEquals(chain.computeChainHash(), mapped.computeChainHash());
+            SegmentLogTest.commit(mapped, log);
+        }
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertArrayEquals(chain.computeChainHashBytes(), log.openMapped().getCommittedChainHash());
+        }
+    }
+
+    @Test
+    void damagedRecordFailsOnlyWhenRead() throws Exception {
+        write(3, 0);
+        Path first = SegmentLog.listSegments(directory).get(0);
+        byte[] bytes = Files.readAllBytes(first);
+        // a byte of the first record's person, past its hash, marker and length
+        bytes[SegmentLog.SEGMENT_HEADER_SIZE + SegmentLog.FRAME_HEADER_SIZE + SegmentLog.HASH_SIZE + 1 + Integer.BYTES + 2] ^= 1;
+        Files.write(first, bytes);
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            MappedChainReader reader = log.openMapped();
+            assertEquals(60, reader.size());
+            UncheckedIOException failure = assertThrows(UncheckedIOException.class, () -> reader.get(0));
+            assertInstanceOf(SegmentLog.IntegrityException.class, failure.getCause());
+            reader.get(1);
+        }
+    }
+
+    @Test
+    void damagedCommitInSealedSegmentIsAnError() throws Exception {
+        write(10, 0);
+        Path first = SegmentLog.listSegments(directory).get(0);
+        byte[] bytes = Files.readAllBytes(first);
+        ByteBuffer frames = ByteBuffer.wrap(bytes);
+        int position = SegmentLog.SEGMENT_HEADER_SIZE;
+        while (frames.get(position) != SegmentLog.FRAME_COMMIT) {
+            position += SegmentLog.FRAME_HEADER_SIZE + frames.getInt(position + 1);
+        }
+        bytes[position + SegmentLog.FRAME_HEADER_SIZE + 3] ^= 1;
+        Files.write(first, bytes);
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertThrows(SegmentLog.IntegrityException.class, log::openMapped);
+        }
+    }
+}
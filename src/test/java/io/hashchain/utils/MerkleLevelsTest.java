@@ -0,0 +1,106 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.MerkleTree;
+import io.hashchain.core.RecordSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleLevelsTest {
+
+    private static final int SIZE = 1_000;
+
+    @TempDir
+    Path directory;
+
+    static RecordSource hashes(int size) {
+        List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            hashes.add(HashUtils.sha256(Integer.toString(i).getBytes()));
+        }
+        return new RecordSource() {
+            @Override
+            public int size() {
+                return hashes.size();
+            }
+
+            @Override
+            public HashRecord get(int index) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public byte[] hashAt(int index) {
+                return hashes.get(index);
+            }
+        };
+    }
+
+    static MerkleTree heapTree(RecordSource records, int size) {
+        MerkleTree tree = new MerkleTree();
+        for (int i = 0; i < size; i++) {
+            tree.append(records.hashAt(i));
+        }
+        return tree;
+    }
+
+    @Test
+    void storedLevelsGiveTheSameRootsAndProofs() throws Exception {
+        RecordSource records = hashes(SIZE);
+        MerkleTree reference = heapTree(records, SIZE);
+        MerkleTree.Proof expected = reference.prove(517, records);
+
+        try (MerkleLevels levels = MerkleLevels.open(directory)) {
+            MerkleTree tree = MerkleTree.fromFrontier(SIZE, reference.frontier());
+            tree.attach(levels, 0);
+            tree.fill(0, SIZE, records);
+            tree.markStored(SIZE);
+            levels.flush();
+            assertEquals(SIZE, tree.storedSize());
+            assertArrayEquals(reference.rootAt(300, records), tree.rootAt(300, records));
+            MerkleTree.Proof proof = tree.prove(517, records);
+            assertEquals(expected.path.size(), proof.path.size());
+            for (int i = 0; i < proof.path.size(); i++) {
+                assertArrayEquals(expected.path.get(i), proof.path.get(i));
+            }
+        }
+
+        try (MerkleLevels levels = MerkleLevels.open(directory)) {
+            assertTrue(levels.size() >= SIZE);
+            assertArrayEquals(reference.root(), MerkleTree.fromStore(levels, SIZE, records).root());
+            levels.truncate(600);
+            assertArrayEquals(heapTree(records, 600).root(), MerkleTree.fromStore(levels, 600, records).root());
+        }
+    }
+
+    @Test
+    void damagedLevelFileNoLongerMatchesTheRoot() throws Exception {
+        RecordSource records = hashes(SIZE);
+        MerkleTree reference = heapTree(records, SIZE);
+        try (MerkleLevels levels = MerkleLevels.open(directory)) {
+            MerkleTree tree = MerkleTree.fromFrontier(SIZE, reference.frontier());
+            tree.attach(levels, 0);
+            tree.fill(0, SIZE, records);
+        }
+        Path level = directory.resolve("level-05.bin");
+        byte[] bytes = Files.readAllBytes(level);
+        // node 30 of level 5 is one of the frontier nodes the root of 1000 leaves is built from
+        bytes[30 * HashUtils.HASH_SIZE + 3] ^= 1;
+        Files.write(level, bytes);
+
+        try (MerkleLevels levels = MerkleLevels.open(directory)) {
+            assertFalse(Arrays.equals(reference.root(), MerkleTree.fromStore(levels, SIZE, records).root()));
+        }
+    }
+}
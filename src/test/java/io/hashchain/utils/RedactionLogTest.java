@@ -0,0 +1,69 @@
+package io.hashchain.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RedactionLogTest {
+
+    @TempDir
+    Path directory;
+
+    static RedactionLog.Redaction redaction(int index) {
+        return new RedactionLog.Redaction(index, HashUtils.sha256(new byte[] {(byte) index}));
+    }
+
+    static List<Integer> indexes(RedactionLog log) {
+        return log.entries().stream().map(entry -> entry.index).toList();
+    }
+
+    @Test
+    void keepsEntriesAcrossReopenAndDiscardsProcessedOnes() throws Exception {
+        Path file = directory.resolve("redactions.log");
+        try (RedactionLog log = RedactionLog.open(file)) {
+            log.append(List.of(redaction(5), redaction(40)));
+            log.append(List.of(redaction(7)));
+        }
+        try (RedactionLog log = RedactionLog.open(file)) {
+            assertEquals(List.of(5, 40, 7), indexes(log));
+            assertArrayEquals(redaction(40).hash, log.entries().get(1).hash);
+            // Only the entries compaction has seen, and only below the compacted range, are dropped.
+            List<RedactionLog.Redaction> processed = log.entries();
+            log.append(List.of(redaction(8)));
+            log.discard(processed, 10);
+            assertEquals(List.of(40, 8), indexes(log));
+        }
+        try (RedactionLog log = RedactionLog.open(file)) {
+            assertEquals(List.of(40, 8), indexes(log));
+        }
+    }
+
+    @Test
+    void dropsTornTailButRejectsForgedEntries() throws Exception {
+        Path file = directory.resolve("redactions.log");
+        try (RedactionLog log = RedactionLog.open(file)) {
+            log.append(List.of(redaction(1), redaction(2)));
+        }
+        Files.write(file, new byte[RedactionLog.ENTRY_SIZE - 3], StandardOpenOption.APPEND);
+        try (RedactionLog log = RedactionLog.open(file)) {
+            assertEquals(List.of(1, 2), indexes(log));
+        }
+        assertEquals(RedactionLog.HEADER_SIZE + 2L * RedactionLog.ENTRY_SIZE, Files.size(file));
+
+        try (RedactionLog log = RedactionLog.open(file)) {
+            log.append(List.of(redaction(3)));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[RedactionLog.HEADER_SIZE + RedactionLog.ENTRY_SIZE + 1] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(SegmentLog.IntegrityException.class, () -> RedactionLog.open(file).close());
+    }
+}
@@ -0,0 +1,288 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.ChainVerifier;
+import io.hashchain.core.HashChain;
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.TestPeople;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogTest {
+
+    private static final long SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    static void append(HashChain chain, SegmentLog log, int from, int count) throws Exception {
+        for (int i = from; i < from + count; i++) {
+            log.append(chain.addRecord(TestPeople.person(i)));
+        }
+    }
+
+    static void commit(HashChain chain, SegmentLog log) throws Exception {
+        log.commit(chain.getChain().size(), chain.computeChainHashBytes(), chain.computeMerkleRoot());
+    }
+
+    @Test
+    void rollsSegmentsAndReplaysRecordsInOrder() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            for (int batch = 0; batch < 10; batch++) {
+                append(chain, log, batch * 20, 20);
+                commit(chain, log);
+            }
+        }
+        assertTrue(SegmentLog.listSegments(directory).size() > 1);
+
+        List<byte[]> hashes = new ArrayList<>();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertEquals(200, log.replay(entry -> hashes.add(entry.hash)));
+            assertArrayEquals(chain.computeChainHashBytes(), log.getCommittedChainHash());
+            assertEquals(200, log.getCommittedRoot().treeSize);
+            assertArrayEquals(chain.computeMerkleRoot(), log.getCommittedRoot().root);
+            assertTrue(log.getCommittedRoot().isSignatureValid());
+        }
+        for (int i = 0; i < chain.getChain().size(); i++) {
+            assertArrayEquals(chain.getChain().get(i).getHashBytes(), hashes.get(i));
+        }
+    }
+
+    @Test
+    void replayDropsTornFrameAndUncommittedTail() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            append(chain, log, 0, 30);
+            commit(chain, log);
+            append(chain, log, 30, 5);
+        }
+        List<Path> segments = SegmentLog.listSegments(directory);
+        Path last = segments.get(segments.size() - 1);
+        Files.write(last, new byte[] {SegmentLog.FRAME_RECORD, 0, 0, 0, 50, 1, 2, 3, 4, 9, 9}, StandardOpenOption.APPEND);
+
+        try (SegmentLog recovered = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertEquals(30, recovered.replay(entry -> { }));
+            chain.getChain().remove(30, chain.getChain().size());
+            append(chain, recovered, 100, 3);
+            commit(chain, recovered);
+        }
+        try (SegmentLog reopened = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertEquals(33, reopened.replay(entry -> { }));
+        }
+    }
+
+    @Test
+    void corruptFrameInSealedSegmentIsAnError() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            for (int batch = 0; batch < 5; batch++) {
+                append(chain, log, batch * 20, 20);
+                commit(chain, log);
+            }
+        }
+        assertTrue(SegmentLog.listSegments(directory).size() > 1);
+        Path first = SegmentLog.listSegments(directory).get(0);
+        byte[] bytes = Files.readAllBytes(first);
+        bytes[SegmentLog.SEGMENT_HEADER_SIZE + SegmentLog.FRAME_HEADER_SIZE + 3] ^= 1;
+        Files.write(first, bytes);
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertThrows(SegmentLog.IntegrityException.class, () -> log.replay(entry -> { }));
+        }
+    }
+
+    @Test
+    void appendRejectsRecordThatDoesNotChain() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            append(chain, log, 0, 2);
+            HashRecord stray = new HashRecord(TestPeople.person(7), (byte[]) null);
+            assertThrows(SegmentLog.IntegrityException.class, () -> log.append(stray));
+        }
+    }
+
+    @Test
+    void forgedCheckpointIsIgnored() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            for (int batch = 0; batch < 6; batch++) {
+                append(chain, log, batch * 20, 20);
+                commit(chain, log);
+            }
+        }
+        Path checkpoint = directory.resolve("checkpoint");
+        byte[] bytes = Files.readAllBytes(checkpoint);
+        // the committed record count
+        bytes[Integer.BYTES + Long.BYTES * 2 + Long.BYTES - 1] ^= 1;
+        Files.write(checkpoint, bytes);
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            assertEquals(120, log.getCommittedCount());
+            assertArrayEquals(chain.commitPoint().chainHash, log.getCommittedChainHash());
+            append(chain, log, 200, 1);
+            commit(chain, log);
+        }
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            assertEquals(121, log.getCommittedCount());
+        }
+    }
+
+    @Test
+    void interruptedRewriteRollsBackWithoutMarkerAndForwardWithIt() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            append(chain, log, 0, 50);
+            commit(chain, log);
+        }
+        HashChain replacement = new HashChain();
+        List<HashRecord> records = replacement.addRecords(List.of(TestPeople.person(1000), TestPeople.person(1001), TestPeople.person(1002)));
+        Path stage = directory.resolve("rewrite");
+        stage(stage, replacement, records);
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            assertEquals(50, log.getCommittedCount());
+            assertFalse(Files.exists(stage));
+        }
+
+        stage(stage, replacement, records);
+        Files.write(directory.resolve("rewrite.commit"), ByteBuffer.allocate(Long.BYTES).putLong(1).array());
+        Files.move(SegmentLog.segmentPath(stage, 0), SegmentLog.segmentPath(directory, 0), StandardCopyOption.REPLACE_EXISTING);
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            assertEquals(3, log.getCommittedCount());
+            assertArrayEquals(replacement.commitPoint().chainHash, log.getCommittedChainHash());
+            assertEquals(1, SegmentLog.listSegments(directory).size());
+            assertFalse(Files.exists(stage));
+            assertFalse(Files.exists(directory.resolve("rewrite.commit")));
+        }
+    }
+
+    static void stage(Path stage, HashChain chain, List<HashRecord> records) throws Exception {
+        try (SegmentLog staged = new SegmentLog(stage, SEGMENT_SIZE)) {
+            staged.recover();
+            staged.appendAll(records);
+            commit(chain, staged);
+        }
+    }
+
+    @Test
+    void rewriteReplacesTheWholeLog() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            append(chain, log, 0, 100);
+            commit(chain, log);
+
+            chain.truncate(40);
+            HashChain.CommitPoint point = chain.commitPoint();
+            log.rewrite(point.records, point.chainHash, point.merkleRoot);
+            assertEquals(40, log.getCommittedCount());
+            append(chain, log, 500, 2);
+            commit(chain, log);
+        }
+        List<byte[]> hashes = new ArrayList<>();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertEquals(42, log.replay(entry -> hashes.add(entry.hash)));
+        }
+        assertArrayEquals(chain.get(41).getHashBytes(), hashes.get(41));
+    }
+
+    @Test
+    void truncateCutsBackToTheLastCommitAtOrBelowTheSize() throws Exception {
+        HashChain chain = new HashChain();
+        int segments;
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            for (int batch = 0; batch < 10; batch++) {
+                append(chain, log, batch * 20, 20);
+                commit(chain, log);
+            }
+            segments = SegmentLog.listSegments(directory).size();
+            Path first = SegmentLog.listSegments(directory).get(0);
+            byte[] kept = Files.readAllBytes(first);
+
+            assertEquals(200, log.truncate(250));
+            assertEquals(120, log.truncate(130));
+            assertEquals(120, log.getCommittedCount());
+            assertArrayEquals(chain.merkleRootAt(120), log.getCommittedRoot().root);
+            assertTrue(SegmentLog.listSegments(directory).size() < segments);
+            assertArrayEquals(kept, Files.readAllBytes(first));
+
+            chain.truncate(120);
+            append(chain, log, 500, 7);
+            commit(chain, log);
+        }
+        List<byte[]> hashes = new ArrayList<>();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertEquals(127, log.replay(entry -> hashes.add(entry.hash)));
+            assertArrayEquals(chain.computeChainHashBytes(), log.getCommittedChainHash());
+        }
+        assertArrayEquals(chain.get(126).getHashBytes(), hashes.get(126));
+
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            assertEquals(0, log.truncate(15));
+            chain = new HashChain();
+            append(chain, log, 0, 3);
+            commit(chain, log);
+        }
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            assertEquals(3, log.replay(entry -> { }));
+        }
+    }
+
+    @Test
+    void compactionDropsRedactedPayloadsAndKeepsTheChain() throws Exception {
+        HashChain chain = new HashChain();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            for (int batch = 0; batch < 5; batch++) {
+                append(chain, log, batch * 20, 20);
+                commit(chain, log);
+            }
+            List<Path> segments = SegmentLog.listSegments(directory);
+            assertTrue(segments.size() > 2);
+            long before = Files.size(segments.get(0));
+
+            assertTrue(log.compact(0, 0, record -> record == 3 || record == 4) > 0);
+            assertTrue(Files.size(segments.get(0)) < before);
+            assertEquals(0, log.compact(0, 0, record -> record == 3));
+            assertEquals(-1, log.compact(segments.size() - 1, 0, record -> true));
+        }
+
+        List<HashRecord> records = new ArrayList<>();
+        try (SegmentLog log = new SegmentLog(directory, SEGMENT_SIZE)) {
+            log.recover();
+            assertEquals(100, log.replay(entry -> records.add(entry.record())));
+            assertArrayEquals(chain.commitPoint().chainHash, log.getCommittedChainHash());
+        }
+        assertTrue(records.get(3).isRedacted() && records.get(3).isRedactionValid());
+        assertTrue(records.get(4).isRedacted());
+        assertFalse(records.get(5).isRedacted());
+        assertEquals(chain.get(5).getData().getLastName(), records.get(5).getData().getLastName());
+        HashChain replayed = new HashChain();
+        replayed.appendPrepared(records);
+        assertTrue(ChainVerifier.verify(replayed.snapshot(), chain.computeChainHashBytes()).valid);
+    }
+}
@@ -0,0 +1,86 @@
+package io.hashchain.utils;
+
+import io.hashchain.core.HashRecord;
+import io.hashchain.core.PersonData;
+import io.hashchain.core.TestPeople;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedChainStoreTest {
+
+    private static final int SHARDS = 4;
+    private static final long NEVER = 3_600_000;
+
+    @TempDir
+    Path directory;
+
+    static ShardedChainStore open(Path directory, int shards) throws Exception {
+        return ShardedChainStore.open(directory, shards, 4096, NEVER);
+    }
+
+    @Test
+    void routesByKeyAndReopensFromTheAnchor() throws Exception {
+        List<PersonData> people = TestPeople.people(0, 300);
+        try (ShardedChainStore store = open(directory, SHARDS)) {
+            store.appendAll(people.subList(0, 200)).join();
+            ShardedChainStore.Anchor first = store.anchor();
+            assertEquals(1, first.sequence);
+            assertTrue(first.isSignatureValid());
+            assertSame(first, store.anchor());
+
+            PersonData extra = people.get(200);
+            List<HashRecord> records = store.append(ShardedChainStore.keyOf(extra), List.of(extra)).join();
+            assertEquals(1, records.size());
+            store.appendAll(people.subList(201, 300)).join();
+            assertEquals(2, store.anchor().sequence);
+        }
+
+        try (ShardedChainStore store = open(directory, SHARDS)) {
+            int total = 0;
+            for (int i = 0; i < SHARDS; i++) {
+                for (HashRecord record : store.shard(i).records()) {
+                    assertEquals(i, store.shardOf(ShardedChainStore.keyOf(record.getData())));
+                }
+                total += store.shard(i).size();
+            }
+            assertEquals(people.size(), total);
+            ShardedChainStore.Report report = store.verify();
+            assertTrue(report.valid, report.errorMessage);
+            assertNotNull(report.anchor);
+            assertEquals(report.anchor.sequence, store.anchors().size());
+        }
+    }
+
+    @Test
+    void refusesAnotherShardCount() throws Exception {
+        try (ShardedChainStore store = open(directory, SHARDS)) {
+            store.appendAll(TestPeople.people(0, 10)).join();
+        }
+        assertThrows(SegmentLog.IntegrityException.class, () -> open(directory, SHARDS - 1));
+    }
+
+    @Test
+    void refusesAShardShorterThanItsAnchor() throws Exception {
+        int lost;
+        try (ShardedChainStore store = open(directory, SHARDS)) {
+            store.appendAll(TestPeople.people(0, 100)).join();
+            lost = store.shard(0).size() > 0 ? 0 : 1;
+        }
+        try (Stream<Path> files = Files.walk(directory.resolve(String.format("shard-%03d", lost)))) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+        assertThrows(SegmentLog.IntegrityException.class, () -> open(directory, SHARDS));
+    }
+}
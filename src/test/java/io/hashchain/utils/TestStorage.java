@@ -0,0 +1,35 @@
+package io.hashchain.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// ChainStorage keeps its files next to the working directory, which the build points at target/test-work.
+public final class TestStorage {
+
+    public static final Path WORK = Path.of(System.getProperty("user.dir"));
+
+    private TestStorage() {
+    }
+
+    // Closes the storage and removes everything it wrote, so the next test starts without a chain.
+    public static void reset() throws IOException {
+        ChainStorage.close();
+        deleteTree(WORK.resolve("hashchain-log"));
+        Files.deleteIfExists(WORK.resolve("hashchain.json"));
+        Files.deleteIfExists(WORK.resolve("hashchain_backup.json"));
+    }
+
+    public static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}